@@ -41,7 +41,7 @@ public class LogEntryBuilder implements
 	/**
 	 * The contents of cookies in the request sent to the server.
 	 */
-	private final Set<HttpCookie> cookies = new HashSet<HttpCookie>();
+	private Set<HttpCookie> cookies = new HashSet<HttpCookie>();
 
 	/**
 	 * Filename
@@ -93,7 +93,7 @@ public class LogEntryBuilder implements
 	/**
 	 * The contents of the header line(s) in the request sent to the server.
 	 */
-	private final Set<ReadableHttpRequestHeaderField> requestHeaders = new HashSet<ReadableHttpRequestHeaderField>();
+	private Set<ReadableHttpRequestHeaderField> requestHeaders = new HashSet<ReadableHttpRequestHeaderField>();
 
 	/**
 	 * The time taken to serve the request in microseconds.
@@ -118,7 +118,7 @@ public class LogEntryBuilder implements
 	/**
 	 * The contents of Foobar: header line(s) in the reply.
 	 */
-	private final Set<ReadableHttpResponseHeaderField> responseHeaders = new HashSet<ReadableHttpResponseHeaderField>();
+	private Set<ReadableHttpResponseHeaderField> responseHeaders = new HashSet<ReadableHttpResponseHeaderField>();
 
 	/**
 	 * Size of response in bytes, excluding HTTP headers.<br>
@@ -136,6 +136,12 @@ public class LogEntryBuilder implements
 	 */
 	private Integer serverPort = 0;
 
+	/**
+	 * Indicates that the sets of headers and cookies have been passed to a built <code>LogEntry</code> and therefore
+	 * must not be cleared
+	 */
+	private boolean shared;
+
 	/**
 	 * Status. For requests that got internally redirected, this is the status of the *original* request --- %...>s for
 	 * the last.
@@ -195,13 +201,15 @@ public class LogEntryBuilder implements
 	}
 
 	/**
-	 * Constructs an immutable <code>LogEntry</code>.
+	 * Constructs an immutable <code>LogEntry</code>. The entry takes over the sets of headers and cookies, so resetting
+	 * this builder afterwards allocates new sets instead of clearing them.
 	 * 
 	 * @throws IllegalArgumentException
 	 *             if the construction arguments for <code>LogEntry</code> invalid
 	 * @return a new log entry
 	 */
 	public LogEntry build() {
+		shared = true;
 		return new LogEntry(bytesReceived, bytesSent, connectionStatus, cookies, filename, lastStatusCode,
 				localIpAddress, processId, queryString, remoteHost, remoteIpAddress, remoteLogname, remoteUser,
 				requestHeaders, requestInMillis, requestMethod, requestProtocol, requestTime, responseHeaders,
@@ -632,6 +640,47 @@ public class LogEntryBuilder implements
 		return this;
 	}
 
+	/**
+	 * Resets all values to their defaults, so this builder can be reused for another log entry. The sets of headers
+	 * and cookies will be cleared and reused, unless they have been passed to a built entry.
+	 * 
+	 * @return itself, for chaining
+	 */
+	public LogEntryBuilder reset() {
+		bytesReceived = 0l;
+		bytesSent = 0l;
+		connectionStatus = HttpConnectionStatus.UNKNOWN;
+		if (shared) {
+			cookies = new HashSet<HttpCookie>();
+			requestHeaders = new HashSet<ReadableHttpRequestHeaderField>();
+			responseHeaders = new HashSet<ReadableHttpResponseHeaderField>();
+			shared = false;
+		} else {
+			cookies.clear();
+			requestHeaders.clear();
+			responseHeaders.clear();
+		}
+		filename = "";
+		lastStatusCode = HttpStatus.UNKNOWN;
+		localIpAddress = "";
+		processId = 0;
+		queryString = "";
+		remoteHost = "";
+		remoteIpAddress = "";
+		remoteLogname = "";
+		remoteUser = "";
+		requestInMillis = 0l;
+		requestMethod = HttpRequestMethod.UNKNOWN;
+		requestProtocol = "";
+		requestTime = new Date(0);
+		responseInBytes = 0l;
+		serverName = "";
+		serverPort = 0;
+		statusCode = HttpStatus.UNKNOWN;
+		urlPath = "";
+		return this;
+	}
+
 	/**
 	 * Sets the size of response in bytes, excluding HTTP headers.
 	 * 
@@ -15,6 +15,10 @@
  ******************************************************************************/
 package net.sf.jacclog.api.domain.http;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 /**
  * Defines the type of a Hypertext Transfer Protocol (HTTP) request header field.<br>
  * <br>
@@ -311,6 +315,20 @@ public enum HttpRequestHeader implements ReadableHttpRequestHeader {
 	 */
 	WARNING("Warning");
 
+	/**
+	 * Lookup table of the header fields by their name in lower case
+	 */
+	private static final Map<String, HttpRequestHeader> NAMES = new HashMap<String, HttpRequestHeader>();
+
+	static {
+		for (final HttpRequestHeader name : values()) {
+			final String key = name.getName().toLowerCase(Locale.ENGLISH);
+			if (!NAMES.containsKey(key)) {
+				NAMES.put(key, name);
+			}
+		}
+	}
+
 	/**
 	 * Evaluates the given string against the available enumeration constants. If a field matches against the input
 	 * string, the constant will be returned otherwise an <code>UnknownHttpRequestHeader</code> will be created and
@@ -324,13 +342,8 @@ public enum HttpRequestHeader implements ReadableHttpRequestHeader {
 	 *         <code>UnknownHttpRequestHeader</code>, but never <code>null</code>
 	 */
 	public static ReadableHttpRequestHeader evaluate(final String headerName) {
-		ReadableHttpRequestHeader result = null;
-		for (final HttpRequestHeader name : values()) {
-			if (name.getName().equalsIgnoreCase(headerName)) {
-				result = name;
-				break;
-			}
-		}
+		ReadableHttpRequestHeader result = (headerName != null) ? NAMES.get(headerName.toLowerCase(Locale.ENGLISH))
+				: null;
 		if (result == null) {
 			result = new UnknownHttpRequestHeader(headerName);
 		}
@@ -15,6 +15,9 @@
  ******************************************************************************/
 package net.sf.jacclog.api.domain.http;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * The set of common methods for Hypertext Transfer Protocol version 1.1 (HTTP/1.1).<br>
  * <br>
@@ -79,6 +82,17 @@ public enum HttpRequestMethod {
 	 */
 	UNKNOWN("-");
 
+	/**
+	 * Lookup table of the request methods by their name
+	 */
+	private static final Map<String, HttpRequestMethod> METHODS = new HashMap<String, HttpRequestMethod>();
+
+	static {
+		for (final HttpRequestMethod method : values()) {
+			METHODS.put(method.getName(), method);
+		}
+	}
+
 	/**
 	 * Evaluates the given string against the standardized HTTP request methods.<br>
 	 * <br>
@@ -90,14 +104,8 @@ public enum HttpRequestMethod {
 	 * @return the matching HTTP request method field or <code>UNKNOWN</code>
 	 */
 	public static HttpRequestMethod evaluate(final String requestMethod) {
-		HttpRequestMethod result = HttpRequestMethod.UNKNOWN;
-		for (final HttpRequestMethod method : values()) {
-			if (method.getName().equals(requestMethod)) {
-				result = method;
-				break;
-			}
-		}
-		return result;
+		final HttpRequestMethod result = (requestMethod != null) ? METHODS.get(requestMethod) : null;
+		return (result != null) ? result : HttpRequestMethod.UNKNOWN;
 	}
 
 	/**
@@ -141,6 +141,24 @@ public enum HttpStatus {
 	 */
 	UNKNOWN(0);
 
+	/**
+	 * Lookup table of the status codes, indexed by their numeric value
+	 */
+	private static final HttpStatus[] CODES;
+
+	static {
+		int max = 0;
+		for (final HttpStatus status : values()) {
+			max = Math.max(max, status.value());
+		}
+		CODES = new HttpStatus[max + 1];
+		for (final HttpStatus status : values()) {
+			if (CODES[status.value()] == null) {
+				CODES[status.value()] = status;
+			}
+		}
+	}
+
 	/**
 	 * Evaluates the given numeric value against the defined HTTP status codes.<br>
 	 * <br>
@@ -151,14 +169,8 @@ public enum HttpStatus {
 	 * @return the matching HTTP status code field or <code>UNKNOWN</code>
 	 */
 	public static HttpStatus evaluate(final int statusCode) {
-		HttpStatus result = HttpStatus.UNKNOWN;
-		for (final HttpStatus status : values()) {
-			if (status.value() == statusCode) {
-				result = status;
-				break;
-			}
-		}
-		return result;
+		final HttpStatus result = (statusCode >= 0 && statusCode < CODES.length) ? CODES[statusCode] : null;
+		return (result != null) ? result : HttpStatus.UNKNOWN;
 	}
 
 	/**
@@ -169,16 +181,8 @@ public enum HttpStatus {
 	 * @return <code>true</code> if it is a valid code, otherwise <code>false</code>
 	 */
 	public static boolean isValid(final int statusCode) {
-		boolean result = false;
-		if (HttpStatus.UNKNOWN.value() != statusCode) {
-			for (final HttpStatus status : values()) {
-				if (status.value() == statusCode) {
-					result = true;
-					break;
-				}
-			}
-		}
-		return result;
+		return HttpStatus.UNKNOWN.value() != statusCode && statusCode >= 0 && statusCode < CODES.length
+				&& CODES[statusCode] != null;
 	}
 
 	/**
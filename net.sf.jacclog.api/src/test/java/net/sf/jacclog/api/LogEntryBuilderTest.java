@@ -1,9 +1,17 @@
 package net.sf.jacclog.api;
 
+import java.util.Collections;
+import java.util.Set;
+
 import junit.framework.Assert;
 import net.sf.jacclog.api.domain.LogEntry;
 import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.api.domain.http.HttpRequestHeader;
+import net.sf.jacclog.api.domain.http.HttpRequestHeaderField;
+import net.sf.jacclog.api.domain.http.HttpResponseHeader;
+import net.sf.jacclog.api.domain.http.HttpResponseHeaderField;
 import net.sf.jacclog.api.domain.http.HttpStatus;
+import net.sf.jacclog.api.domain.http.ReadableHttpRequestHeaderField;
 
 import org.junit.Test;
 
@@ -21,6 +29,44 @@ public class LogEntryBuilderTest {
 		}
 	}
 
+	@Test
+	public void testResetDoesNotChangeBuiltEntry() {
+		final LogEntryBuilder builder = new LogEntryBuilder();
+		final HttpRequestHeaderField referer = new HttpRequestHeaderField(HttpRequestHeader.REFERER,
+				"http://jacclog.sf.net");
+		final HttpResponseHeaderField age = new HttpResponseHeaderField(HttpResponseHeader.AGE, "60");
+		builder.appendRequestHeaders(referer).appendResponseHeaders(age);
+		final LogEntry entry = builder.build();
+
+		builder.reset();
+		builder.appendRequestHeaders(new HttpRequestHeaderField(HttpRequestHeader.FROM, "user@client.net"));
+		Assert.assertEquals(Collections.singleton(referer), entry.getRequestHeaders());
+		Assert.assertEquals(Collections.singleton(age), entry.getResponseHeaders());
+	}
+
+	@Test
+	public void testResetReusesSetsUnlessBuilt() {
+		final LogEntryBuilder builder = new LogEntryBuilder();
+		final Set<ReadableHttpRequestHeaderField> headers = builder.getRequestHeaders();
+		builder.appendRequestHeaders(new HttpRequestHeaderField(HttpRequestHeader.FROM, "user@client.net"));
+		builder.reset();
+		Assert.assertSame(headers, builder.getRequestHeaders());
+		Assert.assertTrue(headers.isEmpty());
+
+		builder.build();
+		builder.reset();
+		Assert.assertNotSame(headers, builder.getRequestHeaders());
+	}
+
+	@Test
+	public void testResetToDefaults() {
+		final LogEntryBuilder builder = new LogEntryBuilder();
+		builder.remoteHost("192.168.0.1").statusCode(HttpStatus.OK).responseInBytes(1024l);
+		builder.appendRequestHeaders(new HttpRequestHeaderField(HttpRequestHeader.REFERER, "http://jacclog.sf.net"));
+		Assert.assertEquals(LogEntry.EMPTY, builder.reset().build());
+		Assert.assertTrue(builder.getRequestHeaders().isEmpty());
+	}
+
 	@Test
 	public void testSomeEnums() {
 		final LogEntryBuilder builder = new LogEntryBuilder();
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line options, but always with the GC profiler, so every result
+ * reports the allocation rate (<code>gc.alloc.rate.norm</code> is the number of bytes allocated per operation) next
+ * to the throughput.<br>
+ * <br>
+ * The results are written as JSON to <code>jmh-result.json</code> unless another format or file is requested with
+ * <code>-rf</code> or <code>-rff</code>, so they can be compared between releases.
+ */
+public final class BenchmarkRunner {
+
+	private static final String RESULT_FILE = "jmh-result.json";
+
+	public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+		final CommandLineOptions options = new CommandLineOptions(args);
+		final ChainedOptionsBuilder builder = new OptionsBuilder().parent(options).addProfiler(GCProfiler.class);
+		if (!options.getResultFormat().hasValue() && !options.getResult().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON).result(RESULT_FILE);
+		}
+		new Runner(builder.build()).run();
+	}
+
+	private BenchmarkRunner() {
+		// stateless classes must not be instantiated
+	}
+
+}
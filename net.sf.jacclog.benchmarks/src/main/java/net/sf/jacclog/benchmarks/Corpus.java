@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.benchmarks;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.util.net.IpAddressTranslator;
+
+/**
+ * Realistic inputs of the benchmarks, which are generated with a fixed seed, so every run and every release measures
+ * the same data.<br>
+ * <br>
+ * The values are skewed like real traffic: few clients, pages and user agents make up most of the requests, most
+ * requests are successful GET requests and about a third of the referers are missing. A benchmark should cycle
+ * through the corpus instead of repeating a single input, so branch predictors and caches do not flatter the results.
+ */
+final class Corpus {
+
+	/**
+	 * Number of inputs of a corpus (a power of two, so benchmarks can cycle by masking the index)
+	 */
+	static final int SIZE = 4096;
+
+	private static final long SEED = 20111001L;
+
+	private static final String[] PATHS = { "/", "/index.html", "/favicon.ico", "/css/site.css", "/js/jquery.min.js",
+			"/images/logo.png", "/images/banner.jpg", "/products/", "/products/list.html?category=books&page=2",
+			"/search?q=log+analysis&lang=en", "/downloads/jacclog-0.1.0.zip", "/about.html", "/contact.html",
+			"/news/2011/10/release-notes.html", "/wiki/Main_Page", "/api/v1/entries?from=2011-10-01&to=2011-10-02" };
+
+	private static final String[] REFERERS = { "http://www.google.com/search?q=jacclog",
+			"http://www.example.com/", "http://www.example.com/products/", "http://www.bing.com/search?q=access+log",
+			"http://news.ycombinator.com/" };
+
+	private static final String[] USER_AGENTS = {
+			"Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/535.1 (KHTML, like Gecko) Chrome/14.0.835.202 "
+					+ "Safari/535.1",
+			"Mozilla/5.0 (Windows NT 6.1; rv:7.0.1) Gecko/20100101 Firefox/7.0.1",
+			"Mozilla/4.0 (compatible; MSIE 8.0; Windows NT 5.1; Trident/4.0; .NET CLR 2.0.50727)",
+			"Mozilla/5.0 (compatible; MSIE 9.0; Windows NT 6.1; Trident/5.0)",
+			"Mozilla/5.0 (Macintosh; Intel Mac OS X 10_7_1) AppleWebKit/534.48.3 (KHTML, like Gecko) Version/5.1 "
+					+ "Safari/534.48.3",
+			"Mozilla/5.0 (iPhone; CPU iPhone OS 5_0 like Mac OS X) AppleWebKit/534.46 (KHTML, like Gecko) "
+					+ "Version/5.1 Mobile/9A334 Safari/7534.48.3",
+			"Mozilla/5.0 (Linux; U; Android 2.3.4; de-de; GT-I9100 Build/GINGERBREAD) AppleWebKit/533.1 "
+					+ "(KHTML, like Gecko) Version/4.0 Mobile Safari/533.1",
+			"Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+			"Mozilla/5.0 (compatible; bingbot/2.0; +http://www.bing.com/bingbot.htm)",
+			"Opera/9.80 (Windows NT 6.1; U; en) Presto/2.9.168 Version/11.51",
+			"Wget/1.12 (linux-gnu)", "curl/7.21.6 (x86_64-pc-linux-gnu) libcurl/7.21.6 OpenSSL/1.0.0e zlib/1.2.3.4" };
+
+	private static String ipAddress(final Random random) {
+		return (1 + random.nextInt(223)) + "." + random.nextInt(256) + "." + random.nextInt(256) + "."
+				+ (1 + random.nextInt(254));
+	}
+
+	/**
+	 * Returns IPv4 addresses of clients, of which a few recur often.
+	 */
+	static List<String> ipAddresses() {
+		final Random random = new Random(SEED);
+		final String[] clients = new String[SIZE / 4];
+		for (int i = 0; i < clients.length; i++) {
+			clients[i] = ipAddress(random);
+		}
+
+		final List<String> result = new ArrayList<String>(SIZE);
+		for (int i = 0; i < SIZE; i++) {
+			result.add(pick(clients, random));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns lines of an access log in one of the default formats.
+	 */
+	static List<String> lines(final LogFormat.Defaults format) {
+		final Random random = new Random(SEED);
+		final List<String> clients = ipAddresses();
+		final SimpleDateFormat time = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+		time.setTimeZone(TimeZone.getTimeZone("Europe/Berlin"));
+		long millis = 1317420000000L;
+
+		final List<String> result = new ArrayList<String>(SIZE);
+		final StringBuilder line = new StringBuilder(512);
+		for (int i = 0; i < SIZE; i++) {
+			millis += random.nextInt(2000);
+			final int status = status(random);
+			line.setLength(0);
+			if (format == LogFormat.Defaults.COMMON_WITH_VHOST) {
+				line.append(random.nextInt(4) == 0 ? "static.example.com " : "www.example.com ");
+			}
+			line.append(clients.get(i)).append(" - ").append(random.nextInt(20) == 0 ? "jdoe" : "-");
+			line.append(" [").append(time.format(new Date(millis))).append("] \"");
+			line.append(method(random)).append(' ').append(pick(PATHS, random));
+			line.append(random.nextInt(10) == 0 ? " HTTP/1.0\" " : " HTTP/1.1\" ");
+			line.append(status).append(' ').append(status == 304 ? "-" : String.valueOf(200 + random.nextInt(50000)));
+			if (format == LogFormat.Defaults.COMBINED) {
+				line.append(" \"").append(random.nextInt(3) == 0 ? "-" : pick(REFERERS, random)).append("\" \"");
+				line.append(pick(USER_AGENTS, random)).append('"');
+			}
+			result.add(line.toString());
+		}
+		return result;
+	}
+
+	private static String method(final Random random) {
+		final int n = random.nextInt(100);
+		return (n < 85) ? "GET" : (n < 95) ? "POST" : "HEAD";
+	}
+
+	/**
+	 * Picks a value, preferring the first values of the array (roughly a Zipf distribution).
+	 */
+	private static String pick(final String[] values, final Random random) {
+		final double r = random.nextDouble();
+		return values[(int) (values.length * r * r * r)];
+	}
+
+	/**
+	 * Returns rows of a GeoIP-like CSV file with quoted and unquoted values.
+	 */
+	static List<String> rows() {
+		final Random random = new Random(SEED);
+		final String[][] countries = { { "DE", "Germany" }, { "US", "United States" }, { "FR", "France" },
+				{ "GB", "United Kingdom" }, { "CH", "Switzerland" }, { "JP", "Japan" } };
+
+		final List<String> result = new ArrayList<String>(SIZE);
+		long start = 16777216L;
+		for (int i = 0; i < SIZE; i++) {
+			final long end = start + random.nextInt(65536);
+			final String[] country = countries[random.nextInt(countries.length)];
+			result.add("\"" + IpAddressTranslator.toInet4Address(start).getHostAddress() + "\",\""
+					+ IpAddressTranslator.toInet4Address(end).getHostAddress() + "\"," + start + "," + end + ",\""
+					+ country[0] + "\",\"" + country[1] + "\"");
+			start = end + 1;
+		}
+		return result;
+	}
+
+	private static int status(final Random random) {
+		final int n = random.nextInt(100);
+		if (n < 80) {
+			return 200;
+		} else if (n < 90) {
+			return 304;
+		} else if (n < 95) {
+			return 404;
+		} else if (n < 98) {
+			return 302;
+		}
+		return 500;
+	}
+
+	/**
+	 * Returns user agent strings of browsers, mobile devices, robots and tools.
+	 */
+	static List<String> userAgents() {
+		final Random random = new Random(SEED);
+		final List<String> result = new ArrayList<String>(SIZE);
+		for (int i = 0; i < SIZE; i++) {
+			result.add(pick(USER_AGENTS, random));
+		}
+		return result;
+	}
+
+	private Corpus() {
+		// stateless classes must not be instantiated
+	}
+
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jacclog.util.net.IpAddressTranslator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>IpAddressTranslator.toLong</code> of the textual IPv4 addresses of clients, which is done for every
+ * entry when the remote addresses are stored or looked up numerically.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IpAddressTranslatorBenchmark {
+
+	private List<String> addresses;
+
+	private int index;
+
+	@Setup
+	public void setUp() {
+		addresses = Corpus.ipAddresses();
+	}
+
+	@Benchmark
+	public long toLong() {
+		return IpAddressTranslator.toLong(addresses.get(index++ & (Corpus.SIZE - 1)));
+	}
+
+}
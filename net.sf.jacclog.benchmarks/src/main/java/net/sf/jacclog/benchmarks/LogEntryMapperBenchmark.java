@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.logformat.field.Field;
+import net.sf.jacclog.service.importer.internal.parser.DecodingPlan;
+import net.sf.jacclog.service.importer.internal.parser.FieldDecoder;
+import net.sf.jacclog.service.importer.internal.parser.MappingException;
+import net.sf.jacclog.service.importer.internal.parser.NcsaLogParser;
+import net.sf.jacclog.service.importer.internal.parser.TokenToFieldMapper;
+import net.sf.jacclog.service.importer.internal.parser.TokensToLogEntryMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the precompiled <code>DecodingPlan</code> with the former mapping of tokens, which copied the field list
+ * twice and probed a <code>HashMap</code> of all tokens per line, and measures <code>TokensToLogEntryMapper.map</code>
+ * as called by the parser. The tokens are taken from the lines of the corpus.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LogEntryMapperBenchmark {
+
+	/**
+	 * Mapping of tokens as done before the introduction of <code>DecodingPlan</code>.
+	 */
+	private static LogEntryBuilder mapWithHashMap(final LogFormat format, final List<String> tokens) {
+		if (tokens.size() != format.getFields().size()) {
+			throw new MappingException("The amount of tokens (" + tokens.size()
+					+ ") will not fit together with the amount of fields (" + format.getFields().size() + ").");
+		}
+
+		final Map<Field, String> map = TokenToFieldMapper.map(format.getFields(), tokens);
+		final LogEntryBuilder builder = new LogEntryBuilder();
+		for (final FieldDecoder decoder : FieldDecoder.values()) {
+			if (map.containsKey(decoder.getField())) {
+				decoder.decode(builder, map.get(decoder.getField()));
+			}
+		}
+		return builder;
+	}
+
+	@Param({ "COMBINED", "COMMON" })
+	public String formatName;
+
+	private LogFormat format;
+
+	private int index;
+
+	private DecodingPlan plan;
+
+	private List<List<String>> tokens;
+
+	@Benchmark
+	public LogEntryBuilder decodingPlan() {
+		return plan.decode(tokens.get(index++ & (Corpus.SIZE - 1)));
+	}
+
+	@Benchmark
+	public LogEntryBuilder hashMapMapper() {
+		return mapWithHashMap(format, tokens.get(index++ & (Corpus.SIZE - 1)));
+	}
+
+	@Setup
+	public void setUp() {
+		final LogFormat.Defaults defaults = LogFormat.Defaults.valueOf(formatName);
+		format = defaults.getFormat();
+		plan = DecodingPlan.compile(format).copy();
+		tokens = new ArrayList<List<String>>(Corpus.SIZE);
+		for (final String line : Corpus.lines(defaults)) {
+			tokens.add(NcsaLogParser.parse(line));
+		}
+	}
+
+	@Benchmark
+	public LogEntryBuilder tokensToLogEntryMapper() {
+		return TokensToLogEntryMapper.map(format, tokens.get(index++ & (Corpus.SIZE - 1)));
+	}
+
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.internal.parser.NcsaLogParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>NcsaLogParser.parseLine</code>, which tokenizes a line, decodes the tokens and builds the entry.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NcsaLogParserBenchmark {
+
+	@Param({ "COMBINED", "COMMON", "COMMON_WITH_VHOST" })
+	public String formatName;
+
+	private int index;
+
+	private List<String> lines;
+
+	private NcsaLogParser parser;
+
+	@Benchmark
+	public ReadonlyLogEntry parseLine() {
+		return parser.parseLine(lines.get(index++ & (Corpus.SIZE - 1)));
+	}
+
+	@Benchmark
+	public List<String> tokenize() {
+		return NcsaLogParser.parse(lines.get(index++ & (Corpus.SIZE - 1)));
+	}
+
+	@Setup
+	public void setUp() {
+		final LogFormat.Defaults defaults = LogFormat.Defaults.valueOf(formatName);
+		parser = new NcsaLogParser(defaults.getFormat());
+		lines = Corpus.lines(defaults);
+	}
+
+}
@@ -0,0 +1,684 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.benchmarks.generator;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
+
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.logformat.field.Field;
+import net.sf.jacclog.logformat.field.RequestHeaderHostField;
+import net.sf.jacclog.logformat.field.RequestHeaderRefererField;
+import net.sf.jacclog.logformat.field.RequestHeaderUserAgentField;
+import net.sf.jacclog.util.net.IpAddressGenerator;
+import net.sf.jacclog.util.net.IpAddressTranslator;
+
+/**
+ * Generates access logs in any <code>LogFormat</code> which look like the logs of a real web site, but are fully
+ * determined by a seed, so the same multi-gigabyte input can be produced on every machine to benchmark imports and
+ * analyses.<br>
+ * <br>
+ * The traffic follows these models:
+ * <ul>
+ * <li>clients, URLs, browsers and robots are drawn from Zipf distributions, so few of them make up most requests</li>
+ * <li>the user agents of robots are read from the <code>uas.xml</code> of the user agent string parser</li>
+ * <li>the request rate follows a diurnal curve with its peak in the afternoon and less traffic on weekends</li>
+ * <li>the status codes, methods, protocols and referers are mixed like on a typical site</li>
+ * <li>a configurable share of lines is malformed (truncated, missing fields, stray quotes or garbage)</li>
+ * </ul>
+ * Instances are not thread-safe.<br>
+ * <br>
+ * From the command line, e.g. two gigabytes in the default combined format with one malformed line per thousand:
+ * 
+ * <pre>
+ * java -cp benchmarks.jar net.sf.jacclog.benchmarks.generator.AccessLogGenerator -s 42 -b 2g -m 0.001 -o access.log.gz
+ * </pre>
+ * 
+ * @author André Rouél
+ */
+public final class AccessLogGenerator {
+
+	public final static class Builder {
+
+		private int clients = 50000;
+
+		private double diurnalAmplitude = 0.6;
+
+		private LogFormat format = LogFormat.Defaults.COMBINED.getFormat();
+
+		private double malformedRate;
+
+		private double requestsPerSecond = 20;
+
+		private double robotRate = 0.15;
+
+		private long seed = 1L;
+
+		private long start = 1317420000000L;
+
+		private TimeZone timeZone = TimeZone.getTimeZone("Europe/Berlin");
+
+		private int urls = 10000;
+
+		private double zipfExponent = 1.0;
+
+		public AccessLogGenerator build() {
+			return new AccessLogGenerator(this);
+		}
+
+		/**
+		 * Sets the number of distinct client addresses.
+		 */
+		public Builder clients(final int clients) {
+			if (clients <= 0) {
+				throw new IllegalArgumentException("Argument 'clients' must be greater than 0.");
+			}
+			this.clients = clients;
+			return this;
+		}
+
+		/**
+		 * Sets how much the request rate varies over a day (<code>0</code> is constant, <code>1</code> means no
+		 * requests at the quietest time).
+		 */
+		public Builder diurnalAmplitude(final double diurnalAmplitude) {
+			if (diurnalAmplitude < 0 || diurnalAmplitude > 1) {
+				throw new IllegalArgumentException("Argument 'diurnalAmplitude' must be between 0 and 1.");
+			}
+			this.diurnalAmplitude = diurnalAmplitude;
+			return this;
+		}
+
+		public Builder format(final LogFormat format) {
+			if (format == null) {
+				throw new IllegalArgumentException("Argument 'format' can not be null.");
+			}
+			this.format = format;
+			return this;
+		}
+
+		/**
+		 * Sets the share of lines which do not match the format.
+		 */
+		public Builder malformedRate(final double malformedRate) {
+			if (malformedRate < 0 || malformedRate > 1) {
+				throw new IllegalArgumentException("Argument 'malformedRate' must be between 0 and 1.");
+			}
+			this.malformedRate = malformedRate;
+			return this;
+		}
+
+		/**
+		 * Sets the average number of requests per second on a weekday.
+		 */
+		public Builder requestsPerSecond(final double requestsPerSecond) {
+			if (requestsPerSecond <= 0) {
+				throw new IllegalArgumentException("Argument 'requestsPerSecond' must be greater than 0.");
+			}
+			this.requestsPerSecond = requestsPerSecond;
+			return this;
+		}
+
+		/**
+		 * Sets the share of requests by robots.
+		 */
+		public Builder robotRate(final double robotRate) {
+			if (robotRate < 0 || robotRate > 1) {
+				throw new IllegalArgumentException("Argument 'robotRate' must be between 0 and 1.");
+			}
+			this.robotRate = robotRate;
+			return this;
+		}
+
+		public Builder seed(final long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * Sets the time of the first request.
+		 */
+		public Builder start(final Date start) {
+			if (start == null) {
+				throw new IllegalArgumentException("Argument 'start' can not be null.");
+			}
+			this.start = start.getTime();
+			return this;
+		}
+
+		public Builder timeZone(final TimeZone timeZone) {
+			if (timeZone == null) {
+				throw new IllegalArgumentException("Argument 'timeZone' can not be null.");
+			}
+			this.timeZone = timeZone;
+			return this;
+		}
+
+		/**
+		 * Sets the number of distinct URLs of the site.
+		 */
+		public Builder urls(final int urls) {
+			if (urls <= 0) {
+				throw new IllegalArgumentException("Argument 'urls' must be greater than 0.");
+			}
+			this.urls = urls;
+			return this;
+		}
+
+		/**
+		 * Sets the skew of the distributions of clients, URLs and user agents.
+		 */
+		public Builder zipfExponent(final double zipfExponent) {
+			if (zipfExponent < 0) {
+				throw new IllegalArgumentException("Argument 'zipfExponent' can not be negative.");
+			}
+			this.zipfExponent = zipfExponent;
+			return this;
+		}
+
+	}
+
+	private static final String[] DIRECTORIES = { "/products/", "/news/", "/blog/", "/support/", "/downloads/",
+			"/wiki/", "/about/", "/shop/" };
+
+	private static final String[] HOT_PATHS = { "/", "/favicon.ico", "/css/site.css", "/js/jquery.min.js",
+			"/images/logo.png", "/robots.txt", "/index.html", "/search", "/login", "/feed.xml" };
+
+	private static final String HOST = "www.example.com";
+
+	private static final String[] SEARCH_ENGINES = { "http://www.google.com/search?q=", "http://www.bing.com/search?q=",
+			"http://search.yahoo.com/search?p=", "http://www.google.de/search?q=" };
+
+	private static final String STATIC_HOST = "static.example.com";
+
+	private static final String[] TERMS = { "access+log", "jacclog", "log+analysis", "apache+httpd", "web+statistics",
+			"download", "release+notes", "pricing" };
+
+	private static final String[] USERS = { "jdoe", "admin", "alice", "bob", "guest" };
+
+	private static final String USAGE = "usage: AccessLogGenerator [-f format] [-s seed] [-n lines] [-b size[k|m|g]] "
+			+ "[-m malformedRate] [-r requestsPerSecond] [-o file[.gz]]";
+
+	private static void appendQuoted(final StringBuilder line, final String value) {
+		line.append('"').append(value).append('"');
+	}
+
+	private static boolean isStatic(final String path) {
+		return path.startsWith("/css/") || path.startsWith("/js/") || path.startsWith("/images/")
+				|| path.startsWith("/static/") || path.equals("/favicon.ico");
+	}
+
+	/**
+	 * Writes a log to a file or the standard output. Without a limit of lines or size one million lines are written.
+	 * A file name ending with <code>.gz</code> will be compressed.
+	 */
+	public static void main(final String[] args) throws IOException {
+		final Builder builder = new Builder();
+		long maxLines = Long.MAX_VALUE;
+		long maxChars = Long.MAX_VALUE;
+		String output = null;
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 >= args.length) {
+				System.err.println(USAGE);
+				System.exit(1);
+			}
+			final String value = args[i + 1];
+			if ("-f".equals(args[i])) {
+				builder.format(LogFormat.parse(value));
+			} else if ("-s".equals(args[i])) {
+				builder.seed(Long.parseLong(value));
+			} else if ("-n".equals(args[i])) {
+				maxLines = Long.parseLong(value);
+			} else if ("-b".equals(args[i])) {
+				maxChars = parseSize(value);
+			} else if ("-m".equals(args[i])) {
+				builder.malformedRate(Double.parseDouble(value));
+			} else if ("-r".equals(args[i])) {
+				builder.requestsPerSecond(Double.parseDouble(value));
+			} else if ("-o".equals(args[i])) {
+				output = value;
+			} else {
+				System.err.println(USAGE);
+				System.exit(1);
+			}
+		}
+		if (maxLines == Long.MAX_VALUE && maxChars == Long.MAX_VALUE) {
+			maxLines = 1000000;
+		}
+
+		OutputStream stream = System.out;
+		if (output != null) {
+			stream = new FileOutputStream(output);
+			if (output.endsWith(".gz")) {
+				stream = new GZIPOutputStream(stream, 65536);
+			}
+		}
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"), 65536);
+		try {
+			final long lines = builder.build().write(writer, maxLines, maxChars);
+			if (output != null) {
+				System.out.println(lines + " lines written to " + output);
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Parses a size like <code>512m</code> or <code>2g</code>.
+	 */
+	private static long parseSize(final String size) {
+		final String value = size.trim().toLowerCase(Locale.ENGLISH);
+		final char unit = value.charAt(value.length() - 1);
+		final long factor = (unit == 'k') ? 1024L : (unit == 'm') ? 1024L * 1024 : (unit == 'g') ? 1024L * 1024 * 1024
+				: 1;
+		return Long.parseLong(factor == 1 ? value : value.substring(0, value.length() - 1)) * factor;
+	}
+
+	private final ZipfDistribution browserDistribution;
+
+	private final List<String> browsers;
+
+	private final Calendar calendar;
+
+	private final String[] clientAddresses;
+
+	private final ZipfDistribution clientDistribution;
+
+	private final double diurnalAmplitude;
+
+	private final List<Field> fields;
+
+	/**
+	 * Buffer of the current line
+	 */
+	private final StringBuilder line = new StringBuilder(512);
+
+	private final double malformedRate;
+
+	private final Random random;
+
+	private final double requestsPerSecond;
+
+	private final ZipfDistribution robotDistribution;
+
+	private final double robotRate;
+
+	private final List<String> robots;
+
+	/**
+	 * Time of the current request in milliseconds, with fractions, so high request rates do not round to zero
+	 */
+	private double time;
+
+	private final SimpleDateFormat timeFormat;
+
+	/**
+	 * Second of the last formatted time, because most consecutive requests share their second
+	 */
+	private long timeSecond = Long.MIN_VALUE;
+
+	private String timeText;
+
+	private final ZipfDistribution urlDistribution;
+
+	private final String[] urlPaths;
+
+	private final long[] urlSizes;
+
+	private AccessLogGenerator(final Builder builder) {
+		random = new Random(builder.seed);
+		fields = builder.format.getFields();
+		diurnalAmplitude = builder.diurnalAmplitude;
+		malformedRate = builder.malformedRate;
+		requestsPerSecond = builder.requestsPerSecond;
+		robotRate = builder.robotRate;
+		time = builder.start;
+
+		calendar = Calendar.getInstance(builder.timeZone, Locale.ENGLISH);
+		timeFormat = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+		timeFormat.setTimeZone(builder.timeZone);
+
+		clientAddresses = new String[builder.clients];
+		for (int i = 0; i < clientAddresses.length; i++) {
+			final long address = IpAddressGenerator.generateRandomLongForIpAddress(random);
+			clientAddresses[i] = IpAddressTranslator.toInet4Address(address).getHostAddress();
+		}
+		clientDistribution = new ZipfDistribution(clientAddresses.length, builder.zipfExponent);
+
+		urlPaths = new String[builder.urls];
+		urlSizes = new long[builder.urls];
+		for (int i = 0; i < urlPaths.length; i++) {
+			urlPaths[i] = (i < HOT_PATHS.length) ? HOT_PATHS[i] : path(i);
+			urlSizes[i] = size(urlPaths[i]);
+		}
+		urlDistribution = new ZipfDistribution(urlPaths.length, builder.zipfExponent);
+
+		browsers = UserAgents.browsers();
+		browserDistribution = new ZipfDistribution(browsers.size(), builder.zipfExponent);
+		robots = UserAgents.robots();
+		robotDistribution = new ZipfDistribution(robots.size(), builder.zipfExponent);
+	}
+
+	/**
+	 * Advances the time by the gap to the next request, which is exponentially distributed with the current rate.
+	 */
+	private void advance() {
+		calendar.setTimeInMillis((long) time);
+		final int day = calendar.get(Calendar.DAY_OF_WEEK);
+		final double hour = calendar.get(Calendar.HOUR_OF_DAY) + calendar.get(Calendar.MINUTE) / 60.0;
+		// peak at 15:00, trough at 03:00
+		double rate = requestsPerSecond * (1 + diurnalAmplitude * Math.cos(2 * Math.PI * (hour - 15) / 24));
+		if (day == Calendar.SATURDAY || day == Calendar.SUNDAY) {
+			rate *= 0.7;
+		}
+		// at least one request per hour, even in the quietest time
+		rate = Math.max(rate, 1 / 3600.0);
+		time += -Math.log(1 - random.nextDouble()) / rate * 1000;
+	}
+
+	private void appendMalformed() {
+		final int kind = random.nextInt(4);
+		if (kind == 0) {
+			// truncated by a crashed or rotated writer
+			line.setLength(random.nextInt(Math.max(1, line.length())));
+		} else if (kind == 1) {
+			// the last field is missing
+			final int end = line.lastIndexOf(" ");
+			line.setLength(Math.max(0, end));
+		} else if (kind == 2) {
+			// an unescaped quote splits a quoted field
+			line.insert(random.nextInt(line.length() + 1), "\" x");
+		} else {
+			// binary garbage, e.g. a TLS handshake sent to the plain HTTP port
+			line.setLength(0);
+			final int length = 8 + random.nextInt(48);
+			for (int i = 0; i < length; i++) {
+				line.append("\\x").append(Integer.toHexString(0x10 | random.nextInt(0xf0)));
+			}
+		}
+	}
+
+	private String formatTime(final long millis) {
+		final long second = millis / 1000;
+		if (second != timeSecond) {
+			timeSecond = second;
+			timeText = timeFormat.format(new Date(millis));
+		}
+		return timeText;
+	}
+
+	/**
+	 * Gets the time of the last generated request, or the start time if no line has been generated yet.
+	 * 
+	 * @return time of the last request
+	 */
+	public Date getTime() {
+		return new Date((long) time);
+	}
+
+	/**
+	 * Generates the next line without a line separator.
+	 * 
+	 * @return log line
+	 */
+	public String next() {
+		advance();
+
+		final boolean robot = random.nextDouble() < robotRate;
+		final String userAgent;
+		final String client;
+		if (robot) {
+			final int rank = robotDistribution.next(random);
+			userAgent = robots.get(rank);
+			// every robot crawls from its own few addresses
+			client = clientAddresses[(rank * 31 + random.nextInt(3)) % clientAddresses.length];
+		} else {
+			userAgent = browsers.get(browserDistribution.next(random));
+			client = clientAddresses[clientDistribution.next(random)];
+		}
+
+		final int url = urlDistribution.next(random);
+		final String path = urlPaths[url];
+		final String method = method(robot);
+		final String protocol = random.nextInt(100) < 92 ? "HTTP/1.1" : "HTTP/1.0";
+		final int status = status(method);
+		final long bytes = (status == 304 || method.equals("HEAD")) ? 0 : (status >= 400) ? 200 + random.nextInt(800)
+				: urlSizes[url] + random.nextInt(64);
+		final long micros = (long) (Math.exp(8 + random.nextGaussian() * 1.2));
+		final String host = isStatic(path) ? STATIC_HOST : HOST;
+		final String user = (!robot && random.nextInt(100) < 3) ? USERS[random.nextInt(USERS.length)] : "-";
+		final int query = path.indexOf('?');
+
+		line.setLength(0);
+		for (final Field field : fields) {
+			if (line.length() > 0) {
+				line.append(' ');
+			}
+			switch (field.getType()) {
+			case REMOTE_HOST:
+			case REMOTE_IP_ADDRESS:
+				line.append(client);
+				break;
+			case LOCAL_IP_ADDRESS:
+				line.append(isStatic(path) ? "10.0.0.2" : "10.0.0.1");
+				break;
+			case RESPONSE_IN_BYTES:
+				line.append(bytes);
+				break;
+			case RESPONSE_IN_BYTES_CLF:
+				line.append(bytes > 0 ? String.valueOf(bytes) : "-");
+				break;
+			case REQUEST_IN_MILLIS:
+				line.append(micros);
+				break;
+			case REQUEST_IN_SECONDS:
+				line.append(micros / 1000000);
+				break;
+			case FILENAME:
+				line.append("/var/www").append(query < 0 ? path : path.substring(0, query));
+				break;
+			case REQUEST_PROTOCOL:
+				line.append(protocol);
+				break;
+			case REQUEST_METHOD:
+				line.append(method);
+				break;
+			case REQUEST_HEADER_LINE:
+				if (RequestHeaderUserAgentField.getInstance().equals(field)) {
+					appendQuoted(line, userAgent);
+				} else if (RequestHeaderRefererField.getInstance().equals(field)) {
+					appendQuoted(line, referer(robot));
+				} else if (RequestHeaderHostField.getInstance().equals(field)) {
+					line.append(host);
+				} else {
+					appendQuoted(line, "-");
+				}
+				break;
+			case SERVER_PORT:
+				line.append("80");
+				break;
+			case PROCESS_ID:
+			case PID_OR_TID:
+				line.append(2000 + random.nextInt(16));
+				break;
+			case QUERY_STRING:
+				line.append(query < 0 ? "" : path.substring(query));
+				break;
+			case REQUEST_FIRST_LINE:
+				appendQuoted(line, method + " " + path + " " + protocol);
+				break;
+			case STATUS_CODE:
+			case LAST_STATUS_CODE:
+				line.append(status);
+				break;
+			case REQUEST_TIME:
+			case REQUEST_TIME_CUSTOM:
+				line.append('[').append(formatTime((long) time)).append(']');
+				break;
+			case REMOTE_USER:
+				line.append(user);
+				break;
+			case URL_PATH:
+				line.append(query < 0 ? path : path.substring(0, query));
+				break;
+			case SERVERNAME:
+			case SERVERNAME_CANONICAL:
+				line.append(host);
+				break;
+			case CONNECTION_STATUS:
+				line.append(random.nextInt(100) < 70 ? '+' : random.nextInt(20) == 0 ? 'X' : '-');
+				break;
+			case BYTES_RECEIVED:
+				line.append(300 + random.nextInt(500) + (method.equals("POST") ? random.nextInt(4096) : 0));
+				break;
+			case BYTES_SEND:
+				line.append(bytes + 180 + random.nextInt(120));
+				break;
+			default:
+				// remote logname, cookies, environment variables, notes and response headers are not modeled
+				line.append('-');
+				break;
+			}
+		}
+
+		if (malformedRate > 0 && random.nextDouble() < malformedRate) {
+			appendMalformed();
+		}
+		return line.toString();
+	}
+
+	private String method(final boolean robot) {
+		if (robot) {
+			return random.nextInt(100) < 97 ? "GET" : "HEAD";
+		}
+		final int n = random.nextInt(100);
+		return (n < 88) ? "GET" : (n < 96) ? "POST" : (n < 99) ? "HEAD" : "OPTIONS";
+	}
+
+	/**
+	 * Creates the path of the URL with the given rank.
+	 */
+	private String path(final int rank) {
+		final int kind = random.nextInt(100);
+		final String directory = DIRECTORIES[random.nextInt(DIRECTORIES.length)];
+		if (kind < 40) {
+			return directory + "page-" + rank + ".html";
+		} else if (kind < 60) {
+			return "/images/" + directory.substring(1) + "photo-" + rank + ".jpg";
+		} else if (kind < 70) {
+			return "/static/js/module-" + rank + ".js";
+		} else if (kind < 75) {
+			return "/css/theme-" + rank + ".css";
+		} else if (kind < 90) {
+			return directory + "list.html?page=" + (1 + random.nextInt(50)) + "&sort=" + (random.nextBoolean() ? "date"
+					: "name");
+		}
+		return "/search?q=" + TERMS[random.nextInt(TERMS.length)] + "&start=" + 10 * random.nextInt(10);
+	}
+
+	private String referer(final boolean robot) {
+		final int n = random.nextInt(100);
+		if (robot || n < 35) {
+			return "-";
+		} else if (n < 80) {
+			return "http://" + HOST + urlPaths[urlDistribution.next(random)];
+		}
+		return SEARCH_ENGINES[random.nextInt(SEARCH_ENGINES.length)] + TERMS[random.nextInt(TERMS.length)];
+	}
+
+	/**
+	 * Determines the size of the response of a path, depending on the type of the resource.
+	 */
+	private long size(final String path) {
+		if (path.endsWith(".jpg") || path.endsWith(".png")) {
+			return 8000 + random.nextInt(400000);
+		} else if (path.endsWith(".js") || path.endsWith(".css")) {
+			return 1000 + random.nextInt(120000);
+		} else if (path.endsWith(".ico")) {
+			return 1150;
+		}
+		return 4000 + random.nextInt(60000);
+	}
+
+	private int status(final String method) {
+		final int n = random.nextInt(1000);
+		if (n < 780) {
+			return 200;
+		} else if (n < 880) {
+			return method.equals("GET") ? 304 : 200;
+		} else if (n < 920) {
+			return 404;
+		} else if (n < 950) {
+			return 302;
+		} else if (n < 960) {
+			return 301;
+		} else if (n < 970) {
+			return 206;
+		} else if (n < 980) {
+			return 403;
+		} else if (n < 988) {
+			return 401;
+		} else if (n < 996) {
+			return 500;
+		}
+		return 503;
+	}
+
+	/**
+	 * Writes lines until the given number of lines or characters has been reached, whichever comes first.
+	 * 
+	 * @param writer
+	 *            target of the lines
+	 * @param maxLines
+	 *            maximum number of lines
+	 * @param maxChars
+	 *            maximum number of characters including the line separators (for ASCII output about the number of
+	 *            bytes)
+	 * @return number of written lines
+	 * @throws IOException
+	 *             if the lines can not be written
+	 */
+	public long write(final Writer writer, final long maxLines, final long maxChars) throws IOException {
+		if (writer == null) {
+			throw new IllegalArgumentException("Argument 'writer' can not be null.");
+		}
+
+		long lines = 0;
+		long chars = 0;
+		while (lines < maxLines && chars < maxChars) {
+			final String next = next();
+			writer.write(next);
+			writer.write('\n');
+			chars += next.length() + 1;
+			lines++;
+		}
+		return lines;
+	}
+
+}
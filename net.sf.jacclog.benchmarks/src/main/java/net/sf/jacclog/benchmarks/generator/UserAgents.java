@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.benchmarks.generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import net.sf.jacclog.uasparser.internal.UserAgentStringParser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * User agent strings of browsers and robots.<br>
+ * <br>
+ * The robots are read from the <code>uas.xml</code> which is bundled with the user agent string parser, so the
+ * generated logs contain the same crawlers the parser has to detect. The crawlers of the big search engines come
+ * first, because they cause most of the traffic of robots. The data file contains only patterns for
+ * browsers, so their strings are a fixed list ordered by popularity.
+ * 
+ * @author André Rouél
+ */
+final class UserAgents {
+
+	/**
+	 * Collects the text of all <code>useragent</code> elements of the robots.
+	 */
+	private static final class RobotHandler extends DefaultHandler {
+
+		private StringBuilder text;
+
+		private final Set<String> userAgents = new LinkedHashSet<String>(MAJOR_ROBOTS);
+
+		@Override
+		public void characters(final char[] ch, final int start, final int length) {
+			if (text != null) {
+				text.append(ch, start, length);
+			}
+		}
+
+		@Override
+		public void endElement(final String uri, final String localName, final String qName) {
+			if (text != null && "useragent".equals(qName)) {
+				final String userAgent = text.toString().trim();
+				// a quote would break the quoted field of a log line
+				if (!userAgent.isEmpty() && userAgent.indexOf('"') < 0) {
+					userAgents.add(userAgent);
+				}
+				text = null;
+			}
+		}
+
+		@Override
+		public InputSource resolveEntity(final String publicId, final String systemId) {
+			// do not load the DTD over the network
+			return new InputSource(new StringReader(""));
+		}
+
+		@Override
+		public void startElement(final String uri, final String localName, final String qName,
+				final Attributes attributes) {
+			if ("useragent".equals(qName)) {
+				text = new StringBuilder();
+			}
+		}
+
+	}
+
+	private static final Logger LOG = LoggerFactory.getLogger(UserAgents.class);
+
+	private static final List<String> BROWSERS = Arrays.asList(
+			"Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/535.1 (KHTML, like Gecko) Chrome/14.0.835.202 "
+					+ "Safari/535.1",
+			"Mozilla/4.0 (compatible; MSIE 8.0; Windows NT 5.1; Trident/4.0; .NET CLR 2.0.50727)",
+			"Mozilla/5.0 (Windows NT 6.1; rv:7.0.1) Gecko/20100101 Firefox/7.0.1",
+			"Mozilla/5.0 (compatible; MSIE 9.0; Windows NT 6.1; Trident/5.0)",
+			"Mozilla/5.0 (Windows NT 5.1; rv:7.0.1) Gecko/20100101 Firefox/7.0.1",
+			"Mozilla/5.0 (Macintosh; Intel Mac OS X 10_7_1) AppleWebKit/534.48.3 (KHTML, like Gecko) Version/5.1 "
+					+ "Safari/534.48.3",
+			"Mozilla/4.0 (compatible; MSIE 7.0; Windows NT 6.0; SLCC1; .NET CLR 2.0.50727)",
+			"Mozilla/5.0 (iPhone; CPU iPhone OS 5_0 like Mac OS X) AppleWebKit/534.46 (KHTML, like Gecko) "
+					+ "Version/5.1 Mobile/9A334 Safari/7534.48.3",
+			"Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/535.1 (KHTML, like Gecko) Chrome/14.0.835.186 Safari/535.1",
+			"Mozilla/5.0 (Linux; U; Android 2.3.4; de-de; GT-I9100 Build/GINGERBREAD) AppleWebKit/533.1 "
+					+ "(KHTML, like Gecko) Version/4.0 Mobile Safari/533.1",
+			"Mozilla/5.0 (Macintosh; Intel Mac OS X 10.6; rv:7.0.1) Gecko/20100101 Firefox/7.0.1",
+			"Mozilla/5.0 (iPad; CPU OS 5_0 like Mac OS X) AppleWebKit/534.46 (KHTML, like Gecko) Version/5.1 "
+					+ "Mobile/9A334 Safari/7534.48.3",
+			"Opera/9.80 (Windows NT 6.1; U; en) Presto/2.9.168 Version/11.51",
+			"Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.1; SV1)",
+			"Mozilla/5.0 (X11; Ubuntu; Linux i686; rv:7.0.1) Gecko/20100101 Firefox/7.0.1",
+			"BlackBerry9700/5.0.0.862 Profile/MIDP-2.1 Configuration/CLDC-1.1 VendorID/331",
+			"Opera/9.80 (J2ME/MIDP; Opera Mini/9.80 (S60; SymbOS; Opera Mobi/23.348; U; en) Presto/2.5.25 "
+					+ "Version/10.54",
+			"Wget/1.12 (linux-gnu)",
+			"curl/7.21.6 (x86_64-pc-linux-gnu) libcurl/7.21.6 OpenSSL/1.0.0e zlib/1.2.3.4",
+			"Java/1.6.0_26");
+
+	/**
+	 * Robots of the big search engines, which are also used if the data file can not be read
+	 */
+	private static final List<String> MAJOR_ROBOTS = Arrays.asList(
+			"Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+			"Mozilla/5.0 (compatible; bingbot/2.0; +http://www.bing.com/bingbot.htm)",
+			"Mozilla/5.0 (compatible; Yahoo! Slurp; http://help.yahoo.com/help/us/ysearch/slurp)",
+			"Mozilla/5.0 (compatible; Baiduspider/2.0; +http://www.baidu.com/search/spider.html)",
+			"Mozilla/5.0 (compatible; YandexBot/3.0; +http://yandex.com/bots)");
+
+	/**
+	 * Gets the user agent strings of browsers and tools, the most popular first.
+	 * 
+	 * @return user agent strings
+	 */
+	static List<String> browsers() {
+		return BROWSERS;
+	}
+
+	/**
+	 * Reads the user agent strings of the robots from the bundled <code>uas.xml</code>, the major robots first.
+	 * 
+	 * @return user agent strings of robots
+	 */
+	static List<String> robots() {
+		final InputStream stream = UserAgentStringParser.class.getClassLoader().getResourceAsStream(
+				UserAgentStringParser.DEFAULT_DATA);
+		if (stream == null) {
+			LOG.warn("The data file '" + UserAgentStringParser.DEFAULT_DATA + "' can not be found.");
+			return MAJOR_ROBOTS;
+		}
+
+		final RobotHandler handler = new RobotHandler();
+		try {
+			SAXParserFactory.newInstance().newSAXParser().parse(stream, handler);
+		} catch (final ParserConfigurationException e) {
+			LOG.warn("The robots can not be read: " + e.getLocalizedMessage());
+		} catch (final SAXException e) {
+			LOG.warn("The robots can not be read: " + e.getLocalizedMessage());
+		} catch (final IOException e) {
+			LOG.warn("The robots can not be read: " + e.getLocalizedMessage());
+		} finally {
+			try {
+				stream.close();
+			} catch (final IOException e) {
+				LOG.debug(e.getLocalizedMessage());
+			}
+		}
+		return new ArrayList<String>(handler.userAgents);
+	}
+
+	private UserAgents() {
+		// stateless classes must not be instantiated
+	}
+
+}
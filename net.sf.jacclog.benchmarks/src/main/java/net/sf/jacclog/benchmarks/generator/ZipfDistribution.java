@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.benchmarks.generator;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws ranks from a Zipf distribution, in which the probability of rank <code>k</code> is proportional to
+ * <code>1 / k^exponent</code>.<br>
+ * <br>
+ * The cumulative probabilities are computed once, so drawing a rank is a binary search. The distribution itself holds
+ * no randomness, so the same <code>Random</code> always draws the same ranks.
+ * 
+ * @author André Rouél
+ */
+public final class ZipfDistribution {
+
+	private final double[] cumulative;
+
+	/**
+	 * Creates a distribution over the ranks <code>0</code> to <code>size - 1</code>.
+	 * 
+	 * @param size
+	 *            number of ranks
+	 * @param exponent
+	 *            skew of the distribution (<code>0</code> is uniform, <code>1</code> is the classic Zipf law)
+	 */
+	public ZipfDistribution(final int size, final double exponent) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Argument 'size' must be greater than 0.");
+		}
+		if (exponent < 0) {
+			throw new IllegalArgumentException("Argument 'exponent' can not be negative.");
+		}
+
+		cumulative = new double[size];
+		double sum = 0;
+		for (int i = 0; i < size; i++) {
+			sum += 1 / Math.pow(i + 1, exponent);
+			cumulative[i] = sum;
+		}
+		for (int i = 0; i < size; i++) {
+			cumulative[i] /= sum;
+		}
+	}
+
+	/**
+	 * Gets the number of ranks.
+	 * 
+	 * @return number of ranks
+	 */
+	public int getSize() {
+		return cumulative.length;
+	}
+
+	/**
+	 * Draws a rank, where lower ranks are more likely.
+	 * 
+	 * @param random
+	 *            source of randomness
+	 * @return rank between <code>0</code> and <code>getSize() - 1</code>
+	 */
+	public int next(final Random random) {
+		final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+		return Math.min(cumulative.length - 1, (index >= 0) ? index : -index - 1);
+	}
+
+}
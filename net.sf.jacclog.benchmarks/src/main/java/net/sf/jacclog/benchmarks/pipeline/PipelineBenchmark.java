@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.benchmarks.pipeline;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sf.jacclog.benchmarks.generator.AccessLogGenerator;
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.persistence.jpa.LogEntryRepositoryService;
+import net.sf.jacclog.persistence.jpa.internal.LogEntryRepository;
+import net.sf.jacclog.service.analyzer.internal.LogEntryAnalyzer;
+import net.sf.jacclog.service.importer.commands.internal.BenchmarkResult;
+import net.sf.jacclog.service.importer.commands.internal.ImportBenchmark;
+import net.sf.jacclog.service.importer.internal.LogEntryImportService;
+import net.sf.jacclog.service.importer.internal.LogFileImporter;
+import net.sf.jacclog.service.importer.internal.WriteController;
+import net.sf.jacclog.service.importer.internal.queue.LogEntryQueue;
+import net.sf.jacclog.uasparser.internal.UserAgentStringParser;
+
+import org.joda.time.Interval;
+
+/**
+ * End-to-end benchmark of the import into a fresh embedded H2 database and of the analysis of the imported entries,
+ * which runs the same measurement as the shell command <code>jacclog:bench</code> outside of the container.<br>
+ * <br>
+ * The log is generated with a fixed seed unless a file is given. The batch size, the number of concurrent writes, the
+ * size of the connection pool and the capacity of the queue can be set, so the effect of a change can be compared with
+ * the JSON baseline of a previous run:
+ * 
+ * <pre>
+ * java -cp target/benchmarks.jar net.sf.jacclog.benchmarks.pipeline.PipelineBenchmark -n 1000000 --batch-size 500
+ * </pre>
+ */
+@SuppressWarnings("PMD.SystemPrintln")
+public final class PipelineBenchmark {
+
+	private static final String USAGE = "usage: PipelineBenchmark [-n lines | -i file] [-f format] [-s seed] "
+			+ "[--batch-size n] [--concurrency n] [--pool-size n] [--queue-capacity n] [-b baseline] [--save]";
+
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		if (!file.delete() && file.exists()) {
+			file.deleteOnExit();
+		}
+	}
+
+	private static File generate(final AccessLogGenerator generator, final File directory, final long lines)
+			throws IOException {
+		final File file = new File(directory, "access.log");
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 65536);
+		try {
+			generator.write(writer, lines, Long.MAX_VALUE);
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static void main(final String[] args) throws Exception {
+		long lines = 1000000;
+		File input = null;
+		LogFormat format = LogFormat.Defaults.COMBINED.getFormat();
+		long seed = 1L;
+		int batchSize = 0;
+		int concurrency = Runtime.getRuntime().availableProcessors();
+		int poolSize = 0;
+		int queueCapacity = 100000;
+		File baseline = new File("pipeline-baseline.json");
+		boolean save = false;
+		for (int i = 0; i < args.length; i++) {
+			if ("--save".equals(args[i])) {
+				save = true;
+				continue;
+			}
+			if (i + 1 >= args.length) {
+				System.err.println(USAGE);
+				System.exit(1);
+			}
+			final String value = args[++i];
+			if ("-n".equals(args[i - 1])) {
+				lines = Long.parseLong(value);
+			} else if ("-i".equals(args[i - 1])) {
+				input = new File(value);
+			} else if ("-f".equals(args[i - 1])) {
+				format = LogFormat.parse(value);
+			} else if ("-s".equals(args[i - 1])) {
+				seed = Long.parseLong(value);
+			} else if ("--batch-size".equals(args[i - 1])) {
+				batchSize = Integer.parseInt(value);
+			} else if ("--concurrency".equals(args[i - 1])) {
+				concurrency = Integer.parseInt(value);
+			} else if ("--pool-size".equals(args[i - 1])) {
+				poolSize = Integer.parseInt(value);
+			} else if ("--queue-capacity".equals(args[i - 1])) {
+				queueCapacity = Integer.parseInt(value);
+			} else if ("-b".equals(args[i - 1])) {
+				baseline = new File(value);
+			} else {
+				System.err.println(USAGE);
+				System.exit(1);
+			}
+		}
+
+		final File directory = File.createTempFile("jacclog-bench", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("The directory '" + directory.getPath() + "' can not be created.");
+		}
+		try {
+			final Interval interval;
+			if (input == null) {
+				final AccessLogGenerator generator = new AccessLogGenerator.Builder().format(format).seed(seed).build();
+				final Date start = generator.getTime();
+				System.out.println("Generating " + lines + " lines...");
+				input = generate(generator, directory, lines);
+				interval = new Interval(start.getTime(), generator.getTime().getTime() + 1000);
+			} else {
+				interval = new Interval(0, System.currentTimeMillis());
+			}
+
+			final Map<String, String> properties = new HashMap<String, String>();
+			properties.put("javax.persistence.jdbc.url", "jdbc:h2:file:" + new File(directory, "bench").getPath()
+					+ ";DB_CLOSE_DELAY=-1");
+			properties.put("eclipselink.ddl-generation", "drop-and-create-tables");
+			if (poolSize > 0) {
+				properties.put("eclipselink.jdbc.connections.min", String.valueOf(poolSize));
+				properties.put("eclipselink.jdbc.connections.max", String.valueOf(poolSize));
+			}
+			final LogEntryRepository repository = new LogEntryRepository(properties);
+			try {
+				final LogEntryRepositoryService service = new LogEntryRepositoryService(repository);
+				final WriteController controller = (batchSize > 0) ? new WriteController(batchSize, batchSize,
+						batchSize, concurrency, 100, 10000) : new WriteController(concurrency);
+				final LogEntryImportService importService = new LogEntryImportService(service, new LogEntryQueue(
+						queueCapacity), controller);
+				final LogFileImporter importer = new LogFileImporter(100, importService);
+				final LogEntryAnalyzer analyzer = new LogEntryAnalyzer(service, new UserAgentStringParser());
+
+				final BenchmarkResult result = new ImportBenchmark(importer, analyzer, System.out).run(format,
+						Collections.singletonList(input), interval);
+				result.setting("poolSize", (poolSize > 0) ? String.valueOf(poolSize) : "default");
+				System.out.println();
+				System.out.print(result);
+
+				if (baseline.isFile()) {
+					System.out.println();
+					System.out.print(result.compare(BenchmarkResult.read(baseline)));
+				}
+				if (save || !baseline.exists()) {
+					result.write(baseline);
+					System.out.println("The results have been saved as baseline in '" + baseline.getPath() + "'.");
+				}
+			} finally {
+				repository.stop();
+			}
+		} finally {
+			delete(directory);
+		}
+
+		// the import services have no life cycle outside of the container and keep their threads
+		System.exit(0);
+	}
+
+	private PipelineBenchmark() {
+		// stateless classes must not be instantiated
+	}
+
+}
@@ -329,7 +329,7 @@ complex_field
   : ( request_header_line
     | response_header_line
     | pid_or_tid
-    | request_time_custom
+    | ( PLACEHOLDER LPAREN ( ~RPAREN )* RPAREN 't' ) => request_time_custom
     )
   ;
 
@@ -612,7 +612,16 @@ complex_field
    * localized)
    */
   request_time_custom
-    : ( PLACEHOLDER LPAREN INTEGER RPAREN 't' );
+    : PLACEHOLDER LPAREN time_format RPAREN 't'
+    {
+      this.getBuilder().appendCustomRequestTimeField($time_format.text);
+    };
+
+  /**
+   * A strftime(3) format, e.g. %d/%b/%Y:%H:%M:%S %z
+   */
+  time_format
+    : ( ~RPAREN )+ ;
 
   /**
    * %...{Foobar}C The contents of cookie Foobar in the request sent to the server.
@@ -654,3 +663,8 @@ SEPARATOR : ( '"' | '\'' | '[' | ']' );
 
 INTEGER : DIGIT+ ;
 IDENT : LETTER(LETTER | DIGIT | SPECIAL)* ;
+
+/**
+ * Any other character, only valid within a time format
+ */
+OTHER : . ;
@@ -133,8 +133,8 @@ public class LogFormat {
 			return appendField(ConnectionStatusField.getInstance());
 		}
 
-		public Builder appendCustomRequestTimeField() {
-			return appendField(CustomRequestTimeField.getInstance());
+		public Builder appendCustomRequestTimeField(final String format) {
+			return appendField(CustomRequestTimeField.getInstance(format));
 		}
 
 		/**
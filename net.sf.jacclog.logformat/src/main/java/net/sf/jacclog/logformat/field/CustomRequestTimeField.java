@@ -20,19 +20,21 @@ package net.sf.jacclog.logformat.field;
  * <br>
  * <strong>Field:</strong> %{<i>format</i>}t
  */
-public final class CustomRequestTimeField extends AbstractLogFormatField {
+public final class CustomRequestTimeField extends AbstractParameterizedLogFormatField<String> {
 
 	/**
-	 * <code>FieldHolder</code> is loaded on the first execution of <code>getInstance()</code> or the first access to
-	 * <code>FieldHolder.INSTANCE</code>, not before.
+	 * Creates a field for the given time format.
+	 * 
+	 * @param format
+	 *            time format in strftime(3) notation, e.g. <code>%d/%b/%Y:%H:%M:%S %z</code>
+	 * @return custom request time field
 	 */
-	private static class FieldHolder {
-		public static final CustomRequestTimeField INSTANCE = new CustomRequestTimeField(
-				FieldType.REQUEST_TIME_CUSTOM);
-	}
+	public static CustomRequestTimeField getInstance(final String format) {
+		if (format == null || format.isEmpty()) {
+			throw new IllegalArgumentException("Argument 'format' can not be null or empty.");
+		}
 
-	public static CustomRequestTimeField getInstance() {
-		return FieldHolder.INSTANCE;
+		return new CustomRequestTimeField(FieldType.REQUEST_TIME_CUSTOM, format);
 	}
 
 	/**
@@ -41,8 +43,8 @@ public final class CustomRequestTimeField extends AbstractLogFormatField {
 	 * @param type
 	 * @param parameter
 	 */
-	private CustomRequestTimeField(final FieldType type) {
-		super(type);
+	private CustomRequestTimeField(final FieldType type, final String parameter) {
+		super(type, parameter);
 	}
 
 }
@@ -19,6 +19,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 import net.sf.jacclog.logformat.field.CanonicalServerNameField;
+import net.sf.jacclog.logformat.field.CustomRequestTimeField;
 import net.sf.jacclog.logformat.field.Field;
 import net.sf.jacclog.logformat.field.HttpLastStatusField;
 import net.sf.jacclog.logformat.field.HttpStatusField;
@@ -264,6 +265,41 @@ public class LogFormatTest {
 		Assert.assertNotSame(LogFormat.Defaults.COMBINED.getFormat(), format);
 	}
 
+	@Test
+	public void testParsingCustomRequestTime() throws Exception {
+		final LogFormat format = LogFormat.parse("%h [%{%d/%b/%Y:%H:%M:%S %z}t]");
+
+		Assert.assertEquals(RemoteHostField.getInstance(), format.getFields().get(0));
+		Assert.assertEquals(CustomRequestTimeField.getInstance("%d/%b/%Y:%H:%M:%S %z"), format.getFields().get(1));
+		Assert.assertEquals("%d/%b/%Y:%H:%M:%S %z", ((CustomRequestTimeField) format.getFields().get(1))
+				.getParameter());
+
+		Assert.assertEquals(2, format.getFields().size());
+	}
+
+	@Test
+	public void testParsingCustomRequestTimeInSeconds() throws Exception {
+		final LogFormat format = LogFormat.parse("%{sec}t %s");
+
+		Assert.assertEquals(CustomRequestTimeField.getInstance("sec"), format.getFields().get(0));
+		Assert.assertEquals(HttpStatusField.getInstance(), format.getFields().get(1));
+
+		Assert.assertEquals(2, format.getFields().size());
+	}
+
+	@Test
+	public void testParsingInvalidFormats() throws Exception {
+		final String[] invalid = { "%{Referer}x", "%{}t", "%h %{Referer}", "%h %x" };
+		for (final String format : invalid) {
+			try {
+				LogFormat.parse(format);
+				Assert.fail("The format '" + format + "' should not be valid.");
+			} catch (final LogFormatParsingException e) {
+				Assert.assertTrue(true);
+			}
+		}
+	}
+
 	@Test
 	public void testParsingNullFormat() throws Exception {
 		try {
@@ -27,6 +27,11 @@ import org.joda.time.Interval;
 
 public class LogEntryRepositoryService implements net.sf.jacclog.service.repository.LogEntryRepositoryService<LogEntry> {
 
+	/**
+	 * Indicates whether collections of log entries are appended by the bulk writer
+	 */
+	private volatile boolean bulkWrite;
+
 	private final LogEntryRepository repository;
 
 	public LogEntryRepositoryService(final LogEntryRepository repository) {
@@ -54,7 +59,11 @@ public class LogEntryRepositoryService implements net.sf.jacclog.service.reposit
 		if (entries == null) {
 			throw new IllegalArgumentException("Argument 'entries' can not be null.");
 		}
-		repository.persist(entries);
+		if (bulkWrite) {
+			repository.append(entries);
+		} else {
+			repository.persist(entries);
+		}
 	}
 
 	@Override
@@ -128,11 +137,34 @@ public class LogEntryRepositoryService implements net.sf.jacclog.service.reposit
 		return repository;
 	}
 
+	/**
+	 * Indicates whether collections of log entries are appended by the bulk writer instead of being persisted within a
+	 * unit of work.
+	 * 
+	 * @return <code>true</code> if the bulk writer is used
+	 */
+	public boolean isBulkWrite() {
+		return bulkWrite;
+	}
+
 	@Override
 	public List<LogEntry> readAll() {
 		return repository.findAll();
 	}
 
+	/**
+	 * Selects how collections of log entries are stored. The bulk writer appends the entries with multi-row JDBC
+	 * batches and identifiers assigned in advance, which is much faster than the unit of work of the persistence
+	 * provider. Single entries are always persisted within a unit of work.
+	 * 
+	 * @param bulkWrite
+	 *            <code>true</code> to append collections of log entries by the bulk writer
+	 * @see net.sf.jacclog.persistence.jpa.internal.LogEntryBulkWriter
+	 */
+	public void setBulkWrite(final boolean bulkWrite) {
+		this.bulkWrite = bulkWrite;
+	}
+
 	@Override
 	public LogEntry update(final LogEntry entry) {
 		if (entry == null) {
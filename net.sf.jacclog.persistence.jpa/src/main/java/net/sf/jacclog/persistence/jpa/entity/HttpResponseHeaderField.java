@@ -1,5 +1,6 @@
 package net.sf.jacclog.persistence.jpa.entity;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
@@ -12,10 +13,14 @@ import javax.persistence.Version;
 
 import net.sf.jacclog.api.domain.http.HttpResponseHeader;
 import net.sf.jacclog.api.domain.http.ReadableHttpResponseHeader;
+import net.sf.jacclog.persistence.jpa.internal.ValueHash;
 import net.sf.jacclog.service.repository.domain.PersistableHttpResponseHeaderField;
 
+import org.eclipse.persistence.annotations.Index;
+
 @Entity
 @Table(name = "response_headers", uniqueConstraints = @UniqueConstraint(columnNames = { "type_id", "value" }))
+@Index(name = "response_headers_value_hash", columnNames = "value_hash")
 public class HttpResponseHeaderField implements PersistableHttpResponseHeaderField {
 
 	/**
@@ -32,6 +37,13 @@ public class HttpResponseHeaderField implements PersistableHttpResponseHeaderFie
 
 	private String value;
 
+	/**
+	 * The hash of the value, which allows to look up a field without comparing long values. Different values may have
+	 * the same hash, so the hash is indexed but not unique.
+	 */
+	@Column(name = "value_hash")
+	private Long valueHash;
+
 	/**
 	 * The version number of the entity
 	 */
@@ -52,6 +64,7 @@ public class HttpResponseHeaderField implements PersistableHttpResponseHeaderFie
 
 		this.type = new HttpResponseHeaderType(type);
 		this.value = value;
+		valueHash = ValueHash.hash(value);
 	}
 
 	@Override
@@ -108,6 +121,10 @@ public class HttpResponseHeaderField implements PersistableHttpResponseHeaderFie
 		return value;
 	}
 
+	public Long getValueHash() {
+		return valueHash;
+	}
+
 	@Override
 	public Integer getVersion() {
 		return version;
@@ -144,6 +161,7 @@ public class HttpResponseHeaderField implements PersistableHttpResponseHeaderFie
 			throw new IllegalArgumentException("Argument 'value' can not be null.");
 		}
 		this.value = value;
+		valueHash = ValueHash.hash(value);
 	}
 
 	@Override
@@ -75,7 +75,7 @@ public class LogEntry implements PersistableLogEntry {
 	 */
 	@Id
 	@GeneratedValue(generator = "LOG_ENTRY_SEQ")
-	@TableGenerator(name = "LOG_ENTRY_SEQ", allocationSize = 1)
+	@TableGenerator(name = "LOG_ENTRY_SEQ", allocationSize = 500)
 	private Long id;
 
 	/**
@@ -37,6 +37,11 @@ public class HttpRequestHeaderFieldRepository {
 
 	private static final Logger LOG = LoggerFactory.getLogger(HttpRequestHeaderFieldRepository.class);
 
+	/**
+	 * Maximum number of hashes which are passed to one query
+	 */
+	private static final int MAX_PARAMETERS = 500;
+
 	private static final String PERSISTENCE_UNIT_NAME = "jacclogPU";
 
 	private final EntityManagerFactory entityManagerFactory;
@@ -247,6 +252,42 @@ public class HttpRequestHeaderFieldRepository {
 		return fields;
 	}
 
+	/**
+	 * Finds all HTTP request header fields whose values have one of the given hashes. The hash is indexed, so this
+	 * query is much cheaper than comparing the values. Different values may have the same hash, therefore the values
+	 * of the found fields must be compared by the caller.
+	 * 
+	 * @param valueHashes
+	 *            hashes of the values
+	 * @return a list of HTTP request header fields
+	 * @see ValueHash#hash(String)
+	 */
+	public List<HttpRequestHeaderField> findByValueHash(final Collection<Long> valueHashes) {
+		if (valueHashes == null) {
+			throw new IllegalArgumentException("Argument 'valueHashes' can not be null.");
+		}
+
+		final List<HttpRequestHeaderField> fields = new ArrayList<HttpRequestHeaderField>();
+		if (valueHashes.isEmpty()) {
+			return fields;
+		}
+
+		final List<Long> hashes = new ArrayList<Long>(valueHashes);
+		final EntityManager entityManager = entityManagerFactory.createEntityManager();
+		try {
+			for (int i = 0; i < hashes.size(); i += MAX_PARAMETERS) {
+				fields.addAll(entityManager
+						.createQuery("SELECT o FROM HttpRequestHeaderField o WHERE o.valueHash IN :hashes",
+								HttpRequestHeaderField.class)
+						.setParameter("hashes", hashes.subList(i, Math.min(i + MAX_PARAMETERS, hashes.size())))
+						.getResultList());
+			}
+		} finally {
+			entityManager.close();
+		}
+		return fields;
+	}
+
 	/**
 	 * Updates the given field within the persisted one in the repository.
 	 * 
@@ -446,4 +487,44 @@ public class HttpRequestHeaderFieldRepository {
 		}
 	}
 
+	/**
+	 * Calculates the hashes of stored HTTP request header fields whose hash is missing, e.g. fields which have been
+	 * stored before the column <code>value_hash</code> existed. Such fields can not be found by
+	 * {@link #findByValueHash(Collection)}.
+	 * 
+	 * @return number of updated fields
+	 */
+	public int updateMissingValueHashes() {
+		int updated = 0;
+		final EntityManager entityManager = entityManagerFactory.createEntityManager();
+		try {
+			List<Object[]> rows;
+			do {
+				rows = entityManager
+						.createQuery("SELECT o.id, o.value FROM HttpRequestHeaderField o WHERE o.valueHash IS NULL",
+								Object[].class).setMaxResults(MAX_PARAMETERS).getResultList();
+				entityManager.getTransaction().begin();
+				for (final Object[] row : rows) {
+					updated += entityManager
+							.createQuery("UPDATE HttpRequestHeaderField o SET o.valueHash = :hash WHERE o.id = :id")
+							.setParameter("hash", ValueHash.hash((String) row[1]))
+							.setParameter("id", row[0]).executeUpdate();
+				}
+				entityManager.getTransaction().commit();
+			} while (rows.size() == MAX_PARAMETERS);
+		} catch (final RuntimeException e1) {
+			if (entityManager.getTransaction().isActive()) {
+				entityManager.getTransaction().rollback();
+			}
+			throw e1;
+		} finally {
+			entityManager.close();
+		}
+
+		if (updated > 0) {
+			LOG.info("Calculated the missing value hashes of " + updated + " request header fields.");
+		}
+		return updated;
+	}
+
 }
@@ -0,0 +1,444 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.persistence.jpa.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+
+import net.sf.jacclog.persistence.jpa.entity.HttpRequestHeaderField;
+import net.sf.jacclog.persistence.jpa.entity.HttpResponseHeaderField;
+import net.sf.jacclog.persistence.jpa.entity.LogEntry;
+import net.sf.jacclog.service.repository.domain.PersistableHttpRequestHeaderField;
+import net.sf.jacclog.service.repository.domain.PersistableHttpResponseHeaderField;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends log entries and the links to their header fields with plain JDBC instead of the unit of work of the
+ * persistence provider. Access log entries are never updated after they have been written, so neither change tracking
+ * nor optimistic locking is needed to store them.<br>
+ * <br>
+ * The identifiers are assigned before the rows are written. One block of identifiers is reserved per batch in the
+ * sequence table of the persistence provider (see {@link SequenceBlockAllocator}), so they never collide with
+ * identifiers of entities which are persisted the usual way. Several rows are inserted with a single multi-row
+ * <code>INSERT</code> statement and several of these statements are sent as one JDBC batch. All statements are
+ * executed on the connection of the transaction of an <code>EntityManager</code>, therefore a batch is written
+ * completely or not at all.<br>
+ * <br>
+ * The header fields of the entries must already be stored (they need an identifier) and the version of a written entry
+ * is always <code>1</code>. The shared cache of the persistence provider does not know the written entries, they are
+ * read from the database when they are requested.<br>
+ * <br>
+ * This writer is thread-safe.
+ * 
+ * @author André Rouél
+ */
+public class LogEntryBulkWriter {
+
+	/**
+	 * Binds the values of a row to the parameters of a statement
+	 */
+	private interface Binder<T> {
+
+		/**
+		 * Binds the values of a row.
+		 * 
+		 * @param statement
+		 *            statement to bind to
+		 * @param index
+		 *            index of the first parameter of the row
+		 * @param row
+		 *            row to bind
+		 * @return index of the first parameter of the next row
+		 */
+		int bind(PreparedStatement statement, int index, T row) throws SQLException;
+
+	}
+
+	/**
+	 * Columns of the table <code>log_entries</code> in the order of <code>bind</code>
+	 */
+	private static final String[] COLUMNS = { "id", "bytesReceived", "bytesSent", "connectionStatus", "filename",
+			"lastStatusCode", "localIpAddress", "processId", "queryString", "remoteHost", "remoteIpAddress",
+			"remoteLogname", "remoteUser", "requestInMillis", "requestMethod", "requestProtocol", "requestTime",
+			"responseInBytes", "serverName", "serverPort", "statusCode", "urlPath", "version" };
+
+	/**
+	 * Binds a log entry (all enumerations are mapped by their ordinal, except the connection status)
+	 */
+	private static final Binder<LogEntry> ENTRY_BINDER = new Binder<LogEntry>() {
+		@Override
+		public int bind(final PreparedStatement s, final int index, final LogEntry e) throws SQLException {
+			int i = index;
+			setLong(s, i++, e.getId());
+			setLong(s, i++, e.getBytesReceived());
+			setLong(s, i++, e.getBytesSent());
+			setString(s, i++, (e.getConnectionStatus() != null) ? e.getConnectionStatus().name() : null);
+			setString(s, i++, e.getFilename());
+			setOrdinal(s, i++, e.getLastStatusCode());
+			setString(s, i++, e.getLocalIpAddress());
+			setInteger(s, i++, e.getProcessId());
+			setString(s, i++, e.getQueryString());
+			setString(s, i++, e.getRemoteHost());
+			setString(s, i++, e.getRemoteIpAddress());
+			setString(s, i++, e.getRemoteLogname());
+			setString(s, i++, e.getRemoteUser());
+			setLong(s, i++, e.getRequestInMillis());
+			setOrdinal(s, i++, e.getRequestMethod());
+			setString(s, i++, e.getRequestProtocol());
+			if (e.getRequestTime() == null) {
+				s.setNull(i++, Types.TIMESTAMP);
+			} else {
+				s.setTimestamp(i++, new Timestamp(e.getRequestTime().getTime()));
+			}
+			setLong(s, i++, e.getResponseInBytes());
+			setString(s, i++, e.getServerName());
+			setInteger(s, i++, e.getServerPort());
+			setOrdinal(s, i++, e.getStatusCode());
+			setString(s, i++, e.getUrlPath());
+			setInteger(s, i++, e.getVersion());
+			return i;
+		}
+	};
+
+	/**
+	 * Binds a link between a log entry and a header field
+	 */
+	private static final Binder<long[]> LINK_BINDER = new Binder<long[]>() {
+		@Override
+		public int bind(final PreparedStatement s, final int index, final long[] link) throws SQLException {
+			s.setLong(index, link[0]);
+			s.setLong(index + 1, link[1]);
+			return index + 2;
+		}
+	};
+
+	private static final Logger LOG = LoggerFactory.getLogger(LogEntryBulkWriter.class);
+
+	/**
+	 * Columns of the table which links log entries with request header fields
+	 */
+	private static final String[] REQUEST_HEADER_COLUMNS = { "logentry_id", "request_header_id" };
+
+	/**
+	 * Default name of the join table of <code>LogEntry.requestHeaders</code>
+	 */
+	private static final String REQUEST_HEADER_TABLE = "log_entries_request_headers";
+
+	/**
+	 * Columns of the table which links log entries with response header fields
+	 */
+	private static final String[] RESPONSE_HEADER_COLUMNS = { "logentry_id", "response_header_id" };
+
+	/**
+	 * Default name of the join table of <code>LogEntry.responseHeaders</code>
+	 */
+	private static final String RESPONSE_HEADER_TABLE = "log_entries_response_headers";
+
+	/**
+	 * Default number of rows which are inserted by one statement
+	 */
+	public static final int ROWS_PER_STATEMENT = 64;
+
+	/**
+	 * Name of the table generator of log entries
+	 */
+	private static final String SEQUENCE = "LOG_ENTRY_SEQ";
+
+	/**
+	 * Number of statements which are sent to the database at once
+	 */
+	private static final int STATEMENTS_PER_BATCH = 16;
+
+	private static final String TABLE = "log_entries";
+
+	/**
+	 * Builds an <code>INSERT</code> statement which inserts several rows at once.
+	 * 
+	 * @param table
+	 *            name of the table
+	 * @param columns
+	 *            names of the columns
+	 * @param rows
+	 *            number of rows
+	 * @return SQL of the statement
+	 */
+	static String insertStatement(final String table, final String[] columns, final int rows) {
+		final StringBuilder sql = new StringBuilder(32 + columns.length * 16 + rows * (columns.length * 2 + 3));
+		sql.append("INSERT INTO ").append(table).append(" (");
+		for (int i = 0; i < columns.length; i++) {
+			sql.append((i > 0) ? ", " : "").append(columns[i]);
+		}
+		sql.append(") VALUES ");
+		for (int r = 0; r < rows; r++) {
+			sql.append((r > 0) ? ", (" : "(");
+			for (int i = 0; i < columns.length; i++) {
+				sql.append((i > 0) ? ", ?" : "?");
+			}
+			sql.append(')');
+		}
+		return sql.toString();
+	}
+
+	private static long[] link(final LogEntry entry, final Long fieldId) {
+		if (fieldId == null) {
+			throw new IllegalArgumentException("The header fields of a log entry must be stored before.");
+		}
+		return new long[] { entry.getId(), fieldId };
+	}
+
+	private static void rollback(final EntityManager entityManager) {
+		if (entityManager.getTransaction().isActive()) {
+			entityManager.getTransaction().rollback();
+		}
+	}
+
+	private static void setInteger(final PreparedStatement s, final int index, final Integer value)
+			throws SQLException {
+		if (value == null) {
+			s.setNull(index, Types.INTEGER);
+		} else {
+			s.setInt(index, value);
+		}
+	}
+
+	private static void setLong(final PreparedStatement s, final int index, final Long value) throws SQLException {
+		if (value == null) {
+			s.setNull(index, Types.BIGINT);
+		} else {
+			s.setLong(index, value);
+		}
+	}
+
+	private static void setOrdinal(final PreparedStatement s, final int index, final Enum<?> value) throws SQLException {
+		if (value == null) {
+			s.setNull(index, Types.INTEGER);
+		} else {
+			s.setInt(index, value.ordinal());
+		}
+	}
+
+	private static void setString(final PreparedStatement s, final int index, final String value) throws SQLException {
+		if (value == null) {
+			s.setNull(index, Types.VARCHAR);
+		} else {
+			s.setString(index, value);
+		}
+	}
+
+	private final SequenceBlockAllocator allocator = new SequenceBlockAllocator(SEQUENCE);
+
+	private final EntityManagerFactory entityManagerFactory;
+
+	private volatile int rowsPerStatement = ROWS_PER_STATEMENT;
+
+	public LogEntryBulkWriter(final EntityManagerFactory entityManagerFactory) {
+		if (entityManagerFactory == null) {
+			throw new IllegalArgumentException("Argument 'entityManagerFactory' can not be null.");
+		}
+
+		this.entityManagerFactory = entityManagerFactory;
+	}
+
+	/**
+	 * Assigns an identifier and the initial version to entries which have not been stored yet. The identifiers of all
+	 * entries of a batch are reserved at once in a transaction of their own, so concurrent writers do not wait for the
+	 * counter of the sequence while their batch is written.
+	 */
+	private void assignIdentifiers(final Collection<LogEntry> entries) {
+		int count = 0;
+		for (final LogEntry entry : entries) {
+			if (entry.getId() == null) {
+				count++;
+			}
+			entry.setVersion(1);
+		}
+
+		if (count > 0) {
+			long id = reserveIdentifiers(count);
+			for (final LogEntry entry : entries) {
+				if (entry.getId() == null) {
+					entry.setId(id++);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the allocator which reserves the identifiers of written entries.
+	 * 
+	 * @return allocator of identifiers
+	 */
+	public SequenceBlockAllocator getAllocator() {
+		return allocator;
+	}
+
+	public int getRowsPerStatement() {
+		return rowsPerStatement;
+	}
+
+	/**
+	 * Inserts rows with multi-row statements, which are sent in batches. The remaining rows which do not fill a whole
+	 * statement are inserted with one shorter statement.
+	 */
+	private <T> void insert(final Connection connection, final String table, final String[] columns,
+			final List<T> rows, final Binder<T> binder) throws SQLException {
+		final int size = rowsPerStatement;
+		final int statements = rows.size() / size;
+		if (statements > 0) {
+			final PreparedStatement statement = connection.prepareStatement(insertStatement(table, columns, size));
+			try {
+				int pending = 0;
+				for (int i = 0; i < statements; i++) {
+					int index = 1;
+					for (int r = i * size; r < (i + 1) * size; r++) {
+						index = binder.bind(statement, index, rows.get(r));
+					}
+					statement.addBatch();
+					if (++pending == STATEMENTS_PER_BATCH) {
+						statement.executeBatch();
+						pending = 0;
+					}
+				}
+				if (pending > 0) {
+					statement.executeBatch();
+				}
+			} finally {
+				statement.close();
+			}
+		}
+
+		final int remaining = rows.size() - statements * size;
+		if (remaining > 0) {
+			final PreparedStatement statement = connection.prepareStatement(insertStatement(table, columns, remaining));
+			try {
+				int index = 1;
+				for (int r = statements * size; r < rows.size(); r++) {
+					index = binder.bind(statement, index, rows.get(r));
+				}
+				statement.executeUpdate();
+			} finally {
+				statement.close();
+			}
+		}
+	}
+
+	/**
+	 * Reserves a block of identifiers.
+	 * 
+	 * @return first identifier of the block
+	 */
+	private long reserveIdentifiers(final int count) {
+		final EntityManager entityManager = entityManagerFactory.createEntityManager();
+		entityManager.getTransaction().begin();
+		try {
+			final long first = allocator.reserve(entityManager.unwrap(Connection.class), count);
+			entityManager.getTransaction().commit();
+			return first;
+		} catch (final SQLException e) {
+			rollback(entityManager);
+			throw new PersistenceException("The identifiers of the log entries could not be reserved.", e);
+		} catch (final RuntimeException e) {
+			rollback(entityManager);
+			throw e;
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	/**
+	 * Sets the number of rows which are inserted by one statement. A value of <code>1</code> sends plain JDBC batches
+	 * of single-row statements, which is supported by every database.
+	 * 
+	 * @param rowsPerStatement
+	 *            number of rows per statement
+	 */
+	public void setRowsPerStatement(final int rowsPerStatement) {
+		if (rowsPerStatement < 1) {
+			throw new IllegalArgumentException("Argument 'rowsPerStatement' must be greater than zero.");
+		}
+		this.rowsPerStatement = rowsPerStatement;
+	}
+
+	/**
+	 * Writes log entries and the links to their header fields within one transaction. Entries without an identifier
+	 * get one assigned.
+	 * 
+	 * @param entries
+	 *            log entries whose header fields are already stored
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given argument is <code>null</code> or a header field has not been stored
+	 * @throws PersistenceException
+	 *             if the entries can not be written
+	 */
+	public void write(final Collection<LogEntry> entries) {
+		if (entries == null) {
+			throw new IllegalArgumentException("Argument 'entries' can not be null.");
+		}
+
+		if (entries.isEmpty()) {
+			return;
+		}
+
+		assignIdentifiers(entries);
+		final List<LogEntry> rows = new ArrayList<LogEntry>(entries);
+		final List<long[]> requestLinks = new ArrayList<long[]>();
+		final List<long[]> responseLinks = new ArrayList<long[]>();
+		for (final LogEntry entry : rows) {
+			for (final PersistableHttpRequestHeaderField field : entry.getRequestHeaders()) {
+				requestLinks.add(link(entry, (field instanceof HttpRequestHeaderField) ? ((HttpRequestHeaderField) field)
+						.getId() : null));
+			}
+			for (final PersistableHttpResponseHeaderField field : entry.getResponseHeaders()) {
+				responseLinks.add(link(entry, (field instanceof HttpResponseHeaderField) ? ((HttpResponseHeaderField) field)
+						.getId() : null));
+			}
+		}
+
+		final EntityManager entityManager = entityManagerFactory.createEntityManager();
+		entityManager.getTransaction().begin();
+		try {
+			final Connection connection = entityManager.unwrap(Connection.class);
+			insert(connection, TABLE, COLUMNS, rows, ENTRY_BINDER);
+			insert(connection, REQUEST_HEADER_TABLE, REQUEST_HEADER_COLUMNS, requestLinks, LINK_BINDER);
+			insert(connection, RESPONSE_HEADER_TABLE, RESPONSE_HEADER_COLUMNS, responseLinks, LINK_BINDER);
+			entityManager.getTransaction().commit();
+			LOG.debug("Appended " + rows.size() + " log entries with " + requestLinks.size() + " request and "
+					+ responseLinks.size() + " response header fields.");
+		} catch (final SQLException e) {
+			rollback(entityManager);
+			throw new PersistenceException("The log entries could not be appended.", e);
+		} catch (final RuntimeException e) {
+			rollback(entityManager);
+			throw e;
+		} finally {
+			entityManager.close();
+		}
+	}
+
+}
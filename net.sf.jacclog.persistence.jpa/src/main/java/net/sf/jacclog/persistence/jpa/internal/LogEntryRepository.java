@@ -15,9 +15,13 @@
  ******************************************************************************/
 package net.sf.jacclog.persistence.jpa.internal;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +30,7 @@ import java.util.Set;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
 import javax.persistence.TemporalType;
 
 import net.sf.jacclog.persistence.jpa.entity.HttpRequestHeaderField;
@@ -34,26 +39,54 @@ import net.sf.jacclog.persistence.jpa.entity.LogEntry;
 import net.sf.jacclog.service.repository.domain.PersistableHttpRequestHeaderField;
 import net.sf.jacclog.service.repository.domain.PersistableHttpResponseHeaderField;
 
+import net.sf.jacclog.util.cache.SlotCache;
+
 import org.joda.time.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class LogEntryRepository {
 
+	/**
+	 * Number of slots of the caches of stored header fields
+	 */
+	private static final int FIELD_CACHE_CAPACITY = 16384;
+
 	private static final Logger LOG = LoggerFactory.getLogger(LogEntryRepository.class);
 
 	private static final String PERSISTENCE_UNIT_NAME = "jacclogPU";
 
+	private final LogEntryBulkWriter bulkWriter;
+
 	private final EntityManagerFactory entityManagerFactory;
 
+	/**
+	 * Stored request header fields by their type and value
+	 */
+	private final SlotCache<String, HttpRequestHeaderField> requestFieldCache =
+			new SlotCache<String, HttpRequestHeaderField>(FIELD_CACHE_CAPACITY);
+
 	private final HttpRequestHeaderFieldRepository requestFieldRepository;
 
+	/**
+	 * Stored response header fields by their type and value
+	 */
+	private final SlotCache<String, HttpResponseHeaderField> responseFieldCache =
+			new SlotCache<String, HttpResponseHeaderField>(FIELD_CACHE_CAPACITY);
+
 	private final HttpResponseHeaderFieldRepository responseFieldRepository;
 
+	/**
+	 * Whether the column of the value hashes has been added to the tables of former versions and the missing value
+	 * hashes of their fields have been calculated
+	 */
+	private volatile boolean valueHashesUpdated;
+
 	public LogEntryRepository() {
 		entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME);
 		requestFieldRepository = new HttpRequestHeaderFieldRepository(entityManagerFactory);
 		responseFieldRepository = new HttpResponseHeaderFieldRepository(entityManagerFactory);
+		bulkWriter = new LogEntryBulkWriter(entityManagerFactory);
 	}
 
 	public LogEntryRepository(final Map<String, String> properties) {
@@ -64,6 +97,58 @@ public class LogEntryRepository {
 		entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME, properties);
 		requestFieldRepository = new HttpRequestHeaderFieldRepository(entityManagerFactory);
 		responseFieldRepository = new HttpResponseHeaderFieldRepository(entityManagerFactory);
+		bulkWriter = new LogEntryBulkWriter(entityManagerFactory);
+	}
+
+	/**
+	 * Adds the column of the value hashes to the tables of header fields which have been created by former versions,
+	 * because the persistence provider does not alter existing tables.
+	 */
+	private void addValueHashColumns() {
+		final EntityManager entityManager = entityManagerFactory.createEntityManager();
+		entityManager.getTransaction().begin();
+		try {
+			final Connection connection = entityManager.unwrap(Connection.class);
+			if (ValueHashColumn.addIfMissing(connection, "request_headers", "request_headers_value_hash")) {
+				LOG.info("Added the column of the value hashes to the table of request header fields.");
+			}
+			if (ValueHashColumn.addIfMissing(connection, "response_headers", "response_headers_value_hash")) {
+				LOG.info("Added the column of the value hashes to the table of response header fields.");
+			}
+			entityManager.getTransaction().commit();
+		} catch (final SQLException e) {
+			if (entityManager.getTransaction().isActive()) {
+				entityManager.getTransaction().rollback();
+			}
+			throw new PersistenceException("The column of the value hashes could not be added.", e);
+		} catch (final RuntimeException e) {
+			if (entityManager.getTransaction().isActive()) {
+				entityManager.getTransaction().rollback();
+			}
+			throw e;
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	/**
+	 * Appends log entries with the bulk writer instead of persisting them one by one within a unit of work. Header
+	 * fields which are not yet known will be stored first, the entries themselves are written afterwards with
+	 * multi-row batches in one transaction.<br>
+	 * <br>
+	 * The appended entries get an identifier, but they are not managed and should not be modified afterwards.
+	 * 
+	 * @param entries
+	 *            log entries to append
+	 * @see LogEntryBulkWriter
+	 */
+	public void append(final Collection<LogEntry> entries) {
+		if (entries == null) {
+			throw new IllegalArgumentException("Argument 'entries' can not be null.");
+		}
+
+		persistHeaders(entries);
+		bulkWriter.write(entries);
 	}
 
 	/**
@@ -253,6 +338,18 @@ public class LogEntryRepository {
 		return entries;
 	}
 
+	public LogEntryBulkWriter getBulkWriter() {
+		return bulkWriter;
+	}
+
+	public SlotCache<String, HttpRequestHeaderField> getRequestFieldCache() {
+		return requestFieldCache;
+	}
+
+	public SlotCache<String, HttpResponseHeaderField> getResponseFieldCache() {
+		return responseFieldCache;
+	}
+
 	public LogEntry merge(final LogEntry entry) {
 		if (entry == null) {
 			throw new IllegalArgumentException("Argument 'entry' must be set.");
@@ -289,11 +386,11 @@ public class LogEntryRepository {
 			throw new IllegalArgumentException("Argument 'entries' can not be null.");
 		}
 
+		persistHeaders(entries);
 		final EntityManager entityManager = entityManagerFactory.createEntityManager();
 		entityManager.getTransaction().begin();
 		try {
 			for (final LogEntry entry : entries) {
-				persistHeaders(entry);
 				entityManager.persist(entry);
 			}
 			entityManager.getTransaction().commit();
@@ -320,10 +417,10 @@ public class LogEntryRepository {
 			throw new IllegalArgumentException("Argument 'entry' must be set.");
 		}
 
+		persistHeaders(Collections.singletonList(entry));
 		final EntityManager entityManager = entityManagerFactory.createEntityManager();
 		entityManager.getTransaction().begin();
 		try {
-			persistHeaders(entry);
 			entityManager.persist(entry);
 			entityManager.getTransaction().commit();
 		} catch (final RuntimeException e1) {
@@ -344,53 +441,210 @@ public class LogEntryRepository {
 		}
 	}
 
-	private void persistHeaders(final LogEntry entry) {
-		persistRequestHeaders(entry);
-		persistResponseHeaders(entry);
+	/**
+	 * Builds the key of a header field within a batch. Names of header types never contain a colon.
+	 */
+	private static String keyOf(final String type, final String value) {
+		return type + ':' + value;
 	}
 
-	private void persistRequestHeaders(final LogEntry entry) {
-		final Set<PersistableHttpRequestHeaderField> attachedFields = new HashSet<PersistableHttpRequestHeaderField>();
-		for (final PersistableHttpRequestHeaderField field : entry.getRequestHeaders()) {
-			final HttpRequestHeaderField attached = requestFieldRepository.find(field.getType(), field.getValue());
-			if (attached == null) {
-				final HttpRequestHeaderField entity = HttpRequestHeaderFieldMapper.map(field);
-				try {
-					requestFieldRepository.persist(entity);
-				} catch (final RuntimeException e) {
-					// an exception here leads to an IllegalStateException while persisting the related log entry
-					// (synchronization error)
-					final HttpRequestHeaderField a = requestFieldRepository.find(entity);
-					LOG.info(e.getLocalizedMessage() + ": " + a);
+	private void persistHeaders(final Collection<LogEntry> entries) {
+		updateValueHashes();
+		persistRequestHeaders(entries);
+		persistResponseHeaders(entries);
+	}
+
+	/**
+	 * Replaces the request header fields of the given entries by stored fields. Fields are taken from the cache first,
+	 * the remaining fields of the whole batch are looked up by the hashes of their values with one query and the
+	 * fields which are still unknown are stored within one transaction.
+	 */
+	private void persistRequestHeaders(final Collection<LogEntry> entries) {
+		final Map<String, HttpRequestHeaderField> resolved = new HashMap<String, HttpRequestHeaderField>();
+		final Map<String, HttpRequestHeaderField> misses = new HashMap<String, HttpRequestHeaderField>();
+		for (final LogEntry entry : entries) {
+			for (final PersistableHttpRequestHeaderField field : entry.getRequestHeaders()) {
+				final String type = field.getType().getName();
+				final String key = keyOf(type, field.getValue());
+				if (!resolved.containsKey(key) && !misses.containsKey(key)) {
+					final HttpRequestHeaderField cached = requestFieldCache.get(ValueHash.hash(field.getValue()), key);
+					if (cached != null) {
+						resolved.put(key, cached);
+					} else {
+						misses.put(key, new HttpRequestHeaderField(field.getType(), field.getValue()));
+					}
+				}
+			}
+		}
+
+		if (!misses.isEmpty()) {
+			final Set<Long> hashes = new HashSet<Long>();
+			for (final HttpRequestHeaderField field : misses.values()) {
+				hashes.add(field.getValueHash());
+			}
+			for (final HttpRequestHeaderField field : requestFieldRepository.findByValueHash(hashes)) {
+				final String key = keyOf(field.getType().getName(), field.getValue());
+				if (misses.remove(key) != null) {
+					resolved.put(key, field);
 				}
-				attachedFields.add(entity);
-			} else {
-				attachedFields.add(attached);
 			}
 		}
-		entry.setRequestHeaders(attachedFields);
+
+		if (!misses.isEmpty()) {
+			try {
+				requestFieldRepository.persist(misses.values());
+				resolved.putAll(misses);
+			} catch (final RuntimeException e) {
+				// another importer may have stored some of the fields in the meantime
+				LOG.info("Storing " + misses.size() + " request header fields at once failed, so they will be stored "
+						+ "one by one. (" + e.getLocalizedMessage() + ")");
+				for (final Map.Entry<String, HttpRequestHeaderField> miss : misses.entrySet()) {
+					final HttpRequestHeaderField field = miss.getValue();
+					resolved.put(miss.getKey(), persistRequestHeader(new HttpRequestHeaderField(field.getType(), field
+							.getValue())));
+				}
+			}
+		}
+
+		for (final HttpRequestHeaderField field : resolved.values()) {
+			if (field.getId() != null) {
+				// the hash of fields which have been loaded before their hash was stored is missing
+				final long hash = (field.getValueHash() != null) ? field.getValueHash() : ValueHash.hash(field
+						.getValue());
+				requestFieldCache.put(hash, keyOf(field.getType().getName(), field.getValue()), field);
+			}
+		}
+
+		for (final LogEntry entry : entries) {
+			final Set<PersistableHttpRequestHeaderField> attachedFields = new HashSet<PersistableHttpRequestHeaderField>();
+			for (final PersistableHttpRequestHeaderField field : entry.getRequestHeaders()) {
+				attachedFields.add(resolved.get(keyOf(field.getType().getName(), field.getValue())));
+			}
+			entry.setRequestHeaders(attachedFields);
+		}
 	}
 
-	private void persistResponseHeaders(final LogEntry entry) {
-		final Set<PersistableHttpResponseHeaderField> attachedFields = new HashSet<PersistableHttpResponseHeaderField>();
-		for (final PersistableHttpResponseHeaderField field : entry.getResponseHeaders()) {
-			final HttpResponseHeaderField attached = responseFieldRepository.find(field.getType(), field.getValue());
-			if (attached == null) {
-				final HttpResponseHeaderField entity = HttpResponseHeaderFieldMapper.map(field);
-				try {
-					responseFieldRepository.persist(entity);
-				} catch (final RuntimeException e) {
-					// an exception here leads to an IllegalStateException while persisting the related log entry
-					// (synchronization error)
-					final HttpResponseHeaderField a = responseFieldRepository.find(entity);
-					LOG.info(e.getLocalizedMessage() + ": " + a);
+	/**
+	 * Stores a single request header field, unless it has already been stored.
+	 * 
+	 * @return the stored field
+	 */
+	private HttpRequestHeaderField persistRequestHeader(final HttpRequestHeaderField field) {
+		final HttpRequestHeaderField attached = requestFieldRepository.find(field.getType(), field.getValue());
+		if (attached != null) {
+			return attached;
+		}
+
+		try {
+			requestFieldRepository.persist(field);
+		} catch (final RuntimeException e) {
+			// an exception here leads to an IllegalStateException while persisting the related log entry
+			// (synchronization error)
+			final HttpRequestHeaderField a = requestFieldRepository.find(field);
+			LOG.info(e.getLocalizedMessage() + ": " + a);
+			if (a != null) {
+				// the field has been stored concurrently, so the stored one must be linked
+				return a;
+			}
+		}
+		return field;
+	}
+
+	/**
+	 * Replaces the response header fields of the given entries by stored fields. Fields are taken from the cache first,
+	 * the remaining fields of the whole batch are looked up by the hashes of their values with one query and the
+	 * fields which are still unknown are stored within one transaction.
+	 */
+	private void persistResponseHeaders(final Collection<LogEntry> entries) {
+		final Map<String, HttpResponseHeaderField> resolved = new HashMap<String, HttpResponseHeaderField>();
+		final Map<String, HttpResponseHeaderField> misses = new HashMap<String, HttpResponseHeaderField>();
+		for (final LogEntry entry : entries) {
+			for (final PersistableHttpResponseHeaderField field : entry.getResponseHeaders()) {
+				final String type = field.getType().getName();
+				final String key = keyOf(type, field.getValue());
+				if (!resolved.containsKey(key) && !misses.containsKey(key)) {
+					final HttpResponseHeaderField cached = responseFieldCache.get(ValueHash.hash(field.getValue()),
+							key);
+					if (cached != null) {
+						resolved.put(key, cached);
+					} else {
+						misses.put(key, new HttpResponseHeaderField(field.getType(), field.getValue()));
+					}
+				}
+			}
+		}
+
+		if (!misses.isEmpty()) {
+			final Set<Long> hashes = new HashSet<Long>();
+			for (final HttpResponseHeaderField field : misses.values()) {
+				hashes.add(field.getValueHash());
+			}
+			for (final HttpResponseHeaderField field : responseFieldRepository.findByValueHash(hashes)) {
+				final String key = keyOf(field.getType().getName(), field.getValue());
+				if (misses.remove(key) != null) {
+					resolved.put(key, field);
+				}
+			}
+		}
+
+		if (!misses.isEmpty()) {
+			try {
+				responseFieldRepository.persist(misses.values());
+				resolved.putAll(misses);
+			} catch (final RuntimeException e) {
+				// another importer may have stored some of the fields in the meantime
+				LOG.info("Storing " + misses.size() + " response header fields at once failed, so they will be stored "
+						+ "one by one. (" + e.getLocalizedMessage() + ")");
+				for (final Map.Entry<String, HttpResponseHeaderField> miss : misses.entrySet()) {
+					final HttpResponseHeaderField field = miss.getValue();
+					resolved.put(miss.getKey(), persistResponseHeader(new HttpResponseHeaderField(field.getType(), field
+							.getValue())));
 				}
-				attachedFields.add(entity);
-			} else {
-				attachedFields.add(attached);
 			}
 		}
-		entry.setResponseHeaders(attachedFields);
+
+		for (final HttpResponseHeaderField field : resolved.values()) {
+			if (field.getId() != null) {
+				// the hash of fields which have been loaded before their hash was stored is missing
+				final long hash = (field.getValueHash() != null) ? field.getValueHash() : ValueHash.hash(field
+						.getValue());
+				responseFieldCache.put(hash, keyOf(field.getType().getName(), field.getValue()), field);
+			}
+		}
+
+		for (final LogEntry entry : entries) {
+			final Set<PersistableHttpResponseHeaderField> attachedFields = new HashSet<PersistableHttpResponseHeaderField>();
+			for (final PersistableHttpResponseHeaderField field : entry.getResponseHeaders()) {
+				attachedFields.add(resolved.get(keyOf(field.getType().getName(), field.getValue())));
+			}
+			entry.setResponseHeaders(attachedFields);
+		}
+	}
+
+	/**
+	 * Stores a single response header field, unless it has already been stored.
+	 * 
+	 * @return the stored field
+	 */
+	private HttpResponseHeaderField persistResponseHeader(final HttpResponseHeaderField field) {
+		final HttpResponseHeaderField attached = responseFieldRepository.find(field.getType(), field.getValue());
+		if (attached != null) {
+			return attached;
+		}
+
+		try {
+			responseFieldRepository.persist(field);
+		} catch (final RuntimeException e) {
+			// an exception here leads to an IllegalStateException while persisting the related log entry
+			// (synchronization error)
+			final HttpResponseHeaderField a = responseFieldRepository.find(field);
+			LOG.info(e.getLocalizedMessage() + ": " + a);
+			if (a != null) {
+				// the field has been stored concurrently, so the stored one must be linked
+				return a;
+			}
+		}
+		return field;
 	}
 
 	public void remove(final List<LogEntry> entries) {
@@ -462,6 +716,7 @@ public class LogEntryRepository {
 
 	public void start() {
 		LOG.debug("Starting LogEntryRepository...");
+		updateValueHashes();
 	}
 
 	public void stop() {
@@ -472,4 +727,21 @@ public class LogEntryRepository {
 		}
 	}
 
+	/**
+	 * Prepares the header fields which have been stored by former versions once, so that they can be found by the
+	 * hashes of their values.
+	 */
+	private void updateValueHashes() {
+		if (!valueHashesUpdated) {
+			synchronized (this) {
+				if (!valueHashesUpdated) {
+					addValueHashColumns();
+					requestFieldRepository.updateMissingValueHashes();
+					responseFieldRepository.updateMissingValueHashes();
+					valueHashesUpdated = true;
+				}
+			}
+		}
+	}
+
 }
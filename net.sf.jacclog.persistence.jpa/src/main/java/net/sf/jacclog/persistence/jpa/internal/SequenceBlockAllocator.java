@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.persistence.jpa.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reserves blocks of consecutive identifiers of a table generator with one update of the sequence table.<br>
+ * <br>
+ * The persistence provider stores the counter of a <code>@TableGenerator</code> without an explicit table in the
+ * table <code>SEQUENCE</code>, in the row whose <code>SEQ_NAME</code> is the name of the generator. The provider
+ * increments the counter by its allocation size and uses the identifiers up to the new value; this allocator
+ * increments the counter by the number of needed identifiers in the same way, so both never hand out the same
+ * identifier.<br>
+ * <br>
+ * This allocator is thread-safe.
+ * 
+ * @author André Rouél
+ */
+public class SequenceBlockAllocator {
+
+	/**
+	 * Column of the current value of a sequence
+	 */
+	private static final String COUNT_COLUMN = "SEQ_COUNT";
+
+	/**
+	 * Column of the generator name
+	 */
+	private static final String NAME_COLUMN = "SEQ_NAME";
+
+	/**
+	 * Default sequence table of the persistence provider
+	 */
+	private static final String TABLE = "SEQUENCE";
+
+	private static final String INSERT = "INSERT INTO " + TABLE + " (" + NAME_COLUMN + ", " + COUNT_COLUMN
+			+ ") VALUES (?, ?)";
+
+	private static final String SELECT = "SELECT " + COUNT_COLUMN + " FROM " + TABLE + " WHERE " + NAME_COLUMN + " = ?";
+
+	private static final String UPDATE = "UPDATE " + TABLE + " SET " + COUNT_COLUMN + " = " + COUNT_COLUMN
+			+ " + ? WHERE " + NAME_COLUMN + " = ?";
+
+	private final String name;
+
+	private final AtomicLong reservations = new AtomicLong();
+
+	/**
+	 * Creates an allocator for the given table generator.
+	 * 
+	 * @param name
+	 *            name of the table generator
+	 */
+	public SequenceBlockAllocator(final String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("Argument 'name' can not be null.");
+		}
+
+		this.name = name;
+	}
+
+	/**
+	 * Gets the name of the table generator.
+	 * 
+	 * @return name of the generator
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of blocks which have been reserved so far. Every reservation reads the sequence table once.
+	 * 
+	 * @return number of reservations
+	 */
+	public long getReservations() {
+		return reservations.get();
+	}
+
+	/**
+	 * Reserves a block of consecutive identifiers. The counter of the sequence is locked by the update until the
+	 * transaction of the given connection ends, so the reservation should be committed right away.
+	 * 
+	 * @param connection
+	 *            connection to the database
+	 * @param count
+	 *            number of identifiers
+	 * @return first identifier of the block
+	 * 
+	 * @throws SQLException
+	 *             if the sequence table can not be accessed
+	 */
+	public long reserve(final Connection connection, final int count) throws SQLException {
+		if (connection == null) {
+			throw new IllegalArgumentException("Argument 'connection' can not be null.");
+		}
+
+		if (count < 1) {
+			throw new IllegalArgumentException("Argument 'count' must be greater than zero.");
+		}
+
+		final PreparedStatement update = connection.prepareStatement(UPDATE);
+		try {
+			update.setLong(1, count);
+			update.setString(2, name);
+			if (update.executeUpdate() == 0) {
+				// the provider has not yet used the generator, so the sequence starts with the first block
+				final PreparedStatement insert = connection.prepareStatement(INSERT);
+				try {
+					insert.setString(1, name);
+					insert.setLong(2, count);
+					insert.executeUpdate();
+				} finally {
+					insert.close();
+				}
+			}
+		} finally {
+			update.close();
+		}
+
+		final PreparedStatement select = connection.prepareStatement(SELECT);
+		try {
+			select.setString(1, name);
+			final ResultSet result = select.executeQuery();
+			try {
+				if (!result.next()) {
+					throw new SQLException("The sequence '" + name + "' does not exist.");
+				}
+				reservations.incrementAndGet();
+				return result.getLong(1) - count + 1;
+			} finally {
+				result.close();
+			}
+		} finally {
+			select.close();
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.persistence.jpa.internal;
+
+/**
+ * Calculates the hash of HTTP header values, which is stored with every header field, so fields can be looked up by
+ * an index instead of their long values.
+ * 
+ * @author André Rouél
+ */
+public final class ValueHash {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * Calculates the 64-bit FNV-1a hash of a header value, which is stored in the column <code>value_hash</code> of a
+	 * header field. The column is indexed together with the type but not unique, because two different values may
+	 * have the same hash. Fields found by their hash must therefore always be compared by their values.
+	 * 
+	 * @param value
+	 *            value of a header field
+	 * @return hash of the value
+	 */
+	public static long hash(final String value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Argument 'value' can not be null.");
+		}
+
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+			hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	private ValueHash() {
+		// this is an utility class
+	}
+
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.persistence.jpa.internal;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/**
+ * Adds the column <code>value_hash</code> to tables of header fields which have been created by former versions.<br>
+ * <br>
+ * The persistence provider creates missing tables, but it never adds a column to an existing table. Without the
+ * column every query of header fields would fail, so the column and its index are added before the fields are
+ * accessed. The values of the column are calculated afterwards by the repositories of the header fields.
+ * 
+ * @author André Rouél
+ */
+public final class ValueHashColumn {
+
+	/**
+	 * Name of the column
+	 */
+	public static final String NAME = "value_hash";
+
+	/**
+	 * Adds the column and its index to the given table if the table exists without the column.
+	 * 
+	 * @param connection
+	 *            connection to the database
+	 * @param table
+	 *            name of the table of header fields
+	 * @param index
+	 *            name of the index of the column
+	 * @return <code>true</code> if the column has been added, otherwise <code>false</code>
+	 * 
+	 * @throws SQLException
+	 *             if the table can not be inspected or altered
+	 */
+	public static boolean addIfMissing(final Connection connection, final String table, final String index)
+			throws SQLException {
+		if (connection == null) {
+			throw new IllegalArgumentException("Argument 'connection' can not be null.");
+		}
+
+		if (table == null) {
+			throw new IllegalArgumentException("Argument 'table' can not be null.");
+		}
+
+		if (index == null) {
+			throw new IllegalArgumentException("Argument 'index' can not be null.");
+		}
+
+		final DatabaseMetaData metaData = connection.getMetaData();
+		if (!exists(metaData, table, null) || exists(metaData, table, NAME)) {
+			return false;
+		}
+
+		final Statement statement = connection.createStatement();
+		try {
+			statement.executeUpdate("ALTER TABLE " + table + " ADD " + NAME + " BIGINT");
+			statement.executeUpdate("CREATE INDEX " + index + " ON " + table + " (" + NAME + ")");
+		} finally {
+			statement.close();
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a table or a column of a table exists. Unquoted identifiers are stored in upper or lower case by
+	 * most databases, so the names are converted like the database does.
+	 */
+	private static boolean exists(final DatabaseMetaData metaData, final String table, final String column)
+			throws SQLException {
+		final String t = toStoredCase(metaData, table);
+		final ResultSet result = (column == null) ? metaData.getTables(null, null, t, null) : metaData.getColumns(null,
+				null, t, toStoredCase(metaData, column));
+		try {
+			return result.next();
+		} finally {
+			result.close();
+		}
+	}
+
+	private static String toStoredCase(final DatabaseMetaData metaData, final String identifier) throws SQLException {
+		if (metaData.storesUpperCaseIdentifiers()) {
+			return identifier.toUpperCase(Locale.ENGLISH);
+		} else if (metaData.storesLowerCaseIdentifiers()) {
+			return identifier.toLowerCase(Locale.ENGLISH);
+		}
+		return identifier;
+	}
+
+	private ValueHashColumn() {
+		// this is an utility class
+	}
+
+}
@@ -24,6 +24,11 @@ import static org.eclipse.persistence.config.PersistenceUnitProperties.TARGET_SE
 import static org.eclipse.persistence.config.PersistenceUnitProperties.WEAVING;
 
 import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -72,11 +77,26 @@ public class LogEntryIntegrationTest {
 		}
 	}
 
-	@Before
-	public void setup() {
+	private static long count(final String url, final String query) throws SQLException {
+		final Connection connection = DriverManager.getConnection(url, "sa", "");
+		try {
+			final Statement statement = connection.createStatement();
+			try {
+				final ResultSet result = statement.executeQuery(query);
+				result.next();
+				return result.getLong(1);
+			} finally {
+				statement.close();
+			}
+		} finally {
+			connection.close();
+		}
+	}
+
+	private static Map<String, String> createProperties(final String url) {
 		final Map<String, String> properties = new HashMap<String, String>();
 		properties.put(JDBC_DRIVER, "org.h2.Driver");
-		properties.put(JDBC_URL, "jdbc:h2:mem:provider;DB_CLOSE_DELAY=-1");
+		properties.put(JDBC_URL, url);
 		properties.put(JDBC_USER, "sa");
 		properties.put(JDBC_PASSWORD, "");
 
@@ -88,11 +108,157 @@ public class LogEntryIntegrationTest {
 
 		// weaving should be not performed in unit tests
 		properties.put(WEAVING, "static");
+		return properties;
+	}
 
-		repository = new LogEntryRepository(properties);
+	private static void execute(final String url, final String... updates) throws SQLException {
+		final Connection connection = DriverManager.getConnection(url, "sa", "");
+		try {
+			final Statement statement = connection.createStatement();
+			try {
+				for (final String update : updates) {
+					statement.executeUpdate(update);
+				}
+			} finally {
+				statement.close();
+			}
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Before
+	public void setup() {
+		repository = new LogEntryRepository(createProperties("jdbc:h2:mem:provider;DB_CLOSE_DELAY=-1"));
 		dod = new LogEntryDataOnDemand(repository);
 	}
 
+	@Test
+	public void testAppendLogEntries() {
+		Assert.assertNotNull("Data on demand for 'LogEntry' failed to initialize correctly", dod.getRandomLogEntry());
+
+		// remove all currently log entries and append more than fit into whole multi-row statements
+		repository.remove(repository.findAll());
+		Assert.assertEquals(0, repository.countAll());
+
+		final int amount = 1000;
+		final List<LogEntry> entries = new ArrayList<LogEntry>();
+		for (int i = 0; i < amount; i++) {
+			entries.add(dod.getNewTransientLogEntry(i));
+		}
+
+		// the identifiers of a batch are reserved with a single access to the sequence table
+		final long reservations = repository.getBulkWriter().getAllocator().getReservations();
+		repository.append(entries);
+		Assert.assertEquals(reservations + 1, repository.getBulkWriter().getAllocator().getReservations());
+		Assert.assertEquals(amount, repository.countAll());
+		Assert.assertNotNull(getRandomLogEntry(entries).getId());
+		compareRandomlyEqualityOfEntries(entries);
+
+		// identifiers of appended and persisted entries must not collide
+		final LogEntry entry = dod.getNewTransientLogEntry(amount);
+		repository.persist(entry);
+		Assert.assertEquals(amount + 1, repository.countAll());
+
+		repository.getBulkWriter().setRowsPerStatement(1);
+		final List<LogEntry> more = new ArrayList<LogEntry>();
+		more.add(dod.getNewTransientLogEntry(amount + 1));
+		more.add(dod.getNewTransientLogEntry(amount + 2));
+		// the header fields of the persisted entry must be taken from the cache
+		more.add(dod.getNewTransientLogEntry(amount));
+		final long hits = repository.getRequestFieldCache().getHits();
+		repository.append(more);
+		Assert.assertEquals(amount + 4, repository.countAll());
+		Assert.assertTrue(repository.getRequestFieldCache().getHits() > hits);
+		compareRandomlyEqualityOfEntries(more);
+
+		repository.remove(repository.findAll());
+		Assert.assertEquals(0, repository.countAll());
+		dod.initialize();
+		Assert.assertEquals(20, repository.countAll());
+	}
+
+	@Test
+	public void testAppendLogEntryWithMissingValueHashes() throws SQLException {
+		Assert.assertNotNull("Data on demand for 'LogEntry' failed to initialize correctly", dod.getRandomLogEntry());
+		final int index = 4711;
+		repository.persist(dod.getNewTransientLogEntry(index));
+		final long count = repository.countAll();
+
+		// header fields which have been stored by former versions have no value hash
+		final Connection connection = DriverManager.getConnection("jdbc:h2:mem:provider", "sa", "");
+		try {
+			final Statement statement = connection.createStatement();
+			try {
+				statement.executeUpdate("UPDATE request_headers SET value_hash = NULL");
+				statement.executeUpdate("UPDATE response_headers SET value_hash = NULL");
+			} finally {
+				statement.close();
+			}
+		} finally {
+			connection.close();
+		}
+
+		final List<LogEntry> entries = new ArrayList<LogEntry>();
+		entries.add(dod.getNewTransientLogEntry(index));
+		repository.append(entries);
+		Assert.assertEquals(count + 1, repository.countAll());
+		compareRandomlyEqualityOfEntries(entries);
+
+		// the missing hashes have been calculated, so the fields are found by their hash again
+		final Connection check = DriverManager.getConnection("jdbc:h2:mem:provider", "sa", "");
+		try {
+			final Statement statement = check.createStatement();
+			try {
+				final ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM request_headers "
+						+ "WHERE value_hash IS NULL");
+				result.next();
+				Assert.assertEquals(0, result.getLong(1));
+			} finally {
+				statement.close();
+			}
+		} finally {
+			check.close();
+		}
+	}
+
+	@Test
+	public void testAppendLogEntriesToTablesOfFormerVersions() throws SQLException {
+		// the tables of header fields of former versions have no column for the value hashes
+		final String url = "jdbc:h2:mem:former;DB_CLOSE_DELAY=-1";
+		execute(url, "CREATE TABLE request_headers (ID BIGINT NOT NULL, VALUE VARCHAR(255), VERSION INTEGER, "
+				+ "type_id BIGINT, PRIMARY KEY (ID), UNIQUE (type_id, VALUE))",
+				"CREATE TABLE response_headers (ID BIGINT NOT NULL, VALUE VARCHAR(255), VERSION INTEGER, "
+						+ "type_id BIGINT, PRIMARY KEY (ID), UNIQUE (type_id, VALUE))");
+
+		final LogEntryRepository former = new LogEntryRepository(createProperties(url));
+		final long fields;
+		try {
+			final List<LogEntry> entries = new ArrayList<LogEntry>();
+			entries.add(new LogEntryDataOnDemand(former).getNewTransientLogEntry(0));
+			former.append(entries);
+			Assert.assertEquals(1, former.countAll());
+			Assert.assertEquals(0, count(url, "SELECT COUNT(*) FROM request_headers WHERE value_hash IS NULL"));
+			fields = count(url, "SELECT COUNT(*) FROM request_headers");
+			Assert.assertEquals(2, fields);
+		} finally {
+			former.stop();
+		}
+
+		// a new repository has an empty cache, so the stored fields must be found by the hashes of their values
+		final LogEntryRepository current = new LogEntryRepository(createProperties(url));
+		try {
+			final List<LogEntry> entries = new ArrayList<LogEntry>();
+			entries.add(new LogEntryDataOnDemand(current).getNewTransientLogEntry(0));
+			current.append(entries);
+			Assert.assertEquals(2, current.countAll());
+			Assert.assertEquals(fields, count(url, "SELECT COUNT(*) FROM request_headers"));
+			Assert.assertEquals(2, current.find(entries.get(0).getId()).getRequestHeaders().size());
+		} finally {
+			current.stop();
+		}
+	}
+
 	@Test
 	public void testCount() {
 		Assert.assertNotNull("Data on demand for 'LogEntry' failed to initialize correctly", dod.getRandomLogEntry());
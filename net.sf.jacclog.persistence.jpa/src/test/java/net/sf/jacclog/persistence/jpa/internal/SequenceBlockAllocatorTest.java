@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.persistence.jpa.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for reserving blocks of identifiers in the sequence table.
+ */
+public class SequenceBlockAllocatorTest {
+
+	/**
+	 * Connection to an in-memory sequence table which records the executed statements
+	 */
+	private static final class SequenceTable implements InvocationHandler {
+
+		private final Map<String, Long> counters = new HashMap<String, Long>();
+
+		private final List<String> statements = new ArrayList<String>();
+
+		private Connection connect() {
+			return proxy(Connection.class, this);
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) {
+			if ("prepareStatement".equals(method.getName())) {
+				return statement((String) args[0]);
+			}
+			return null;
+		}
+
+		private <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+			return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, handler));
+		}
+
+		private ResultSet result(final Long counter) {
+			return proxy(ResultSet.class, new InvocationHandler() {
+				private boolean read;
+
+				@Override
+				public Object invoke(final Object proxy, final Method method, final Object[] args) {
+					if ("next".equals(method.getName())) {
+						final boolean next = !read && counter != null;
+						read = true;
+						return next;
+					}
+					if ("getLong".equals(method.getName())) {
+						return counter;
+					}
+					return null;
+				}
+			});
+		}
+
+		private PreparedStatement statement(final String sql) {
+			statements.add(sql);
+			final Object[] parameters = new Object[3];
+			return proxy(PreparedStatement.class, new InvocationHandler() {
+				@Override
+				public Object invoke(final Object proxy, final Method method, final Object[] args) {
+					final String name = method.getName();
+					if (name.startsWith("set")) {
+						parameters[(Integer) args[0]] = args[1];
+					} else if ("executeUpdate".equals(name)) {
+						if (sql.startsWith("UPDATE")) {
+							final Long counter = counters.get(parameters[2]);
+							if (counter == null) {
+								return 0;
+							}
+							counters.put((String) parameters[2], counter + (Long) parameters[1]);
+						} else {
+							counters.put((String) parameters[1], (Long) parameters[2]);
+						}
+						return 1;
+					} else if ("executeQuery".equals(name)) {
+						return result(counters.get(parameters[1]));
+					}
+					return null;
+				}
+			});
+		}
+
+	}
+
+	@Test
+	public void testReserve() throws Exception {
+		final SequenceTable table = new SequenceTable();
+		table.counters.put("LOG_ENTRY_SEQ", 500L);
+		final SequenceBlockAllocator allocator = new SequenceBlockAllocator("LOG_ENTRY_SEQ");
+
+		Assert.assertEquals(501, allocator.reserve(table.connect(), 1000));
+		Assert.assertEquals(1500L, table.counters.get("LOG_ENTRY_SEQ").longValue());
+		Assert.assertEquals(1501, allocator.reserve(table.connect(), 1));
+		Assert.assertEquals(1501L, table.counters.get("LOG_ENTRY_SEQ").longValue());
+
+		// one update and one read of the sequence table per block
+		Assert.assertEquals(2, allocator.getReservations());
+		Assert.assertEquals(4, table.statements.size());
+	}
+
+	@Test
+	public void testReserveFirstBlock() throws Exception {
+		final SequenceTable table = new SequenceTable();
+		final SequenceBlockAllocator allocator = new SequenceBlockAllocator("LOG_ENTRY_SEQ");
+		Assert.assertEquals(1, allocator.reserve(table.connect(), 64));
+		Assert.assertEquals(64L, table.counters.get("LOG_ENTRY_SEQ").longValue());
+		Assert.assertEquals(65, allocator.reserve(table.connect(), 64));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReserveNothing() throws Exception {
+		new SequenceBlockAllocator("LOG_ENTRY_SEQ").reserve(new SequenceTable().connect(), 0);
+	}
+
+}
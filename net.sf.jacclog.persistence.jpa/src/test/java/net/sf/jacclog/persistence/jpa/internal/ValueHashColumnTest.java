@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.persistence.jpa.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for adding the column of the value hashes to the tables of former versions.
+ */
+public class ValueHashColumnTest {
+
+	/**
+	 * Connection to an in-memory catalog which stores identifiers in upper case, like H2, and records the executed
+	 * statements
+	 */
+	private static final class Catalog implements InvocationHandler {
+
+		private final List<String> statements = new ArrayList<String>();
+
+		private final Map<String, Set<String>> tables = new HashMap<String, Set<String>>();
+
+		private void create(final String table, final String... columns) {
+			final Set<String> names = new HashSet<String>();
+			for (final String column : columns) {
+				names.add(column.toUpperCase());
+			}
+			tables.put(table.toUpperCase(), names);
+		}
+
+		private Connection connect() {
+			return proxy(Connection.class, this);
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) {
+			if ("getMetaData".equals(method.getName())) {
+				return metaData();
+			} else if ("createStatement".equals(method.getName())) {
+				return statement();
+			}
+			return null;
+		}
+
+		private DatabaseMetaData metaData() {
+			return proxy(DatabaseMetaData.class, new InvocationHandler() {
+				@Override
+				public Object invoke(final Object proxy, final Method method, final Object[] args) {
+					final String name = method.getName();
+					if ("storesUpperCaseIdentifiers".equals(name)) {
+						return true;
+					} else if (name.startsWith("stores")) {
+						return false;
+					} else if ("getTables".equals(name)) {
+						return result(tables.containsKey(args[2]));
+					} else if ("getColumns".equals(name)) {
+						return result(tables.containsKey(args[2]) && tables.get(args[2]).contains(args[3]));
+					}
+					return null;
+				}
+			});
+		}
+
+		private <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+			return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, handler));
+		}
+
+		private ResultSet result(final boolean found) {
+			return proxy(ResultSet.class, new InvocationHandler() {
+				private boolean read;
+
+				@Override
+				public Object invoke(final Object proxy, final Method method, final Object[] args) {
+					if ("next".equals(method.getName())) {
+						final boolean next = !read && found;
+						read = true;
+						return next;
+					}
+					return null;
+				}
+			});
+		}
+
+		private Statement statement() {
+			return proxy(Statement.class, new InvocationHandler() {
+				@Override
+				public Object invoke(final Object proxy, final Method method, final Object[] args) {
+					if ("executeUpdate".equals(method.getName())) {
+						final String sql = (String) args[0];
+						statements.add(sql);
+						if (sql.startsWith("ALTER TABLE request_headers ADD value_hash")) {
+							tables.get("REQUEST_HEADERS").add("VALUE_HASH");
+						}
+						return 0;
+					}
+					return null;
+				}
+			});
+		}
+
+	}
+
+	@Test
+	public void testAddToTableOfFormerVersion() throws Exception {
+		final Catalog catalog = new Catalog();
+		catalog.create("request_headers", "id", "type_id", "value", "version");
+
+		Assert.assertTrue(ValueHashColumn.addIfMissing(catalog.connect(), "request_headers",
+				"request_headers_value_hash"));
+		Assert.assertTrue(catalog.tables.get("REQUEST_HEADERS").contains("VALUE_HASH"));
+		Assert.assertEquals(2, catalog.statements.size());
+		Assert.assertEquals("CREATE INDEX request_headers_value_hash ON request_headers (value_hash)",
+				catalog.statements.get(1));
+
+		// the column is added only once
+		Assert.assertFalse(ValueHashColumn.addIfMissing(catalog.connect(), "request_headers",
+				"request_headers_value_hash"));
+		Assert.assertEquals(2, catalog.statements.size());
+	}
+
+	@Test
+	public void testExistingColumn() throws Exception {
+		final Catalog catalog = new Catalog();
+		catalog.create("request_headers", "id", "type_id", "value", "value_hash", "version");
+		Assert.assertFalse(ValueHashColumn.addIfMissing(catalog.connect(), "request_headers",
+				"request_headers_value_hash"));
+		Assert.assertTrue(catalog.statements.isEmpty());
+	}
+
+	@Test
+	public void testMissingTable() throws Exception {
+		final Catalog catalog = new Catalog();
+		Assert.assertFalse(ValueHashColumn.addIfMissing(catalog.connect(), "request_headers",
+				"request_headers_value_hash"));
+		Assert.assertTrue(catalog.statements.isEmpty());
+	}
+
+}
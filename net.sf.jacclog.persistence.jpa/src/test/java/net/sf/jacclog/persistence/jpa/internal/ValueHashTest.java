@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.persistence.jpa.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the hash of header values.
+ */
+public class ValueHashTest {
+
+	private static final String USER_AGENT = "Mozilla/5.0 (X11; U; Linux i686)";
+
+	@Test
+	public void testHash() {
+		Assert.assertEquals(ValueHash.hash(USER_AGENT), ValueHash.hash(new String(USER_AGENT)));
+		Assert.assertFalse(ValueHash.hash("ab") == ValueHash.hash("ba"));
+		Assert.assertFalse(ValueHash.hash("") == ValueHash.hash("\u0000"));
+		Assert.assertFalse(ValueHash.hash("Ā") == ValueHash.hash("\u0001"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testHashNull() {
+		ValueHash.hash(null);
+	}
+
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.commands.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.analyzer.LogEntryAnalyzer;
+import net.sf.jacclog.service.importer.api.LogFileImporter;
+
+import org.apache.felix.gogo.commands.Argument;
+import org.apache.felix.gogo.commands.Command;
+import org.apache.felix.gogo.commands.Option;
+import org.apache.karaf.shell.console.OsgiCommandSupport;
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Command to benchmark the import and the analysis of log files with the services of the container. The measurements
+ * are compared with a baseline, which is written by the first run or when requested.<br>
+ * <br>
+ * The entries are imported into the repository the container is configured with, and the checkpoints of the files
+ * are discarded, so every run imports all entries again. Therefore the command refuses to run unless it is confirmed
+ * that the repository is a throwaway database. To measure a fresh embedded H2 database and to try other settings of
+ * the importer, use the standalone harness of the benchmarks module, which writes the same JSON baseline.<br>
+ * <br>
+ * <strong>Example:</strong><br>
+ * <code>bench -y -f COMBINED --from 20111001 --to 20111008 /tmp/access.log</code>
+ * 
+ * @author André Rouél
+ */
+@Command(scope = "jacclog", name = "bench", description = "Benchmarks the import and the analysis of log files and compares the results with a baseline.")
+@SuppressWarnings("PMD.SystemPrintln")
+public class BenchShellCommand extends OsgiCommandSupport {
+
+	/**
+	 * JSON file of the baseline if no other file is given
+	 */
+	private static final String DEFAULT_BASELINE = "data/jacclog/bench-baseline.json";
+
+	private LogEntryAnalyzer analyzer;
+
+	@Option(name = "-b", aliases = "--baseline", description = "The JSON file of the baseline, by default data/jacclog/bench-baseline.json", required = false, multiValued = false)
+	private String baseline;
+
+	@Option(name = "-f", aliases = "--format", description = "The log format of the files to be imported", required = true, multiValued = false, valueToShowInHelp = "COMMON, COMMON_WITH_VHOST, COMBINED")
+	private final String format = null;
+
+	@Option(name = "--from", description = "The first day of the entries to be analyzed (yyyyMMdd), by default all entries are analyzed", required = false, multiValued = false)
+	private final String from = null;
+
+	private LogFileImporter importer;
+
+	@Argument(index = 0, name = "files", description = "The files to be imported", required = true, multiValued = true)
+	private final String[] paths = null;
+
+	@Option(name = "-s", aliases = "--save", description = "Saves the results as new baseline", required = false, multiValued = false)
+	private boolean save;
+
+	@Option(name = "--to", description = "The day after the last day of the entries to be analyzed (yyyyMMdd)", required = false, multiValued = false)
+	private final String to = null;
+
+	@Option(name = "-y", aliases = "--yes", description = "Confirms that the repository is a throwaway database, which may receive the entries of every run", required = false, multiValued = false)
+	private boolean yes;
+
+	@Override
+	protected Object doExecute() throws Exception {
+		if (importer == null || analyzer == null) {
+			log.warn("No log file importer or log entry analyzer is available.");
+			return null;
+		}
+
+		if (!yes) {
+			System.out.println("Every run imports all entries of the files into the repository again. Confirm with "
+					+ "--yes that the repository is a throwaway database or use the harness of the benchmarks module.");
+			return null;
+		}
+
+		final List<File> files = new ArrayList<File>(paths.length);
+		for (final String path : paths) {
+			final File file = FileNameTranslator.translate(path);
+			if (file == null || !file.isFile()) {
+				System.out.println("The file '" + path + "' doesn't exist.");
+				return null;
+			}
+			files.add(file);
+		}
+
+		final DateTimeFormatter days = DateTimeFormat.forPattern("yyyyMMdd");
+		final DateTime start = (from != null) ? days.parseDateTime(from) : new DateTime(0);
+		final DateTime end = (to != null) ? days.parseDateTime(to) : (from != null) ? start.plusDays(1)
+				: new DateTime();
+		final Interval interval = new Interval(start, end);
+
+		System.out.println("Benchmarking the import of " + files.size() + " file(s) with format '" + format
+				+ "' and the analysis of " + interval);
+		final BenchmarkResult result = new ImportBenchmark(importer, analyzer, System.out).run(
+				LogFormat.parse(format), files, interval);
+		System.out.println();
+		System.out.print(result);
+
+		final File file = FileNameTranslator.translate((baseline != null) ? baseline : DEFAULT_BASELINE);
+		if (file.isFile()) {
+			System.out.println();
+			System.out.print(result.compare(BenchmarkResult.read(file)));
+		}
+		if (save || !file.exists()) {
+			result.write(file);
+			System.out.println("The results have been saved as baseline in '" + file.getPath() + "'.");
+		}
+		return null;
+	}
+
+	public LogEntryAnalyzer getAnalyzer() {
+		return analyzer;
+	}
+
+	public LogFileImporter getImporter() {
+		return importer;
+	}
+
+	public void setAnalyzer(final LogEntryAnalyzer analyzer) {
+		this.analyzer = analyzer;
+	}
+
+	public void setImporter(final LogFileImporter importer) {
+		this.importer = importer;
+	}
+
+}
@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.commands.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measurements of one run of the import and analysis benchmark, which can be stored as a flat JSON object and compared
+ * with a baseline of a previous run.<br>
+ * <br>
+ * The settings (like the batch size) are kept as text, the measurements as numbers. Every measurement has a direction,
+ * so the comparison can tell an improvement from a regression.
+ * 
+ * @author André Rouél
+ */
+public class BenchmarkResult {
+
+	/**
+	 * Measurements of which a higher value is better
+	 */
+	private static final String[] HIGHER_IS_BETTER = { "entriesPerSecond", "analyzedEntriesPerSecond" };
+
+	private static final Pattern MEMBER = Pattern
+			.compile("\"([^\"]+)\"\\s*:\\s*(?:\"((?:[^\"\\\\]|\\\\.)*)\"|([-+0-9.eE]+|true|false|null))");
+
+	private static String escape(final String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private static boolean isHigherBetter(final String name) {
+		for (final String measurement : HIGHER_IS_BETTER) {
+			if (measurement.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Parses a result from its JSON representation. Unknown members are kept, so baselines of older versions can still
+	 * be compared.
+	 * 
+	 * @param json
+	 *            JSON object as written by <code>toJson()</code>
+	 * @return parsed result
+	 */
+	public static BenchmarkResult parse(final String json) {
+		if (json == null) {
+			throw new IllegalArgumentException("Argument 'json' can not be null.");
+		}
+
+		final BenchmarkResult result = new BenchmarkResult();
+		final Matcher matcher = MEMBER.matcher(json);
+		while (matcher.find()) {
+			if (matcher.group(2) != null) {
+				result.setting(matcher.group(1), matcher.group(2).replace("\\\"", "\"").replace("\\\\", "\\"));
+			} else if ("true".equals(matcher.group(3)) || "false".equals(matcher.group(3))) {
+				result.setting(matcher.group(1), matcher.group(3));
+			} else if (!"null".equals(matcher.group(3))) {
+				result.measure(matcher.group(1), Double.parseDouble(matcher.group(3)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a result from a JSON file.
+	 * 
+	 * @param file
+	 *            file written by <code>write(File)</code>
+	 * @return parsed result
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static BenchmarkResult read(final File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		final StringBuilder json = new StringBuilder();
+		final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			final char[] buffer = new char[4096];
+			int read;
+			while ((read = reader.read(buffer)) > 0) {
+				json.append(buffer, 0, read);
+			}
+		} finally {
+			reader.close();
+		}
+		return parse(json.toString());
+	}
+
+	private final Map<String, Double> measurements = new LinkedHashMap<String, Double>();
+
+	private final Map<String, String> settings = new LinkedHashMap<String, String>();
+
+	/**
+	 * Renders a table of all measurements which are contained in this result and in the baseline with their relative
+	 * change. Changes of more than five percent are marked as <code>better</code> or <code>worse</code>.
+	 * 
+	 * @param baseline
+	 *            result of a previous run
+	 * @return table of the measurements
+	 */
+	public String compare(final BenchmarkResult baseline) {
+		if (baseline == null) {
+			throw new IllegalArgumentException("Argument 'baseline' can not be null.");
+		}
+
+		final StringBuilder builder = new StringBuilder();
+		builder.append(String.format(Locale.ENGLISH, "%-28s %16s %16s %9s%n", "", "baseline", "current", "change"));
+		for (final Map.Entry<String, Double> entry : measurements.entrySet()) {
+			final Double previous = baseline.measurements.get(entry.getKey());
+			if (previous == null) {
+				continue;
+			}
+			final double current = entry.getValue();
+			final double change = (previous != 0) ? (current - previous) / Math.abs(previous) * 100 : 0;
+			String verdict = "";
+			if (Math.abs(change) > 5) {
+				verdict = ((change > 0) == isHigherBetter(entry.getKey())) ? "better" : "worse";
+			}
+			builder.append(String.format(Locale.ENGLISH, "%-28s %16.2f %16.2f %+8.1f%% %s%n", entry.getKey(), previous,
+					current, change, verdict));
+		}
+		for (final Map.Entry<String, String> entry : settings.entrySet()) {
+			final String previous = baseline.settings.get(entry.getKey());
+			if (previous != null && !previous.equals(entry.getValue())) {
+				builder.append(String.format(Locale.ENGLISH, "%-28s %16s %16s%n", entry.getKey(), previous,
+						entry.getValue()));
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Gets a measurement.
+	 * 
+	 * @param name
+	 *            name of the measurement
+	 * @return value or <code>null</code> if it has not been measured
+	 */
+	public Double getMeasurement(final String name) {
+		return measurements.get(name);
+	}
+
+	/**
+	 * Gets all measurements in the order they have been taken.
+	 * 
+	 * @return unmodifiable map of the measurements by their names
+	 */
+	public Map<String, Double> getMeasurements() {
+		return Collections.unmodifiableMap(measurements);
+	}
+
+	/**
+	 * Gets a setting.
+	 * 
+	 * @param name
+	 *            name of the setting
+	 * @return value or <code>null</code> if it is not set
+	 */
+	public String getSetting(final String name) {
+		return settings.get(name);
+	}
+
+	/**
+	 * Gets all settings in the order they have been set.
+	 * 
+	 * @return unmodifiable map of the settings by their names
+	 */
+	public Map<String, String> getSettings() {
+		return Collections.unmodifiableMap(settings);
+	}
+
+	/**
+	 * Adds or replaces a measurement.
+	 * 
+	 * @param name
+	 *            name of the measurement
+	 * @param value
+	 *            measured value
+	 * @return this result
+	 */
+	public BenchmarkResult measure(final String name, final double value) {
+		if (name == null) {
+			throw new IllegalArgumentException("Argument 'name' can not be null.");
+		}
+
+		measurements.put(name, value);
+		return this;
+	}
+
+	/**
+	 * Adds or replaces a setting.
+	 * 
+	 * @param name
+	 *            name of the setting
+	 * @param value
+	 *            value of the setting
+	 * @return this result
+	 */
+	public BenchmarkResult setting(final String name, final Object value) {
+		if (name == null) {
+			throw new IllegalArgumentException("Argument 'name' can not be null.");
+		}
+
+		settings.put(name, String.valueOf(value));
+		return this;
+	}
+
+	/**
+	 * Renders the result as JSON object, the settings first.
+	 * 
+	 * @return JSON object
+	 */
+	public String toJson() {
+		final StringBuilder builder = new StringBuilder("{\n");
+		for (final Map.Entry<String, String> entry : settings.entrySet()) {
+			builder.append("  \"").append(escape(entry.getKey())).append("\": \"").append(escape(entry.getValue()))
+					.append("\",\n");
+		}
+		for (final Map.Entry<String, Double> entry : measurements.entrySet()) {
+			builder.append("  \"").append(escape(entry.getKey())).append("\": ");
+			final double value = entry.getValue();
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				builder.append("null");
+			} else {
+				builder.append(String.format(Locale.ENGLISH, "%.3f", value));
+			}
+			builder.append(",\n");
+		}
+		if (builder.length() > 2) {
+			builder.setLength(builder.length() - 2);
+			builder.append('\n');
+		}
+		return builder.append('}').toString();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		for (final Map.Entry<String, String> entry : settings.entrySet()) {
+			builder.append(String.format(Locale.ENGLISH, "%-28s %s%n", entry.getKey(), entry.getValue()));
+		}
+		for (final Map.Entry<String, Double> entry : measurements.entrySet()) {
+			builder.append(String.format(Locale.ENGLISH, "%-28s %.2f%n", entry.getKey(), entry.getValue()));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Writes the result as JSON into a file. The file will be replaced atomically if the file system allows it, so an
+	 * interrupted run does not destroy the baseline.
+	 * 
+	 * @param file
+	 *            target file
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public void write(final File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		final File directory = file.getAbsoluteFile().getParentFile();
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("The directory '" + directory.getPath() + "' can not be created.");
+		}
+		final File temporary = new File(file.getPath() + ".tmp");
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8");
+		try {
+			writer.write(toJson());
+			writer.write('\n');
+		} finally {
+			writer.close();
+		}
+		if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+			throw new IOException("The file '" + file.getPath() + "' can not be replaced.");
+		}
+	}
+
+}
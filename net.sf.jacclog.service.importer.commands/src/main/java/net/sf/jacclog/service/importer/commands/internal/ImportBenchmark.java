@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.commands.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.analyzer.LogEntryAnalyzer;
+import net.sf.jacclog.service.importer.api.LogFileImporter;
+import net.sf.jacclog.service.importer.api.LogFileImporterStatistic;
+import net.sf.jacclog.service.importer.api.LogFileImporterStatistic.Entry;
+import net.sf.jacclog.service.importer.api.LogFileImporterStatistic.Throughput;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+
+/**
+ * Benchmark of the whole pipeline: imports log files through a <code>LogFileImporter</code>, waits until all entries
+ * have been committed to the repository and analyzes them with a <code>LogEntryAnalyzer</code>.<br>
+ * <br>
+ * Besides the throughput of both phases it measures the latency of the commits, the highest usage of the heap and the
+ * time spent in garbage collection. The latencies are taken from the import metrics, which count since the start of
+ * the importer, so a benchmark should run in a fresh importer to measure only its own commits.<br>
+ * <br>
+ * The checkpoints of the files are discarded before every run, so the files are imported completely each time instead
+ * of being skipped as already imported. Therefore every run adds all entries of the files to the repository again.
+ * 
+ * @author André Rouél
+ */
+public class ImportBenchmark {
+
+	/**
+	 * Interval in milliseconds in which the progress of the import is checked
+	 */
+	private static final long POLL_INTERVAL = 100;
+
+	/**
+	 * Time in milliseconds without any progress after which the import is considered as stuck
+	 */
+	private static final long STALL_TIMEOUT = 60000;
+
+	private static final double MEGABYTE = 1024.0 * 1024.0;
+
+	private static long getCollectionCount() {
+		long count = 0;
+		for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long getCollectionTime() {
+		long time = 0;
+		for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, collector.getCollectionTime());
+		}
+		return time;
+	}
+
+	/**
+	 * Returns the sum of the highest usages of all heap pools since their last reset.
+	 */
+	private static long getHeapPeak() {
+		long peak = 0;
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	private static void resetHeapPeak() {
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private static String toPath(final File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (final IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	private final LogEntryAnalyzer analyzer;
+
+	private final LogFileImporter importer;
+
+	/**
+	 * Stream for the progress of the benchmark or <code>null</code>
+	 */
+	private final PrintStream out;
+
+	public ImportBenchmark(final LogFileImporter importer, final LogEntryAnalyzer analyzer, final PrintStream out) {
+		if (importer == null) {
+			throw new IllegalArgumentException("Argument 'importer' can not be null.");
+		}
+
+		if (analyzer == null) {
+			throw new IllegalArgumentException("Argument 'analyzer' can not be null.");
+		}
+
+		this.importer = importer;
+		this.analyzer = analyzer;
+		this.out = out;
+	}
+
+	private void print(final String message) {
+		if (out != null) {
+			out.println(message);
+		}
+	}
+
+	/**
+	 * Imports the files, analyzes the given interval and measures both phases.
+	 * 
+	 * @param format
+	 *            format of the log files
+	 * @param files
+	 *            log files to be imported
+	 * @param interval
+	 *            interval which contains the imported entries
+	 * @return measurements of the run
+	 * @throws InterruptedException
+	 *             if the thread has been interrupted while waiting for the import
+	 */
+	public BenchmarkResult run(final LogFormat format, final List<File> files, final Interval interval)
+			throws InterruptedException {
+		if (format == null) {
+			throw new IllegalArgumentException("Argument 'format' can not be null.");
+		}
+
+		if (files == null || files.isEmpty()) {
+			throw new IllegalArgumentException("Argument 'files' can not be null or empty.");
+		}
+
+		if (interval == null) {
+			throw new IllegalArgumentException("Argument 'interval' can not be null.");
+		}
+
+		final Set<String> paths = new HashSet<String>();
+		long bytes = 0;
+		for (final File file : files) {
+			paths.add(toPath(file));
+			bytes += file.length();
+		}
+
+		final LogFileImporterStatistic statistic = importer.getStatistic();
+		final Throughput throughput = statistic.getThroughput();
+		final int entriesBefore = statistic.getEntries().size();
+		final long committedBefore = throughput.getCommittedEntries();
+
+		System.gc();
+		resetHeapPeak();
+		final long collectionCount = getCollectionCount();
+		final long collectionTime = getCollectionTime();
+
+		// import
+		importer.discardCheckpoints(files);
+		final long importStart = System.nanoTime();
+		importer.importFiles(format, files);
+
+		final Set<String> read = new HashSet<String>();
+		long expected = 0;
+		long errors = 0;
+		long committed = 0;
+		long lastProgress = System.currentTimeMillis();
+		long lastReport = lastProgress;
+		boolean complete = false;
+		while (true) {
+			Thread.sleep(POLL_INTERVAL);
+
+			final List<Entry> entries = statistic.getEntries();
+			for (int i = entriesBefore; i < entries.size(); i++) {
+				final Entry entry = entries.get(i);
+				final String path = toPath(entry.getFile().getFile());
+				if (paths.contains(path) && read.add(path)) {
+					expected += entry.getCount();
+					errors += entry.getErrorCount();
+				}
+			}
+
+			final long now = System.currentTimeMillis();
+			final long current = throughput.getCommittedEntries() - committedBefore;
+			if (current != committed || !statistic.getRunningImports().isEmpty()) {
+				committed = current;
+				lastProgress = now;
+			}
+			if (read.size() == paths.size() && committed >= expected) {
+				complete = true;
+				break;
+			}
+			if (now - lastProgress > STALL_TIMEOUT) {
+				print("The import made no progress for " + STALL_TIMEOUT / 1000 + " seconds and will not be awaited.");
+				break;
+			}
+			if (now - lastReport >= 1000) {
+				print("Imported " + committed + " entries (" + read.size() + " of " + paths.size() + " files read)");
+				lastReport = now;
+			}
+		}
+		final double importSeconds = (System.nanoTime() - importStart) / 1e9;
+		print("Imported " + committed + " entries in " + String.format(Locale.ENGLISH, "%.1f", importSeconds)
+				+ " s, analyzing...");
+
+		// analysis
+		final long analysisStart = System.nanoTime();
+		analyzer.analyze(interval);
+		final double analysisSeconds = (System.nanoTime() - analysisStart) / 1e9;
+
+		final Runtime runtime = Runtime.getRuntime();
+		final BenchmarkResult result = new BenchmarkResult();
+		result.setting("timestamp", new DateTime().toString());
+		result.setting("files", paths.size());
+		result.setting("complete", complete);
+		result.setting("batchSize", throughput.getBatchSize());
+		result.setting("concurrency", throughput.getConcurrency());
+		result.setting("queueCapacity", throughput.getQueueCapacity());
+		result.setting("processors", runtime.availableProcessors());
+		result.setting("maxHeapMegabytes", Math.round(runtime.maxMemory() / MEGABYTE));
+		result.setting("javaVersion", System.getProperty("java.version"));
+		result.measure("entries", committed);
+		result.measure("errors", errors);
+		result.measure("megabytes", bytes / MEGABYTE);
+		result.measure("importSeconds", importSeconds);
+		result.measure("entriesPerSecond", committed / importSeconds);
+		result.measure("commitLatencyMeanMillis", throughput.getPersistLatencyMean());
+		result.measure("commitLatency50thMillis", throughput.getPersistLatency(50));
+		result.measure("commitLatency95thMillis", throughput.getPersistLatency(95));
+		result.measure("commitLatency99thMillis", throughput.getPersistLatency(99));
+		result.measure("analysisSeconds", analysisSeconds);
+		result.measure("analyzedEntriesPerSecond", committed / analysisSeconds);
+		result.measure("heapPeakMegabytes", getHeapPeak() / MEGABYTE);
+		result.measure("gcMillis", getCollectionTime() - collectionTime);
+		result.measure("gcCount", getCollectionCount() - collectionCount);
+		return result;
+	}
+
+}
@@ -16,13 +16,18 @@
 package net.sf.jacclog.service.importer.commands.internal;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Formatter;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.api.GlobFilter;
 import net.sf.jacclog.service.importer.api.LogFileImporter;
+import net.sf.jacclog.service.importer.api.ParseReport;
 
 import org.apache.felix.gogo.commands.Argument;
 import org.apache.felix.gogo.commands.Command;
@@ -35,7 +40,18 @@ import org.slf4j.LoggerFactory;
  * Command to import log files.
  * 
  * <strong>Example:</strong><br>
- * <code>import -f "%h %l %u %t %r %>s %b %{Referer}i %{User-agent}i %0 %0 %0" /var/httpd/access_log</code>
+ * <code>import -f "%h %l %u %t %r %>s %b %{Referer}i %{User-agent}i %0 %0 %0" /var/httpd/access_log</code><br>
+ * <br>
+ * With the option <code>--follow</code> the given files will be followed (like <code>tail -F</code>) and the given
+ * directories will be watched for new files.<br>
+ * <br>
+ * With the option <code>--dry-run</code> the files are only parsed, nothing will be stored in the repository. For every
+ * file the parse throughput, the share of entries with a value per field and the number of malformed lines are shown,
+ * so a log format can be validated against the logs of a new server.<br>
+ * <br>
+ * Directories are walked recursively and their files are queued as soon as they are found. The files of the
+ * directories can be selected by glob patterns, e.g. <code>--include "access*" --exclude "*.bz2"</code> (see
+ * <code>GlobFilter</code>).
  * 
  * @author André Rouél
  */
@@ -45,98 +61,171 @@ public class ImportShellCommand extends OsgiCommandSupport {
 
 	private static final Logger LOG = LoggerFactory.getLogger(ImportShellCommand.class);
 
-	/**
-	 * List of files to be imported
-	 */
-	private final List<File> files = new ArrayList<File>();
+	private static final double MEGABYTE = 1024.0 * 1024.0;
+
+	@Option(name = "-n", aliases = "--dry-run", description = "Only parses the files and reports the parse throughput, the fill rates of the fields and the malformed lines", required = false, multiValued = false)
+	private boolean dryRun;
+
+	@Option(name = "-x", aliases = "--exclude", description = "Glob of the files and directories which are skipped while walking a directory (repeatable)", required = false, multiValued = true)
+	private final List<String> excludes = null;
 
 	@Option(name = "-f", aliases = "--format", description = "The log format of the files to be imported", required = true, multiValued = false, valueToShowInHelp = "COMMON, COMMON_WITH_VHOST, COMBINED")
 	private final String format = null;
 
+	@Option(name = "--from-end", description = "Follows only lines which will be appended from now on", required = false, multiValued = false)
+	private boolean fromEnd;
+
+	@Option(name = "-F", aliases = "--follow", description = "Follows growing files and watches directories for new files", required = false, multiValued = false)
+	private boolean follow;
+
 	private LogFileImporter importer;
 
+	@Option(name = "-i", aliases = "--include", description = "Glob of the files which are imported while walking a directory (repeatable)", required = false, multiValued = true)
+	private final List<String> includes = null;
+
 	@Argument(index = 0, name = "files", description = "The files to be imported", required = true, multiValued = true)
 	private final String[] paths = null;
 
+	/**
+	 * Creates the filter of the files of the given directories by the include and exclude options.
+	 */
+	private GlobFilter createFilter() {
+		final List<String> in = (includes != null) ? includes : Collections.<String> emptyList();
+		final List<String> ex = (excludes != null) ? excludes : Collections.<String> emptyList();
+		return new GlobFilter(in, ex);
+	}
+
 	@Override
 	protected Object doExecute() throws Exception {
 		for (int i = 0; i < paths.length; i++) {
 			final String path = paths[i];
 			log.info("Importing path: " + path);
 		}
-		importFiles(paths);
-		System.out.println("Importing " + files.size() + " file(s) with format '" + format + "'");
-
-		startImporter();
+		if (dryRun && follow) {
+			System.out.println("The options --dry-run and --follow can not be combined.");
+		} else if (dryRun) {
+			System.out.println("Parsing file(s) with format '" + format + "'");
+
+			parseFiles(toFiles(paths));
+		} else if (follow) {
+			followFiles(paths);
+		} else {
+			startImporter(toFiles(paths));
+		}
 
 		return null;
 	}
 
+	/**
+	 * Follows files and watches directories. The existing files of a directory will be imported once.
+	 * 
+	 * @param paths
+	 *            an array of paths
+	 */
+	private void followFiles(final String[] paths) {
+		if (importer == null) {
+			log.warn("No log file importer is available.");
+			return;
+		}
+
+		final LogFormat logFormat = LogFormat.parse(format);
+		for (int i = 0; i < paths.length; i++) {
+			final File file = (paths[i] != null) ? FileNameTranslator.translate(paths[i]) : null;
+			if (file == null || !file.exists()) {
+				log.warn("Path '" + paths[i] + "' doesn't exist.");
+			} else if (file.isDirectory()) {
+				importer.importFiles(logFormat, Arrays.asList(file));
+				importer.watchDirectory(logFormat, file);
+				System.out.println("Watching directory '" + file.getPath() + "' with format '" + format + "'");
+			} else {
+				importer.followFile(logFormat, file, fromEnd);
+				System.out.println("Following file '" + file.getPath() + "' with format '" + format + "'");
+			}
+		}
+	}
+
 	public LogFileImporter getImporter() {
 		return importer;
 	}
 
 	/**
-	 * Returns true if this queue contains the specified path.
+	 * Parses the files without storing their entries and prints a report per file.
 	 * 
-	 * @param file
-	 * @return <code>true</code> if file exists in queue, otherwise <code>false</code>
+	 * @param files
+	 *            a list of files and directories
 	 */
-	private boolean hasFile(final File file) {
-		if (file == null) {
-			throw new IllegalArgumentException("Argument 'file' must be not null.");
+	private void parseFiles(final List<File> files) {
+		if (importer == null) {
+			log.warn("No log file importer is available.");
+			return;
 		}
 
-		if (!file.exists() || !file.isFile()) {
-			throw new IllegalArgumentException("Argument 'file' doesn't exist or isn't a file.");
+		long entries = 0;
+		long malformedLines = 0;
+		final List<ParseReport> reports = importer.parseFiles(LogFormat.parse(format), files, true, createFilter());
+		for (final ParseReport report : reports) {
+			entries += report.getEntries();
+			malformedLines += report.getMalformedLines();
+			renderReport(report);
 		}
+		System.out.println("Total parsed files: " + reports.size());
+		System.out.println("Total parsed entries: " + entries);
+		System.out.println("Total malformed lines: " + malformedLines);
+	}
 
-		boolean result = false;
-		for (final File f : files) {
-			try {
-				if (f.getCanonicalPath().equals(file.getCanonicalPath())) {
-					result = true;
-					break;
-				}
-			} catch (final IOException e) {
-				throw new IllegalStateException(e.getLocalizedMessage(), e);
+	/**
+	 * Prints the throughput and the malformed lines of a dry run and the fill rates of all fields which have a value
+	 * in at least one entry.
+	 */
+	private void renderReport(final ParseReport report) {
+		final StringBuilder builder = new StringBuilder();
+		final Formatter formatter = new Formatter(builder, Locale.ENGLISH);
+		formatter.format("%s%n", report.getFile().getFile().getPath());
+		formatter.format("  %-22s%12d%n", "Entries", report.getEntries());
+		final long lines = report.getEntries() + report.getMalformedLines();
+		formatter.format("  %-22s%12d  (%.2f%%)%n", "Malformed lines", report.getMalformedLines(),
+				(lines > 0) ? report.getMalformedLines() * 100.0 / lines : 0.0);
+		formatter.format("  %-22s%12.1f MB%n", "Read", report.getBytes() / MEGABYTE);
+		formatter.format("  %-22s%12.0f/s  (%.1f MB/s, %d ms)%n", "Parse throughput", report.getEntriesPerSecond(),
+				report.getRate() / MEGABYTE, report.getElapsedTime().toStandardDuration().getMillis());
+		for (final Map.Entry<String, Double> rate : report.getFillRates().entrySet()) {
+			if (rate.getValue() > 0) {
+				formatter.format("  %-22s%11.2f%%%n", rate.getKey(), rate.getValue() * 100);
 			}
 		}
+		System.out.println(builder);
+	}
 
-		return result;
+	public void setImporter(final LogFileImporter importer) {
+		this.importer = importer;
 	}
 
 	/**
-	 * Imports a list of files.
+	 * Starts the log file importer if it is available. The directories are walked recursively and their files are
+	 * queued as soon as they are found.
 	 * 
 	 * @param files
-	 *            a list of <code>File</code> objects
+	 *            a list of files and directories
 	 */
-	private void importFiles(final List<File> files) {
-		for (final File file : files) {
-			if (file != null && file.exists()) {
-				if (file.isFile()) {
-					if (hasFile(file)) {
-						log.info("The path '" + file.getPath() + "' is already in the list and will be ignored.");
-					} else {
-						this.files.add(file);
-					}
-				} else if (file.isDirectory()) {
-					importFiles(Arrays.asList(file.listFiles()));
-				}
-			} else {
-				log.warn("Path '" + file.getPath() + "' doesn't exist or isn't a file.");
-			}
+	private void startImporter(final List<File> files) {
+		if (importer != null) {
+			LOG.debug("Log file importer is available.");
+			System.out.println("Importing " + files.size() + " path(s) with format '" + format + "'");
+			final int count = importer.importFiles(LogFormat.parse(format), files, true, createFilter());
+			System.out.println("Queued " + count + " file(s) for import");
+		} else {
+			log.warn("No log file importer is available.");
 		}
 	}
 
 	/**
-	 * Imports a list of files.
+	 * Translates the given paths into files.
 	 * 
 	 * @param paths
 	 *            an array of paths
+	 * @return a list of files
 	 */
-	private void importFiles(final String[] paths) {
+	private List<File> toFiles(final String[] paths) {
 		final List<File> files = new ArrayList<File>(paths.length);
 		for (int i = 0; i < paths.length; i++) {
 			if (paths[i] != null && !paths[i].trim().isEmpty()) {
@@ -146,23 +235,7 @@ public class ImportShellCommand extends OsgiCommandSupport {
 				}
 			}
 		}
-		importFiles(files);
-	}
-
-	public void setImporter(final LogFileImporter importer) {
-		this.importer = importer;
-	}
-
-	/**
-	 * Starts the log file importer if it is available.
-	 */
-	private void startImporter() {
-		if (importer != null) {
-			LOG.debug("Log file importer is available.");
-			importer.importFiles(LogFormat.parse(format), files);
-		} else {
-			log.warn("No log file importer is available.");
-		}
+		return files;
 	}
 
 }
@@ -16,8 +16,10 @@
 package net.sf.jacclog.service.importer.commands.internal;
 
 import java.util.Formatter;
+import java.util.List;
 
 import org.apache.felix.gogo.commands.Command;
+import org.apache.felix.gogo.commands.Option;
 import org.apache.karaf.shell.console.OsgiCommandSupport;
 import org.joda.time.Duration;
 import org.joda.time.Period;
@@ -27,18 +29,46 @@ import org.joda.time.format.PeriodFormatterBuilder;
 import net.sf.jacclog.service.importer.api.LogFileImporter;
 import net.sf.jacclog.service.importer.api.LogFileImporterStatistic;
 import net.sf.jacclog.service.importer.api.LogFileImporterStatistic.Entry;
+import net.sf.jacclog.service.importer.api.LogFileImporterStatistic.Progress;
+import net.sf.jacclog.service.importer.api.LogFileImporterStatistic.Throughput;
 
 /**
- * Command to show statistics of the recently finished imports.
+ * Command to show statistics of the recently finished imports, the progress of the running imports with their
+ * estimated remaining time and the throughput of every stage of the import pipeline.<br>
+ * <br>
+ * With the option <code>--watch</code> the running imports and the throughput are refreshed every second until the
+ * command is interrupted.
  * 
  * @author André Rouél
  */
-@Command(scope = "jacclog", name = "import-stats", description = "Shows statistics of the recently finished imports.")
+@Command(scope = "jacclog", name = "import-stats", description = "Shows statistics of the recently finished and the running imports.")
 @SuppressWarnings("PMD.SystemPrintln")
 public class ImportStatsShellCommand extends OsgiCommandSupport {
 
+	/**
+	 * Escape sequence which clears the terminal and moves the cursor to the top left corner
+	 */
+	private static final String CLEAR = "\u001B[2J\u001B[H";
+
+	/**
+	 * Interval in milliseconds in which the watched statistics are refreshed
+	 */
+	private static final long REFRESH_INTERVAL = 1000;
+
+	private static String formatBytes(final double bytes) {
+		if (bytes >= 1024 * 1024) {
+			return String.format("%.1f MB", bytes / (1024 * 1024));
+		} else if (bytes >= 1024) {
+			return String.format("%.1f KB", bytes / 1024);
+		}
+		return String.format("%.0f B", bytes);
+	}
+
 	private LogFileImporter importer;
 
+	@Option(name = "-w", aliases = "--watch", description = "Refreshes the running imports and the throughput every second until interrupted", required = false, multiValued = false)
+	private boolean watch;
+
 	/**
 	 * Separator for the period formatter
 	 */
@@ -56,8 +86,22 @@ public class ImportStatsShellCommand extends OsgiCommandSupport {
 	protected Object doExecute() throws Exception {
 		if (importer != null) {
 			final LogFileImporterStatistic statistic = importer.getStatistic();
-			renderEntries(statistic);
-
+			if (watch) {
+				try {
+					while (!Thread.currentThread().isInterrupted()) {
+						System.out.print(CLEAR);
+						renderRunningImports(statistic);
+						renderThroughput(statistic.getThroughput());
+						Thread.sleep(REFRESH_INTERVAL);
+					}
+				} catch (final InterruptedException e) {
+					// the watching has been stopped by the user
+				}
+			} else {
+				renderEntries(statistic);
+				renderRunningImports(statistic);
+				renderThroughput(statistic.getThroughput());
+			}
 		} else {
 			log.warn("No log file importer is available.");
 		}
@@ -73,29 +117,33 @@ public class ImportStatsShellCommand extends OsgiCommandSupport {
 		if (statistic.getEntries() != null && !statistic.getEntries().isEmpty()) {
 			final int size = (statistic.getEntries().get(0).getFile() != null) ? statistic.getEntries().get(0)
 					.getFile().getFile().getPath().length() + 8 : 32;
-			final String format = "%-" + size + "s%10s%18s";
+			final String format = "%-" + size + "s%10s%10s%18s";
 			final StringBuilder builder = new StringBuilder();
 			builder.append('\n');
 			final Formatter formatter = new Formatter(builder);
-			formatter.format(format, "Path", "Count", "Elapsed time");
+			formatter.format(format, "Path", "Count", "Errors", "Elapsed time");
 			builder.append('\n');
 
 			String path;
 			Period p;
 			int totalCount = 0;
+			int totalErrorCount = 0;
 			Duration totalElapsedTime = new Duration(0);
 			for (final Entry entry : statistic.getEntries()) {
 				path = entry.getFile().getFile().getPath();
 				p = entry.getElapsedTime();
 				totalElapsedTime = totalElapsedTime.plus(p.toStandardDuration());
 				totalCount += entry.getCount();
-				formatter.format(format, path, entry.getCount(), p.toString(FORMATTER));
+				totalErrorCount += entry.getErrorCount();
+				formatter.format(format, path, entry.getCount(), entry.getErrorCount(), p.toString(FORMATTER));
 				builder.append('\n');
 			}
 
 			builder.append('\n');
 			builder.append("Total imported entries: " + totalCount);
 			builder.append('\n');
+			builder.append("Total rejected lines: " + totalErrorCount);
+			builder.append('\n');
 			builder.append("Total processing time: " + totalElapsedTime.toPeriod().toString(FORMATTER));
 			builder.append('\n');
 
@@ -105,6 +153,73 @@ public class ImportStatsShellCommand extends OsgiCommandSupport {
 		}
 	}
 
+	private void renderRunningImports(final LogFileImporterStatistic statistic) {
+		final List<Progress> running = statistic.getRunningImports();
+		if (running == null || running.isEmpty()) {
+			System.out.println("No imports are running.");
+			return;
+		}
+
+		final String format = "%-48s%8s%12s%12s%14s%14s";
+		final StringBuilder builder = new StringBuilder();
+		final Formatter formatter = new Formatter(builder);
+		formatter.format(format, "Running import", "Done", "Count", "Read", "Rate", "ETA");
+		builder.append('\n');
+		for (final Progress progress : running) {
+			String path = progress.getFile().getFile().getPath();
+			if (path.length() > 46) {
+				path = "..." + path.substring(path.length() - 43);
+			}
+			final String done = (progress.getSize() > 0) ? Math.min(100, progress.getPosition() * 100
+					/ progress.getSize())
+					+ "%" : "?";
+			final Period remaining = progress.getRemainingTime();
+			final String eta = (remaining != null) ? remaining.normalizedStandard().toString(FORMATTER) : "?";
+			formatter.format(format, path, done, progress.getCount(), formatBytes(progress.getPosition()),
+					formatBytes(progress.getRate()) + "/s", eta.isEmpty() ? "0s" : eta);
+			builder.append('\n');
+		}
+		System.out.println(builder);
+	}
+
+	private void renderThroughput(final Throughput throughput) {
+		if (throughput == null) {
+			return;
+		}
+
+		final StringBuilder builder = new StringBuilder();
+		final Formatter formatter = new Formatter(builder);
+		formatter.format("%-24s%14s/s  (%s total)%n", "Read", formatBytes(throughput.getReadBytesPerSecond()),
+				formatBytes(throughput.getReadBytes()));
+		formatter.format("%-24s%12.0f/s  (%d total, %d rejected)%n", "Parsed lines",
+				throughput.getParsedLinesPerSecond(), throughput.getParsedLines(), throughput.getMappingFailures());
+		final long lookups = throughput.getInternerHits() + throughput.getInternerMisses();
+		if (lookups > 0) {
+			formatter.format("%-24s%13.1f %%  (%d hits, %d misses)%n", "Interned values", throughput
+					.getInternerHits() * 100.0 / lookups, throughput.getInternerHits(), throughput.getInternerMisses());
+		}
+		final int capacity = throughput.getQueueCapacity();
+		formatter.format("%-24s%14s%n", "Queue depth", throughput.getQueueDepth()
+				+ ((capacity > 0) ? " / " + capacity : ""));
+		formatter.format("%-24s%11.1f ms  (p50 %.1f, p95 %.1f, p99 %.1f ms, %d batches)%n", "Persist latency",
+				throughput.getPersistLatencyMean(), throughput.getPersistLatency(50),
+				throughput.getPersistLatency(95), throughput.getPersistLatency(99), throughput.getPersistedBatches());
+		formatter.format("%-24s%12.0f/s  (%d total)%n", "Committed entries",
+				throughput.getCommittedEntriesPerSecond(), throughput.getCommittedEntries());
+		if (throughput.getSpoolSize() > 0) {
+			formatter.format("%-24s%14s  (replaying %.0f entries/s)%n", "Spool", formatBytes(throughput
+					.getSpoolSize()), throughput.getSpoolReplayRate());
+		}
+
+		// a full queue holds back the readers, an empty one waits for them
+		if (capacity > 0 && throughput.getQueueDepth() >= capacity * 9 / 10) {
+			builder.append("The import is bound by the repository.\n");
+		} else if (throughput.getParsedLinesPerSecond() > 0 && throughput.getQueueDepth() <= capacity / 10) {
+			builder.append("The import is bound by reading and parsing.\n");
+		}
+		System.out.println(builder);
+	}
+
 	public void setImporter(final LogFileImporter importer) {
 		this.importer = importer;
 	}
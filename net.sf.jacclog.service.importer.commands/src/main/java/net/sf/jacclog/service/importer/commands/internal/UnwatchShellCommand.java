@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.commands.internal;
+
+import java.io.File;
+
+import net.sf.jacclog.service.importer.api.LogFileImporter;
+
+import org.apache.felix.gogo.commands.Argument;
+import org.apache.felix.gogo.commands.Command;
+import org.apache.karaf.shell.console.OsgiCommandSupport;
+
+/**
+ * Command to stop following log files or watching directories.
+ * 
+ * <strong>Example:</strong><br>
+ * <code>unwatch /var/httpd/access_log</code>
+ * 
+ * @author André Rouél
+ */
+@Command(scope = "jacclog", name = "unwatch", description = "Stops following log files or watching directories")
+@SuppressWarnings("PMD.SystemPrintln")
+public class UnwatchShellCommand extends OsgiCommandSupport {
+
+	private LogFileImporter importer;
+
+	@Argument(index = 0, name = "files", description = "The followed files or watched directories", required = true, multiValued = true)
+	private final String[] paths = null;
+
+	@Override
+	protected Object doExecute() throws Exception {
+		if (importer == null) {
+			log.warn("No log file importer is available.");
+			return null;
+		}
+
+		for (int i = 0; i < paths.length; i++) {
+			final File file = FileNameTranslator.translate(paths[i]);
+			if (file != null && importer.unwatch(file)) {
+				System.out.println("Stopped watching '" + file.getPath() + "'");
+			} else {
+				System.out.println("The path '" + paths[i] + "' is not watched");
+			}
+		}
+		return null;
+	}
+
+	public LogFileImporter getImporter() {
+		return importer;
+	}
+
+	public void setImporter(final LogFileImporter importer) {
+		this.importer = importer;
+	}
+
+}
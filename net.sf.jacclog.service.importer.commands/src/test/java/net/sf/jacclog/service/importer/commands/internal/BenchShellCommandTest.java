@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.commands.internal;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jacclog.service.analyzer.LogEntryAnalyzer;
+import net.sf.jacclog.service.importer.api.LogFileImporter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the confirmation which the benchmark command requires before it imports into the repository.
+ */
+public class BenchShellCommandTest {
+
+	private static void setField(final Object command, final String name, final Object value) throws Exception {
+		final Field field = command.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(command, value);
+	}
+
+	private final List<String> calls = new ArrayList<String>();
+
+	private <T> T createProxy(final Class<T> type) {
+		return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(final Object proxy, final Method method, final Object[] args) {
+						calls.add(method.getName());
+						return null;
+					}
+				}));
+	}
+
+	@Test
+	public void testRefuseWithoutConfirmation() throws Exception {
+		final File file = File.createTempFile("access", ".log");
+		file.deleteOnExit();
+
+		final BenchShellCommand command = new BenchShellCommand();
+		command.setImporter(createProxy(LogFileImporter.class));
+		command.setAnalyzer(createProxy(LogEntryAnalyzer.class));
+		setField(command, "format", "COMMON");
+		setField(command, "paths", new String[] { file.getPath() });
+		command.doExecute();
+		Assert.assertTrue(calls.isEmpty());
+	}
+
+}
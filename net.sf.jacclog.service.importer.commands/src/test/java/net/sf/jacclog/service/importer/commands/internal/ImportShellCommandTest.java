@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.commands.internal;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.jacclog.service.importer.api.LogFileImporter;
+
+import org.apache.felix.gogo.commands.Argument;
+import org.apache.felix.gogo.commands.Option;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the options of the import command, which are set by reflection like the shell does.
+ */
+public class ImportShellCommandTest {
+
+	/**
+	 * Records the calls of the importer.
+	 */
+	private static final class RecordingHandler implements InvocationHandler {
+
+		private final List<String> calls = new ArrayList<String>();
+
+		private final List<Object[]> arguments = new ArrayList<Object[]>();
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) {
+			calls.add(method.getName());
+			arguments.add(args);
+			if (method.getReturnType() == List.class) {
+				return Collections.emptyList();
+			} else if (method.getReturnType() == int.class) {
+				return 0;
+			} else if (method.getReturnType() == boolean.class) {
+				return false;
+			}
+			return null;
+		}
+
+	}
+
+	/**
+	 * Sets the arguments of a command like the shell does.
+	 */
+	private static void setArgument(final Object command, final Object value) throws Exception {
+		for (final Field field : command.getClass().getDeclaredFields()) {
+			if (field.isAnnotationPresent(Argument.class)) {
+				field.setAccessible(true);
+				field.set(command, value);
+				return;
+			}
+		}
+		Assert.fail("The command has no argument.");
+	}
+
+	/**
+	 * Sets an option of a command like the shell does, which looks up the field by the name or an alias of its
+	 * option.
+	 */
+	private static void setOption(final Object command, final String name, final Object value) throws Exception {
+		for (final Field field : command.getClass().getDeclaredFields()) {
+			final Option option = field.getAnnotation(Option.class);
+			if (option != null && (option.name().equals(name) || Arrays.asList(option.aliases()).contains(name))) {
+				field.setAccessible(true);
+				field.set(command, value);
+				return;
+			}
+		}
+		Assert.fail("The command has no option '" + name + "'.");
+	}
+
+	private final RecordingHandler handler = new RecordingHandler();
+
+	private ImportShellCommand createCommand(final File file) throws Exception {
+		final ImportShellCommand command = new ImportShellCommand();
+		command.setImporter((LogFileImporter) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { LogFileImporter.class }, handler));
+		setOption(command, "--format", "COMMON");
+		setArgument(command, new String[] { file.getPath() });
+		return command;
+	}
+
+	private File createFile() throws Exception {
+		final File file = File.createTempFile("access", ".log");
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void testDryRunOption() throws Exception {
+		final ImportShellCommand command = createCommand(createFile());
+		setOption(command, "--dry-run", true);
+		command.doExecute();
+		Assert.assertEquals(Arrays.asList("parseFiles"), handler.calls);
+	}
+
+	@Test
+	public void testDryRunShortOption() throws Exception {
+		final ImportShellCommand command = createCommand(createFile());
+		setOption(command, "-n", true);
+		command.doExecute();
+		Assert.assertEquals(Arrays.asList("parseFiles"), handler.calls);
+	}
+
+	@Test
+	public void testFollowDirectoryOption() throws Exception {
+		final File directory = createFile().getParentFile();
+		final ImportShellCommand command = createCommand(directory);
+		setOption(command, "-F", true);
+		command.doExecute();
+		Assert.assertEquals(Arrays.asList("importFiles", "watchDirectory"), handler.calls);
+	}
+
+	@Test
+	public void testFollowFileFromEndOption() throws Exception {
+		final File file = createFile();
+		final ImportShellCommand command = createCommand(file);
+		setOption(command, "--follow", true);
+		setOption(command, "--from-end", true);
+		command.doExecute();
+		Assert.assertEquals(Arrays.asList("followFile"), handler.calls);
+		Assert.assertEquals(file, handler.arguments.get(0)[1]);
+		Assert.assertEquals(Boolean.TRUE, handler.arguments.get(0)[2]);
+	}
+
+	@Test
+	public void testFollowFileOption() throws Exception {
+		final ImportShellCommand command = createCommand(createFile());
+		setOption(command, "--follow", true);
+		command.doExecute();
+		Assert.assertEquals(Arrays.asList("followFile"), handler.calls);
+		Assert.assertEquals(Boolean.FALSE, handler.arguments.get(0)[2]);
+	}
+
+	@Test
+	public void testImportWithoutOptions() throws Exception {
+		final ImportShellCommand command = createCommand(createFile());
+		command.doExecute();
+		Assert.assertEquals(Arrays.asList("importFiles"), handler.calls);
+	}
+
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the files of a directory tree by glob patterns, which are matched against the path of a file relative to
+ * the walked directory (separated by <code>/</code>). A pattern without a <code>/</code> is matched against the name
+ * of the file only.<br>
+ * <br>
+ * The patterns support <code>*</code> (any characters except <code>/</code>), <code>**</code> (any characters
+ * including <code>/</code>), <code>?</code> (one character), <code>[abc]</code>, <code>[!abc]</code> and
+ * <code>{gz,bz2}</code>.<br>
+ * <br>
+ * A file is accepted if it matches at least one include pattern (or no include pattern is given) and none of the
+ * exclude patterns. A directory is only tested against the exclude patterns, so an excluded directory will not be
+ * walked at all.<br>
+ * <br>
+ * <strong>Example:</strong><br>
+ * <code>new GlobFilter(Arrays.asList("access.log*"), Arrays.asList("*.bz2", "old"))</code>
+ * 
+ * @author André Rouél
+ */
+public final class GlobFilter {
+
+	/**
+	 * A compiled glob
+	 */
+	private static final class Glob {
+
+		private final Pattern pattern;
+
+		/**
+		 * Indicates whether the glob is matched against the whole relative path instead of the name
+		 */
+		private final boolean path;
+
+		private Glob(final String glob) {
+			pattern = toPattern(glob);
+			path = glob.indexOf('/') >= 0;
+		}
+
+	}
+
+	/**
+	 * A filter which accepts every file and directory
+	 */
+	public static final GlobFilter ALL = new GlobFilter(Collections.<String> emptyList(),
+			Collections.<String> emptyList());
+
+	private static List<Glob> compile(final List<String> globs, final String name) {
+		if (globs == null) {
+			throw new IllegalArgumentException("Argument '" + name + "' can not be null.");
+		}
+
+		final List<Glob> patterns = new ArrayList<Glob>(globs.size());
+		for (final String glob : globs) {
+			if (glob == null || glob.isEmpty()) {
+				throw new IllegalArgumentException("Argument '" + name + "' can not contain empty patterns.");
+			}
+			patterns.add(new Glob(glob));
+		}
+		return patterns;
+	}
+
+	private static boolean matches(final List<Glob> globs, final String path) {
+		final String name = path.substring(path.lastIndexOf('/') + 1);
+		for (final Glob glob : globs) {
+			if (glob.pattern.matcher(glob.path ? path : name).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Translates a glob into a regular expression.
+	 * 
+	 * @param glob
+	 *            glob pattern
+	 * @return compiled regular expression
+	 */
+	static Pattern toPattern(final String glob) {
+		final StringBuilder regex = new StringBuilder(glob.length() * 2);
+		boolean inGroup = false;
+		boolean inClass = false;
+		for (int i = 0; i < glob.length(); i++) {
+			final char c = glob.charAt(i);
+			if (inClass) {
+				if (c == ']') {
+					inClass = false;
+				} else if (c == '\\' || c == '[') {
+					regex.append('\\');
+				}
+				regex.append(c);
+				continue;
+			}
+
+			switch (c) {
+			case '*':
+				if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+					i++;
+					if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+						// "**/" matches also no directory at all
+						i++;
+						regex.append("(?:.*/)?");
+					} else {
+						regex.append(".*");
+					}
+				} else {
+					regex.append("[^/]*");
+				}
+				break;
+			case '?':
+				regex.append("[^/]");
+				break;
+			case '[':
+				inClass = true;
+				regex.append('[');
+				if (i + 1 < glob.length() && glob.charAt(i + 1) == '!') {
+					i++;
+					regex.append('^');
+				}
+				break;
+			case '{':
+				inGroup = true;
+				regex.append("(?:");
+				break;
+			case '}':
+				if (inGroup) {
+					inGroup = false;
+					regex.append(')');
+				} else {
+					regex.append("\\}");
+				}
+				break;
+			case ',':
+				regex.append(inGroup ? "|" : ",");
+				break;
+			default:
+				if ("\\.^$+()|".indexOf(c) >= 0) {
+					regex.append('\\');
+				}
+				regex.append(c);
+			}
+		}
+
+		if (inClass || inGroup) {
+			throw new IllegalArgumentException("The glob '" + glob + "' is not valid.");
+		}
+
+		return Pattern.compile(regex.toString());
+	}
+
+	private final List<Glob> excludes;
+
+	private final List<Glob> includes;
+
+	/**
+	 * Creates a filter by include and exclude patterns.
+	 * 
+	 * @param includes
+	 *            globs of the files to be accepted (empty to accept all files)
+	 * @param excludes
+	 *            globs of the files and directories to be rejected
+	 */
+	public GlobFilter(final List<String> includes, final List<String> excludes) {
+		this.includes = compile(includes, "includes");
+		this.excludes = compile(excludes, "excludes");
+	}
+
+	/**
+	 * Tests whether a file or directory of a walked directory tree is accepted.
+	 * 
+	 * @param path
+	 *            path relative to the walked directory, separated by <code>/</code>
+	 * @param directory
+	 *            <code>true</code> if the path denotes a directory
+	 * @return <code>true</code> if the file should be imported or the directory should be walked
+	 */
+	public boolean accept(final String path, final boolean directory) {
+		if (path == null) {
+			throw new IllegalArgumentException("Argument 'path' can not be null.");
+		}
+
+		if (matches(excludes, path)) {
+			return false;
+		}
+		return directory || includes.isEmpty() || matches(includes, path);
+	}
+
+}
@@ -22,6 +22,30 @@ import net.sf.jacclog.logformat.LogFormat;
 
 public interface LogFileImporter {
 
+	/**
+	 * Discards the import checkpoints of log files, so they will be imported again from their beginning instead of
+	 * being skipped or resumed (e.g. to measure repeated imports of the same files).
+	 * 
+	 * @param files
+	 *            log files
+	 * @return number of discarded checkpoints
+	 */
+	int discardCheckpoints(final List<File> files);
+
+	/**
+	 * Follows a growing log file and imports every new line as soon as it is appended. A rotation of the file will be
+	 * detected, so the following continues with the new file.
+	 * 
+	 * @param format
+	 *            format of the log file
+	 * @param file
+	 *            log file to be followed
+	 * @param fromEnd
+	 *            <code>true</code> if the existing lines should be skipped, <code>false</code> if the whole file should
+	 *            be imported first
+	 */
+	void followFile(final LogFormat format, final File file, final boolean fromEnd);
+
 	/**
 	 * Returns statistical information about the recently finished imports.
 	 * 
@@ -45,4 +69,73 @@ public interface LogFileImporter {
 	 */
 	void importFiles(final LogFormat format, final List<File> files, final boolean recursive);
 
+	/**
+	 * Walks through a list of log files or directories with files (recursively) and queues every accepted file for
+	 * the import into a repository, as soon as it has been found. Files which are reachable by several paths or which
+	 * are already queued will be imported only once.<br>
+	 * <br>
+	 * The walk blocks while the queue of files is full, so it proceeds as fast as the files are imported.
+	 * 
+	 * @param format
+	 *            format of the log files
+	 * @param files
+	 *            list of logs
+	 * @param recursive
+	 *            <code>true</code> if subdirectories should be walked too
+	 * @param filter
+	 *            filter of the files and subdirectories of the given directories
+	 * @return number of queued files
+	 */
+	int importFiles(final LogFormat format, final List<File> files, final boolean recursive, final GlobFilter filter);
+
+	/**
+	 * Reads, tokenizes and maps log files or directories with files like an import, but only counts the entries instead
+	 * of storing them in a repository (a dry run). It can be used to validate a log format against the logs of a server
+	 * and to measure the parser without the repository. The files are parsed one after another within the calling
+	 * thread.
+	 * 
+	 * @param format
+	 *            format of the log files
+	 * @param files
+	 *            list of logs
+	 * @return one report per parsed file
+	 */
+	List<ParseReport> parseFiles(final LogFormat format, final List<File> files);
+
+	/**
+	 * Parses log files or directories with files (recursively) like <code>parseFiles(LogFormat, List)</code>, but
+	 * only the files which are accepted by the given filter.
+	 * 
+	 * @param format
+	 *            format of the log files
+	 * @param files
+	 *            list of logs
+	 * @param recursive
+	 *            <code>true</code> if subdirectories should be walked too
+	 * @param filter
+	 *            filter of the files and subdirectories of the given directories
+	 * @return one report per parsed file
+	 */
+	List<ParseReport> parseFiles(final LogFormat format, final List<File> files, final boolean recursive,
+			final GlobFilter filter);
+
+	/**
+	 * Stops following a log file or watching a directory.
+	 * 
+	 * @param file
+	 *            followed file or watched directory
+	 * @return <code>true</code> if the file was followed or the directory was watched
+	 */
+	boolean unwatch(final File file);
+
+	/**
+	 * Watches a directory and imports every new log file which appears within it.
+	 * 
+	 * @param format
+	 *            format of the new log files
+	 * @param directory
+	 *            directory to be watched
+	 */
+	void watchDirectory(final LogFormat format, final File directory);
+
 }
@@ -27,6 +27,7 @@ public interface LogFileImporterStatistic {
 	public static class Entry {
 
 		private final int count;
+		private final int errorCount;
 		private final LogFile file;
 		private final Period elapsedTime;
 
@@ -41,7 +42,24 @@ public interface LogFileImporterStatistic {
 		 *            Processing duration in milliseconds
 		 */
 		public Entry(final LogFile file, final int count, final long duration) {
+			this(file, count, 0, duration);
+		}
+
+		/**
+		 * Constructs a statistical entry.
+		 * 
+		 * @param file
+		 *            Log file
+		 * @param count
+		 *            Count of processed entries
+		 * @param errorCount
+		 *            Count of lines which could not be interpreted
+		 * @param duration
+		 *            Processing duration in milliseconds
+		 */
+		public Entry(final LogFile file, final int count, final int errorCount, final long duration) {
 			this.count = count;
+			this.errorCount = errorCount;
 			this.file = file;
 			elapsedTime = new Period(duration);
 		}
@@ -55,6 +73,15 @@ public interface LogFileImporterStatistic {
 			return count;
 		}
 
+		/**
+		 * Returns the count of lines which could not be interpreted and were written into the quarantine file.
+		 * 
+		 * @return count of rejected lines
+		 */
+		public int getErrorCount() {
+			return errorCount;
+		}
+
 		/**
 		 * Returns the processing duration as period.
 		 * 
@@ -70,6 +97,195 @@ public interface LogFileImporterStatistic {
 
 	}
 
+	/**
+	 * Progress of a running import of a log file.
+	 */
+	public interface Progress {
+
+		/**
+		 * Returns the count of log entries which have been read so far.
+		 * 
+		 * @return count of read log entries
+		 */
+		int getCount();
+
+		/**
+		 * Returns the time since the import has been started.
+		 * 
+		 * @return elapsed time
+		 */
+		Period getElapsedTime();
+
+		LogFile getFile();
+
+		/**
+		 * Returns the number of bytes which have been read per second since the import has been started.
+		 * 
+		 * @return bytes per second
+		 */
+		double getRate();
+
+		/**
+		 * Returns the estimated time until the import is finished, based on the rate so far.
+		 * 
+		 * @return remaining time or <code>null</code> if it can not be estimated (e.g. the size is unknown)
+		 */
+		Period getRemainingTime();
+
+		/**
+		 * Returns the number of bytes of the log file which have been read so far (including the bytes which were
+		 * imported before a resumed import started).
+		 * 
+		 * @return position in bytes
+		 */
+		long getPosition();
+
+		/**
+		 * Returns the size of the log file.
+		 * 
+		 * @return size in bytes or <code>-1</code> if the size of the content is unknown (e.g. a compressed file)
+		 */
+		long getSize();
+
+	}
+
+	/**
+	 * Throughput of the stages of the import pipeline, summed up over all imports. The rates are moving averages over
+	 * about one minute.
+	 */
+	public interface Throughput {
+
+		/**
+		 * Returns the number of entries which are currently written into the repository at once.
+		 * 
+		 * @return size of a batch
+		 */
+		int getBatchSize();
+
+		/**
+		 * Returns the number of batches which are currently allowed to be written concurrently.
+		 * 
+		 * @return number of concurrent writes
+		 */
+		int getConcurrency();
+
+		/**
+		 * Returns the number of entries which have been stored in the repository (including replayed entries).
+		 * 
+		 * @return count of committed entries
+		 */
+		long getCommittedEntries();
+
+		/**
+		 * Returns the number of entries which are stored in the repository per second.
+		 * 
+		 * @return entries per second
+		 */
+		double getCommittedEntriesPerSecond();
+
+		/**
+		 * Returns the number of values (e.g. remote hosts, referers or user agents) which have been found in the pool
+		 * of recurring values, so no new string had to be decoded.
+		 * 
+		 * @return count of hits
+		 */
+		long getInternerHits();
+
+		/**
+		 * Returns the number of values which have not been found in the pool of recurring values.
+		 * 
+		 * @return count of misses
+		 */
+		long getInternerMisses();
+
+		/**
+		 * Returns the number of lines which could not be interpreted.
+		 * 
+		 * @return count of rejected lines
+		 */
+		long getMappingFailures();
+
+		/**
+		 * Returns the number of lines which have been parsed into log entries.
+		 * 
+		 * @return count of parsed lines
+		 */
+		long getParsedLines();
+
+		/**
+		 * Returns the number of lines which are parsed per second.
+		 * 
+		 * @return lines per second
+		 */
+		double getParsedLinesPerSecond();
+
+		/**
+		 * Returns the number of batches which have been written into the repository (including failed writes).
+		 * 
+		 * @return count of batches
+		 */
+		long getPersistedBatches();
+
+		/**
+		 * Returns the latency of a write of a batch, which is not exceeded by the given percentage of the writes.
+		 * 
+		 * @param percentile
+		 *            percentage between <code>0</code> and <code>100</code>
+		 * @return latency in milliseconds
+		 */
+		double getPersistLatency(double percentile);
+
+		/**
+		 * Returns the average latency of a write of a batch.
+		 * 
+		 * @return latency in milliseconds
+		 */
+		double getPersistLatencyMean();
+
+		/**
+		 * Returns the number of entries which wait within the queue for the persisters.
+		 * 
+		 * @return count of queued entries
+		 */
+		int getQueueDepth();
+
+		/**
+		 * Returns the number of entries the queue can hold.
+		 * 
+		 * @return capacity or <code>-1</code> if unknown
+		 */
+		int getQueueCapacity();
+
+		/**
+		 * Returns the number of bytes which have been read from log files.
+		 * 
+		 * @return count of bytes
+		 */
+		long getReadBytes();
+
+		/**
+		 * Returns the number of bytes which are read from log files per second.
+		 * 
+		 * @return bytes per second
+		 */
+		double getReadBytesPerSecond();
+
+		/**
+		 * Returns the size of the spool of the batches, which could not be stored in the repository.
+		 * 
+		 * @return size in bytes
+		 */
+		long getSpoolSize();
+
+		/**
+		 * Returns the number of spooled entries which have been stored in the repository per second by the last replay.
+		 * 
+		 * @return entries per second
+		 */
+		double getSpoolReplayRate();
+
+	}
+
 	void addEntry(final Entry entry);
 
 	List<Entry> getEntries();
@@ -78,4 +294,18 @@ public interface LogFileImporterStatistic {
 
 	List<LogFile> getImportedLogFiles();
 
+	/**
+	 * Returns the progress of the imports which are currently running.
+	 * 
+	 * @return progress per running import
+	 */
+	List<Progress> getRunningImports();
+
+	/**
+	 * Returns the throughput of the stages of the import pipeline.
+	 * 
+	 * @return throughput
+	 */
+	Throughput getThroughput();
+
 }
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.api;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.joda.time.Period;
+
+/**
+ * Result of a dry run of a log file, which has been read, tokenized and mapped like an import, but whose entries have
+ * only been counted instead of being stored in the repository.<br>
+ * <br>
+ * Besides the throughput of the parser it reports how many entries have a value for each field, so a
+ * <code>LogFormat</code> can be validated against the logs of a server before they are imported.
+ * 
+ * @author André Rouél
+ */
+public class ParseReport {
+
+	private final long bytes;
+
+	private final long duration;
+
+	private final long entries;
+
+	private final LogFile file;
+
+	private final Map<String, Long> filled;
+
+	private final int malformedLines;
+
+	/**
+	 * Constructs a report of a dry run.
+	 * 
+	 * @param file
+	 *            Log file
+	 * @param entries
+	 *            Count of mapped entries
+	 * @param malformedLines
+	 *            Count of lines which could not be interpreted
+	 * @param bytes
+	 *            Count of read bytes (of the decompressed content)
+	 * @param duration
+	 *            Processing duration in milliseconds
+	 * @param filled
+	 *            Count of entries with a value by field name
+	 */
+	public ParseReport(final LogFile file, final long entries, final int malformedLines, final long bytes,
+			final long duration, final Map<String, Long> filled) {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		if (filled == null) {
+			throw new IllegalArgumentException("Argument 'filled' can not be null.");
+		}
+
+		this.file = file;
+		this.entries = entries;
+		this.malformedLines = malformedLines;
+		this.bytes = bytes;
+		this.duration = duration;
+		this.filled = Collections.unmodifiableMap(new LinkedHashMap<String, Long>(filled));
+	}
+
+	/**
+	 * Returns the count of read bytes. For compressed files the bytes of the decompressed content are counted.
+	 * 
+	 * @return count of read bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the processing duration as period.
+	 * 
+	 * @return processing duration
+	 */
+	public Period getElapsedTime() {
+		return new Period(duration);
+	}
+
+	/**
+	 * Returns the count of mapped log entries.
+	 * 
+	 * @return count of log entries
+	 */
+	public long getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Returns the number of mapped entries per second.
+	 * 
+	 * @return entries per second
+	 */
+	public double getEntriesPerSecond() {
+		return (duration > 0) ? entries * 1000.0 / duration : 0;
+	}
+
+	public LogFile getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the share of the entries which have a value for each field, in the order of the fields of a log entry
+	 * followed by the request and response headers.
+	 * 
+	 * @return fill rates between <code>0</code> and <code>1</code> by field name
+	 */
+	public Map<String, Double> getFillRates() {
+		final Map<String, Double> rates = new LinkedHashMap<String, Double>();
+		for (final Map.Entry<String, Long> entry : filled.entrySet()) {
+			rates.put(entry.getKey(), (entries > 0) ? entry.getValue().doubleValue() / entries : 0);
+		}
+		return rates;
+	}
+
+	/**
+	 * Returns the count of entries which have a value for each field.
+	 * 
+	 * @return unmodifiable map of counts by field name
+	 */
+	public Map<String, Long> getFilled() {
+		return filled;
+	}
+
+	/**
+	 * Returns the count of lines which could not be interpreted.
+	 * 
+	 * @return count of malformed lines
+	 */
+	public int getMalformedLines() {
+		return malformedLines;
+	}
+
+	/**
+	 * Returns the number of read bytes per second.
+	 * 
+	 * @return bytes per second
+	 */
+	public double getRate() {
+		return (duration > 0) ? bytes * 1000.0 / duration : 0;
+	}
+
+}
@@ -21,7 +21,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 import net.sf.jacclog.api.domain.ReadonlyLogEntry;
 import net.sf.jacclog.service.importer.api.LogFile;
-import net.sf.jacclog.service.importer.internal.queue.LogEntryQueue;
+import net.sf.jacclog.service.importer.api.queue.LogEntryQueue;
 import net.sf.jacclog.service.repository.LogEntryRepositoryService;
 import net.sf.jacclog.service.repository.domain.PersistableLogEntry;
 import net.sf.jacclog.util.observer.CurrentElementCounter;
@@ -38,7 +38,7 @@ public abstract class AbstractLogEntryImportService implements
 	/**
 	 * Queue of entries to persist within the repository services
 	 */
-	private final net.sf.jacclog.service.importer.api.queue.LogEntryQueue<ReadonlyLogEntry> queue;
+	private final LogEntryQueue<ReadonlyLogEntry> queue;
 
 	/**
 	 * Default queue capacity
@@ -46,11 +46,11 @@ public abstract class AbstractLogEntryImportService implements
 	private static final int DEFAULT_CAPACITY = 10000;
 
 	public AbstractLogEntryImportService(final LogEntryRepositoryService<PersistableLogEntry> service) {
-		this(service, new LogEntryQueue(DEFAULT_CAPACITY));
+		this(service, new net.sf.jacclog.service.importer.internal.queue.LogEntryQueue(DEFAULT_CAPACITY));
 	}
 
 	public AbstractLogEntryImportService(final LogEntryRepositoryService<PersistableLogEntry> service,
-			final LogEntryQueue queue) {
+			final LogEntryQueue<ReadonlyLogEntry> queue) {
 		if (service == null) {
 			throw new IllegalArgumentException("Argument 'service' can not be null.");
 		}
@@ -88,7 +88,7 @@ public abstract class AbstractLogEntryImportService implements
 	}
 
 	@Override
-	public net.sf.jacclog.service.importer.api.queue.LogEntryQueue<ReadonlyLogEntry> getQueue() {
+	public LogEntryQueue<ReadonlyLogEntry> getQueue() {
 		return queue;
 	}
 
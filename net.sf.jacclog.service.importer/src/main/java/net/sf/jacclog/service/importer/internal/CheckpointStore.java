@@ -0,0 +1,325 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the import checkpoints of log files as manifest files within a directory (one file per log file).<br>
+ * <br>
+ * Besides the manifest, which is named by the path of a log file, every checkpoint is registered by the fingerprint
+ * of the content of its file. So a file which has already been imported under another name (e.g. a rotated or copied
+ * log) or which has left the queue under its former name will be recognized before it is read. It will be skipped if
+ * its content is identical and resumed if it has grown since.<br>
+ * <br>
+ * A manifest will be written into a temporary file, which is synchronized with the storage device and renamed
+ * afterwards, so a crash while writing never leaves a damaged manifest behind. If a platform can not rename onto an
+ * existing file, the previous manifest will be kept as backup until the new one is in place and will be read as long
+ * as the manifest is missing.
+ * 
+ * @author André Rouél
+ */
+public class CheckpointStore {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CheckpointStore.class);
+
+	private static final String SUFFIX = ".checkpoint";
+
+	/**
+	 * Suffix of the previous manifest while it will be replaced
+	 */
+	private static final String SUFFIX_BACKUP = ".bak";
+
+	/**
+	 * Suffix of the registered fingerprints of the imported contents
+	 */
+	private static final String SUFFIX_FINGERPRINT = ".fingerprint";
+
+	/**
+	 * Returns the file which keeps the previous content of a manifest while it will be replaced.
+	 */
+	private static File backup(final File manifest) {
+		return new File(manifest.getPath() + SUFFIX_BACKUP);
+	}
+
+	/**
+	 * Deletes a manifest and its backup.
+	 * 
+	 * @return <code>true</code> if a file has been deleted
+	 */
+	private static boolean delete(final File manifest, final File backup) {
+		final boolean deleted = manifest.delete();
+		return backup.delete() || deleted;
+	}
+
+	/**
+	 * Reads a checkpoint from a manifest or, if the manifest is missing because a replacement has been interrupted,
+	 * from its backup.
+	 * 
+	 * @return checkpoint or <code>null</code> if the manifest does not exist or is not valid
+	 */
+	private static ImportCheckpoint read(final File file) {
+		File manifest = file;
+		if (!manifest.isFile()) {
+			manifest = backup(file);
+			if (!manifest.isFile()) {
+				return null;
+			}
+		}
+
+		final Properties properties = new Properties();
+		try {
+			final InputStream in = new FileInputStream(manifest);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			LOG.warn(manifest.getPath() + " " + e.getLocalizedMessage());
+			return null;
+		}
+		return ImportCheckpoint.fromProperties(properties);
+	}
+
+	private final File directory;
+
+	/**
+	 * Creates a store which keeps its manifests within the given directory. The directory will be created if
+	 * necessary.
+	 * 
+	 * @param directory
+	 *            directory of the manifests
+	 */
+	public CheckpointStore(final File directory) {
+		if (directory == null) {
+			throw new IllegalArgumentException("Argument 'directory' can not be null.");
+		}
+
+		this.directory = directory;
+	}
+
+	/**
+	 * Starts or resumes tracking the import of a log file. If a checkpoint of the same file exists, the tracking
+	 * continues at its offset, otherwise at the beginning of the file.
+	 * 
+	 * @param file
+	 *            log file
+	 * @return progress of the import
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public ImportProgress begin(final File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		final ImportCheckpoint checkpoint = load(file);
+		if (checkpoint != null && checkpoint.matches(file)) {
+			LOG.info("Resuming import of " + checkpoint);
+			return new ImportProgress(this, ImportCheckpoint.create(file, checkpoint.getOffset(), checkpoint
+					.getLines(), checkpoint.isUpToDate(file)));
+		}
+
+		final ImportCheckpoint known = findByContent(file);
+		if (known != null) {
+			final boolean complete = known.isComplete() && file.length() == known.getSize();
+			LOG.info("The file '" + file.getPath() + "' has the same content as '" + known.getPath() + "', "
+					+ (complete ? "which has already been imported completely." : "resuming import of " + known));
+			final ImportCheckpoint resumed = ImportCheckpoint.create(file, known.getOffset(), known.getLines(),
+					complete);
+			if (complete) {
+				// the next import of this path will be recognized by its manifest
+				save(resumed);
+			}
+			return new ImportProgress(this, resumed);
+		}
+		return new ImportProgress(this, ImportCheckpoint.create(file, 0, 0, false));
+	}
+
+	/**
+	 * Deletes the manifest of a log file.
+	 * 
+	 * @param file
+	 *            log file
+	 * @return <code>true</code> if a manifest has been deleted
+	 */
+	public boolean delete(final File file) {
+		final File manifest = manifest(file);
+		return delete(manifest, backup(manifest));
+	}
+
+	/**
+	 * Deletes the manifest of a log file and the registration of its content, so the file will be imported from its
+	 * beginning next time, even if the same content has already been imported under another name.
+	 * 
+	 * @param file
+	 *            log file
+	 * @return <code>true</code> if a manifest or a registration has been deleted
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public boolean discard(final File file) throws IOException {
+		boolean deleted = delete(file);
+		final long size = file.length();
+		if (size > 0) {
+			final File registration = new File(directory, ImportCheckpoint.fingerprint(file, size)
+					+ SUFFIX_FINGERPRINT);
+			deleted |= delete(registration, backup(registration));
+		}
+		return deleted;
+	}
+
+	/**
+	 * Searches the checkpoint of another file whose content matches the beginning of the given file. The checkpoints
+	 * are registered by the fingerprint of the first bytes of their files, the size and the fingerprint of the last
+	 * bytes are compared afterwards.<br>
+	 * <br>
+	 * A file which was smaller than <code>ImportCheckpoint.FINGERPRINT_SIZE</code> when it was imported will only be
+	 * recognized as long as it does not grow.
+	 * 
+	 * @param file
+	 *            log file
+	 * @return checkpoint of a file with the same content or <code>null</code> if the content is unknown
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public ImportCheckpoint findByContent(final File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		final long size = file.length();
+		if (size == 0) {
+			return null;
+		}
+
+		final ImportCheckpoint known = read(new File(directory, ImportCheckpoint.fingerprint(file, size)
+				+ SUFFIX_FINGERPRINT));
+		if (known == null || known.getPath().equals(file.getCanonicalPath()) || !known.matchesContent(file)) {
+			return null;
+		}
+		return known;
+	}
+
+	/**
+	 * Gets the directory of the manifests.
+	 * 
+	 * @return directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Loads the checkpoint of a log file.
+	 * 
+	 * @param file
+	 *            log file
+	 * @return checkpoint or <code>null</code> if no (valid) manifest exists
+	 */
+	public ImportCheckpoint load(final File file) {
+		return read(manifest(file));
+	}
+
+	/**
+	 * Returns the manifest file of a log file, which is named by the digest of its canonical path.
+	 */
+	private File manifest(final File file) {
+		String path;
+		try {
+			path = file.getCanonicalPath();
+		} catch (final IOException e) {
+			path = file.getAbsolutePath();
+		}
+
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("MD5");
+			return new File(directory, ImportCheckpoint.toHex(digest.digest(path.getBytes("UTF-8"))) + SUFFIX);
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e.getLocalizedMessage(), e);
+		} catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.getLocalizedMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes the checkpoint of a log file and registers it by the fingerprint of the content of the file.
+	 * 
+	 * @param checkpoint
+	 *            checkpoint
+	 * @throws IOException
+	 *             if the manifest can not be written
+	 */
+	public void save(final ImportCheckpoint checkpoint) throws IOException {
+		if (checkpoint == null) {
+			throw new IllegalArgumentException("Argument 'checkpoint' can not be null.");
+		}
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("The directory '" + directory.getPath() + "' can not be created.");
+		}
+
+		write(manifest(new File(checkpoint.getPath())), checkpoint);
+		if (checkpoint.getTail() != null && checkpoint.getSize() > 0) {
+			write(new File(directory, checkpoint.getFingerprint() + SUFFIX_FINGERPRINT), checkpoint);
+		}
+	}
+
+	/**
+	 * Writes a checkpoint into a temporary file, synchronizes it with the storage device and renames it afterwards.
+	 */
+	private void write(final File manifest, final ImportCheckpoint checkpoint) throws IOException {
+		final File temp = new File(directory, manifest.getName() + ".tmp");
+		final FileOutputStream out = new FileOutputStream(temp);
+		try {
+			checkpoint.toProperties().store(out, "jacclog import checkpoint");
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+
+		if (temp.renameTo(manifest)) {
+			return;
+		}
+
+		// File.renameTo does not replace an existing file on every platform, so the previous manifest will be moved
+		// aside and only be deleted when the new one is in place
+		final File backup = backup(manifest);
+		if ((backup.exists() && !backup.delete()) || (manifest.exists() && !manifest.renameTo(backup))) {
+			temp.delete();
+			throw new IOException("The manifest '" + manifest.getPath() + "' can not be replaced.");
+		}
+		if (!temp.renameTo(manifest)) {
+			backup.renameTo(manifest);
+			temp.delete();
+			throw new IOException("The manifest '" + manifest.getPath() + "' can not be written.");
+		}
+		backup.delete();
+	}
+
+}
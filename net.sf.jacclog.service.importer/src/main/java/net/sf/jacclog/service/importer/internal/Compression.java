@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+/**
+ * Compression formats of log files which can be imported as stream.<br>
+ * <br>
+ * The format will be detected by the magic bytes at the beginning of a file, so rotated logs are recognized
+ * independently of their file name.
+ * 
+ * @author André Rouél
+ */
+public enum Compression {
+
+	BZIP2(new byte[] { 'B', 'Z', 'h' }) {
+		@Override
+		public InputStream open(final File file, final ExecutorService executor) throws IOException {
+			final InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+			try {
+				return new ReadAheadInputStream(new BZip2CompressorInputStream(in, true));
+			} catch (final IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+	},
+
+	GZIP(new byte[] { 0x1f, (byte) 0x8b }) {
+		@Override
+		public InputStream open(final File file, final ExecutorService executor) throws IOException {
+			if (executor != null) {
+				return new ReadAheadInputStream(new ParallelGzipInputStream(file, executor, Runtime.getRuntime()
+						.availableProcessors()));
+			}
+
+			final InputStream in = new FileInputStream(file);
+			try {
+				return new ReadAheadInputStream(new GZIPInputStream(in, BUFFER_SIZE));
+			} catch (final IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+	},
+
+	NONE(new byte[0]) {
+		@Override
+		public InputStream open(final File file, final ExecutorService executor) throws IOException {
+			return new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+		}
+	};
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Detects the compression of a file by its magic bytes.
+	 * 
+	 * @param file
+	 *            log file
+	 * @return compression format or <code>NONE</code> if the file is not compressed
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static Compression detect(final File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		final byte[] header = new byte[3];
+		int length = 0;
+		final InputStream in = new FileInputStream(file);
+		try {
+			int read;
+			while (length < header.length && (read = in.read(header, length, header.length - length)) != -1) {
+				length += read;
+			}
+		} finally {
+			in.close();
+		}
+
+		for (final Compression compression : values()) {
+			if (compression != NONE && compression.matches(header, length)) {
+				return compression;
+			}
+		}
+		return NONE;
+	}
+
+	private final byte[] magic;
+
+	private Compression(final byte[] magic) {
+		this.magic = magic;
+	}
+
+	private boolean matches(final byte[] header, final int length) {
+		if (length < magic.length) {
+			return false;
+		}
+		for (int i = 0; i < magic.length; i++) {
+			if (header[i] != magic[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Opens a stream which delivers the decompressed content of the given file. The decompression runs within a
+	 * separate thread and fills a buffer ahead of the consumer.
+	 * 
+	 * @param file
+	 *            log file
+	 * @param executor
+	 *            executor to decompress independent parts of a file in parallel or <code>null</code> to decompress
+	 *            sequentially
+	 * @return decompressed stream
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public abstract InputStream open(final File file, final ExecutorService executor) throws IOException;
+
+}
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.api.domain.http.ReadableHttpRequestHeaderField;
+import net.sf.jacclog.api.domain.http.ReadableHttpResponseHeaderField;
+
+/**
+ * A queue which takes the entries of the readers in place of the queue of the persisters during a dry run. It never
+ * holds an entry, but counts the entries and the values of their fields, so the parser can be measured without the
+ * repository.<br>
+ * <br>
+ * The chunks of a large file are parsed in parallel, therefore every thread counts into its own counters, which are
+ * summed up when the counts are requested. The counts should be requested after all readers have finished.
+ * 
+ * @author André Rouél
+ */
+public final class CountingLogEntrySink extends AbstractQueue<ReadonlyLogEntry> implements
+		BlockingQueue<ReadonlyLogEntry> {
+
+	/**
+	 * Counters of a single thread
+	 */
+	private static final class Counts {
+
+		private long entries;
+
+		private final long[] fields = new long[FIELDS.length];
+
+		private final Map<String, long[]> requestHeaders = new LinkedHashMap<String, long[]>();
+
+		private final Map<String, long[]> responseHeaders = new LinkedHashMap<String, long[]>();
+
+	}
+
+	/**
+	 * Names of the fields of a log entry in the order of <code>count</code>
+	 */
+	private static final String[] FIELDS = { "remoteHost", "remoteIpAddress", "remoteLogname", "remoteUser",
+			"requestTime", "requestMethod", "urlPath", "queryString", "requestProtocol", "statusCode",
+			"lastStatusCode", "responseInBytes", "bytesReceived", "bytesSent", "requestInMillis", "serverName",
+			"serverPort", "localIpAddress", "filename", "processId", "connectionStatus" };
+
+	private static void increment(final Map<String, long[]> counts, final String name) {
+		final long[] count = counts.get(name);
+		if (count == null) {
+			counts.put(name, new long[] { 1 });
+		} else {
+			count[0]++;
+		}
+	}
+
+	private static boolean isFilled(final Object value) {
+		return value != null && !(value instanceof String && isEmpty((String) value));
+	}
+
+	/**
+	 * Returns <code>true</code> if the value is empty or the dash which a server writes for a missing value.
+	 */
+	private static boolean isEmpty(final String value) {
+		return value.isEmpty() || "-".equals(value);
+	}
+
+	private static void sum(final Map<String, Long> total, final String prefix, final Map<String, long[]> counts) {
+		for (final Map.Entry<String, long[]> entry : counts.entrySet()) {
+			final String name = prefix + entry.getKey();
+			final Long count = total.get(name);
+			total.put(name, ((count != null) ? count : 0) + entry.getValue()[0]);
+		}
+	}
+
+	/**
+	 * Counters of all threads which have put entries into this sink
+	 */
+	private final List<Counts> all = new CopyOnWriteArrayList<Counts>();
+
+	private final ThreadLocal<Counts> counts = new ThreadLocal<Counts>() {
+		@Override
+		protected Counts initialValue() {
+			final Counts result = new Counts();
+			all.add(result);
+			return result;
+		}
+	};
+
+	private void count(final ReadonlyLogEntry entry) {
+		final Counts c = counts.get();
+		c.entries++;
+		final Object[] values = { entry.getRemoteHost(), entry.getRemoteIpAddress(), entry.getRemoteLogname(),
+				entry.getRemoteUser(), entry.getRequestTime(), entry.getRequestMethod(), entry.getUrlPath(),
+				entry.getQueryString(), entry.getRequestProtocol(), entry.getStatusCode(), entry.getLastStatusCode(),
+				entry.getResponseInBytes(), entry.getBytesReceived(), entry.getBytesSent(),
+				entry.getRequestInMillis(), entry.getServerName(), entry.getServerPort(), entry.getLocalIpAddress(),
+				entry.getFilename(), entry.getProcessId(), entry.getConnectionStatus() };
+		for (int i = 0; i < values.length; i++) {
+			if (isFilled(values[i])) {
+				c.fields[i]++;
+			}
+		}
+
+		final Set<ReadableHttpRequestHeaderField> requestHeaders = entry.getRequestHeaders();
+		if (requestHeaders != null) {
+			for (final ReadableHttpRequestHeaderField header : requestHeaders) {
+				if (header.getType() != null && isFilled(header.getValue())) {
+					increment(c.requestHeaders, header.getType().getName());
+				}
+			}
+		}
+		final Set<ReadableHttpResponseHeaderField> responseHeaders = entry.getResponseHeaders();
+		if (responseHeaders != null) {
+			for (final ReadableHttpResponseHeaderField header : responseHeaders) {
+				if (header.getType() != null && isFilled(header.getValue())) {
+					increment(c.responseHeaders, header.getType().getName());
+				}
+			}
+		}
+	}
+
+	@Override
+	public int drainTo(final Collection<? super ReadonlyLogEntry> c) {
+		return 0;
+	}
+
+	@Override
+	public int drainTo(final Collection<? super ReadonlyLogEntry> c, final int maxElements) {
+		return 0;
+	}
+
+	/**
+	 * Gets the number of entries which have been put into this sink.
+	 * 
+	 * @return number of entries
+	 */
+	public long getEntries() {
+		long result = 0;
+		for (final Counts c : all) {
+			result += c.entries;
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of entries which have a value for each field. Fields which have never been filled are contained
+	 * with <code>0</code>, headers only if they occurred at least once (prefixed with <code>request:</code> or
+	 * <code>response:</code>).
+	 * 
+	 * @return counts by field name
+	 */
+	public Map<String, Long> getFilled() {
+		final Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < FIELDS.length; i++) {
+			long count = 0;
+			for (final Counts c : all) {
+				count += c.fields[i];
+			}
+			result.put(FIELDS[i], count);
+		}
+		for (final Counts c : all) {
+			sum(result, "request:", c.requestHeaders);
+		}
+		for (final Counts c : all) {
+			sum(result, "response:", c.responseHeaders);
+		}
+		return result;
+	}
+
+	@Override
+	public Iterator<ReadonlyLogEntry> iterator() {
+		return Collections.<ReadonlyLogEntry> emptyList().iterator();
+	}
+
+	/**
+	 * Counts the entry and returns a pooled entry to its pool immediately.
+	 */
+	@Override
+	public boolean offer(final ReadonlyLogEntry entry) {
+		if (entry == null) {
+			throw new IllegalArgumentException("Argument 'entry' can not be null.");
+		}
+
+		count(entry);
+		final ReadonlyLogEntry unwrapped = (entry instanceof TrackedLogEntry) ? ((TrackedLogEntry) entry).getEntry()
+				: entry;
+		if (unwrapped instanceof PooledLogEntry) {
+			((PooledLogEntry) unwrapped).release();
+		}
+		return true;
+	}
+
+	@Override
+	public boolean offer(final ReadonlyLogEntry entry, final long timeout, final TimeUnit unit) {
+		return offer(entry);
+	}
+
+	@Override
+	public ReadonlyLogEntry peek() {
+		return null;
+	}
+
+	@Override
+	public ReadonlyLogEntry poll() {
+		return null;
+	}
+
+	@Override
+	public ReadonlyLogEntry poll(final long timeout, final TimeUnit unit) {
+		return null;
+	}
+
+	@Override
+	public void put(final ReadonlyLogEntry entry) {
+		offer(entry);
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public int size() {
+		return 0;
+	}
+
+	/**
+	 * A sink never holds an entry, so there is nothing to take.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	@Override
+	public ReadonlyLogEntry take() {
+		throw new UnsupportedOperationException("A sink can not be taken from.");
+	}
+
+}
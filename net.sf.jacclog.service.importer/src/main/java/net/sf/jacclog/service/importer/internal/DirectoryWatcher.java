@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.jacclog.logformat.LogFormat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches a directory for new log files and passes them to a <code>LogFileImporter</code>, which adds them to its
+ * <code>LogFileQueue</code>.<br>
+ * <br>
+ * Every execution of this task lists the directory, so it should be scheduled periodically (Java 6 has no
+ * <code>WatchService</code>). Files which exist when the watching starts are ignored. A new file will be queued as
+ * soon as its size has not changed between two executions, so files which are still being copied or written are not
+ * imported partially. If the queue is full, a new file will be queued by a later execution instead of blocking the
+ * thread which executes the watchers and followers. Files which are followed by the importer will be ignored.
+ * 
+ * @author André Rouél
+ */
+public class DirectoryWatcher implements Runnable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+	private final File directory;
+
+	private final LogFormat format;
+
+	private final LogFileImporter importer;
+
+	/**
+	 * Files which are already known (existing at start or queued)
+	 */
+	private final Set<File> known = new HashSet<File>();
+
+	/**
+	 * New files with their size at the last execution
+	 */
+	private final Map<File, Long> pending = new HashMap<File, Long>();
+
+	/**
+	 * Creates a watcher of a directory.
+	 * 
+	 * @param importer
+	 *            importer which receives new files
+	 * @param format
+	 *            log format of the new files
+	 * @param directory
+	 *            directory to be watched
+	 */
+	public DirectoryWatcher(final LogFileImporter importer, final LogFormat format, final File directory) {
+		if (importer == null) {
+			throw new IllegalArgumentException("Argument 'importer' can not be null.");
+		}
+
+		if (format == null) {
+			throw new IllegalArgumentException("Argument 'format' can not be null.");
+		}
+
+		if (directory == null) {
+			throw new IllegalArgumentException("Argument 'directory' can not be null.");
+		}
+
+		if (!directory.isDirectory()) {
+			throw new IllegalArgumentException("Argument 'directory' must be an existing directory.");
+		}
+
+		this.importer = importer;
+		this.format = format;
+		this.directory = directory;
+
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				known.add(file);
+			}
+		}
+	}
+
+	/**
+	 * Gets the watched directory.
+	 * 
+	 * @return directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Lists the directory and queues new files whose size has not changed since the last execution.
+	 */
+	@Override
+	public synchronized void run() {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			LOG.warn("The directory '" + directory.getPath() + "' can not be listed.");
+			return;
+		}
+
+		final Set<File> present = new HashSet<File>();
+		for (final File file : files) {
+			present.add(file);
+			if (!file.isFile() || known.contains(file)) {
+				continue;
+			}
+
+			final long length = file.length();
+			final Long previous = pending.put(file, length);
+			if (previous != null && previous.longValue() == length) {
+				if (importer.isFollowed(file)) {
+					LOG.debug("The new file '" + file.getPath() + "' is followed and will not be queued.");
+				} else if (importer.offerFile(format, file)) {
+					LOG.info("Queued new file '" + file.getPath() + "'.");
+				} else {
+					// the watching thread is shared, so it must not wait until the queue has free space
+					LOG.debug("The queue is full, the new file '" + file.getPath() + "' will be queued later.");
+					continue;
+				}
+				pending.remove(file);
+				known.add(file);
+			}
+		}
+
+		// forget deleted files, so they will be imported if they appear again
+		known.retainAll(present);
+		final Iterator<File> it = pending.keySet().iterator();
+		while (it.hasNext()) {
+			if (!present.contains(it.next())) {
+				it.remove();
+			}
+		}
+	}
+
+}
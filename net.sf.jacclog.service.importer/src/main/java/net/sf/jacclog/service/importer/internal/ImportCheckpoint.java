@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * An immutable checkpoint of the import of a log file.<br>
+ * <br>
+ * A checkpoint records the file (path, size, modification time and fingerprints of its first and last bytes) and how
+ * far its lines have been committed into the repository. The offset is measured in bytes of the (decompressed)
+ * content and always points behind a complete line.
+ * 
+ * @author André Rouél
+ */
+public final class ImportCheckpoint {
+
+	/**
+	 * Number of bytes at the beginning of a file which will be digested for the fingerprint
+	 */
+	public static final int FINGERPRINT_SIZE = 4096;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private static final String KEY_COMPLETE = "complete";
+
+	private static final String KEY_FINGERPRINT = "fingerprint";
+
+	private static final String KEY_LAST_MODIFIED = "lastModified";
+
+	private static final String KEY_LINES = "lines";
+
+	private static final String KEY_OFFSET = "offset";
+
+	private static final String KEY_PATH = "path";
+
+	private static final String KEY_SIZE = "size";
+
+	private static final String KEY_TAIL = "tail";
+
+	/**
+	 * Creates a checkpoint for the current state of the given file.
+	 * 
+	 * @param file
+	 *            log file
+	 * @param offset
+	 *            committed byte offset
+	 * @param lines
+	 *            number of committed lines
+	 * @param complete
+	 *            <code>true</code> if all lines of the file are committed
+	 * @return checkpoint
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static ImportCheckpoint create(final File file, final long offset, final long lines,
+			final boolean complete) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		final long size = file.length();
+		return new ImportCheckpoint(file.getCanonicalPath(), size, file.lastModified(), fingerprint(file, size),
+				tail(file, size), offset, lines, complete);
+	}
+
+	/**
+	 * Computes the MD5 digest of a range of a file.
+	 */
+	private static String digest(final File file, final long position, final int length) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e.getLocalizedMessage(), e);
+		}
+
+		final byte[] buffer = new byte[length];
+		int read = 0;
+		final RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			in.seek(position);
+			int n;
+			while (read < buffer.length && (n = in.read(buffer, read, buffer.length - read)) != -1) {
+				read += n;
+			}
+		} finally {
+			in.close();
+		}
+		digest.update(buffer, 0, read);
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Computes the fingerprint of a file, which is the MD5 digest of its first <code>FINGERPRINT_SIZE</code> bytes. A
+	 * file which was smaller than <code>FINGERPRINT_SIZE</code> when the fingerprint was taken will be digested only up
+	 * to its former size, so the fingerprint of a growing file does not change.
+	 * 
+	 * @param file
+	 *            file
+	 * @param size
+	 *            size of the file when the fingerprint was taken
+	 * @return hexadecimal digest
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static String fingerprint(final File file, final long size) throws IOException {
+		return digest(file, 0, (int) Math.max(0, Math.min(FINGERPRINT_SIZE, size)));
+	}
+
+	/**
+	 * Reads a checkpoint from properties.
+	 * 
+	 * @param properties
+	 *            properties written by <code>toProperties()</code>
+	 * @return checkpoint or <code>null</code> if the properties are incomplete
+	 */
+	public static ImportCheckpoint fromProperties(final Properties properties) {
+		if (properties == null) {
+			throw new IllegalArgumentException("Argument 'properties' can not be null.");
+		}
+
+		final String path = properties.getProperty(KEY_PATH);
+		final String fingerprint = properties.getProperty(KEY_FINGERPRINT);
+		if (path == null || fingerprint == null) {
+			return null;
+		}
+
+		try {
+			final long size = Long.parseLong(properties.getProperty(KEY_SIZE));
+			final long lastModified = Long.parseLong(properties.getProperty(KEY_LAST_MODIFIED));
+			final long offset = Long.parseLong(properties.getProperty(KEY_OFFSET));
+			final long lines = Long.parseLong(properties.getProperty(KEY_LINES));
+			final boolean complete = Boolean.parseBoolean(properties.getProperty(KEY_COMPLETE));
+			// the tail is missing in checkpoints of former versions
+			final String tail = properties.getProperty(KEY_TAIL);
+			return new ImportCheckpoint(path, size, lastModified, fingerprint, tail, offset, lines, complete);
+		} catch (final NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Computes the fingerprint of the end of a file, which is the MD5 digest of the last <code>FINGERPRINT_SIZE</code>
+	 * bytes in front of the given size. Together with the size and the fingerprint of the first bytes it identifies the
+	 * content of a file independently of its name.
+	 * 
+	 * @param file
+	 *            file
+	 * @param size
+	 *            size of the file when the fingerprint was taken
+	 * @return hexadecimal digest
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static String tail(final File file, final long size) throws IOException {
+		final long position = Math.max(0, size - FINGERPRINT_SIZE);
+		return digest(file, position, (int) Math.max(0, size - position));
+	}
+
+	static String toHex(final byte[] bytes) {
+		final char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+
+	private final boolean complete;
+
+	private final String fingerprint;
+
+	private final long lastModified;
+
+	private final long lines;
+
+	private final long offset;
+
+	private final String path;
+
+	private final long size;
+
+	private final String tail;
+
+	public ImportCheckpoint(final String path, final long size, final long lastModified, final String fingerprint,
+			final String tail, final long offset, final long lines, final boolean complete) {
+		if (path == null) {
+			throw new IllegalArgumentException("Argument 'path' can not be null.");
+		}
+
+		if (fingerprint == null) {
+			throw new IllegalArgumentException("Argument 'fingerprint' can not be null.");
+		}
+
+		if (offset < 0) {
+			throw new IllegalArgumentException("Argument 'offset' can not be smaller than 0.");
+		}
+
+		if (lines < 0) {
+			throw new IllegalArgumentException("Argument 'lines' can not be smaller than 0.");
+		}
+
+		this.path = path;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.fingerprint = fingerprint;
+		this.tail = tail;
+		this.offset = offset;
+		this.lines = lines;
+		this.complete = complete;
+	}
+
+	/**
+	 * Gets the fingerprint of the file.
+	 * 
+	 * @return MD5 digest of the first bytes as hexadecimal string
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Gets the modification time of the file when the checkpoint was created.
+	 * 
+	 * @return milliseconds since epoch
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Gets the number of committed lines (including lines which could not be interpreted).
+	 * 
+	 * @return number of lines
+	 */
+	public long getLines() {
+		return lines;
+	}
+
+	/**
+	 * Gets the position behind the last committed line.
+	 * 
+	 * @return byte offset
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Gets the canonical path of the file.
+	 * 
+	 * @return path
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Gets the size of the file when the checkpoint was created.
+	 * 
+	 * @return size in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the fingerprint of the end of the file.
+	 * 
+	 * @return MD5 digest of the last bytes as hexadecimal string or <code>null</code> if the checkpoint was written by
+	 *         a former version
+	 */
+	public String getTail() {
+		return tail;
+	}
+
+	/**
+	 * Indicates whether all lines of the file were committed when the checkpoint was created.
+	 * 
+	 * @return <code>true</code> if the import was complete
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Checks whether the given file is still the file of this checkpoint, so its import can be continued. A file
+	 * matches if it has the same fingerprint and did not shrink.
+	 * 
+	 * @param file
+	 *            log file
+	 * @return <code>true</code> if the import can be resumed at the offset of this checkpoint
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public boolean matches(final File file) throws IOException {
+		return file.length() >= size && fingerprint.equals(fingerprint(file, size));
+	}
+
+	/**
+	 * Checks whether the given file starts with the same content as the file of this checkpoint, comparing the
+	 * fingerprints of the first and of the last bytes up to the size of this checkpoint. A file which has been renamed
+	 * (e.g. by a log rotation) or copied will be recognized by its content.
+	 * 
+	 * @param file
+	 *            log file
+	 * @return <code>true</code> if the import can be resumed at the offset of this checkpoint
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public boolean matchesContent(final File file) throws IOException {
+		return tail != null && matches(file) && tail.equals(tail(file, size));
+	}
+
+	/**
+	 * Checks whether the given file has not changed since the complete import of this checkpoint.
+	 * 
+	 * @param file
+	 *            log file
+	 * @return <code>true</code> if there is nothing left to import
+	 */
+	public boolean isUpToDate(final File file) {
+		return complete && file.length() == size && file.lastModified() == lastModified;
+	}
+
+	/**
+	 * Writes this checkpoint into properties.
+	 * 
+	 * @return properties
+	 */
+	public Properties toProperties() {
+		final Properties properties = new Properties();
+		properties.setProperty(KEY_PATH, path);
+		properties.setProperty(KEY_SIZE, String.valueOf(size));
+		properties.setProperty(KEY_LAST_MODIFIED, String.valueOf(lastModified));
+		properties.setProperty(KEY_FINGERPRINT, fingerprint);
+		if (tail != null) {
+			properties.setProperty(KEY_TAIL, tail);
+		}
+		properties.setProperty(KEY_OFFSET, String.valueOf(offset));
+		properties.setProperty(KEY_LINES, String.valueOf(lines));
+		properties.setProperty(KEY_COMPLETE, String.valueOf(complete));
+		return properties;
+	}
+
+	@Override
+	public String toString() {
+		return path + " [offset=" + offset + ", lines=" + lines + ", complete=" + complete + "]";
+	}
+
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.internal.parser.NcsaByteLogParser;
+import net.sf.jacclog.service.importer.internal.parser.ValueInterner;
+
+/**
+ * The collaborators of a single import of a log file, which are shared by all threads reading the file. Every
+ * collaborator is optional and may be <code>null</code>.
+ * 
+ * @author André Rouél
+ */
+public final class ImportContext {
+
+	/**
+	 * A context without any collaborators
+	 */
+	public static final ImportContext NONE = new ImportContext(null, null, null, null, null);
+
+	private final ValueInterner interner;
+
+	private final LogEntryPool pool;
+
+	private final ImportProgress progress;
+
+	private final Quarantine quarantine;
+
+	private final ImportStatus status;
+
+	/**
+	 * Creates a context of an import.
+	 * 
+	 * @param progress
+	 *            tracks the committed lines for the checkpoint of the file
+	 * @param quarantine
+	 *            receives the lines which can not be interpreted
+	 * @param status
+	 *            publishes the progress of the import within the statistic
+	 * @param pool
+	 *            pool of reusable entries
+	 * @param interner
+	 *            pool of recurring values
+	 */
+	public ImportContext(final ImportProgress progress, final Quarantine quarantine, final ImportStatus status,
+			final LogEntryPool pool, final ValueInterner interner) {
+		this.progress = progress;
+		this.quarantine = quarantine;
+		this.status = status;
+		this.pool = pool;
+		this.interner = interner;
+	}
+
+	/**
+	 * Creates a parser for the format of a log file, which uses the pools of this context.
+	 * 
+	 * @param file
+	 *            log file
+	 * @return parser
+	 */
+	public NcsaByteLogParser createParser(final LogFile file) {
+		final NcsaByteLogParser parser = new NcsaByteLogParser(file.getFormat());
+		parser.setPool(pool);
+		parser.setInterner(interner);
+		return parser;
+	}
+
+	public ValueInterner getInterner() {
+		return interner;
+	}
+
+	public LogEntryPool getPool() {
+		return pool;
+	}
+
+	public ImportProgress getProgress() {
+		return progress;
+	}
+
+	public Quarantine getQuarantine() {
+		return quarantine;
+	}
+
+	public ImportStatus getStatus() {
+		return status;
+	}
+
+}
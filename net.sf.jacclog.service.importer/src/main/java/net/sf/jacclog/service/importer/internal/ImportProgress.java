@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks which lines of a log file have been committed into the repository and advances the checkpoint of the
+ * file.<br>
+ * <br>
+ * Lines are committed by the persister threads in any order (batches are persisted concurrently and chunks of large
+ * files are parsed in parallel). Therefore committed byte ranges are merged with their neighbours and the offset of
+ * the checkpoint only advances over a contiguous range of committed lines. A line which is never committed (e.g.
+ * because its batch could not be persisted) holds the offset back, so that line will be imported again when the
+ * import is resumed.
+ * 
+ * @author André Rouél
+ */
+public class ImportProgress {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ImportProgress.class);
+
+	/**
+	 * Minimum interval in milliseconds between two writes of the checkpoint while the import is running
+	 */
+	public static final long SAVE_INTERVAL = 1000;
+
+	private boolean complete;
+
+	private long lastSave;
+
+	private long lines;
+
+	private long offset;
+
+	/**
+	 * Checkpoint at the start of the import, which identifies the file (its size and modification time are captured
+	 * before the file is read, so a file which grows while it is imported will be resumed next time)
+	 */
+	private final ImportCheckpoint origin;
+
+	/**
+	 * Committed ranges behind the offset, mapped from their start to their end and number of lines
+	 */
+	private final TreeMap<Long, long[]> ranges = new TreeMap<Long, long[]>();
+
+	/**
+	 * Offset of the last written checkpoint
+	 */
+	private long savedOffset;
+
+	/**
+	 * Position behind the last line of the file or <code>-1</code> while the file is still being read
+	 */
+	private long readEnd = -1;
+
+	private final CheckpointStore store;
+
+	/**
+	 * Creates the progress of an import which starts at the offset of the given checkpoint.
+	 * 
+	 * @param store
+	 *            store of the checkpoint or <code>null</code> if the progress should not be saved
+	 * @param origin
+	 *            checkpoint of the file at the start of the import
+	 */
+	public ImportProgress(final CheckpointStore store, final ImportCheckpoint origin) {
+		if (origin == null) {
+			throw new IllegalArgumentException("Argument 'origin' can not be null.");
+		}
+
+		this.store = store;
+		this.origin = origin;
+		offset = origin.getOffset();
+		savedOffset = offset;
+		lines = origin.getLines();
+		complete = origin.isComplete();
+		lastSave = System.currentTimeMillis();
+	}
+
+	/**
+	 * Marks a line as committed into the repository.
+	 * 
+	 * @param start
+	 *            position of the first byte of the line
+	 * @param end
+	 *            position behind the line terminator
+	 */
+	public synchronized void commit(final long start, final long end) {
+		if (end <= offset) {
+			// already committed before the import was resumed
+			return;
+		}
+
+		long rangeStart = start;
+		long rangeEnd = end;
+		long rangeLines = 1;
+
+		final Map.Entry<Long, long[]> lower = ranges.floorEntry(start);
+		if (lower != null && lower.getValue()[0] == start) {
+			rangeStart = lower.getKey();
+			rangeLines += lower.getValue()[1];
+			ranges.remove(rangeStart);
+		}
+
+		final long[] higher = ranges.remove(end);
+		if (higher != null) {
+			rangeEnd = higher[0];
+			rangeLines += higher[1];
+		}
+
+		if (rangeStart == offset) {
+			offset = rangeEnd;
+			lines += rangeLines;
+			if (offset == readEnd) {
+				complete = true;
+				save();
+			} else if (System.currentTimeMillis() - lastSave >= SAVE_INTERVAL) {
+				save();
+			}
+		} else {
+			ranges.put(rangeStart, new long[] { rangeEnd, rangeLines });
+		}
+	}
+
+	/**
+	 * Marks the end of the file as reached. If all read lines are already committed, the checkpoint will be saved as
+	 * complete.
+	 * 
+	 * @param end
+	 *            position behind the last line of the file
+	 */
+	public synchronized void finish(final long end) {
+		readEnd = end;
+		if (offset >= end) {
+			complete = true;
+			save();
+		}
+	}
+
+	/**
+	 * Writes the checkpoint into the store if lines have been committed since it was written the last time. A file
+	 * which is followed will never be finished, so the last committed lines must be saved explicitly.
+	 */
+	public synchronized void flush() {
+		if (offset != savedOffset) {
+			save();
+		}
+	}
+
+	/**
+	 * Gets the number of committed lines.
+	 * 
+	 * @return number of lines
+	 */
+	public synchronized long getLines() {
+		return lines;
+	}
+
+	/**
+	 * Gets the position behind the last contiguously committed line.
+	 * 
+	 * @return byte offset
+	 */
+	public synchronized long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Gets the checkpoint of the file at the start of the import.
+	 * 
+	 * @return checkpoint
+	 */
+	public ImportCheckpoint getOrigin() {
+		return origin;
+	}
+
+	/**
+	 * Gets the position where the import starts (the offset of a resumed checkpoint or <code>0</code>).
+	 * 
+	 * @return byte offset
+	 */
+	public long getStartOffset() {
+		return origin.getOffset();
+	}
+
+	/**
+	 * Indicates whether all lines of the file are committed.
+	 * 
+	 * @return <code>true</code> if the import is complete
+	 */
+	public synchronized boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Writes the current checkpoint into the store.
+	 */
+	private void save() {
+		lastSave = System.currentTimeMillis();
+		savedOffset = offset;
+		if (store != null) {
+			try {
+				store.save(new ImportCheckpoint(origin.getPath(), origin.getSize(), origin.getLastModified(), origin
+						.getFingerprint(), origin.getTail(), offset, lines, complete));
+			} catch (final IOException e) {
+				LOG.warn("The checkpoint of '" + origin.getPath() + "' can not be saved: " + e.getLocalizedMessage());
+			}
+		}
+	}
+
+	/**
+	 * Marks a line as done, which could not be interpreted and therefore will never be committed.
+	 * 
+	 * @param start
+	 *            position of the first byte of the line
+	 * @param end
+	 *            position behind the line terminator
+	 */
+	public void skip(final long start, final long end) {
+		commit(start, end);
+	}
+
+}
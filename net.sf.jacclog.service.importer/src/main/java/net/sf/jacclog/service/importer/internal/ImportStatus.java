@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.api.LogFileImporterStatistic.Progress;
+import net.sf.jacclog.service.importer.internal.metrics.ImportMetrics;
+
+import org.joda.time.Period;
+
+/**
+ * Thread-safe progress of a running import, which is updated by the reading threads (the chunks of a large file are
+ * read in parallel).<br>
+ * <br>
+ * Every reading thread counts its lines with its own <code>Counter</code>, which adds them to the shared counters of
+ * the status and of the metrics in batches, so the readers do not contend for these counters on every line.
+ * 
+ * @author André Rouél
+ */
+public final class ImportStatus implements Progress {
+
+	/**
+	 * Counts the lines of one reading thread and adds them to the status in batches. A counter is not thread-safe and
+	 * must be flushed when the reading stops.
+	 */
+	public final class Counter {
+
+		private long bytes;
+
+		private int entries;
+
+		private int rejected;
+
+		private Counter() {
+			// created by the status
+		}
+
+		/**
+		 * Counts a line which has been read.
+		 * 
+		 * @param length
+		 *            length of the line in bytes (including the line terminator)
+		 * @param entry
+		 *            <code>true</code> if a log entry has been read, <code>false</code> if the line has been rejected
+		 */
+		public void advance(final long length, final boolean entry) {
+			bytes += length;
+			if (entry) {
+				entries++;
+			} else {
+				rejected++;
+			}
+			if (entries + rejected >= FLUSH_LINES) {
+				flush();
+			}
+		}
+
+		/**
+		 * Adds the counted lines to the status.
+		 */
+		public void flush() {
+			if (entries + rejected > 0) {
+				add(bytes, entries, rejected);
+				bytes = 0;
+				entries = 0;
+				rejected = 0;
+			}
+		}
+
+	}
+
+	/**
+	 * Number of lines a counter accumulates before it adds them to the status
+	 */
+	static final int FLUSH_LINES = 1024;
+
+	/**
+	 * Number of bytes of the read lines
+	 */
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final AtomicInteger count = new AtomicInteger();
+
+	private final LogFile file;
+
+	/**
+	 * Metrics of the pipeline, which count the read lines of all imports, or <code>null</code>
+	 */
+	private final ImportMetrics metrics;
+
+	private final long size;
+
+	private final long start;
+
+	private final long startTime = System.currentTimeMillis();
+
+	public ImportStatus(final LogFile file, final long size, final long start) {
+		this(file, size, start, null);
+	}
+
+	public ImportStatus(final LogFile file, final long size, final long start, final ImportMetrics metrics) {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		this.file = file;
+		this.size = size;
+		this.start = start;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Adds the lines which have been counted by a reader.
+	 */
+	private void add(final long length, final int entries, final int rejected) {
+		bytes.addAndGet(length);
+		if (entries > 0) {
+			count.addAndGet(entries);
+		}
+		if (metrics != null) {
+			metrics.read(length, entries, rejected);
+		}
+	}
+
+	/**
+	 * Creates a counter for the lines of a reading thread.
+	 * 
+	 * @return new counter
+	 */
+	public Counter createCounter() {
+		return new Counter();
+	}
+
+	@Override
+	public int getCount() {
+		return count.get();
+	}
+
+	@Override
+	public Period getElapsedTime() {
+		return new Period(System.currentTimeMillis() - startTime);
+	}
+
+	@Override
+	public LogFile getFile() {
+		return file;
+	}
+
+	@Override
+	public long getPosition() {
+		return start + bytes.get();
+	}
+
+	@Override
+	public double getRate() {
+		final long elapsed = System.currentTimeMillis() - startTime;
+		return (elapsed > 0) ? bytes.get() * 1000.0 / elapsed : 0;
+	}
+
+	@Override
+	public Period getRemainingTime() {
+		final double rate = getRate();
+		if (size < 0 || rate <= 0) {
+			return null;
+		}
+		return new Period(Math.round(Math.max(0, size - getPosition()) * 1000 / rate));
+	}
+
+	@Override
+	public long getSize() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return file.getFile().getPath() + " [position=" + getPosition() + ", size=" + size + ", count=" + getCount()
+				+ "]";
+	}
+
+}
@@ -0,0 +1,383 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.api.domain.http.HttpConnectionStatus;
+import net.sf.jacclog.api.domain.http.HttpRequestHeader;
+import net.sf.jacclog.api.domain.http.HttpRequestHeaderField;
+import net.sf.jacclog.api.domain.http.HttpRequestMethod;
+import net.sf.jacclog.api.domain.http.HttpResponseHeader;
+import net.sf.jacclog.api.domain.http.HttpResponseHeaderField;
+import net.sf.jacclog.api.domain.http.HttpStatus;
+import net.sf.jacclog.api.domain.http.ReadableHttpRequestHeaderField;
+import net.sf.jacclog.api.domain.http.ReadableHttpResponseHeaderField;
+
+/**
+ * Converts log entries into a compact binary form and back.<br>
+ * <br>
+ * An entry starts with a bit mask of its fields which are set, followed by the values of these fields in a fixed
+ * order and the request and response headers. Numbers and lengths are written as variable-length integers, strings as
+ * UTF-8 bytes, and the HTTP enumerations by their protocol values (not by their ordinals), so the form stays readable
+ * by later versions.
+ * 
+ * @author André Rouél
+ */
+public final class LogEntryCodec {
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private static final int BYTES_RECEIVED = 1 << 0;
+
+	private static final int BYTES_SENT = 1 << 1;
+
+	private static final int CONNECTION_STATUS = 1 << 2;
+
+	private static final int FILENAME = 1 << 3;
+
+	private static final int LAST_STATUS_CODE = 1 << 4;
+
+	private static final int LOCAL_IP_ADDRESS = 1 << 5;
+
+	private static final int PROCESS_ID = 1 << 6;
+
+	private static final int QUERY_STRING = 1 << 7;
+
+	private static final int REMOTE_HOST = 1 << 8;
+
+	private static final int REMOTE_IP_ADDRESS = 1 << 9;
+
+	private static final int REMOTE_LOGNAME = 1 << 10;
+
+	private static final int REMOTE_USER = 1 << 11;
+
+	private static final int REQUEST_IN_MILLIS = 1 << 12;
+
+	private static final int REQUEST_METHOD = 1 << 13;
+
+	private static final int REQUEST_PROTOCOL = 1 << 14;
+
+	private static final int REQUEST_TIME = 1 << 15;
+
+	private static final int RESPONSE_IN_BYTES = 1 << 16;
+
+	private static final int SERVER_NAME = 1 << 17;
+
+	private static final int SERVER_PORT = 1 << 18;
+
+	private static final int STATUS_CODE = 1 << 19;
+
+	private static final int URL_PATH = 1 << 20;
+
+	private static int mask(final int flag, final Object value) {
+		return (value != null) ? flag : 0;
+	}
+
+	/**
+	 * Reads an entry.
+	 * 
+	 * @param in
+	 *            input of a written entry
+	 * @return entry
+	 * @throws IOException
+	 *             if the input can not be read
+	 */
+	public static ReadonlyLogEntry read(final DataInput in) throws IOException {
+		final int mask = (int) readVarLong(in);
+		final LogEntryBuilder builder = new LogEntryBuilder();
+		if ((mask & BYTES_RECEIVED) != 0) {
+			builder.bytesReceived(readSignedVarLong(in));
+		}
+		if ((mask & BYTES_SENT) != 0) {
+			builder.bytesSent(readSignedVarLong(in));
+		}
+		if ((mask & CONNECTION_STATUS) != 0) {
+			builder.connectionStatus(HttpConnectionStatus.evaluate(in.readChar()));
+		}
+		if ((mask & FILENAME) != 0) {
+			builder.filename(readString(in));
+		}
+		if ((mask & LAST_STATUS_CODE) != 0) {
+			builder.lastStatusCode(HttpStatus.evaluate((int) readVarLong(in)));
+		}
+		if ((mask & LOCAL_IP_ADDRESS) != 0) {
+			builder.localIpAddress(readString(in));
+		}
+		if ((mask & PROCESS_ID) != 0) {
+			builder.processId((int) readSignedVarLong(in));
+		}
+		if ((mask & QUERY_STRING) != 0) {
+			builder.queryString(readString(in));
+		}
+		if ((mask & REMOTE_HOST) != 0) {
+			builder.remoteHost(readString(in));
+		}
+		if ((mask & REMOTE_IP_ADDRESS) != 0) {
+			builder.remoteIpAddress(readString(in));
+		}
+		if ((mask & REMOTE_LOGNAME) != 0) {
+			builder.remoteLogname(readString(in));
+		}
+		if ((mask & REMOTE_USER) != 0) {
+			builder.remoteUser(readString(in));
+		}
+		if ((mask & REQUEST_IN_MILLIS) != 0) {
+			builder.requestInMillis(readSignedVarLong(in));
+		}
+		if ((mask & REQUEST_METHOD) != 0) {
+			builder.requestMethod(HttpRequestMethod.evaluate(readString(in)));
+		}
+		if ((mask & REQUEST_PROTOCOL) != 0) {
+			builder.requestProtocol(readString(in));
+		}
+		if ((mask & REQUEST_TIME) != 0) {
+			builder.requestTime(new Date(readSignedVarLong(in)));
+		}
+		if ((mask & RESPONSE_IN_BYTES) != 0) {
+			builder.responseInBytes(readSignedVarLong(in));
+		}
+		if ((mask & SERVER_NAME) != 0) {
+			builder.serverName(readString(in));
+		}
+		if ((mask & SERVER_PORT) != 0) {
+			builder.serverPort((int) readSignedVarLong(in));
+		}
+		if ((mask & STATUS_CODE) != 0) {
+			builder.statusCode(HttpStatus.evaluate((int) readVarLong(in)));
+		}
+		if ((mask & URL_PATH) != 0) {
+			builder.urlPath(readString(in));
+		}
+
+		final int requestHeaders = (int) readVarLong(in);
+		for (int i = 0; i < requestHeaders; i++) {
+			final String name = readString(in);
+			builder.appendRequestHeaders(new HttpRequestHeaderField(HttpRequestHeader.evaluate(name), readString(in)));
+		}
+		final int responseHeaders = (int) readVarLong(in);
+		for (int i = 0; i < responseHeaders; i++) {
+			final String name = readString(in);
+			builder.appendResponseHeaders(new HttpResponseHeaderField(HttpResponseHeader.evaluate(name),
+					readString(in)));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Reads a batch of entries, which has been written by <code>writeAll</code>.
+	 * 
+	 * @param in
+	 *            input of a written batch
+	 * @return entries
+	 * @throws IOException
+	 *             if the input can not be read
+	 */
+	public static List<ReadonlyLogEntry> readAll(final DataInput in) throws IOException {
+		final int count = (int) readVarLong(in);
+		final List<ReadonlyLogEntry> entries = new ArrayList<ReadonlyLogEntry>(count);
+		for (int i = 0; i < count; i++) {
+			entries.add(read(in));
+		}
+		return entries;
+	}
+
+	private static long readSignedVarLong(final DataInput in) throws IOException {
+		final long value = readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static String readString(final DataInput in) throws IOException {
+		final byte[] bytes = new byte[(int) readVarLong(in)];
+		in.readFully(bytes);
+		return new String(bytes, CHARSET);
+	}
+
+	private static long readVarLong(final DataInput in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			if (shift > 63) {
+				throw new IOException("Malformed variable-length integer.");
+			}
+			b = in.readByte();
+			value |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * Writes an entry.
+	 * 
+	 * @param out
+	 *            output
+	 * @param entry
+	 *            entry
+	 * @throws IOException
+	 *             if the output can not be written
+	 */
+	public static void write(final DataOutput out, final ReadonlyLogEntry entry) throws IOException {
+		final int mask = mask(BYTES_RECEIVED, entry.getBytesReceived()) | mask(BYTES_SENT, entry.getBytesSent())
+				| mask(CONNECTION_STATUS, entry.getConnectionStatus()) | mask(FILENAME, entry.getFilename())
+				| mask(LAST_STATUS_CODE, entry.getLastStatusCode())
+				| mask(LOCAL_IP_ADDRESS, entry.getLocalIpAddress()) | mask(PROCESS_ID, entry.getProcessId())
+				| mask(QUERY_STRING, entry.getQueryString()) | mask(REMOTE_HOST, entry.getRemoteHost())
+				| mask(REMOTE_IP_ADDRESS, entry.getRemoteIpAddress())
+				| mask(REMOTE_LOGNAME, entry.getRemoteLogname()) | mask(REMOTE_USER, entry.getRemoteUser())
+				| mask(REQUEST_IN_MILLIS, entry.getRequestInMillis())
+				| mask(REQUEST_METHOD, entry.getRequestMethod())
+				| mask(REQUEST_PROTOCOL, entry.getRequestProtocol()) | mask(REQUEST_TIME, entry.getRequestTime())
+				| mask(RESPONSE_IN_BYTES, entry.getResponseInBytes()) | mask(SERVER_NAME, entry.getServerName())
+				| mask(SERVER_PORT, entry.getServerPort()) | mask(STATUS_CODE, entry.getStatusCode())
+				| mask(URL_PATH, entry.getUrlPath());
+		writeVarLong(out, mask);
+
+		if ((mask & BYTES_RECEIVED) != 0) {
+			writeSignedVarLong(out, entry.getBytesReceived());
+		}
+		if ((mask & BYTES_SENT) != 0) {
+			writeSignedVarLong(out, entry.getBytesSent());
+		}
+		if ((mask & CONNECTION_STATUS) != 0) {
+			out.writeChar(entry.getConnectionStatus().value());
+		}
+		if ((mask & FILENAME) != 0) {
+			writeString(out, entry.getFilename());
+		}
+		if ((mask & LAST_STATUS_CODE) != 0) {
+			writeVarLong(out, entry.getLastStatusCode().value());
+		}
+		if ((mask & LOCAL_IP_ADDRESS) != 0) {
+			writeString(out, entry.getLocalIpAddress());
+		}
+		if ((mask & PROCESS_ID) != 0) {
+			writeSignedVarLong(out, entry.getProcessId());
+		}
+		if ((mask & QUERY_STRING) != 0) {
+			writeString(out, entry.getQueryString());
+		}
+		if ((mask & REMOTE_HOST) != 0) {
+			writeString(out, entry.getRemoteHost());
+		}
+		if ((mask & REMOTE_IP_ADDRESS) != 0) {
+			writeString(out, entry.getRemoteIpAddress());
+		}
+		if ((mask & REMOTE_LOGNAME) != 0) {
+			writeString(out, entry.getRemoteLogname());
+		}
+		if ((mask & REMOTE_USER) != 0) {
+			writeString(out, entry.getRemoteUser());
+		}
+		if ((mask & REQUEST_IN_MILLIS) != 0) {
+			writeSignedVarLong(out, entry.getRequestInMillis());
+		}
+		if ((mask & REQUEST_METHOD) != 0) {
+			writeString(out, entry.getRequestMethod().getName());
+		}
+		if ((mask & REQUEST_PROTOCOL) != 0) {
+			writeString(out, entry.getRequestProtocol());
+		}
+		if ((mask & REQUEST_TIME) != 0) {
+			writeSignedVarLong(out, entry.getRequestTime().getTime());
+		}
+		if ((mask & RESPONSE_IN_BYTES) != 0) {
+			writeSignedVarLong(out, entry.getResponseInBytes());
+		}
+		if ((mask & SERVER_NAME) != 0) {
+			writeString(out, entry.getServerName());
+		}
+		if ((mask & SERVER_PORT) != 0) {
+			writeSignedVarLong(out, entry.getServerPort());
+		}
+		if ((mask & STATUS_CODE) != 0) {
+			writeVarLong(out, entry.getStatusCode().value());
+		}
+		if ((mask & URL_PATH) != 0) {
+			writeString(out, entry.getUrlPath());
+		}
+
+		final Set<ReadableHttpRequestHeaderField> requestHeaders = entry.getRequestHeaders();
+		writeVarLong(out, (requestHeaders != null) ? requestHeaders.size() : 0);
+		if (requestHeaders != null) {
+			for (final ReadableHttpRequestHeaderField header : requestHeaders) {
+				writeString(out, header.getType().getName());
+				writeString(out, header.getValue());
+			}
+		}
+		final Set<ReadableHttpResponseHeaderField> responseHeaders = entry.getResponseHeaders();
+		writeVarLong(out, (responseHeaders != null) ? responseHeaders.size() : 0);
+		if (responseHeaders != null) {
+			for (final ReadableHttpResponseHeaderField header : responseHeaders) {
+				writeString(out, header.getType().getName());
+				writeString(out, header.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Writes a batch of entries.
+	 * 
+	 * @param out
+	 *            output
+	 * @param entries
+	 *            entries
+	 * @throws IOException
+	 *             if the output can not be written
+	 */
+	public static void writeAll(final DataOutput out, final Collection<? extends ReadonlyLogEntry> entries)
+			throws IOException {
+		writeVarLong(out, entries.size());
+		for (final ReadonlyLogEntry entry : entries) {
+			write(out, entry);
+		}
+	}
+
+	private static void writeSignedVarLong(final DataOutput out, final long value) throws IOException {
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	private static void writeString(final DataOutput out, final String value) throws IOException {
+		final byte[] bytes = (value != null) ? value.getBytes(CHARSET) : new byte[0];
+		writeVarLong(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeVarLong(final DataOutput out, final long value) throws IOException {
+		long remaining = value;
+		while ((remaining & ~0x7fL) != 0) {
+			out.writeByte((int) ((remaining & 0x7f) | 0x80));
+			remaining >>>= 7;
+		}
+		out.writeByte((int) remaining);
+	}
+
+	private LogEntryCodec() {
+		// utility class
+	}
+
+}
@@ -15,13 +15,25 @@
  ******************************************************************************/
 package net.sf.jacclog.service.importer.internal;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jsr166y.ForkJoinPool;
 import net.sf.jacclog.api.domain.ReadonlyLogEntry;
 import net.sf.jacclog.service.importer.api.LogFile;
 import net.sf.jacclog.service.importer.api.LogFileImporterStatistic.Entry;
+import net.sf.jacclog.service.importer.api.ParseReport;
+import net.sf.jacclog.service.importer.api.queue.LogEntryQueue;
 import net.sf.jacclog.service.importer.api.service.AbstractLogEntryImportService;
 import net.sf.jacclog.service.importer.internal.parser.MappingException;
-import net.sf.jacclog.service.importer.internal.queue.LogEntryQueue;
+import net.sf.jacclog.service.importer.internal.parser.ValueInterner;
 import net.sf.jacclog.service.importer.internal.queue.LogEntryQueuePersisterObserver;
+import net.sf.jacclog.service.importer.internal.queue.RingBufferLogEntryQueue;
+import net.sf.jacclog.service.importer.internal.queue.RingBufferPersister;
+import net.sf.jacclog.service.importer.internal.task.LogFileChunkImportTask;
 import net.sf.jacclog.service.repository.LogEntryRepositoryService;
 import net.sf.jacclog.service.repository.domain.PersistableLogEntry;
 
@@ -32,14 +44,91 @@ public class LogEntryImportService extends AbstractLogEntryImportService {
 
 	private static final Logger LOG = LoggerFactory.getLogger(LogEntryImportService.class);
 
+	/**
+	 * Default size of a chunk in bytes when a large file will be parsed in parallel
+	 */
+	public static final long DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+	/**
+	 * Store of the import checkpoints or <code>null</code> if imports are not resumable
+	 */
+	private volatile CheckpointStore checkpoints;
+
+	/**
+	 * Size of a chunk in bytes; files larger than this size will be split and parsed in parallel
+	 */
+	private volatile long chunkSize = DEFAULT_CHUNK_SIZE;
+
+	/**
+	 * Pool of reusable entries shared by the parsers and the persisters or <code>null</code> if immutable entries are
+	 * built
+	 */
+	private volatile LogEntryPool entryPool;
+
+	/**
+	 * Pool of recurring values shared by all parsers or <code>null</code> if every value should be a new string
+	 */
+	private volatile ValueInterner interner = new ValueInterner();
+
+	/**
+	 * Dedicated persister threads which take the ring buffer in batches or <code>null</code> if the persisters are
+	 * triggered by the queue
+	 */
+	private final RingBufferPersister persister;
+
+	/**
+	 * Pool to parse the chunks of large files and to decompress the members of gzip files, shared by all imports
+	 */
+	private final ForkJoinPool pool = new ForkJoinPool();
+
+	/**
+	 * Directory of the quarantine files or <code>null</code> if they should be placed beside the log files
+	 */
+	private volatile File quarantineDirectory;
+
+	/**
+	 * Controller of the batch size and of the number of concurrent writes into the repository
+	 */
+	private final WriteController writeController;
+
+	/**
+	 * Spool of the batches which could not be stored in the repository, which is closed until a directory is set
+	 */
+	private final LogEntrySpool spool;
+
 	public LogEntryImportService(final LogEntryRepositoryService<PersistableLogEntry> service) {
 		super(service);
-		registerPersisterTask();
+		writeController = new WriteController();
+		spool = new LogEntrySpool(this, writeController);
+		persister = registerPersisterTask();
 	}
 
-	public LogEntryImportService(final LogEntryRepositoryService<PersistableLogEntry> service, final LogEntryQueue queue) {
+	public LogEntryImportService(final LogEntryRepositoryService<PersistableLogEntry> service,
+			final LogEntryQueue<ReadonlyLogEntry> queue) {
+		this(service, queue, new WriteController());
+	}
+
+	/**
+	 * Creates an import service whose writes into the repository are limited by the given controller, e.g. to
+	 * benchmark a fixed batch size or number of concurrent writes.
+	 * 
+	 * @param service
+	 *            repository service
+	 * @param queue
+	 *            queue between the readers and the persisters
+	 * @param writeController
+	 *            controller of the batch size and of the number of concurrent writes
+	 */
+	public LogEntryImportService(final LogEntryRepositoryService<PersistableLogEntry> service,
+			final LogEntryQueue<ReadonlyLogEntry> queue, final WriteController writeController) {
 		super(service, queue);
-		registerPersisterTask();
+		if (writeController == null) {
+			throw new IllegalArgumentException("Argument 'writeController' can not be null.");
+		}
+
+		this.writeController = writeController;
+		spool = new LogEntrySpool(this, writeController);
+		persister = registerPersisterTask();
 	}
 
 	@Override
@@ -50,36 +139,437 @@ public class LogEntryImportService extends AbstractLogEntryImportService {
 
 		final long startTime = System.currentTimeMillis();
 
-		int count = 0;
-		final LogFileReader reader = new LogFileReader(file);
-		while (true) {
-			ReadonlyLogEntry entry = null;
+		final CheckpointStore store = checkpoints;
+		ImportProgress progress = null;
+		if (store != null) {
 			try {
-				entry = reader.readEntry();
-			} catch (final MappingException e) {
-				final String prefix = (file != null) ? file.getFile().getPath() + " " : "";
-				LOG.warn(prefix + e.getLocalizedMessage());
+				progress = store.begin(file.getFile());
+			} catch (final IOException e) {
+				LOG.warn(file.getFile().getPath() + " " + e.getLocalizedMessage());
 			}
+		}
+		if (progress != null && progress.isComplete()) {
+			LOG.info("The file '" + file.getFile().getPath() + "' has already been imported completely.");
+			return;
+		}
+		final long start = (progress != null) ? progress.getStartOffset() : 0;
+		final long linesBefore = (progress != null) ? progress.getOrigin().getLines() : 0;
+		final Quarantine quarantine = new Quarantine(Quarantine.fileOf(quarantineDirectory, file.getFile()),
+				linesBefore);
+
+		Compression compression = Compression.NONE;
+		try {
+			compression = Compression.detect(file.getFile());
+		} catch (final IOException e) {
+			LOG.warn(file.getFile().getPath() + " " + e.getLocalizedMessage());
+		}
+
+		final long size = (compression == Compression.NONE) ? file.getFile().length() : -1;
+		final ImportStatus status = LogFileImporterStatistic.getInstance().begin(file, size, start);
+		final ImportContext context = new ImportContext(progress, quarantine, status, entryPool, interner);
+
+		final int count;
+		try {
+			count = read(file, compression, context, getQueue());
+		} finally {
+			quarantine.close();
+			LogFileImporterStatistic.getInstance().end(status);
+		}
+
+		if (quarantine.getCount() > 0) {
+			LOG.warn(quarantine.getCount() + " lines of '" + file.getFile().getPath()
+					+ "' could not be interpreted and were written into '" + quarantine.getFile().getPath() + "'.");
+		}
+
+		final ValueInterner values = interner;
+		if (values != null) {
+			LOG.debug(values.toString());
+		}
+		LOG.debug(writeController.toString());
+		LOG.debug(LogFileImporterStatistic.getInstance().getMetrics().toString());
+		if (spool.isOpen()) {
+			LOG.debug(spool.toString());
+		}
+
+		final long elapsedTime = System.currentTimeMillis() - startTime;
+		final Entry entry = new Entry(file, count, quarantine.getCount(), elapsedTime);
+		LogFileImporterStatistic.getInstance().addEntry(entry);
+	}
+
+	/**
+	 * Stops the persister threads of a ring buffer and the pool which parses chunks and decompresses gzip members, and
+	 * closes the spool, which stops replaying spooled batches. The service can not import files afterwards.
+	 */
+	public void destroy() {
+		LOG.debug("Stopping the persisters, the parsing pool and the spool of the import service...");
+		if (persister != null) {
+			persister.shutdown();
+		}
+		pool.shutdownNow();
+		spool.close();
+	}
+
+	/**
+	 * Gets the directory where the checkpoints of the imports are stored.
+	 * 
+	 * @return directory or <code>null</code> if imports are not resumable
+	 */
+	public File getCheckpointDirectory() {
+		final CheckpointStore store = checkpoints;
+		return (store != null) ? store.getDirectory() : null;
+	}
+
+	/**
+	 * Gets the store of the checkpoints of the imports.
+	 * 
+	 * @return store or <code>null</code> if imports are not resumable
+	 */
+	CheckpointStore getCheckpoints() {
+		return checkpoints;
+	}
+
+	/**
+	 * Gets the number of reusable entries which are retained between the parsers and the persisters.
+	 * 
+	 * @return number of entries or <code>0</code> if the pipeline builds immutable entries
+	 */
+	public int getEntryPoolSize() {
+		final LogEntryPool entries = entryPool;
+		return (entries != null) ? entries.getCapacity() : 0;
+	}
 
-			if (entry == null) {
-				break;
-			} else {
+	/**
+	 * Gets the pool of recurring values, which provides the hit and miss statistics of the pooling.
+	 * 
+	 * @return pool of values or <code>null</code> if the pooling is disabled
+	 */
+	public ValueInterner getInterner() {
+		return interner;
+	}
+
+	/**
+	 * Gets the controller of the writes into the repository, which provides the current batch size and number of
+	 * concurrent writes as well as the measured latency and error rate.
+	 * 
+	 * @return controller
+	 */
+	public WriteController getWriteController() {
+		return writeController;
+	}
+
+	/**
+	 * Gets the spool of the batches which could not be stored in the repository, which provides the size of the spool
+	 * and the rate of the replay.
+	 * 
+	 * @return spool
+	 */
+	public LogEntrySpool getSpool() {
+		return spool;
+	}
+
+	/**
+	 * Gets the directory where the batches are spooled, which could not be stored in the repository.
+	 * 
+	 * @return directory or <code>null</code> if the spool is disabled
+	 */
+	public File getSpoolDirectory() {
+		return spool.getDirectory();
+	}
+
+	/**
+	 * Gets the directory where the lines of the log files are written, which can not be interpreted.
+	 * 
+	 * @return directory or <code>null</code> if the quarantine files are placed beside the log files
+	 */
+	public File getQuarantineDirectory() {
+		return quarantineDirectory;
+	}
+
+	/**
+	 * Gets the size of a chunk in bytes. Files larger than this size will be split into chunks which are parsed in
+	 * parallel.
+	 * 
+	 * @return chunk size in bytes or <code>0</code> if parallel parsing is disabled
+	 */
+	public long getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Splits the file into chunks aligned on line breaks and parses them on the shared <code>ForkJoinPool</code>.
+	 * 
+	 * @return number of imported entries
+	 */
+	private int importChunks(final LogFile file, final ImportContext context,
+			final BlockingQueue<ReadonlyLogEntry> queue) {
+		final ImportProgress progress = context.getProgress();
+		final long start = (progress != null) ? progress.getStartOffset() : 0;
+		final List<LogFileChunk> chunks;
+		try {
+			chunks = LogFileChunk.split(file.getFile(), start, chunkSize);
+		} catch (final IOException e) {
+			LOG.warn(file.getFile().getPath() + " " + e.getLocalizedMessage());
+			return 0;
+		}
+
+		final AtomicInteger count = new AtomicInteger();
+		final int regionSize = (int) Math.min(MappedLogFileReader.DEFAULT_REGION_SIZE, chunkSize);
+		pool.invoke(new LogFileChunkImportTask(file, chunks, queue, count, regionSize, context));
+		if (progress != null) {
+			progress.finish(chunks.isEmpty() ? start : chunks.get(chunks.size() - 1).getEnd());
+		}
+		return count.get();
+	}
+
+	/**
+	 * Decompresses the file as stream, while the lines will be parsed within the current thread.
+	 * 
+	 * @return number of imported entries
+	 */
+	private int importCompressed(final LogFile file, final Compression compression, final ImportContext context,
+			final BlockingQueue<ReadonlyLogEntry> queue) {
+		LOG.info("Importing " + compression + " compressed file '" + file.getFile().getPath() + "'.");
+
+		final StreamLogFileReader reader;
+		try {
+			final ImportProgress progress = context.getProgress();
+			final long start = (progress != null) ? progress.getStartOffset() : 0;
+			reader = new StreamLogFileReader(compression.open(file.getFile(), pool), context.createParser(file), start);
+		} catch (final IOException e) {
+			LOG.warn(file.getFile().getPath() + " " + e.getLocalizedMessage());
+			return 0;
+		}
+		return importEntries(file, reader, context, queue);
+	}
+
+	/**
+	 * Reads the file line by line within the current thread. If a progress is given, every entry will be tracked, so
+	 * the checkpoint of the file advances as soon as its line has been committed. Lines which can not be interpreted
+	 * are written into the quarantine and the reading continues with the next line.
+	 * 
+	 * @return number of imported entries
+	 */
+	private int importEntries(final LogFile file, final PositionedLogReader reader, final ImportContext context,
+			final BlockingQueue<ReadonlyLogEntry> queue) {
+		final ImportProgress progress = context.getProgress();
+		final Quarantine quarantine = context.getQuarantine();
+		final ImportStatus.Counter lines = context.getStatus().createCounter();
+		int count = 0;
+		boolean interrupted = false;
+		try {
+			while (true) {
+				final ReadonlyLogEntry entry;
 				try {
-					count++;
-					getQueue().put(entry);
-				} catch (final InterruptedException e) {
-					LOG.warn(e.getLocalizedMessage());
+					entry = reader.readEntry();
+				} catch (final MappingException e) {
+					LOG.debug(file.getFile().getPath() + " " + e.getLocalizedMessage());
+					quarantine.reject(reader.getLineNumber(), reader.getLineStart(), Quarantine.reasonOf(e),
+							reader.getLine());
+					if (progress != null) {
+						progress.skip(reader.getLineStart(), reader.getLineEnd());
+					}
+					lines.advance(reader.getLineEnd() - reader.getLineStart(), false);
+					continue;
+				}
+
+				if (entry == null) {
+					break;
 				}
+
+				if (progress != null) {
+					queue.put(new TrackedLogEntry(entry, progress, reader.getLineStart(), reader.getLineEnd()));
+				} else {
+					queue.put(entry);
+				}
+				count++;
+				lines.advance(reader.getLineEnd() - reader.getLineStart(), true);
 			}
+		} catch (final InterruptedException e) {
+			// the import will be stopped, the checkpoint stays behind the last committed line
+			LOG.warn(e.getLocalizedMessage());
+			Thread.currentThread().interrupt();
+			interrupted = true;
+		} finally {
+			reader.close();
+			lines.flush();
+		}
+
+		if (progress != null && !reader.isFailed() && !interrupted) {
+			progress.finish(reader.getLineEnd());
+		}
+		return count;
+	}
+
+	/**
+	 * Reads, tokenizes and maps all log entries of a log file exactly like an import, but the entries are only counted
+	 * instead of being passed to the persisters (a dry run). No checkpoint and no quarantine file will be written and
+	 * the import metrics are not affected.
+	 * 
+	 * @param file
+	 *            log file
+	 * @return report of the parser throughput, the field fill rates and the malformed lines
+	 */
+	public ParseReport parseLogEntries(final LogFile file) {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		final long startTime = System.currentTimeMillis();
+
+		Compression compression = Compression.NONE;
+		try {
+			compression = Compression.detect(file.getFile());
+		} catch (final IOException e) {
+			LOG.warn(file.getFile().getPath() + " " + e.getLocalizedMessage());
+		}
+
+		final long size = (compression == Compression.NONE) ? file.getFile().length() : -1;
+		final ImportStatus status = new ImportStatus(file, size, 0);
+		final Quarantine quarantine = new Quarantine();
+		final CountingLogEntrySink sink = new CountingLogEntrySink();
+		try {
+			read(file, compression, new ImportContext(null, quarantine, status, entryPool, interner), sink);
+		} finally {
+			quarantine.close();
 		}
 
 		final long elapsedTime = System.currentTimeMillis() - startTime;
-		final Entry entry = new Entry(file, count, elapsedTime);
-		LogFileImporterStatistic.getInstance().addEntry(entry);
+		return new ParseReport(file, sink.getEntries(), quarantine.getCount(), status.getPosition(), elapsedTime,
+				sink.getFilled());
 	}
 
-	private void registerPersisterTask() {
-		getQueue().addObserver(new LogEntryQueuePersisterObserver(this));
+	/**
+	 * Reads the entries of a file into the given queue. Compressed files are read as stream, large files in parallel
+	 * chunks and all other files line by line within the current thread.
+	 * 
+	 * @return number of read entries
+	 */
+	private int read(final LogFile file, final Compression compression, final ImportContext context,
+			final BlockingQueue<ReadonlyLogEntry> queue) {
+		final ImportProgress progress = context.getProgress();
+		final long start = (progress != null) ? progress.getStartOffset() : 0;
+		if (compression != Compression.NONE) {
+			return importCompressed(file, compression, context, queue);
+		} else if (chunkSize > 0 && file.getFile().length() - start > chunkSize) {
+			return importChunks(file, context, queue);
+		}
+		return importEntries(file, new MappedLogFileReader(file.getFile(), context.createParser(file), start,
+				Long.MAX_VALUE, MappedLogFileReader.DEFAULT_REGION_SIZE), context, queue);
+	}
+
+	/**
+	 * Registers the persisters of the queue and binds the queue to the import metrics. A ring buffer will be taken by
+	 * dedicated persister threads in batches, other queues trigger a persister task after every batch of added
+	 * entries.
+	 * 
+	 * @return started persister of a ring buffer or <code>null</code> if the queue triggers the persisters
+	 */
+	private RingBufferPersister registerPersisterTask() {
+		final LogEntryQueue<ReadonlyLogEntry> queue = getQueue();
+		LogFileImporterStatistic.getInstance().getMetrics().bind(queue, writeController, spool);
+		LogFileImporterStatistic.getInstance().getMetrics().bind(interner);
+		if (queue instanceof RingBufferLogEntryQueue) {
+			final RingBufferPersister ringBufferPersister = new RingBufferPersister(this,
+					(RingBufferLogEntryQueue) queue, writeController, spool);
+			ringBufferPersister.start();
+			return ringBufferPersister;
+		}
+
+		queue.addObserver(new LogEntryQueuePersisterObserver(this, writeController, spool));
+		return null;
+	}
+
+	/**
+	 * Sets the number of slots of the pool of recurring values. Values of fields which repeat often (like remote hosts,
+	 * referers and user agents) are looked up in the pool by their bytes, so identical values within the queue share
+	 * one instance.
+	 * 
+	 * @param capacity
+	 *            number of slots or <code>0</code> to disable the pooling
+	 */
+	public void setInternerCapacity(final int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Argument 'capacity' can not be smaller than 0.");
+		}
+
+		interner = (capacity > 0) ? new ValueInterner(capacity, ValueInterner.DEFAULT_MAX_LENGTH) : null;
+		LogFileImporterStatistic.getInstance().getMetrics().bind(interner);
+	}
+
+	/**
+	 * Sets the directory where the lines of the log files are written, which can not be interpreted (one quarantine
+	 * file per log file).
+	 * 
+	 * @param directory
+	 *            directory or <code>null</code> to place the quarantine files beside the log files
+	 */
+	public void setQuarantineDirectory(final File directory) {
+		quarantineDirectory = directory;
+	}
+
+	/**
+	 * Sets the directory where the batches are spooled, which could not be stored in the repository. If a directory is
+	 * set, a failed batch will be appended to a segment file within the directory and replayed as soon as the
+	 * repository recovers, so the import continues without losing entries while the repository is unavailable.
+	 * 
+	 * @param directory
+	 *            directory or <code>null</code> to disable the spool
+	 */
+	public void setSpoolDirectory(final File directory) {
+		if (directory == null) {
+			spool.close();
+			return;
+		}
+
+		try {
+			spool.open(directory);
+		} catch (final IOException e) {
+			LOG.warn("The spool can not be opened: " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Sets the number of reusable entries which are retained between the parsers and the persisters. If a size is set,
+	 * the parsers decode the lines into pooled entries instead of building an immutable entry per line, and the
+	 * persisters return the entries to the pool as soon as their values have been copied into the repository.
+	 * 
+	 * @param size
+	 *            number of entries or <code>0</code> to build immutable entries
+	 */
+	public void setEntryPoolSize(final int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Argument 'size' can not be smaller than 0.");
+		}
+
+		entryPool = (size > 0) ? new LogEntryPool(size) : null;
+	}
+
+	/**
+	 * Sets the directory where the checkpoints of the imports are stored. If a directory is set, the import of a file
+	 * will be resumed behind the last committed line of a previous import, and a file which has not changed since its
+	 * complete import will be skipped. This applies also to files which have been imported under another name, as
+	 * they are recognized by the fingerprints of their content.
+	 * 
+	 * @param directory
+	 *            directory or <code>null</code> to disable resumable imports
+	 */
+	public void setCheckpointDirectory(final File directory) {
+		checkpoints = (directory != null) ? new CheckpointStore(directory) : null;
+	}
+
+	/**
+	 * Sets the size of a chunk in bytes. Files larger than this size will be split into chunks which are parsed in
+	 * parallel.
+	 * 
+	 * @param chunkSize
+	 *            chunk size in bytes or <code>0</code> to disable parallel parsing
+	 */
+	public void setChunkSize(final long chunkSize) {
+		if (chunkSize < 0) {
+			throw new IllegalArgumentException("Argument 'chunkSize' can not be smaller than 0.");
+		}
+
+		this.chunkSize = chunkSize;
 	}
 
 }
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of reusable log entries, which are shared between the parsers and the persisters of an import.<br>
+ * <br>
+ * The free entries are kept in a ring buffer. If no free entry is available (all entries are in flight between the
+ * parsers and the persisters), a new entry will be allocated instead of waiting, so the pool never stalls an import.
+ * A released entry which does not fit into the ring any more will be left to the garbage collector. Thus the pool
+ * bounds the number of retained entries, but not the number of entries in flight.
+ * 
+ * @author André Rouél
+ */
+public class LogEntryPool {
+
+	/**
+	 * Number of entries which were allocated because no free entry was available
+	 */
+	private final AtomicLong allocations = new AtomicLong();
+
+	private final int capacity;
+
+	private final BlockingQueue<PooledLogEntry> free;
+
+	/**
+	 * Creates a pool which retains at most the given number of free entries.
+	 * 
+	 * @param capacity
+	 *            maximum number of free entries
+	 */
+	public LogEntryPool(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Argument 'capacity' must be greater than 0.");
+		}
+
+		this.capacity = capacity;
+		free = new ArrayBlockingQueue<PooledLogEntry>(capacity);
+	}
+
+	/**
+	 * Takes a free entry from the pool or allocates a new one.
+	 * 
+	 * @return an entry in its default state
+	 */
+	public PooledLogEntry acquire() {
+		final PooledLogEntry entry = free.poll();
+		if (entry != null) {
+			return entry;
+		}
+		allocations.incrementAndGet();
+		return new PooledLogEntry(this);
+	}
+
+	/**
+	 * Gets the number of entries which have been allocated by this pool.
+	 * 
+	 * @return number of allocations
+	 */
+	public long getAllocations() {
+		return allocations.get();
+	}
+
+	/**
+	 * Gets the number of free entries which are currently retained.
+	 * 
+	 * @return number of free entries
+	 */
+	public int getAvailable() {
+		return free.size();
+	}
+
+	/**
+	 * Gets the maximum number of free entries.
+	 * 
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Resets an entry and returns it to the pool.
+	 * 
+	 * @param entry
+	 *            entry of this pool
+	 */
+	public void release(final PooledLogEntry entry) {
+		if (entry == null) {
+			throw new IllegalArgumentException("Argument 'entry' can not be null.");
+		}
+
+		entry.reset();
+		free.offer(entry);
+	}
+
+}
@@ -0,0 +1,786 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.service.importer.api.service.LogEntryImportService;
+import net.sf.jacclog.service.importer.internal.queue.LogEntryQueuePersisterObserver.UncaughtExceptionHandler;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A write-ahead spool for the batches of entries which could not be stored in the repository.<br>
+ * <br>
+ * A batch will be appended as one record to the current segment file within the spool directory, in the binary form
+ * of the <code>LogEntryCodec</code> and protected by a CRC32 checksum. A segment is closed when it exceeds the
+ * segment size. Once a batch has been spooled, the repository counts as failing and the persisters spool their
+ * batches directly instead of waiting for the repository, so the import continues at full speed.<br>
+ * <br>
+ * A replayer thread reads the closed segments from the oldest to the newest and stores their batches in the
+ * repository through the <code>WriteController</code>. The offset of the last replayed record will be written into a
+ * state file after every batch, so a replay which has been interrupted resumes behind it (a batch can be stored twice
+ * if the process stops between the write and the update of the state, but never gets lost). A segment will be deleted
+ * as soon as all its records have been replayed. The first successful replay ends the failing state.<br>
+ * <br>
+ * An incomplete record at the end of a segment is the result of a crash while spooling and will be dropped. A segment
+ * with a damaged record (wrong checksum or undecodable entries) will be renamed with the suffix <code>.damaged</code>
+ * instead, so the records behind the damaged one are kept for a manual recovery. A segment which can not be read
+ * because of another I/O error remains untouched and will be replayed again later.
+ * 
+ * @author André Rouél
+ */
+public class LogEntrySpool {
+
+	/**
+	 * Signals a segment which can not be replayed behind a certain record, because the record is damaged
+	 */
+	private static final class DamagedSegmentException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		private DamagedSegmentException(final String message) {
+			super(message);
+		}
+
+		private DamagedSegmentException(final String message, final Throwable cause) {
+			super(message, cause);
+		}
+
+	}
+
+	private final class Replayer implements Runnable {
+
+		private int attempt;
+
+		@Override
+		public void run() {
+			final int before = failedReplays;
+			try {
+				replay();
+			} catch (final RuntimeException e) {
+				// the replayer must be rescheduled in any case, otherwise the spool would never be replayed again
+				LOG.error("Replaying of spooled entries failed: " + e.getLocalizedMessage(), e);
+				failedReplays++;
+			}
+			attempt = (failedReplays != before) ? attempt + 1 : 0;
+			final long delay = (attempt > 0) ? controller.getBackoff(attempt) : REPLAY_INTERVAL;
+			try {
+				executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+			} catch (final RuntimeException e) {
+				// the spool has been closed
+				LOG.debug("Replaying stopped: " + e.getLocalizedMessage());
+			}
+		}
+
+	}
+
+	private static final Logger LOG = LoggerFactory.getLogger(LogEntrySpool.class);
+
+	/**
+	 * Suffix which is appended to the name of a damaged segment file, so it will be kept but not replayed anymore
+	 */
+	private static final String DAMAGED_SUFFIX = ".damaged";
+
+	/**
+	 * Default maximum size of a segment file in bytes
+	 */
+	public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Length of the header of a segment file (magic number and version)
+	 */
+	private static final int HEADER_LENGTH = 5;
+
+	/**
+	 * Magic number at the beginning of a segment file
+	 */
+	private static final int MAGIC = 0x4a4c5350;
+
+	/**
+	 * Prefix of the name of a segment file
+	 */
+	private static final String PREFIX = "segment-";
+
+	/**
+	 * Length of the header of a record (length and checksum of the batch)
+	 */
+	private static final int RECORD_HEADER_LENGTH = 8;
+
+	/**
+	 * Interval in milliseconds in which the replayer looks for spooled batches
+	 */
+	public static final long REPLAY_INTERVAL = 1000;
+
+	/**
+	 * Name of the file which contains the offset of the last replayed record
+	 */
+	private static final String STATE = "replay.state";
+
+	/**
+	 * Suffix of the name of a segment file
+	 */
+	private static final String SUFFIX = ".spool";
+
+	/**
+	 * Version of the binary form of the records
+	 */
+	private static final int VERSION = 1;
+
+	private static long sequenceOf(final File segment) {
+		final String name = segment.getName();
+		return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+	}
+
+	private final WriteController controller;
+
+	private volatile File directory;
+
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Whether the last batch has been spooled because the repository failed and no replay succeeded since
+	 */
+	private volatile boolean failing;
+
+	private volatile int failedReplays;
+
+	/**
+	 * Stream of the current segment or <code>null</code> if the next record starts a new segment
+	 */
+	private FileOutputStream out;
+
+	/**
+	 * Number of entries per second of the last replay
+	 */
+	private volatile double replayRate;
+
+	private final AtomicLong replayedEntries = new AtomicLong();
+
+	/**
+	 * Lock which serializes the replays
+	 */
+	private final Object replayLock = new Object();
+
+	private final long segmentSize;
+
+	/**
+	 * Length of the current segment in bytes
+	 */
+	private long segmentLength;
+
+	/**
+	 * Sequence number of the next segment
+	 */
+	private long sequence;
+
+	private final LogEntryImportService<ReadonlyLogEntry> service;
+
+	/**
+	 * Number of bytes of all segments within the spool directory
+	 */
+	private final AtomicLong size = new AtomicLong();
+
+	private final AtomicLong spooledBatches = new AtomicLong();
+
+	private final AtomicLong spooledEntries = new AtomicLong();
+
+	/**
+	 * Creates a closed spool with segments of the default size.
+	 * 
+	 * @param service
+	 *            service which stores the replayed entries
+	 * @param controller
+	 *            controller of the writes into the repository
+	 */
+	public LogEntrySpool(final LogEntryImportService<ReadonlyLogEntry> service, final WriteController controller) {
+		this(service, controller, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Creates a closed spool.
+	 * 
+	 * @param service
+	 *            service which stores the replayed entries
+	 * @param controller
+	 *            controller of the writes into the repository
+	 * @param segmentSize
+	 *            size in bytes after which a segment file will be closed
+	 */
+	public LogEntrySpool(final LogEntryImportService<ReadonlyLogEntry> service, final WriteController controller,
+			final long segmentSize) {
+		if (service == null) {
+			throw new IllegalArgumentException("Argument 'service' can not be null.");
+		}
+
+		if (controller == null) {
+			throw new IllegalArgumentException("Argument 'controller' can not be null.");
+		}
+
+		if (segmentSize < 1) {
+			throw new IllegalArgumentException("Argument 'segmentSize' must be greater than 0.");
+		}
+
+		this.service = service;
+		this.controller = controller;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Appends a batch of entries to the spool. The batch is durable when this method returns <code>true</code>.
+	 * 
+	 * @param entries
+	 *            entries which could not be stored in the repository
+	 * @return <code>true</code> if the batch has been spooled, <code>false</code> if the spool is closed or the batch
+	 *         could not be written
+	 */
+	public boolean append(final Collection<? extends ReadonlyLogEntry> entries) {
+		if (entries == null) {
+			throw new IllegalArgumentException("Argument 'entries' can not be null.");
+		}
+
+		if (entries.isEmpty()) {
+			return true;
+		}
+
+		final ByteArrayOutputStream body = new ByteArrayOutputStream(entries.size() * 128);
+		try {
+			LogEntryCodec.writeAll(new DataOutputStream(body), entries);
+		} catch (final IOException e) {
+			LOG.warn("Encoding of " + entries.size() + " entries failed: " + e.getLocalizedMessage());
+			return false;
+		}
+		final byte[] record = record(body.toByteArray());
+
+		synchronized (this) {
+			if (directory == null) {
+				return false;
+			}
+
+			try {
+				if (out != null && segmentLength > HEADER_LENGTH && segmentLength + record.length > segmentSize) {
+					roll();
+				}
+				if (out == null) {
+					openSegment();
+				}
+				out.write(record);
+				out.getFD().sync();
+				segmentLength += record.length;
+			} catch (final IOException e) {
+				LOG.warn("Spooling of " + entries.size() + " entries failed: " + e.getLocalizedMessage());
+				closeQuietly();
+				return false;
+			}
+		}
+
+		size.addAndGet(record.length);
+		spooledBatches.incrementAndGet();
+		spooledEntries.addAndGet(entries.size());
+		failing = true;
+		return true;
+	}
+
+	/**
+	 * Stops the replayer and closes the current segment. The spooled batches remain within the directory and will be
+	 * replayed when the spool is opened again.
+	 */
+	public void close() {
+		final ScheduledExecutorService replayer;
+		synchronized (this) {
+			directory = null;
+			closeQuietly();
+			replayer = executor;
+			executor = null;
+		}
+		if (replayer != null) {
+			replayer.shutdownNow();
+		}
+	}
+
+	private void closeQuietly() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (final IOException e) {
+				LOG.warn(e.getLocalizedMessage());
+			}
+			out = null;
+		}
+	}
+
+	/**
+	 * Gets the spool directory.
+	 * 
+	 * @return directory or <code>null</code> if the spool is closed
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Gets the number of entries per second which have been stored in the repository by the last replay.
+	 * 
+	 * @return entries per second
+	 */
+	public double getReplayRate() {
+		return replayRate;
+	}
+
+	/**
+	 * Gets the number of spooled entries which have been stored in the repository by the replayer.
+	 * 
+	 * @return number of entries
+	 */
+	public long getReplayedEntries() {
+		return replayedEntries.get();
+	}
+
+	/**
+	 * Gets the number of segment files within the spool directory.
+	 * 
+	 * @return number of segments
+	 */
+	public int getSegmentCount() {
+		return segments(Long.MAX_VALUE).length;
+	}
+
+	/**
+	 * Gets the size of all segment files within the spool directory.
+	 * 
+	 * @return size in bytes
+	 */
+	public long getSize() {
+		return size.get();
+	}
+
+	/**
+	 * Gets the number of batches which have been spooled since the spool has been created.
+	 * 
+	 * @return number of batches
+	 */
+	public long getSpooledBatches() {
+		return spooledBatches.get();
+	}
+
+	/**
+	 * Gets the number of entries which have been spooled since the spool has been created.
+	 * 
+	 * @return number of entries
+	 */
+	public long getSpooledEntries() {
+		return spooledEntries.get();
+	}
+
+	/**
+	 * Indicates whether batches have been spooled and the repository has not accepted a replayed batch since. While
+	 * the repository is failing, the persisters should spool their batches directly.
+	 * 
+	 * @return <code>true</code> if the repository is failing
+	 */
+	public boolean isFailing() {
+		return failing && directory != null;
+	}
+
+	/**
+	 * Indicates whether batches can be spooled.
+	 * 
+	 * @return <code>true</code> if the spool is open
+	 */
+	public boolean isOpen() {
+		return directory != null;
+	}
+
+	private Properties loadState(final File dir) {
+		final Properties state = new Properties();
+		final File file = new File(dir, STATE);
+		if (file.isFile()) {
+			try {
+				final InputStream in = new FileInputStream(file);
+				try {
+					state.load(in);
+				} finally {
+					in.close();
+				}
+			} catch (final IOException e) {
+				LOG.warn(file.getPath() + " " + e.getLocalizedMessage());
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * Opens the spool within the given directory and starts the replayer. Batches which have been spooled before will
+	 * be replayed. The directory will be created if necessary.
+	 * 
+	 * @param directory
+	 *            spool directory
+	 * @throws IOException
+	 *             if the directory can not be created
+	 */
+	public synchronized void open(final File directory) throws IOException {
+		if (directory == null) {
+			throw new IllegalArgumentException("Argument 'directory' can not be null.");
+		}
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("The directory '" + directory.getPath() + "' can not be created.");
+		}
+
+		close();
+		this.directory = directory;
+		long bytes = 0;
+		sequence = 0;
+		for (final File segment : segments(Long.MAX_VALUE)) {
+			bytes += segment.length();
+			sequence = sequenceOf(segment) + 1;
+		}
+		size.set(bytes);
+		failing = bytes > 0;
+		if (bytes > 0) {
+			LOG.info("Found " + bytes + " bytes of spooled entries in '" + directory.getPath() + "'.");
+		}
+
+		final BasicThreadFactory factory = new BasicThreadFactory.Builder()
+				// attributes
+				.namingPattern("spool-replayer-%d").daemon(true).priority(Thread.NORM_PRIORITY)
+				.uncaughtExceptionHandler(new UncaughtExceptionHandler()).build();
+		executor = Executors.newSingleThreadScheduledExecutor(factory);
+		executor.schedule(new Replayer(), REPLAY_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	private void openSegment() throws IOException {
+		final File segment = new File(directory, PREFIX + String.format("%019d", sequence++) + SUFFIX);
+		out = new FileOutputStream(segment);
+		final DataOutputStream header = new DataOutputStream(out);
+		header.writeInt(MAGIC);
+		header.writeByte(VERSION);
+		header.flush();
+		segmentLength = HEADER_LENGTH;
+		size.addAndGet(HEADER_LENGTH);
+	}
+
+	/**
+	 * Persists a replayed batch as soon as the controller allows one more concurrent write.
+	 */
+	private boolean persist(final List<ReadonlyLogEntry> entries) {
+		try {
+			controller.acquire();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+
+		final long start = System.nanoTime();
+		boolean result = false;
+		try {
+			service.create(entries);
+			result = true;
+		} catch (final Exception e) {
+			LOG.info("Replaying of spooled entries failed: " + e.getLocalizedMessage());
+		} finally {
+			final long nanos = System.nanoTime() - start;
+			if (result) {
+				controller.succeeded(entries.size(), nanos);
+			} else {
+				controller.failed(entries.size(), nanos);
+			}
+			LogFileImporterStatistic.getInstance().getMetrics().persisted(entries.size(), nanos, result);
+		}
+		return result;
+	}
+
+	private static byte[] record(final byte[] body) {
+		final CRC32 crc = new CRC32();
+		crc.update(body);
+		final ByteArrayOutputStream record = new ByteArrayOutputStream(RECORD_HEADER_LENGTH + body.length);
+		final DataOutputStream out = new DataOutputStream(record);
+		try {
+			out.writeInt(body.length);
+			out.writeInt((int) crc.getValue());
+			out.write(body);
+		} catch (final IOException e) {
+			// a byte array does not fail
+			throw new IllegalStateException(e.getLocalizedMessage(), e);
+		}
+		return record.toByteArray();
+	}
+
+	/**
+	 * Stores the spooled batches in the repository, from the oldest to the newest segment. The current segment will be
+	 * closed first, so the batches which are spooled while replaying go into a new segment. The replay stops at the
+	 * first batch the repository does not accept.
+	 * 
+	 * @return number of replayed entries
+	 */
+	public int replay() {
+		synchronized (replayLock) {
+			final File dir;
+			final long limit;
+			synchronized (this) {
+				dir = directory;
+				if (dir == null || size.get() == 0) {
+					return 0;
+				}
+				roll();
+				limit = sequence;
+			}
+
+			final long start = System.nanoTime();
+			final long before = replayedEntries.get();
+			for (final File segment : segments(limit)) {
+				if (!replay(dir, segment)) {
+					failedReplays++;
+					break;
+				}
+			}
+
+			final int count = (int) (replayedEntries.get() - before);
+			if (count > 0) {
+				replayRate = count / ((System.nanoTime() - start) / 1e9);
+				LOG.info("Replayed " + count + " spooled entries (" + Math.round(replayRate) + " entries/s), "
+						+ size.get() + " bytes remain in the spool.");
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Replays a closed segment behind the offset of the last replayed record and deletes it afterwards. A damaged
+	 * segment will be renamed instead.
+	 * 
+	 * @return <code>true</code> if the segment has been replayed completely or put aside, <code>false</code> if the
+	 *         repository failed or the segment could not be read
+	 */
+	private boolean replay(final File dir, final File segment) {
+		final Properties state = loadState(dir);
+		long offset = HEADER_LENGTH;
+		if (segment.getName().equals(state.getProperty("segment"))) {
+			try {
+				offset = Math.max(HEADER_LENGTH, Long.parseLong(state.getProperty("offset", "0")));
+			} catch (final NumberFormatException e) {
+				// replaying the segment from its beginning may store batches twice, but loses none
+				LOG.warn("The replay state of '" + segment.getPath() + "' is damaged and will be ignored: "
+						+ e.getLocalizedMessage());
+			}
+		}
+
+		try {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+			try {
+				if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+					throw new DamagedSegmentException("The file '" + segment.getPath() + "' is not a spool segment.");
+				}
+				for (long skip = offset - HEADER_LENGTH; skip > 0;) {
+					final int skipped = in.skipBytes((int) Math.min(skip, Integer.MAX_VALUE));
+					if (skipped <= 0) {
+						throw new DamagedSegmentException("The offset " + offset
+								+ " is behind the end of the segment.");
+					}
+					skip -= skipped;
+				}
+
+				while (true) {
+					final int length;
+					try {
+						length = in.readInt();
+					} catch (final EOFException e) {
+						break;
+					}
+					if (length < 0) {
+						throw new DamagedSegmentException("Damaged length of the record at offset " + offset + ".");
+					}
+					if (offset + RECORD_HEADER_LENGTH + length > segment.length()) {
+						throw new EOFException("Incomplete record at offset " + offset + ".");
+					}
+					final int checksum = in.readInt();
+					final byte[] body = new byte[length];
+					in.readFully(body);
+					final CRC32 crc = new CRC32();
+					crc.update(body);
+					if ((int) crc.getValue() != checksum) {
+						throw new DamagedSegmentException("Damaged record at offset " + offset + ".");
+					}
+
+					final List<ReadonlyLogEntry> entries;
+					try {
+						entries = LogEntryCodec.readAll(new DataInputStream(new ByteArrayInputStream(body)));
+					} catch (final IOException e) {
+						throw new DamagedSegmentException("Undecodable record at offset " + offset + ".", e);
+					} catch (final RuntimeException e) {
+						throw new DamagedSegmentException("Undecodable record at offset " + offset + ".", e);
+					}
+					if (!persist(entries)) {
+						failing = true;
+						return false;
+					}
+					failing = false;
+					replayedEntries.addAndGet(entries.size());
+					offset += RECORD_HEADER_LENGTH + length;
+					if (!saveState(dir, segment, offset)) {
+						// the replay will be repeated from the last saved offset
+						return false;
+					}
+				}
+			} finally {
+				in.close();
+			}
+		} catch (final DamagedSegmentException e) {
+			return quarantine(dir, segment, offset, e);
+		} catch (final EOFException e) {
+			// a torn record at the end of a segment is the result of a crash while spooling
+			LOG.warn("The incomplete record at the end of the spool segment '" + segment.getPath()
+					+ "' is dropped: " + e.getLocalizedMessage());
+		} catch (final IOException e) {
+			LOG.warn("The spool segment '" + segment.getPath() + "' can not be read and will be replayed later: "
+					+ e.getLocalizedMessage());
+			return false;
+		}
+
+		final long length = segment.length();
+		if (segment.delete()) {
+			size.addAndGet(-length);
+			new File(dir, STATE).delete();
+		} else {
+			LOG.warn("The spool segment '" + segment.getPath() + "' can not be deleted.");
+		}
+		return true;
+	}
+
+	/**
+	 * Renames a damaged segment, so it is kept for a manual recovery but not replayed anymore.
+	 * 
+	 * @return <code>true</code> if the segment has been renamed
+	 */
+	private boolean quarantine(final File dir, final File segment, final long offset, final IOException cause) {
+		File damaged = new File(dir, segment.getName() + DAMAGED_SUFFIX);
+		if (damaged.exists()) {
+			damaged = new File(dir, segment.getName() + "." + System.currentTimeMillis() + DAMAGED_SUFFIX);
+		}
+
+		final long length = segment.length();
+		if (!segment.renameTo(damaged)) {
+			LOG.error("The damaged spool segment '" + segment.getPath() + "' can not be renamed: "
+					+ cause.getLocalizedMessage());
+			return false;
+		}
+
+		size.addAndGet(-length);
+		new File(dir, STATE).delete();
+		LOG.error("The spool segment '" + segment.getPath() + "' is damaged, the records behind offset " + offset
+				+ " have not been replayed and are kept in '" + damaged.getPath() + "': "
+				+ cause.getLocalizedMessage());
+		return true;
+	}
+
+	/**
+	 * Closes the current segment, so the next record starts a new one.
+	 */
+	private void roll() {
+		closeQuietly();
+	}
+
+	/**
+	 * Writes the offset behind the last replayed record into a temporary file, which will be renamed afterwards.
+	 */
+	private boolean saveState(final File dir, final File segment, final long offset) {
+		final Properties state = new Properties();
+		state.setProperty("segment", segment.getName());
+		state.setProperty("offset", String.valueOf(offset));
+
+		final File file = new File(dir, STATE);
+		final File temp = new File(dir, STATE + ".tmp");
+		try {
+			final OutputStream stream = new FileOutputStream(temp);
+			try {
+				state.store(stream, "jacclog spool replay state");
+			} finally {
+				stream.close();
+			}
+		} catch (final IOException e) {
+			LOG.warn(temp.getPath() + " " + e.getLocalizedMessage());
+			return false;
+		}
+
+		// File.renameTo does not replace an existing file on every platform
+		if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+			LOG.warn("The state '" + file.getPath() + "' can not be written.");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the segment files with a sequence number lower than the given limit, from the oldest to the newest.
+	 */
+	private File[] segments(final long limit) {
+		final File dir = directory;
+		if (dir == null) {
+			return new File[0];
+		}
+
+		final File[] segments = dir.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(final File file) {
+				if (!file.isFile() || !file.getName().startsWith(PREFIX) || !file.getName().endsWith(SUFFIX)) {
+					return false;
+				}
+				try {
+					return sequenceOf(file) < limit;
+				} catch (final NumberFormatException e) {
+					return false;
+				}
+			}
+		});
+		if (segments == null) {
+			return new File[0];
+		}
+		// the names are padded with zeros, so they sort by their sequence numbers
+		Arrays.sort(segments);
+		return segments;
+	}
+
+	@Override
+	public String toString() {
+		return "LogEntrySpool [size=" + size.get() + ", spooledEntries=" + spooledEntries.get() + ", replayedEntries="
+				+ replayedEntries.get() + ", replayRate=" + Math.round(replayRate) + "/s, failing=" + failing + "]";
+	}
+
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A byte range of a log file which starts at the beginning of a line and ends behind a line break (or at the end of
+ * the file).
+ * 
+ * @author André Rouél
+ */
+public final class LogFileChunk {
+
+	private static final int SCAN_BUFFER_SIZE = 8192;
+
+	/**
+	 * Searches the first position behind a line break starting at the given position.
+	 * 
+	 * @return position of the next line or the length of the file
+	 */
+	private static long nextLine(final RandomAccessFile file, final long position, final long length)
+			throws IOException {
+		final byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+		long offset = position;
+		file.seek(offset);
+		int read;
+		while (offset < length && (read = file.read(buffer)) > 0) {
+			for (int i = 0; i < read; i++) {
+				if (buffer[i] == '\n') {
+					return offset + i + 1;
+				}
+			}
+			offset += read;
+		}
+		return length;
+	}
+
+	/**
+	 * Splits a file into chunks of roughly the given size. Every boundary between two chunks will be moved forward
+	 * behind the next line break, so no line will be split.
+	 * 
+	 * @param file
+	 *            log file
+	 * @param chunkSize
+	 *            approximate size of a chunk in bytes
+	 * @return ordered list of chunks, which is empty if the file is empty
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static List<LogFileChunk> split(final File file, final long chunkSize) throws IOException {
+		return split(file, 0, chunkSize);
+	}
+
+	/**
+	 * Splits the part of a file behind the given position into chunks of roughly the given size. Every boundary between
+	 * two chunks will be moved forward behind the next line break, so no line will be split.
+	 * 
+	 * @param file
+	 *            log file
+	 * @param start
+	 *            position where the first chunk starts (should be the beginning of a line)
+	 * @param chunkSize
+	 *            approximate size of a chunk in bytes
+	 * @return ordered list of chunks, which is empty if the file ends before the start position
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static List<LogFileChunk> split(final File file, final long start, final long chunkSize)
+			throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		if (start < 0) {
+			throw new IllegalArgumentException("Argument 'start' can not be smaller than 0.");
+		}
+
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Argument 'chunkSize' must be greater than 0.");
+		}
+
+		final List<LogFileChunk> chunks = new ArrayList<LogFileChunk>();
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final long length = raf.length();
+			long position = start;
+			while (position < length) {
+				final long end = (length - position <= chunkSize) ? length : nextLine(raf, position + chunkSize - 1,
+						length);
+				chunks.add(new LogFileChunk(chunks.size(), position, end));
+				position = end;
+			}
+		} finally {
+			raf.close();
+		}
+		return chunks;
+	}
+
+	private final long end;
+
+	private final int index;
+
+	private final long start;
+
+	public LogFileChunk(final int index, final long start, final long end) {
+		if (index < 0) {
+			throw new IllegalArgumentException("Argument 'index' can not be smaller than 0.");
+		}
+
+		if (start < 0) {
+			throw new IllegalArgumentException("Argument 'start' can not be smaller than 0.");
+		}
+
+		if (end < start) {
+			throw new IllegalArgumentException("Argument 'end' can not be smaller than 'start'.");
+		}
+
+		this.index = index;
+		this.start = start;
+		this.end = end;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		final LogFileChunk other = (LogFileChunk) obj;
+		if (end != other.end)
+			return false;
+		if (index != other.index)
+			return false;
+		if (start != other.start)
+			return false;
+		return true;
+	}
+
+	/**
+	 * Position within the file where this chunk ends (exclusive).
+	 * 
+	 * @return end position
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * Position of this chunk within the ordered list of chunks of a file.
+	 * 
+	 * @return index
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Position within the file where this chunk starts.
+	 * 
+	 * @return start position
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (int) (end ^ (end >>> 32));
+		result = prime * result + index;
+		result = prime * result + (int) (start ^ (start >>> 32));
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "chunk " + index + " [" + start + "-" + end + "]";
+	}
+
+}
@@ -0,0 +1,442 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.BlockingQueue;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.internal.parser.MappingException;
+import net.sf.jacclog.service.importer.internal.parser.NcsaByteLogParser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Follows a growing log file like <code>tail -F</code> and puts every new complete line as log entry into a queue.<br>
+ * <br>
+ * Every execution of this task reads the lines appended since the last execution, so it should be scheduled
+ * periodically. A rotation of the file will be detected by a shrinking file size or a changed fingerprint (the first
+ * bytes of the file), because Java 6 has no access to the inode of a file. The remaining lines of a rotated file will
+ * be read from the still open handle before the new file will be followed from its beginning.<br>
+ * <br>
+ * If a checkpoint store is given, every entry will be tracked, so the checkpoint of the file advances as soon as its
+ * line has been committed. A follower which is started again continues at the offset of the checkpoint, regardless
+ * of whether it should start at the end of the file.<br>
+ * <br>
+ * Lines which can not be interpreted are written into the quarantine file of the followed file and the reading
+ * continues with the next line. While a file is followed, its status is registered as running import.
+ * 
+ * @author André Rouél
+ */
+public class LogFileFollower implements Runnable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Number of bytes at the beginning of a file which identify the file
+	 */
+	static final int FINGERPRINT_SIZE = 256;
+
+	private static final Logger LOG = LoggerFactory.getLogger(LogFileFollower.class);
+
+	/**
+	 * Reads up to <code>FINGERPRINT_SIZE</code> bytes from the beginning of a file.
+	 * 
+	 * @return fingerprint or an empty array if the file is empty
+	 */
+	static byte[] fingerprint(final RandomAccessFile file) throws IOException {
+		final byte[] buffer = new byte[(int) Math.min(FINGERPRINT_SIZE, file.length())];
+		file.seek(0);
+		file.readFully(buffer);
+		return buffer;
+	}
+
+	/**
+	 * Checks whether two fingerprints are equal within their common length.
+	 */
+	private static boolean matches(final byte[] a, final byte[] b) {
+		final int length = Math.min(a.length, b.length);
+		for (int i = 0; i < length; i++) {
+			if (a[i] != b[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private byte[] buffer = new byte[BUFFER_SIZE];
+
+	/**
+	 * Store of the checkpoints or <code>null</code> if the followed lines should not be tracked
+	 */
+	private final CheckpointStore checkpoints;
+
+	private boolean closed;
+
+	private long count;
+
+	private final LogFile file;
+
+	/**
+	 * First bytes of the followed file
+	 */
+	private byte[] fingerprint;
+
+	/**
+	 * Open handle of the followed file, which stays valid when the file will be renamed
+	 */
+	private RandomAccessFile handle;
+
+	/**
+	 * Counter of the lines of the currently followed file
+	 */
+	private ImportStatus.Counter lineCounter;
+
+	/**
+	 * Number of lines read from the currently followed file since it has been opened
+	 */
+	private long lines;
+
+	/**
+	 * Position within the followed file behind the last complete line
+	 */
+	private long offset;
+
+	private final NcsaByteLogParser parser;
+
+	/**
+	 * Committed lines of the currently followed file or <code>null</code> if they are not tracked
+	 */
+	private ImportProgress progress;
+
+	/**
+	 * Quarantine of the currently followed file
+	 */
+	private Quarantine quarantine;
+
+	/**
+	 * Directory of the quarantine files or <code>null</code> if they should be placed beside the log files
+	 */
+	private final File quarantineDirectory;
+
+	private final BlockingQueue<ReadonlyLogEntry> queue;
+
+	/**
+	 * Indicates that the current content of the file should be skipped when it will be opened the first time
+	 */
+	private boolean skipExisting;
+
+	/**
+	 * Status of the currently followed file
+	 */
+	private ImportStatus status;
+
+	/**
+	 * Creates a follower of a log file.
+	 * 
+	 * @param file
+	 *            log file to be followed
+	 * @param queue
+	 *            queue for the read log entries
+	 * @param fromEnd
+	 *            <code>true</code> if only lines should be read which are appended after the start of following
+	 * @param checkpoints
+	 *            store of the checkpoints or <code>null</code> if the following should not be resumable
+	 * @param quarantineDirectory
+	 *            directory of the quarantine files or <code>null</code> to place the quarantine file beside the log
+	 *            file
+	 */
+	public LogFileFollower(final LogFile file, final BlockingQueue<ReadonlyLogEntry> queue, final boolean fromEnd,
+			final CheckpointStore checkpoints, final File quarantineDirectory) {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		if (queue == null) {
+			throw new IllegalArgumentException("Argument 'queue' can not be null.");
+		}
+
+		this.file = file;
+		this.queue = queue;
+		this.checkpoints = checkpoints;
+		this.quarantineDirectory = quarantineDirectory;
+		parser = new NcsaByteLogParser(file.getFormat());
+		skipExisting = fromEnd;
+	}
+
+	/**
+	 * Starts tracking the lines of the opened file. The reading continues at the offset of a checkpoint of the file,
+	 * otherwise at the beginning or, if the existing content should be skipped, at the end of the file.
+	 */
+	private void begin(final File path) throws IOException {
+		end();
+		final long length = handle.length();
+		progress = (checkpoints != null) ? checkpoints.begin(path) : null;
+		if (progress != null && progress.getStartOffset() > 0 && progress.getStartOffset() <= length) {
+			offset = progress.getStartOffset();
+		} else {
+			offset = skipExisting ? length : 0;
+			if (checkpoints != null) {
+				progress = new ImportProgress(checkpoints, ImportCheckpoint.create(path, offset, 0, false));
+			}
+		}
+
+		// the lines before a skipped content are not counted, so their records are only identified by the offset
+		final long linesBefore = (progress != null) ? progress.getOrigin().getLines() : 0;
+		quarantine = new Quarantine(Quarantine.fileOf(quarantineDirectory, path), linesBefore, offset > 0);
+		status = LogFileImporterStatistic.getInstance().begin(file, -1, offset);
+		lineCounter = status.createCounter();
+		lines = 0;
+	}
+
+	/**
+	 * Stops following and releases the handle of the file. The lines committed so far will be saved in the checkpoint
+	 * of the file.
+	 */
+	public synchronized void close() {
+		closed = true;
+		closeHandle();
+		flush();
+		end();
+	}
+
+	private void closeHandle() {
+		if (handle != null) {
+			try {
+				handle.close();
+			} catch (final IOException e) {
+				LOG.warn(e.getLocalizedMessage());
+			}
+			handle = null;
+		}
+	}
+
+	/**
+	 * Releases the quarantine of the currently followed file and unregisters its status.
+	 */
+	private void end() {
+		if (quarantine != null) {
+			quarantine.close();
+			if (quarantine.getCount() > 0) {
+				LOG.warn(quarantine.getCount() + " lines of '" + file.getFile().getPath()
+						+ "' could not be interpreted and were written into '" + quarantine.getFile().getPath() + "'.");
+			}
+			quarantine = null;
+		}
+		if (status != null) {
+			lineCounter.flush();
+			lineCounter = null;
+			LogFileImporterStatistic.getInstance().end(status);
+			status = null;
+		}
+	}
+
+	/**
+	 * Saves the lines of the currently followed file, which have been committed so far, and writes the rejected lines
+	 * into the quarantine file.
+	 */
+	private void flush() {
+		if (lineCounter != null) {
+			lineCounter.flush();
+		}
+		if (progress != null) {
+			progress.flush();
+		}
+		if (quarantine != null) {
+			quarantine.flush();
+		}
+	}
+
+	/**
+	 * Gets the number of log entries read so far.
+	 * 
+	 * @return number of entries
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the followed log file.
+	 * 
+	 * @return log file
+	 */
+	public LogFile getFile() {
+		return file;
+	}
+
+	/**
+	 * Gets the position within the currently followed file behind the last complete line.
+	 * 
+	 * @return byte offset
+	 */
+	public synchronized long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Checks whether the path of the followed file points to another file than the open handle.
+	 */
+	private boolean isRotated() throws IOException {
+		final File path = file.getFile();
+		if (!path.exists()) {
+			// renamed, but the new file is not created yet
+			return true;
+		}
+
+		if (path.length() < offset) {
+			// truncated
+			return true;
+		}
+
+		if (fingerprint.length < FINGERPRINT_SIZE) {
+			// the fingerprint of a young file is not complete yet
+			fingerprint = fingerprint(handle);
+		}
+
+		final RandomAccessFile current = new RandomAccessFile(path, "r");
+		try {
+			final byte[] actual = fingerprint(current);
+			return actual.length < fingerprint.length || !matches(actual, fingerprint);
+		} finally {
+			current.close();
+		}
+	}
+
+	/**
+	 * Opens the followed file, if it exists. If the file is still the same as before (e.g. after a read error), the
+	 * reading will be continued at the last offset.
+	 */
+	private boolean open() throws IOException {
+		final File path = file.getFile();
+		if (!path.isFile()) {
+			return false;
+		}
+
+		handle = new RandomAccessFile(path, "r");
+		final byte[] actual = fingerprint(handle);
+		if (fingerprint == null || !matches(actual, fingerprint) || handle.length() < offset) {
+			begin(path);
+		}
+		fingerprint = actual;
+		skipExisting = false;
+		return true;
+	}
+
+	/**
+	 * Reads all complete lines between the offset and the current end of the open handle.
+	 */
+	private void readLines() throws IOException, InterruptedException {
+		final long length = handle.length();
+		while (offset < length) {
+			handle.seek(offset);
+			final int read = handle.read(buffer, 0, (int) Math.min(buffer.length, length - offset));
+			if (read <= 0) {
+				break;
+			}
+
+			int start = 0;
+			for (int i = 0; i < read; i++) {
+				if (buffer[i] == '\n') {
+					final int end = (i > start && buffer[i - 1] == '\r') ? i - 1 : i;
+					readLine(start, end - start, i + 1);
+					start = i + 1;
+				}
+			}
+
+			if (start == 0) {
+				if (read < buffer.length) {
+					// incomplete line, wait until it will be terminated
+					break;
+				}
+				buffer = new byte[buffer.length * 2];
+			}
+			offset += start;
+		}
+	}
+
+	/**
+	 * Parses a line of the buffer and puts its entry into the queue.
+	 * 
+	 * @param next
+	 *            position within the buffer behind the line terminator
+	 */
+	private void readLine(final int start, final int length, final int next) throws InterruptedException {
+		lines++;
+		final ReadonlyLogEntry entry;
+		try {
+			entry = parser.parseLine(buffer, start, length);
+		} catch (final MappingException e) {
+			LOG.debug(file.getFile().getPath() + " " + e.getLocalizedMessage());
+			quarantine.reject(lines, offset + start, Quarantine.reasonOf(e), new String(buffer, start, length, parser
+					.getCharset()));
+			if (progress != null) {
+				progress.skip(offset + start, offset + next);
+			}
+			lineCounter.advance(next - start, false);
+			return;
+		}
+
+		if (progress != null) {
+			queue.put(new TrackedLogEntry(entry, progress, offset + start, offset + next));
+		} else {
+			queue.put(entry);
+		}
+		count++;
+		lineCounter.advance(next - start, true);
+	}
+
+	/**
+	 * Reads the lines appended since the last execution and checks whether the file has been rotated.
+	 */
+	@Override
+	public synchronized void run() {
+		if (closed) {
+			return;
+		}
+
+		try {
+			if (handle == null && !open()) {
+				return;
+			}
+
+			readLines();
+			if (isRotated()) {
+				LOG.info("The file '" + file.getFile().getPath() + "' has been rotated.");
+				// read the lines which are appended until the rotation
+				readLines();
+				closeHandle();
+				flush();
+				fingerprint = null;
+				if (open()) {
+					readLines();
+				}
+			}
+		} catch (final IOException e) {
+			LOG.warn(file.getFile().getPath() + " " + e.getLocalizedMessage());
+			closeHandle();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			flush();
+		}
+	}
+
+}
@@ -18,20 +18,53 @@ package net.sf.jacclog.service.importer.internal;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import net.sf.jacclog.api.domain.ReadonlyLogEntry;
 import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.api.GlobFilter;
 import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.api.ParseReport;
 import net.sf.jacclog.service.importer.api.service.LogEntryImportService;
+import net.sf.jacclog.service.importer.internal.queue.LogFileImportScheduler;
 import net.sf.jacclog.service.importer.internal.queue.LogFileQueue;
 import net.sf.jacclog.service.importer.internal.queue.LogFileQueueImporterObserver;
+import net.sf.jacclog.service.importer.internal.queue.LogFileQueueImporterObserver.UncaughtExceptionHandler;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class LogFileImporter implements net.sf.jacclog.service.importer.api.LogFileImporter {
 
+	/**
+	 * A periodically executed task which follows a file or watches a directory
+	 */
+	private static final class Watch {
+
+		private final ScheduledFuture<?> future;
+
+		private final Runnable task;
+
+		private Watch(final Runnable task, final ScheduledFuture<?> future) {
+			this.task = task;
+			this.future = future;
+		}
+
+	}
+
+	/**
+	 * Default interval in milliseconds to poll followed files and watched directories
+	 */
+	public static final long DEFAULT_POLL_INTERVAL = 1000;
+
 	private static final Logger LOG = LoggerFactory.getLogger(LogFileImporter.class);
 
 	/**
@@ -61,39 +94,22 @@ public class LogFileImporter implements net.sf.jacclog.service.importer.api.LogF
 		}
 
 		final List<File> result = new ArrayList<File>();
-		if (file.isDirectory()) {
-			for (final File f : file.listFiles()) {
-				if (f.isDirectory() && recursive) {
-					result.addAll(addFileToList(f, recursive));
-				}
-				if (f.isFile()) {
-					result.add(f);
-				}
-			}
-		}
-
-		if (file.isFile()) {
-			result.add(file);
+		final LogFileWalker walker = new LogFileWalker(Collections.singletonList(file), recursive, GlobFilter.ALL);
+		while (walker.hasNext()) {
+			result.add(walker.next());
 		}
-
 		return result;
 	}
 
 	/**
-	 * Converts a list of files with a given format into a list of log files.
-	 * 
-	 * @param format
-	 *            format of log files
-	 * @param files
-	 *            list of files
-	 * @return list of log files
+	 * Returns the canonical form of a file to identify followed files and watched directories.
 	 */
-	private static List<LogFile> convertToLogFile(final LogFormat format, final List<File> files) {
-		final List<LogFile> result = new ArrayList<LogFile>();
-		for (final File file : files) {
-			result.add(new LogFile(format, file));
+	private static File canonicalize(final File file) {
+		try {
+			return file.getCanonicalFile();
+		} catch (final IOException e) {
+			return file.getAbsoluteFile();
 		}
-		return result;
 	}
 
 	/**
@@ -101,13 +117,43 @@ public class LogFileImporter implements net.sf.jacclog.service.importer.api.LogF
 	 */
 	private final LogFileQueue files;
 
+	/**
+	 * Interval in milliseconds to poll followed files and watched directories
+	 */
+	private volatile long pollInterval = DEFAULT_POLL_INTERVAL;
+
+	/**
+	 * Scheduler which imports the queued files concurrently
+	 */
+	private final LogFileImportScheduler scheduler;
+
+	private final LogEntryImportService<ReadonlyLogEntry> service;
+
+	/**
+	 * Executor which polls followed files and watched directories
+	 */
+	private final ScheduledExecutorService watcher;
+
+	/**
+	 * Followed files and watched directories by their canonical path
+	 */
+	private final ConcurrentMap<File, Watch> watches = new ConcurrentHashMap<File, Watch>();
+
 	public LogFileImporter(final int capacity, final LogEntryImportService<ReadonlyLogEntry> service) {
 		if (service == null) {
 			throw new IllegalArgumentException("Argument 'service' can not be null.");
 		}
 
+		this.service = service;
 		files = new LogFileQueue(capacity);
-		files.addObserver(new LogFileQueueImporterObserver(service));
+		scheduler = new LogFileImportScheduler(service, files);
+		files.addObserver(new LogFileQueueImporterObserver(scheduler));
+
+		final BasicThreadFactory factory = new BasicThreadFactory.Builder()
+				// attributes
+				.namingPattern("file-watcher-%d").daemon(true).priority(Thread.MIN_PRIORITY)
+				.uncaughtExceptionHandler(new UncaughtExceptionHandler()).build();
+		watcher = Executors.newSingleThreadScheduledExecutor(factory);
 	}
 
 	/**
@@ -122,6 +168,107 @@ public class LogFileImporter implements net.sf.jacclog.service.importer.api.LogF
 		this(capacity, (LogEntryImportService<ReadonlyLogEntry>) service);
 	}
 
+	/**
+	 * Stops following all files and watching all directories, releases the handles of the followed files and stops
+	 * the imports of the queued files. The importer can not import, follow or watch files afterwards.
+	 */
+	public void destroy() {
+		LOG.debug("Stopping the imports, followed files and watched directories of the log file importer...");
+		scheduler.shutdown();
+		synchronized (watches) {
+			watcher.shutdownNow();
+			for (final Watch watch : watches.values()) {
+				watch.future.cancel(false);
+				if (watch.task instanceof LogFileFollower) {
+					// waits until a running execution of the follower has finished
+					((LogFileFollower) watch.task).close();
+				}
+			}
+			watches.clear();
+		}
+	}
+
+	@Override
+	public int discardCheckpoints(final List<File> files) {
+		if (files == null) {
+			throw new IllegalArgumentException("Argument 'files' can not be null.");
+		}
+
+		if (!(service instanceof net.sf.jacclog.service.importer.internal.LogEntryImportService)) {
+			return 0;
+		}
+		final CheckpointStore checkpoints = ((net.sf.jacclog.service.importer.internal.LogEntryImportService) service)
+				.getCheckpoints();
+		if (checkpoints == null) {
+			return 0;
+		}
+
+		int count = 0;
+		for (final File file : files) {
+			try {
+				if (file.isFile() && checkpoints.discard(canonicalize(file))) {
+					count++;
+				}
+			} catch (final IOException e) {
+				LOG.warn(file.getPath() + " " + e.getLocalizedMessage());
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void followFile(final LogFormat format, final File file, final boolean fromEnd) {
+		if (format == null) {
+			throw new IllegalArgumentException("Argument 'format' can not be null.");
+		}
+
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		final File path = canonicalize(file);
+		CheckpointStore checkpoints = null;
+		File quarantineDirectory = null;
+		if (service instanceof net.sf.jacclog.service.importer.internal.LogEntryImportService) {
+			final net.sf.jacclog.service.importer.internal.LogEntryImportService internal;
+			internal = (net.sf.jacclog.service.importer.internal.LogEntryImportService) service;
+			checkpoints = internal.getCheckpoints();
+			quarantineDirectory = internal.getQuarantineDirectory();
+		}
+		final LogFileFollower follower = new LogFileFollower(new LogFile(format, path), service.getQueue(), fromEnd,
+				checkpoints, quarantineDirectory);
+		if (!watch(path, follower)) {
+			follower.close();
+		}
+	}
+
+	/**
+	 * Gets the maximum number of files which are imported at once.
+	 * 
+	 * @return number of files
+	 */
+	public int getConcurrency() {
+		return scheduler.getConcurrency();
+	}
+
+	/**
+	 * Gets the maximum number of files of the same device (file system) which are imported at once.
+	 * 
+	 * @return number of files
+	 */
+	public int getMaxImportsPerDevice() {
+		return scheduler.getMaxImportsPerDevice();
+	}
+
+	/**
+	 * Gets the interval to poll followed files and watched directories.
+	 * 
+	 * @return interval in milliseconds
+	 */
+	public long getPollInterval() {
+		return pollInterval;
+	}
+
 	@Override
 	public net.sf.jacclog.service.importer.api.LogFileImporterStatistic getStatistic() {
 		// TODO return an unmodifiable statistic
@@ -146,69 +293,204 @@ public class LogFileImporter implements net.sf.jacclog.service.importer.api.LogF
 	 * @param recursive
 	 */
 	public void importFile(final LogFormat format, final File file, final boolean recursive) {
-		List<File> logs = null;
+		importFiles(format, Collections.singletonList(file), recursive, GlobFilter.ALL);
+	}
+
+	@Override
+	public void importFiles(final LogFormat format, final List<File> files) {
+		importFiles(format, files, false);
+	}
+
+	@Override
+	public void importFiles(final LogFormat format, final List<File> files, final boolean recursive) {
+		importFiles(format, files, recursive, GlobFilter.ALL);
+	}
+
+	@Override
+	public int importFiles(final LogFormat format, final List<File> files, final boolean recursive,
+			final GlobFilter filter) {
+		if (format == null) {
+			throw new IllegalArgumentException("Argument 'format' can not be null.");
+		}
 
-		if (file.isFile()) {
-			if (isFileInQueue(file)) {
+		if (files == null) {
+			throw new IllegalArgumentException("Argument 'files' can not be null.");
+		}
+
+		int count = 0;
+		final LogFileWalker walker = new LogFileWalker(files, recursive, filter);
+		while (walker.hasNext()) {
+			final File file = walker.next();
+			if (this.files.isQueued(file)) {
 				LOG.info("The path '" + file.getPath() + "' is already in the queue.");
-			} else {
-				logs = addFileToList(file);
+				continue;
+			}
+
+			try {
+				// blocks while the queue is full, so the walk proceeds only as fast as the files are imported
+				this.files.put(new LogFile(format, file));
+				count++;
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				LOG.info("Walking the files to be imported has been interrupted after " + count + " files.");
+				break;
 			}
 		}
+		return count;
+	}
+
+	/**
+	 * Returns <code>true</code> if the given file is followed.
+	 * 
+	 * @param file
+	 * @return <code>true</code> if the file is followed, otherwise <code>false</code>
+	 */
+	public boolean isFollowed(final File file) {
+		final Watch watch = watches.get(canonicalize(file));
+		return watch != null && watch.task instanceof LogFileFollower;
+	}
+
+	/**
+	 * Adds a log file to the queue without waiting for free space, so a thread which is shared by all followed files
+	 * and watched directories is never blocked by a full queue.
+	 * 
+	 * @param format
+	 *            log format of the file
+	 * @param file
+	 *            log file to be imported
+	 * @return <code>true</code> if the file has been queued or is already queued, <code>false</code> if the queue is
+	 *         full
+	 */
+	public boolean offerFile(final LogFormat format, final File file) {
+		if (format == null) {
+			throw new IllegalArgumentException("Argument 'format' can not be null.");
+		}
 
-		if (file.isDirectory()) {
-			logs = addFileToList(file, recursive);
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
 		}
 
-		final List<LogFile> files = convertToLogFile(format, logs);
-		this.files.addAll(files);
+		return files.isQueued(file) || files.offer(new LogFile(format, file));
 	}
 
 	@Override
-	public void importFiles(final LogFormat format, final List<File> files) {
-		importFiles(format, files, false);
+	public List<ParseReport> parseFiles(final LogFormat format, final List<File> files) {
+		return parseFiles(format, files, false, GlobFilter.ALL);
 	}
 
 	@Override
-	public void importFiles(final LogFormat format, final List<File> files, final boolean recursive) {
-		for (final File file : files) {
-			if (file != null && file.exists()) {
-				importFile(format, file, recursive);
-			} else {
-				LOG.info("Path '" + file.getPath() + "' doesn't exist or isn't a file.");
-			}
+	public List<ParseReport> parseFiles(final LogFormat format, final List<File> files, final boolean recursive,
+			final GlobFilter filter) {
+		if (format == null) {
+			throw new IllegalArgumentException("Argument 'format' can not be null.");
+		}
+
+		if (files == null) {
+			throw new IllegalArgumentException("Argument 'files' can not be null.");
+		}
+
+		if (!(service instanceof net.sf.jacclog.service.importer.internal.LogEntryImportService)) {
+			throw new UnsupportedOperationException("A dry run is not supported by the import service '"
+					+ service.getClass().getName() + "'.");
 		}
+
+		final net.sf.jacclog.service.importer.internal.LogEntryImportService parser;
+		parser = (net.sf.jacclog.service.importer.internal.LogEntryImportService) service;
+		final List<ParseReport> reports = new ArrayList<ParseReport>();
+		final LogFileWalker walker = new LogFileWalker(files, recursive, filter);
+		while (walker.hasNext()) {
+			reports.add(parser.parseLogEntries(new LogFile(format, walker.next())));
+		}
+		return reports;
 	}
 
 	/**
-	 * Returns <code>true</code> if this log file queue contains the specified path of the given file.
+	 * Sets the maximum number of files which are imported at once.
 	 * 
-	 * @param file
-	 * @return <code>true</code> if file exists in queue, otherwise <code>false</code>
+	 * @param concurrency
+	 *            number of files
+	 */
+	public void setConcurrency(final int concurrency) {
+		scheduler.setConcurrency(concurrency);
+	}
+
+	/**
+	 * Sets the maximum number of files of the same device (file system) which are imported at once. A limit of
+	 * <code>1</code> avoids parallel reads on a spinning disk.
+	 * 
+	 * @param maxImportsPerDevice
+	 *            number of files
+	 */
+	public void setMaxImportsPerDevice(final int maxImportsPerDevice) {
+		scheduler.setMaxImportsPerDevice(maxImportsPerDevice);
+	}
+
+	/**
+	 * Sets the interval to poll followed files and watched directories. The interval affects only files and
+	 * directories which will be added afterwards.
+	 * 
+	 * @param pollInterval
+	 *            interval in milliseconds
 	 */
-	private boolean isFileInQueue(final File file) {
+	public void setPollInterval(final long pollInterval) {
+		if (pollInterval < 1) {
+			throw new IllegalArgumentException("Argument 'pollInterval' must be greater than 0.");
+		}
+
+		this.pollInterval = pollInterval;
+	}
+
+	@Override
+	public boolean unwatch(final File file) {
 		if (file == null) {
-			throw new IllegalArgumentException("Argument 'file' must be not null.");
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
 		}
 
-		if (!file.exists() || !file.isFile()) {
-			throw new IllegalArgumentException("Argument 'file' doesn't exist or isn't a file.");
+		final Watch watch = watches.remove(canonicalize(file));
+		if (watch == null) {
+			return false;
 		}
 
-		boolean result = false;
+		watch.future.cancel(false);
+		if (watch.task instanceof LogFileFollower) {
+			((LogFileFollower) watch.task).close();
+		}
+		LOG.info("Stopped watching '" + file.getPath() + "'.");
+		return true;
+	}
 
-		for (final LogFile f : files) {
-			try {
-				if (f.getFile().getCanonicalPath().equals(file.getCanonicalPath())) {
-					result = true;
-					break;
-				}
-			} catch (final IOException e) {
-				throw new IllegalStateException(e.getLocalizedMessage(), e);
+	/**
+	 * Schedules the task periodically, unless the path is already followed or watched.
+	 * 
+	 * @return <code>true</code> if the task has been scheduled
+	 */
+	private boolean watch(final File path, final Runnable task) {
+		synchronized (watches) {
+			if (watches.containsKey(path)) {
+				LOG.info("The path '" + path.getPath() + "' is already watched.");
+				return false;
 			}
+
+			final ScheduledFuture<?> future = watcher.scheduleWithFixedDelay(task, 0, pollInterval,
+					TimeUnit.MILLISECONDS);
+			watches.put(path, new Watch(task, future));
 		}
+		LOG.info("Started watching '" + path.getPath() + "'.");
+		return true;
+	}
 
-		return result;
+	@Override
+	public void watchDirectory(final LogFormat format, final File directory) {
+		if (format == null) {
+			throw new IllegalArgumentException("Argument 'format' can not be null.");
+		}
+
+		if (directory == null) {
+			throw new IllegalArgumentException("Argument 'directory' can not be null.");
+		}
+
+		final File path = canonicalize(directory);
+		watch(path, new DirectoryWatcher(this, format, path));
 	}
 
 }
@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.internal.metrics.ImportMetrics;
 
 /**
  * Thread safe implementation of statistical informations about log file importation.
@@ -32,28 +33,23 @@ public final class LogFileImporterStatistic implements net.sf.jacclog.service.im
 
 	private final List<Entry> entries = new CopyOnWriteArrayList<LogFileImporterStatistic.Entry>();
 
+	/**
+	 * Throughput of the stages of the import pipeline, which is published as MBean
+	 */
+	private final ImportMetrics metrics = new ImportMetrics();
+
+	private final List<Progress> running = new CopyOnWriteArrayList<Progress>();
+
 	private static final LogFileImporterStatistic INSTANCE = new LogFileImporterStatistic();
 
 	public static LogFileImporterStatistic getInstance() {
 		return INSTANCE;
 	}
 
-	/**
-	 * Import service for log entries
-	 */
-	// private final LogEntryImportService<LogEntry> service;
-
 	private LogFileImporterStatistic() {
+		metrics.register();
 	}
 
-	// public LogFileImporterStatistic(final LogEntryImportService<LogEntry> service) {
-	// if (service == null) {
-	// throw new IllegalArgumentException("Argument 'service' can not be null.");
-	// }
-	//
-	// this.service = service;
-	// }
-
 	@Override
 	public void addEntry(final Entry entry) {
 		if (entry == null) {
@@ -71,18 +67,45 @@ public final class LogFileImporterStatistic implements net.sf.jacclog.service.im
 		files.add(file);
 	}
 
+	/**
+	 * Registers a running import of a log file.
+	 * 
+	 * @param file
+	 *            log file
+	 * @param size
+	 *            size of the content in bytes or <code>-1</code> if unknown
+	 * @param start
+	 *            position where the import starts
+	 * @return status of the import, which should be passed to <code>end(ImportStatus)</code> when the import is
+	 *         finished
+	 */
+	public ImportStatus begin(final LogFile file, final long size, final long start) {
+		final ImportStatus status = new ImportStatus(file, size, start, metrics);
+		running.add(status);
+		return status;
+	}
+
+	/**
+	 * Unregisters a finished import.
+	 * 
+	 * @param status
+	 *            status returned by <code>begin</code>
+	 */
+	public void end(final ImportStatus status) {
+		running.remove(status);
+	}
+
 	@Override
 	public List<Entry> getEntries() {
 		return Collections.unmodifiableList(entries);
 	}
 
+	/**
+	 * Returns the count of log entries which have been stored in the repository.
+	 */
 	@Override
 	public int getImportedLogEntryCount() {
-		final int result = -1;
-		// if (service.getQueue().getTotalElementCountCounter() != null) {
-		// result = service.getQueue().getTotalElementCountCounter().getCount();
-		// }
-		return result;
+		return (int) Math.min(Integer.MAX_VALUE, metrics.getCommittedEntries());
 	}
 
 	@Override
@@ -90,6 +113,25 @@ public final class LogFileImporterStatistic implements net.sf.jacclog.service.im
 		return Collections.unmodifiableList(files);
 	}
 
+	/**
+	 * Gets the measurements of the stages of the import pipeline, which are updated by the readers and persisters.
+	 * 
+	 * @return metrics
+	 */
+	public ImportMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public List<Progress> getRunningImports() {
+		return Collections.unmodifiableList(running);
+	}
+
+	@Override
+	public Throughput getThroughput() {
+		return metrics;
+	}
+
 	public void reset() {
 		entries.clear();
 		files.clear();
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import net.sf.jacclog.service.importer.api.GlobFilter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Walks lazily through files and directory trees and returns the log files one after another, so the first file can be
+ * imported long before a large archive of rotated logs has been walked completely.<br>
+ * <br>
+ * A directory is listed not before the walk reaches it and only the entries of the directories on the current path
+ * are held in memory. The entries of a directory are returned in the order of their names. Files which are reachable
+ * through several paths (e.g. by symbolic links or because a file and its directory have been given) are returned
+ * only once, which is detected by a hash set of their canonical paths. The same set prevents endless walks through
+ * cyclic links of directories.<br>
+ * <br>
+ * The filter is applied to the contents of the given directories, whereas given files are always returned.<br>
+ * <br>
+ * This walker is not thread-safe.
+ * 
+ * @author André Rouél
+ */
+public class LogFileWalker implements Iterator<File> {
+
+	/**
+	 * Listed entries of a directory on the current path
+	 */
+	private static final class Level {
+
+		private final File[] entries;
+
+		private int index;
+
+		/**
+		 * Path of the directory relative to the root of the walk, ending with <code>/</code> (or empty for the root)
+		 */
+		private final String prefix;
+
+		private Level(final File[] entries, final String prefix) {
+			this.entries = entries;
+			this.prefix = prefix;
+		}
+
+	}
+
+	private static final Logger LOG = LoggerFactory.getLogger(LogFileWalker.class);
+
+	/**
+	 * Returns the canonical path of a file, which identifies it independently of the path it has been reached by.
+	 */
+	private static String canonicalPathOf(final File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (final IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	private final GlobFilter filter;
+
+	/**
+	 * Directories on the current path of the walk
+	 */
+	private final Deque<Level> levels = new ArrayDeque<Level>();
+
+	/**
+	 * File which will be returned by the next call of <code>next()</code>
+	 */
+	private File next;
+
+	private final boolean recursive;
+
+	/**
+	 * Remaining files and directories to be walked
+	 */
+	private final Iterator<File> roots;
+
+	/**
+	 * Canonical paths of returned files and walked directories
+	 */
+	private final Set<String> visited = new HashSet<String>();
+
+	/**
+	 * Creates a walker through the given files and directories.
+	 * 
+	 * @param roots
+	 *            files and directories to be walked
+	 * @param recursive
+	 *            <code>true</code> if subdirectories should be walked too
+	 * @param filter
+	 *            filter of the files and subdirectories of the given directories
+	 */
+	public LogFileWalker(final List<File> roots, final boolean recursive, final GlobFilter filter) {
+		if (roots == null) {
+			throw new IllegalArgumentException("Argument 'roots' can not be null.");
+		}
+
+		if (filter == null) {
+			throw new IllegalArgumentException("Argument 'filter' can not be null.");
+		}
+
+		this.roots = roots.iterator();
+		this.recursive = recursive;
+		this.filter = filter;
+	}
+
+	/**
+	 * Searches the next file of the walk.
+	 * 
+	 * @return next file or <code>null</code> if the walk is finished
+	 */
+	private File advance() {
+		while (true) {
+			final Level level = levels.peek();
+			if (level == null) {
+				if (!roots.hasNext()) {
+					return null;
+				}
+				final File root = roots.next();
+				if (root == null || !root.exists()) {
+					LOG.info("Path '" + root + "' doesn't exist or isn't a file.");
+				} else if (root.isDirectory()) {
+					enter(root, "");
+				} else if (visited.add(canonicalPathOf(root))) {
+					return root;
+				} else {
+					LOG.info("The path '" + root.getPath() + "' has already been walked and will be ignored.");
+				}
+			} else if (level.index < level.entries.length) {
+				final File entry = level.entries[level.index++];
+				final String path = level.prefix + entry.getName();
+				if (entry.isDirectory()) {
+					if (recursive && filter.accept(path, true)) {
+						enter(entry, path + "/");
+					}
+				} else if (entry.isFile() && filter.accept(path, false) && visited.add(canonicalPathOf(entry))) {
+					return entry;
+				}
+			} else {
+				levels.pop();
+			}
+		}
+	}
+
+	/**
+	 * Lists a directory and descends into it, unless it has already been walked.
+	 */
+	private void enter(final File directory, final String prefix) {
+		if (!visited.add(canonicalPathOf(directory))) {
+			LOG.debug("The directory '" + directory.getPath() + "' has already been walked and will be ignored.");
+			return;
+		}
+
+		final File[] entries = directory.listFiles();
+		if (entries == null) {
+			LOG.warn("The directory '" + directory.getPath() + "' can not be listed.");
+			return;
+		}
+
+		Arrays.sort(entries);
+		levels.push(new Level(entries, prefix));
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null) {
+			next = advance();
+		}
+		return next != null;
+	}
+
+	@Override
+	public File next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		final File result = next;
+		next = null;
+		return result;
+	}
+
+	/**
+	 * This method is not implemented and throws an <code>UnsupportedOperationException</code>.
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+}
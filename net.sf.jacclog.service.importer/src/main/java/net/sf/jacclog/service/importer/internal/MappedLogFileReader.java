@@ -0,0 +1,376 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.internal.parser.MappingException;
+import net.sf.jacclog.service.importer.internal.parser.NcsaByteLogParser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A log file reader which memory-maps the file and scans the raw bytes for line breaks.<br>
+ * <br>
+ * The file will be mapped in regions, so files larger than 2 GB can be read too. A line will be copied into a
+ * reusable buffer and handed to a <code>NcsaByteLogParser</code>, thus no characters have to be decoded before the
+ * mapping stage requests a field.
+ * 
+ * @author André Rouél
+ */
+public class MappedLogFileReader implements PositionedLogReader {
+
+	/**
+	 * The logger
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(MappedLogFileReader.class);
+
+	/**
+	 * Default size of a mapped region of the file in bytes
+	 */
+	public static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+	private static final int INITIAL_LINE_CAPACITY = 1024;
+
+	private FileChannel channel;
+
+	/**
+	 * Position within the file where reading stops (exclusive)
+	 */
+	private final long end;
+
+	private boolean failed;
+
+	private byte[] line = new byte[INITIAL_LINE_CAPACITY];
+
+	/**
+	 * Position within the file behind the line terminator of the last read line
+	 */
+	private long lineEnd;
+
+	/**
+	 * Length of the last read line within the line buffer
+	 */
+	private int lineLength;
+
+	private long lineNumber;
+
+	/**
+	 * Position within the file of the first byte of the last read line
+	 */
+	private long lineStart;
+
+	private final NcsaByteLogParser parser;
+
+	/**
+	 * Current mapped region of the file
+	 */
+	private MappedByteBuffer region;
+
+	private int regionSize;
+
+	/**
+	 * Position of the current region within the file
+	 */
+	private long regionStart;
+
+	/**
+	 * Position within the file where reading starts
+	 */
+	private final long start;
+
+	/**
+	 * Creates a memory-mapped log file reader.
+	 * 
+	 * @param file
+	 *            An access log file
+	 * @param parser
+	 *            A parser for the log entry lines
+	 */
+	public MappedLogFileReader(final File file, final NcsaByteLogParser parser) {
+		this(file, parser, DEFAULT_REGION_SIZE);
+	}
+
+	/**
+	 * Creates a memory-mapped log file reader.
+	 * 
+	 * @param file
+	 *            An access log file
+	 * @param parser
+	 *            A parser for the log entry lines
+	 * @param regionSize
+	 *            Size of a mapped region in bytes
+	 */
+	public MappedLogFileReader(final File file, final NcsaByteLogParser parser, final int regionSize) {
+		this(file, parser, 0, Long.MAX_VALUE, regionSize);
+	}
+
+	/**
+	 * Creates a memory-mapped log file reader which reads only a byte range of a file.<br>
+	 * <br>
+	 * The range should be aligned on line breaks (see <code>LogFileChunk</code>), otherwise the first and the last line
+	 * of the range are truncated. The line numbers of this reader are relative to the start of the range.
+	 * 
+	 * @param file
+	 *            An access log file
+	 * @param parser
+	 *            A parser for the log entry lines
+	 * @param start
+	 *            Position within the file where reading starts
+	 * @param end
+	 *            Position within the file where reading stops (exclusive)
+	 * @param regionSize
+	 *            Size of a mapped region in bytes
+	 */
+	public MappedLogFileReader(final File file, final NcsaByteLogParser parser, final long start, final long end,
+			final int regionSize) {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		if (parser == null) {
+			throw new IllegalArgumentException("Argument 'parser' can not be null.");
+		}
+
+		if (start < 0) {
+			throw new IllegalArgumentException("Argument 'start' can not be smaller than 0.");
+		}
+
+		if (end < start) {
+			throw new IllegalArgumentException("Argument 'end' can not be smaller than 'start'.");
+		}
+
+		if (regionSize < 1) {
+			throw new IllegalArgumentException("Argument 'regionSize' must be greater than 0.");
+		}
+
+		this.parser = parser;
+		this.regionSize = regionSize;
+		this.start = start;
+
+		FileChannel ch = null;
+		long size = 0;
+		try {
+			ch = new FileInputStream(file).getChannel();
+			size = ch.size();
+		} catch (final IOException e) {
+			if (LOG.isWarnEnabled()) {
+				LOG.warn(e.getLocalizedMessage());
+			}
+			failed = true;
+			close(ch);
+			ch = null;
+		}
+		channel = ch;
+		this.end = Math.min(end, size);
+	}
+
+	/**
+	 * Creates a memory-mapped log file reader.
+	 * 
+	 * @param file
+	 */
+	public MappedLogFileReader(final LogFile file) {
+		this(file.getFile(), new NcsaByteLogParser(file.getFormat()));
+	}
+
+	private static void close(final FileChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (final IOException e) {
+				LOG.warn(e.getLocalizedMessage());
+			}
+		}
+	}
+
+	/**
+	 * Releases the underlying file channel. A mapped region stays valid until it will be garbage collected.
+	 */
+	@Override
+	public void close() {
+		close(channel);
+		channel = null;
+		region = null;
+	}
+
+	/**
+	 * Copies the given region of the mapped buffer into the reusable line buffer.
+	 */
+	private int copyLine(final int start, final int end) {
+		final int length = end - start;
+		if (line.length < length) {
+			line = new byte[Math.max(length, line.length * 2)];
+		}
+		region.position(start);
+		region.get(line, 0, length);
+		return length;
+	}
+
+	@Override
+	public String getLine() {
+		return new String(line, 0, lineLength, parser.getCharset());
+	}
+
+	@Override
+	public long getLineEnd() {
+		return lineEnd;
+	}
+
+	/**
+	 * Returns the number of the last read line.
+	 * 
+	 * @return line number
+	 */
+	@Override
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	@Override
+	public long getLineStart() {
+		return lineStart;
+	}
+
+	/**
+	 * Returns the parser which interprets the log entries of a log-file.
+	 * 
+	 * @return log parser
+	 */
+	public NcsaByteLogParser getParser() {
+		return parser;
+	}
+
+	@Override
+	public boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 * Maps the region of the file which starts at the given position.
+	 */
+	private void map(final long position) throws IOException {
+		final long size = Math.min(regionSize, end - position);
+		region = channel.map(MapMode.READ_ONLY, position, size);
+		regionStart = position;
+	}
+
+	@Override
+	public List<ReadonlyLogEntry> read(final int count) {
+		final List<ReadonlyLogEntry> entries = new ArrayList<ReadonlyLogEntry>();
+		int counter = 0;
+		ReadonlyLogEntry entry;
+
+		do {
+			entry = readEntry();
+			if (entry != null) {
+				entries.add(entry);
+			}
+			counter++;
+		} while (entry != null && counter < count);
+
+		return entries;
+	}
+
+	/**
+	 * Reads the next line into the line buffer.
+	 * 
+	 * @return length of the line without line terminator or <code>-1</code> if the end of the file is reached
+	 */
+	private int readLine() throws IOException {
+		if (region == null) {
+			if (start >= end) {
+				return -1;
+			}
+			map(start);
+		}
+
+		while (true) {
+			final int first = region.position();
+			final int limit = region.limit();
+			final boolean last = regionStart + limit >= end;
+			if (first >= limit && last) {
+				return -1;
+			}
+
+			int terminator = first;
+			while (terminator < limit && region.get(terminator) != '\n') {
+				terminator++;
+			}
+
+			if (terminator < limit || last) {
+				int length = copyLine(first, terminator);
+				region.position(terminator < limit ? terminator + 1 : terminator);
+				lineStart = regionStart + first;
+				lineEnd = regionStart + region.position();
+				if (length > 0 && line[length - 1] == '\r') {
+					length--;
+				}
+				lineNumber++;
+				return length;
+			}
+
+			// the line crosses the end of this region
+			if (first == 0) {
+				regionSize = (int) Math.min(Integer.MAX_VALUE, regionSize * 2L);
+			}
+			map(regionStart + first);
+		}
+	}
+
+	/**
+	 * Reads the next line of the mapped file and converts it to a log entry.
+	 * <p>
+	 * If errors happen while mapping the tokens to the fields of a log entry, then a <code>MappingException</code> will
+	 * be thrown.
+	 * </p>
+	 */
+	@Override
+	public ReadonlyLogEntry readEntry() {
+		ReadonlyLogEntry entry = null;
+		if (channel != null) {
+			try {
+				final int length = readLine();
+				lineLength = Math.max(0, length);
+				if (length < 0) {
+					close();
+				} else {
+					try {
+						entry = parser.parseLine(line, 0, length);
+					} catch (final MappingException e) {
+						final String prefix = "at line " + lineNumber + ": ";
+						throw new MappingException(prefix + e.getLocalizedMessage(), e);
+					}
+				}
+			} catch (final IOException e) {
+				LOG.warn(e.getLocalizedMessage());
+				failed = true;
+			}
+		}
+		return entry;
+	}
+
+}
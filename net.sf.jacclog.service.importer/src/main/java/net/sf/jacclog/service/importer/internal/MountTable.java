@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the device (file system) on which a file is stored.<br>
+ * <br>
+ * On Linux the table of mounted file systems (<code>/proc/mounts</code>) will be read and a file belongs to the
+ * device of the longest mount point which contains the file. On other platforms the root of a path (e.g. a drive
+ * letter) identifies the device.
+ * 
+ * @author André Rouél
+ */
+public final class MountTable {
+
+	/**
+	 * A mounted file system
+	 */
+	private static final class Mount {
+
+		private final String device;
+
+		private final String path;
+
+		private Mount(final String device, final String path) {
+			this.device = device;
+			this.path = path;
+		}
+
+		private boolean contains(final String file) {
+			if (!file.startsWith(path)) {
+				return false;
+			}
+			return path.endsWith(File.separator) || file.length() == path.length()
+					|| file.charAt(path.length()) == File.separatorChar;
+		}
+
+	}
+
+	private static final Logger LOG = LoggerFactory.getLogger(MountTable.class);
+
+	/**
+	 * Table of the mounted file systems on Linux
+	 */
+	private static final File PROC_MOUNTS = new File("/proc/mounts");
+
+	/**
+	 * Reads the table of the mounted file systems of this machine. If no table is available, the roots of the paths
+	 * are used as devices.
+	 * 
+	 * @return mount table
+	 */
+	public static MountTable load() {
+		if (PROC_MOUNTS.canRead()) {
+			try {
+				final Reader reader = new InputStreamReader(new FileInputStream(PROC_MOUNTS), "UTF-8");
+				try {
+					return parse(reader);
+				} finally {
+					reader.close();
+				}
+			} catch (final IOException e) {
+				LOG.warn(PROC_MOUNTS.getPath() + " " + e.getLocalizedMessage());
+			}
+		}
+		return new MountTable(new ArrayList<Mount>());
+	}
+
+	/**
+	 * Parses a table in the format of <code>/proc/mounts</code> (device, mount point and further columns separated by
+	 * whitespace; spaces within names are escaped as <code>\040</code>).
+	 * 
+	 * @param reader
+	 *            table
+	 * @return mount table
+	 * @throws IOException
+	 *             if the table can not be read
+	 */
+	public static MountTable parse(final Reader reader) throws IOException {
+		if (reader == null) {
+			throw new IllegalArgumentException("Argument 'reader' can not be null.");
+		}
+
+		final List<Mount> mounts = new ArrayList<Mount>();
+		final BufferedReader lines = new BufferedReader(reader);
+		String line;
+		while ((line = lines.readLine()) != null) {
+			final String[] columns = line.trim().split("\\s+");
+			if (columns.length >= 2) {
+				mounts.add(new Mount(unescape(columns[0]), unescape(columns[1])));
+			}
+		}
+		return new MountTable(mounts);
+	}
+
+	private static String unescape(final String value) {
+		return value.replace("\\040", " ").replace("\\011", "\t").replace("\\134", "\\");
+	}
+
+	/**
+	 * Mounts ordered by the length of their paths, the longest first
+	 */
+	private final List<Mount> mounts;
+
+	private MountTable(final List<Mount> mounts) {
+		Collections.sort(mounts, new Comparator<Mount>() {
+			@Override
+			public int compare(final Mount m1, final Mount m2) {
+				return m2.path.length() - m1.path.length();
+			}
+		});
+		this.mounts = mounts;
+	}
+
+	/**
+	 * Returns the device on which the given file is stored.
+	 * 
+	 * @param file
+	 *            file
+	 * @return name of the device (never <code>null</code>)
+	 */
+	public String deviceOf(final File file) {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		String path;
+		try {
+			path = file.getCanonicalPath();
+		} catch (final IOException e) {
+			path = file.getAbsolutePath();
+		}
+
+		for (final Mount mount : mounts) {
+			if (mount.contains(path)) {
+				return mount.device;
+			}
+		}
+
+		final File[] roots = File.listRoots();
+		if (roots != null) {
+			for (final File root : roots) {
+				if (path.startsWith(root.getPath())) {
+					return root.getPath();
+				}
+			}
+		}
+		return "";
+	}
+
+}
@@ -0,0 +1,469 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * An input stream which inflates the members of a multi-member gzip file (e.g. concatenated rotated logs or files
+ * written by <i>pigz</i> or <i>bgzip</i>) in parallel.<br>
+ * <br>
+ * The start of a member can not be known without inflating its predecessor, therefore the file will be scanned for
+ * gzip headers first. Every candidate will be inflated by an executor, but only members which follow each other
+ * seamlessly from the beginning of the file will be delivered in order. Candidates which are only a coincidental
+ * header pattern within compressed data fail to inflate or are skipped.<br>
+ * <br>
+ * The number of members held in memory is limited to the window size. If a member is larger than
+ * <code>MAX_MEMBER_SIZE</code> the remaining file will be inflated sequentially.
+ * 
+ * @author André Rouél
+ */
+public class ParallelGzipInputStream extends InputStream {
+
+	/**
+	 * An inflated member of a gzip file
+	 */
+	static final class Member {
+
+		private final byte[] data;
+
+		private final long end;
+
+		private Member(final byte[] data, final long end) {
+			this.data = data;
+			this.end = end;
+		}
+
+		/**
+		 * Gets the inflated data of this member.
+		 * 
+		 * @return data
+		 */
+		byte[] getData() {
+			return data;
+		}
+
+		/**
+		 * Gets the position within the file behind the trailer of this member.
+		 * 
+		 * @return end position (exclusive)
+		 */
+		long getEnd() {
+			return end;
+		}
+
+	}
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int FEXTRA = 4;
+
+	private static final int FHCRC = 2;
+
+	private static final int FCOMMENT = 16;
+
+	private static final int FNAME = 8;
+
+	private static final int FRESERVED = 0xe0;
+
+	private static final int HEADER_SIZE = 10;
+
+	/**
+	 * Maximum size of an inflated member in bytes which will be held in memory
+	 */
+	public static final int MAX_MEMBER_SIZE = 16 * 1024 * 1024;
+
+	private static final int TRAILER_SIZE = 8;
+
+	/**
+	 * Inflates the member which starts at the given position of a gzip file.
+	 * 
+	 * @param channel
+	 *            channel of a gzip file
+	 * @param start
+	 *            position of the member header
+	 * @param maxSize
+	 *            maximum size of the inflated member in bytes
+	 * @return member or <code>null</code> if there is no valid member at the given position or it is too large
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	static Member inflate(final FileChannel channel, final long start, final int maxSize) throws IOException {
+		final byte[] header = new byte[HEADER_SIZE];
+		if (read(channel, header, start) < HEADER_SIZE || !isHeader(header, 0)) {
+			return null;
+		}
+
+		long position = start + HEADER_SIZE;
+		final int flags = header[3] & 0xff;
+		if ((flags & FEXTRA) != 0) {
+			final byte[] length = new byte[2];
+			if (read(channel, length, position) < length.length) {
+				return null;
+			}
+			position += 2 + ((length[0] & 0xff) | (length[1] & 0xff) << 8);
+		}
+		if ((flags & FNAME) != 0) {
+			position = skipZeroTerminated(channel, position);
+		}
+		if ((flags & FCOMMENT) != 0) {
+			position = skipZeroTerminated(channel, position);
+		}
+		if ((flags & FHCRC) != 0) {
+			position += 2;
+		}
+		if (position < 0) {
+			return null;
+		}
+
+		final Inflater inflater = new Inflater(true);
+		final CRC32 crc = new CRC32();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+		try {
+			final byte[] input = new byte[BUFFER_SIZE];
+			final byte[] output = new byte[BUFFER_SIZE];
+			long offset = position;
+			while (!inflater.finished()) {
+				if (inflater.needsInput()) {
+					final int length = read(channel, input, offset);
+					if (length <= 0) {
+						// truncated member
+						return null;
+					}
+					offset += length;
+					inflater.setInput(input, 0, length);
+				}
+
+				final int length = inflater.inflate(output);
+				if (length == 0 && inflater.needsDictionary()) {
+					return null;
+				}
+				crc.update(output, 0, length);
+				out.write(output, 0, length);
+				if (out.size() > maxSize) {
+					return null;
+				}
+			}
+
+			final long trailerStart = position + inflater.getBytesRead();
+			final byte[] trailer = new byte[TRAILER_SIZE];
+			if (read(channel, trailer, trailerStart) < TRAILER_SIZE || readInt(trailer, 0) != crc.getValue()
+					|| readInt(trailer, 4) != (out.size() & 0xffffffffL)) {
+				return null;
+			}
+			return new Member(out.toByteArray(), trailerStart + TRAILER_SIZE);
+		} catch (final DataFormatException e) {
+			return null;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Checks whether a gzip member header with deflate compression starts at the given offset.
+	 */
+	private static boolean isHeader(final byte[] buffer, final int offset) {
+		return (buffer[offset] & 0xff) == 0x1f && (buffer[offset + 1] & 0xff) == 0x8b && buffer[offset + 2] == 8
+				&& (buffer[offset + 3] & FRESERVED) == 0;
+	}
+
+	/**
+	 * Reads bytes at the given position of the channel until the buffer is full or the end is reached.
+	 * 
+	 * @return number of read bytes
+	 */
+	private static int read(final FileChannel channel, final byte[] buffer, final long position) throws IOException {
+		final ByteBuffer b = ByteBuffer.wrap(buffer);
+		while (b.hasRemaining()) {
+			if (channel.read(b, position + b.position()) < 0) {
+				break;
+			}
+		}
+		return b.position();
+	}
+
+	/**
+	 * Reads an unsigned 32-bit integer in little-endian byte order.
+	 */
+	private static long readInt(final byte[] buffer, final int offset) {
+		return (buffer[offset] & 0xffL) | (buffer[offset + 1] & 0xffL) << 8 | (buffer[offset + 2] & 0xffL) << 16
+				| (buffer[offset + 3] & 0xffL) << 24;
+	}
+
+	/**
+	 * Searches all positions of a file which look like the header of a gzip member.
+	 * 
+	 * @param channel
+	 *            channel of a gzip file
+	 * @return ascending positions of candidates
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	static long[] scan(final FileChannel channel) throws IOException {
+		final List<Long> candidates = new ArrayList<Long>();
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		final long size = channel.size();
+		long position = 0;
+		while (position + 3 < size) {
+			final int length = read(channel, buffer, position);
+			for (int i = 0; i + 3 < length; i++) {
+				if (isHeader(buffer, i)) {
+					candidates.add(position + i);
+				}
+			}
+			// the last bytes of a buffer will be checked again with the next one
+			position += Math.max(1, length - 3);
+		}
+
+		final long[] result = new long[candidates.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = candidates.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Skips a zero-terminated string of a gzip header.
+	 * 
+	 * @return position behind the terminator or <code>-1</code> if the end of the file is reached
+	 */
+	private static long skipZeroTerminated(final FileChannel channel, final long position) throws IOException {
+		if (position < 0) {
+			return -1;
+		}
+
+		final byte[] buffer = new byte[256];
+		long offset = position;
+		int length;
+		while ((length = read(channel, buffer, offset)) > 0) {
+			for (int i = 0; i < length; i++) {
+				if (buffer[i] == 0) {
+					return offset + i + 1;
+				}
+			}
+			offset += length;
+		}
+		return -1;
+	}
+
+	/**
+	 * Positions of all candidates of members
+	 */
+	private final long[] candidates;
+
+	private final FileChannel channel;
+
+	private byte[] current;
+
+	private final ExecutorService executor;
+
+	/**
+	 * Index of the next candidate which will be submitted to the executor
+	 */
+	private int nextCandidate;
+
+	/**
+	 * Members which are inflated or will be inflated, by their start position
+	 */
+	private final Map<Long, Future<Member>> pending = new HashMap<Long, Future<Member>>();
+
+	/**
+	 * Position within the file where the next member starts
+	 */
+	private long position;
+
+	private int offset;
+
+	/**
+	 * Stream to inflate the rest of the file sequentially, if parallel inflation is not possible
+	 */
+	private InputStream tail;
+
+	private final int window;
+
+	/**
+	 * Creates a stream which inflates the members of the given file in parallel.
+	 * 
+	 * @param file
+	 *            gzip file
+	 * @param executor
+	 *            executor to inflate members
+	 * @param window
+	 *            maximum number of members which will be inflated ahead
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public ParallelGzipInputStream(final File file, final ExecutorService executor, final int window)
+			throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		if (executor == null) {
+			throw new IllegalArgumentException("Argument 'executor' can not be null.");
+		}
+
+		if (window < 1) {
+			throw new IllegalArgumentException("Argument 'window' must be greater than 0.");
+		}
+
+		this.executor = executor;
+		this.window = window;
+		channel = new FileInputStream(file).getChannel();
+		try {
+			candidates = scan(channel);
+		} catch (final IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Cancels all pending members which start before the current position.
+	 */
+	private void discardPassedMembers() {
+		final Iterator<Map.Entry<Long, Future<Member>>> it = pending.entrySet().iterator();
+		while (it.hasNext()) {
+			final Map.Entry<Long, Future<Member>> entry = it.next();
+			if (entry.getKey() < position) {
+				entry.getValue().cancel(false);
+				it.remove();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (final Future<Member> future : pending.values()) {
+			future.cancel(false);
+		}
+		pending.clear();
+		current = null;
+		if (tail != null) {
+			tail.close();
+		}
+		channel.close();
+	}
+
+	/**
+	 * Submits candidates behind the current position until the window is full.
+	 */
+	private void fillWindow() {
+		while (pending.size() < window && nextCandidate < candidates.length) {
+			final long start = candidates[nextCandidate++];
+			if (start >= position) {
+				pending.put(start, executor.submit(new Callable<Member>() {
+					@Override
+					public Member call() throws IOException {
+						return inflate(channel, start, MAX_MEMBER_SIZE);
+					}
+				}));
+			}
+		}
+	}
+
+	/**
+	 * Ensures that the current member contains unread bytes or the sequential tail is active.
+	 * 
+	 * @return <code>false</code> if the end of the file is reached
+	 */
+	private boolean next() throws IOException {
+		while (tail == null && (current == null || offset >= current.length)) {
+			if (position >= channel.size()) {
+				return false;
+			}
+
+			fillWindow();
+			final Future<Member> future = pending.remove(position);
+			Member member = null;
+			if (future != null) {
+				try {
+					member = future.get();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException(e.getLocalizedMessage());
+				} catch (final ExecutionException e) {
+					throw new IOException(e.getCause());
+				}
+			}
+
+			if (member == null) {
+				// no candidate or the member is too large, therefore the rest will be inflated sequentially
+				for (final Future<Member> f : pending.values()) {
+					f.cancel(false);
+				}
+				pending.clear();
+				tail = new GZIPInputStream(Channels.newInputStream(channel.position(position)), BUFFER_SIZE);
+			} else {
+				current = member.getData();
+				offset = 0;
+				position = member.getEnd();
+				discardPassedMembers();
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!next()) {
+			return -1;
+		}
+		return tail != null ? tail.read() : current[offset++] & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		if (!next()) {
+			return -1;
+		}
+
+		if (tail != null) {
+			return tail.read(b, off, len);
+		}
+
+		final int length = Math.min(len, current.length - offset);
+		System.arraycopy(current, offset, b, off, length);
+		offset += length;
+		return length;
+	}
+
+}
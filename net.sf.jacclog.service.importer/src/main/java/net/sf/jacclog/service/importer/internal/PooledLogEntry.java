@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+
+/**
+ * A reusable, mutable log entry which belongs to a <code>LogEntryPool</code>.<br>
+ * <br>
+ * The parser decodes a line directly into a pooled entry instead of building an immutable <code>LogEntry</code>. As
+ * soon as the persister has copied the values into the repository, the entry will be released and reused for another
+ * line. Therefore a pooled entry must not be referenced after it has been released.
+ * 
+ * @author André Rouél
+ */
+public final class PooledLogEntry extends LogEntryBuilder implements ReadonlyLogEntry {
+
+	private final LogEntryPool pool;
+
+	PooledLogEntry(final LogEntryPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Resets this entry and returns it to its pool.
+	 */
+	public void release() {
+		pool.release(this);
+	}
+
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.service.importer.api.reader.LogReader;
+
+/**
+ * A log reader which knows the byte range of the last read line, so the import of the line can be tracked by an
+ * <code>ImportProgress</code>.
+ * 
+ * @author André Rouél
+ */
+public interface PositionedLogReader extends LogReader<ReadonlyLogEntry> {
+
+	/**
+	 * Releases the underlying resources of this reader.
+	 */
+	void close();
+
+	/**
+	 * Returns the last read line without line terminator. The line is only available until the next line is read.
+	 * 
+	 * @return line
+	 */
+	String getLine();
+
+	/**
+	 * Returns the position behind the line terminator of the last read line.
+	 * 
+	 * @return byte offset
+	 */
+	long getLineEnd();
+
+	/**
+	 * Returns the position of the first byte of the last read line.
+	 * 
+	 * @return byte offset
+	 */
+	long getLineStart();
+
+	/**
+	 * Returns the number of the last read line (relative to the position where reading starts).
+	 * 
+	 * @return line number
+	 */
+	long getLineNumber();
+
+	/**
+	 * Indicates whether the reading stopped before the end because of an I/O error.
+	 * 
+	 * @return <code>true</code> if the reader failed
+	 */
+	boolean isFailed();
+
+}
@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A dead-letter file for the lines of a log file which could not be interpreted.<br>
+ * <br>
+ * Every rejected line will be written as one record of tab separated values: the line number, the byte offset of the
+ * line, the reason and the line itself. The file will be created with the first rejected line, so a clean import
+ * leaves no quarantine file behind.<br>
+ * <br>
+ * Chunks of a large file are parsed in parallel and do not know the number of their first line. Therefore the
+ * rejected lines of a chunk will be held back until the number of lines of all preceding chunks is known (see
+ * <code>flush()</code>).
+ * 
+ * @author André Rouél
+ */
+public class Quarantine {
+
+	private static final class Rejection {
+
+		private final String line;
+
+		private final long lineNumber;
+
+		private final long offset;
+
+		private final String reason;
+
+		private Rejection(final long lineNumber, final long offset, final String reason, final String line) {
+			this.lineNumber = lineNumber;
+			this.offset = offset;
+			this.reason = reason;
+			this.line = line;
+		}
+
+	}
+
+	private static final Logger LOG = LoggerFactory.getLogger(Quarantine.class);
+
+	/**
+	 * Suffix of the name of a quarantine file
+	 */
+	public static final String SUFFIX = ".quarantine";
+
+	/**
+	 * Returns the quarantine file of a log file within the given directory. If no directory is given, the quarantine
+	 * file will be placed beside the log file.
+	 * 
+	 * @param directory
+	 *            directory of the quarantine files or <code>null</code>
+	 * @param file
+	 *            log file
+	 * @return quarantine file
+	 */
+	public static File fileOf(final File directory, final File file) {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		if (directory == null) {
+			return new File(file.getPath() + SUFFIX);
+		}
+
+		// log files of different directories often have the same name
+		String path;
+		try {
+			path = file.getCanonicalPath();
+		} catch (final IOException e) {
+			path = file.getAbsolutePath();
+		}
+		return new File(directory, file.getName() + "-" + Integer.toHexString(path.hashCode()) + SUFFIX);
+	}
+
+	/**
+	 * Returns the reason of a failed interpretation of a line without the position prefixes of the readers.
+	 * 
+	 * @param e
+	 *            exception
+	 * @return reason
+	 */
+	public static String reasonOf(final Throwable e) {
+		Throwable cause = e;
+		while (cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		return cause.getLocalizedMessage();
+	}
+
+	private static String sanitize(final String value) {
+		return (value == null) ? "" : value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+	}
+
+	/**
+	 * Indicates that the records should be appended to an existing quarantine file
+	 */
+	private final boolean append;
+
+	/**
+	 * Number of lines of the parsed chunks by chunk index
+	 */
+	private final Map<Integer, Long> chunkLines = new TreeMap<Integer, Long>();
+
+	/**
+	 * Rejected lines of chunks by chunk index, with line numbers relative to their chunk
+	 */
+	private final Map<Integer, List<Rejection>> chunkRejections = new TreeMap<Integer, List<Rejection>>();
+
+	private int count;
+
+	private final File file;
+
+	/**
+	 * Number of lines before the position where reading starts
+	 */
+	private final long linesBefore;
+
+	private Writer writer;
+
+	/**
+	 * Creates a quarantine which only counts the rejected lines without writing them anywhere (e.g. for a dry run).
+	 */
+	public Quarantine() {
+		file = null;
+		linesBefore = 0;
+		append = false;
+	}
+
+	/**
+	 * Creates a quarantine file. All line numbers passed to this quarantine are relative to the position where the
+	 * reading of the log file starts.
+	 * 
+	 * @param file
+	 *            quarantine file
+	 * @param linesBefore
+	 *            number of lines before the position where reading starts; if greater than <code>0</code> (an import
+	 *            has been resumed) the records will be appended to an existing file, otherwise an existing file will be
+	 *            replaced
+	 */
+	public Quarantine(final File file, final long linesBefore) {
+		this(file, linesBefore, linesBefore > 0);
+	}
+
+	/**
+	 * Creates a quarantine file. All line numbers passed to this quarantine are relative to the position where the
+	 * reading of the log file starts.
+	 * 
+	 * @param file
+	 *            quarantine file
+	 * @param linesBefore
+	 *            number of lines before the position where reading starts
+	 * @param append
+	 *            <code>true</code> if the records should be appended to an existing file (e.g. the reading does not
+	 *            start at the beginning of the log file), <code>false</code> if an existing file should be replaced
+	 */
+	public Quarantine(final File file, final long linesBefore, final boolean append) {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		if (linesBefore < 0) {
+			throw new IllegalArgumentException("Argument 'linesBefore' can not be smaller than 0.");
+		}
+
+		this.file = file;
+		this.linesBefore = linesBefore;
+		this.append = append;
+		if (!append && file.isFile() && !file.delete()) {
+			LOG.warn("The quarantine file '" + file.getPath() + "' can not be deleted.");
+		}
+	}
+
+	/**
+	 * Writes the held back lines and releases the quarantine file.
+	 */
+	public synchronized void close() {
+		flush();
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (final IOException e) {
+				LOG.warn(e.getLocalizedMessage());
+			}
+			writer = null;
+		}
+	}
+
+	/**
+	 * Writes the held back lines of all chunks. The line numbers are counted from the first chunk, so all chunks must
+	 * be parsed before.
+	 */
+	public synchronized void flush() {
+		long base = linesBefore;
+		for (final Map.Entry<Integer, Long> chunk : chunkLines.entrySet()) {
+			final List<Rejection> rejections = chunkRejections.remove(chunk.getKey());
+			if (rejections != null) {
+				for (final Rejection rejection : rejections) {
+					write(new Rejection(base + rejection.lineNumber, rejection.offset, rejection.reason,
+							rejection.line));
+				}
+			}
+			base += chunk.getValue();
+		}
+		chunkLines.clear();
+
+		// chunks without a line count, the line numbers stay relative to their chunk
+		for (final List<Rejection> rejections : chunkRejections.values()) {
+			for (final Rejection rejection : rejections) {
+				write(rejection);
+			}
+		}
+		chunkRejections.clear();
+
+		if (writer != null) {
+			try {
+				writer.flush();
+			} catch (final IOException e) {
+				LOG.warn(e.getLocalizedMessage());
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of rejected lines.
+	 * 
+	 * @return number of lines
+	 */
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the quarantine file.
+	 * 
+	 * @return file or <code>null</code> if the rejected lines are only counted
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Rejects a line of a log file.
+	 * 
+	 * @param lineNumber
+	 *            number of the line relative to the position where reading starts
+	 * @param offset
+	 *            position of the line within the log file
+	 * @param reason
+	 *            reason of the rejection
+	 * @param line
+	 *            the line itself
+	 */
+	public synchronized void reject(final long lineNumber, final long offset, final String reason, final String line) {
+		count++;
+		write(new Rejection(linesBefore + lineNumber, offset, reason, line));
+	}
+
+	/**
+	 * Rejects a line of a chunk. The line will be written when <code>flush()</code> is called.
+	 * 
+	 * @param chunk
+	 *            chunk of the line
+	 * @param lineNumber
+	 *            number of the line within the chunk
+	 * @param offset
+	 *            position of the line within the log file
+	 * @param reason
+	 *            reason of the rejection
+	 * @param line
+	 *            the line itself
+	 */
+	public synchronized void reject(final LogFileChunk chunk, final long lineNumber, final long offset,
+			final String reason, final String line) {
+		if (chunk == null) {
+			throw new IllegalArgumentException("Argument 'chunk' can not be null.");
+		}
+
+		count++;
+		if (file == null) {
+			return;
+		}
+		List<Rejection> rejections = chunkRejections.get(chunk.getIndex());
+		if (rejections == null) {
+			rejections = new ArrayList<Rejection>();
+			chunkRejections.put(chunk.getIndex(), rejections);
+		}
+		rejections.add(new Rejection(lineNumber, offset, reason, line));
+	}
+
+	/**
+	 * Sets the number of lines of a parsed chunk.
+	 * 
+	 * @param chunk
+	 *            parsed chunk
+	 * @param lines
+	 *            number of lines of the chunk
+	 */
+	public synchronized void setLineCount(final LogFileChunk chunk, final long lines) {
+		if (chunk == null) {
+			throw new IllegalArgumentException("Argument 'chunk' can not be null.");
+		}
+
+		chunkLines.put(chunk.getIndex(), lines);
+	}
+
+	private void write(final Rejection rejection) {
+		if (file == null) {
+			return;
+		}
+		try {
+			if (writer == null) {
+				final File directory = file.getAbsoluteFile().getParentFile();
+				if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+					throw new IOException("The directory '" + directory.getPath() + "' can not be created.");
+				}
+				writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append),
+						"UTF-8"));
+			}
+			writer.write(String.valueOf(rejection.lineNumber));
+			writer.write('\t');
+			writer.write(String.valueOf(rejection.offset));
+			writer.write('\t');
+			writer.write(sanitize(rejection.reason));
+			writer.write('\t');
+			writer.write(sanitize(rejection.line));
+			writer.write('\n');
+		} catch (final IOException e) {
+			LOG.warn("The line " + rejection.lineNumber + " can not be written into the quarantine file '"
+					+ file.getPath() + "': " + e.getLocalizedMessage());
+		}
+	}
+
+}
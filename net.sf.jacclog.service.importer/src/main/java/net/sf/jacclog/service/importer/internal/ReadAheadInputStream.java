@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import net.sf.jacclog.service.importer.internal.queue.LogFileQueueImporterObserver.UncaughtExceptionHandler;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An input stream which reads its source within a separate thread into a bounded queue of buffers.<br>
+ * <br>
+ * Wrapped around a decompressing stream the inflation of the data and the parsing of the lines overlap, because the
+ * consumer only drains buffers which are already decompressed.
+ * 
+ * @author André Rouél
+ */
+public class ReadAheadInputStream extends InputStream {
+
+	/**
+	 * Default number of buffers which can be read ahead
+	 */
+	public static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * Default size of a buffer in bytes
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Marks the end of the source
+	 */
+	private static final byte[] END = new byte[0];
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReadAheadInputStream.class);
+
+	private static final ThreadFactory THREAD_FACTORY = new BasicThreadFactory.Builder()
+			// attributes
+			.namingPattern("read-ahead-%d").daemon(true).uncaughtExceptionHandler(new UncaughtExceptionHandler())
+			.build();
+
+	private final BlockingQueue<byte[]> buffers;
+
+	private byte[] current;
+
+	private volatile IOException failure;
+
+	private boolean finished;
+
+	private int position;
+
+	private final Thread reader;
+
+	/**
+	 * Creates a read-ahead stream and starts reading the source immediately.
+	 * 
+	 * @param source
+	 *            stream to be read ahead, which will be closed at its end
+	 */
+	public ReadAheadInputStream(final InputStream source) {
+		this(source, DEFAULT_BUFFER_SIZE, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a read-ahead stream and starts reading the source immediately.
+	 * 
+	 * @param source
+	 *            stream to be read ahead, which will be closed at its end
+	 * @param bufferSize
+	 *            size of a buffer in bytes
+	 * @param capacity
+	 *            maximum number of buffers which can be read ahead
+	 */
+	public ReadAheadInputStream(final InputStream source, final int bufferSize, final int capacity) {
+		if (source == null) {
+			throw new IllegalArgumentException("Argument 'source' can not be null.");
+		}
+
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Argument 'bufferSize' must be greater than 0.");
+		}
+
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Argument 'capacity' must be greater than 0.");
+		}
+
+		buffers = new ArrayBlockingQueue<byte[]>(capacity);
+		reader = THREAD_FACTORY.newThread(new Runnable() {
+			@Override
+			public void run() {
+				readAhead(source, bufferSize);
+			}
+		});
+		reader.start();
+	}
+
+	/**
+	 * Reads from the source until the buffer is full or the end of the source is reached.
+	 * 
+	 * @return number of read bytes
+	 */
+	private static int fill(final InputStream source, final byte[] buffer) throws IOException {
+		int length = 0;
+		int read;
+		while (length < buffer.length && (read = source.read(buffer, length, buffer.length - length)) != -1) {
+			length += read;
+		}
+		return length;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return current != null ? current.length - position : 0;
+	}
+
+	/**
+	 * Stops reading ahead and discards all buffers which are not consumed yet.
+	 */
+	@Override
+	public void close() throws IOException {
+		finished = true;
+		current = null;
+		reader.interrupt();
+		buffers.clear();
+	}
+
+	/**
+	 * Ensures that the current buffer contains unread bytes.
+	 * 
+	 * @return <code>false</code> if the end of the source is reached
+	 */
+	private boolean next() throws IOException {
+		if (current != null && position < current.length) {
+			return true;
+		}
+
+		if (finished) {
+			return false;
+		}
+
+		try {
+			current = buffers.take();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getLocalizedMessage());
+		}
+		position = 0;
+
+		if (current == END) {
+			finished = true;
+			current = null;
+			if (failure != null) {
+				throw failure;
+			}
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		return next() ? current[position++] & 0xff : -1;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		if (!next()) {
+			return -1;
+		}
+
+		final int length = Math.min(len, current.length - position);
+		System.arraycopy(current, position, b, off, length);
+		position += length;
+		return length;
+	}
+
+	/**
+	 * Reads the source into the queue of buffers until the end is reached or the stream will be closed. The end is
+	 * always marked, also if reading fails unexpectedly, so a consumer never waits for buffers which will not come.
+	 * Such a failure will be thrown by the consumer as <code>IOException</code>.
+	 */
+	private void readAhead(final InputStream source, final int bufferSize) {
+		Error error = null;
+		try {
+			int length;
+			do {
+				final byte[] buffer = new byte[bufferSize];
+				length = fill(source, buffer);
+				if (length == buffer.length) {
+					buffers.put(buffer);
+				} else if (length > 0) {
+					final byte[] rest = new byte[length];
+					System.arraycopy(buffer, 0, rest, 0, length);
+					buffers.put(rest);
+				}
+			} while (length == bufferSize);
+		} catch (final IOException e) {
+			failure = e;
+		} catch (final InterruptedException e) {
+			// the stream has been closed
+		} catch (final RuntimeException e) {
+			failure = new IOException("Reading ahead failed: " + e.getLocalizedMessage(), e);
+		} catch (final Error e) {
+			failure = new IOException("Reading ahead failed: " + e.getLocalizedMessage(), e);
+			error = e;
+		} finally {
+			try {
+				source.close();
+			} catch (final IOException e) {
+				LOG.warn(e.getLocalizedMessage());
+			}
+		}
+
+		try {
+			buffers.put(END);
+		} catch (final InterruptedException e) {
+			// the stream has been closed and its buffers are discarded, so there is room for the end
+			buffers.offer(END);
+		}
+
+		if (error != null) {
+			// let the uncaught exception handler report the error
+			throw error;
+		}
+	}
+
+}
@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.service.importer.internal.parser.MappingException;
+import net.sf.jacclog.service.importer.internal.parser.NcsaByteLogParser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A log file reader which scans the raw bytes of a stream (e.g. a decompressed file) for line breaks.<br>
+ * <br>
+ * The positions of the lines are counted in bytes of the stream, so the reading of a stream can be continued at a
+ * position which has been returned by <code>getLineEnd()</code> before.
+ * 
+ * @author André Rouél
+ */
+public class StreamLogFileReader implements PositionedLogReader {
+
+	/**
+	 * The logger
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(StreamLogFileReader.class);
+
+	/**
+	 * Default size of the read buffer in bytes
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private byte[] buffer;
+
+	/**
+	 * Position of the first byte of the buffer within the stream
+	 */
+	private long bufferStart;
+
+	private boolean failed;
+
+	private InputStream input;
+
+	private long lineEnd;
+
+	/**
+	 * Length of the last read line
+	 */
+	private int lineLength;
+
+	private long lineNumber;
+
+	/**
+	 * Position of the last read line within the buffer
+	 */
+	private int lineOffset;
+
+	private long lineStart;
+
+	/**
+	 * Number of valid bytes within the buffer
+	 */
+	private int limit;
+
+	private final NcsaByteLogParser parser;
+
+	/**
+	 * Position within the buffer where the next line starts
+	 */
+	private int position;
+
+	/**
+	 * Creates a log file reader of a stream.
+	 * 
+	 * @param input
+	 *            stream of log entry lines
+	 * @param parser
+	 *            A parser for the log entry lines
+	 */
+	public StreamLogFileReader(final InputStream input, final NcsaByteLogParser parser) {
+		this(input, parser, 0);
+	}
+
+	/**
+	 * Creates a log file reader of a stream which skips the bytes before the given position.
+	 * 
+	 * @param input
+	 *            stream of log entry lines
+	 * @param parser
+	 *            A parser for the log entry lines
+	 * @param start
+	 *            Position within the stream where reading starts (should be the beginning of a line)
+	 */
+	public StreamLogFileReader(final InputStream input, final NcsaByteLogParser parser, final long start) {
+		if (input == null) {
+			throw new IllegalArgumentException("Argument 'input' can not be null.");
+		}
+
+		if (parser == null) {
+			throw new IllegalArgumentException("Argument 'parser' can not be null.");
+		}
+
+		if (start < 0) {
+			throw new IllegalArgumentException("Argument 'start' can not be smaller than 0.");
+		}
+
+		this.input = input;
+		this.parser = parser;
+		buffer = new byte[DEFAULT_BUFFER_SIZE];
+		bufferStart = start;
+		lineStart = start;
+		lineEnd = start;
+
+		try {
+			long skipped = 0;
+			while (skipped < start) {
+				final long n = input.skip(start - skipped);
+				if (n <= 0) {
+					// some streams do not skip before the first read
+					if (input.read() < 0) {
+						break;
+					}
+					skipped++;
+				} else {
+					skipped += n;
+				}
+			}
+		} catch (final IOException e) {
+			LOG.warn(e.getLocalizedMessage());
+			failed = true;
+			close();
+		}
+	}
+
+	/**
+	 * Releases the underlying stream.
+	 */
+	@Override
+	public void close() {
+		if (input != null) {
+			try {
+				input.close();
+			} catch (final IOException e) {
+				LOG.warn(e.getLocalizedMessage());
+			}
+			input = null;
+		}
+	}
+
+	/**
+	 * Moves the remaining bytes to the beginning of the buffer (growing it if a line does not fit) and appends the
+	 * next bytes of the stream.
+	 * 
+	 * @return <code>false</code> if the end of the stream is reached
+	 */
+	private boolean fill() throws IOException {
+		final int remaining = limit - position;
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, remaining);
+			bufferStart += position;
+			position = 0;
+			limit = remaining;
+		} else if (limit == buffer.length) {
+			final byte[] larger = new byte[buffer.length * 2];
+			System.arraycopy(buffer, 0, larger, 0, limit);
+			buffer = larger;
+		}
+
+		final int read = input.read(buffer, limit, buffer.length - limit);
+		if (read < 0) {
+			return false;
+		}
+		limit += read;
+		return true;
+	}
+
+	@Override
+	public String getLine() {
+		return new String(buffer, lineOffset, lineLength, parser.getCharset());
+	}
+
+	@Override
+	public long getLineEnd() {
+		return lineEnd;
+	}
+
+	/**
+	 * Returns the number of the last read line (relative to the start position).
+	 * 
+	 * @return line number
+	 */
+	@Override
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	@Override
+	public long getLineStart() {
+		return lineStart;
+	}
+
+	@Override
+	public boolean isFailed() {
+		return failed;
+	}
+
+	@Override
+	public List<ReadonlyLogEntry> read(final int count) {
+		final List<ReadonlyLogEntry> entries = new ArrayList<ReadonlyLogEntry>();
+		int counter = 0;
+		ReadonlyLogEntry entry;
+
+		do {
+			entry = readEntry();
+			if (entry != null) {
+				entries.add(entry);
+			}
+			counter++;
+		} while (entry != null && counter < count);
+
+		return entries;
+	}
+
+	/**
+	 * Reads the next line of the stream and converts it to a log entry.
+	 * <p>
+	 * If errors happen while mapping the tokens to the fields of a log entry, then a <code>MappingException</code> will
+	 * be thrown.
+	 * </p>
+	 */
+	@Override
+	public ReadonlyLogEntry readEntry() {
+		if (input == null) {
+			return null;
+		}
+
+		try {
+			// number of bytes behind the position which are already scanned for a line break
+			int scanned = 0;
+			while (true) {
+				int terminator = position + scanned;
+				while (terminator < limit && buffer[terminator] != '\n') {
+					terminator++;
+				}
+
+				if (terminator < limit) {
+					return parseLine(position, terminator);
+				}
+
+				scanned = terminator - position;
+				if (!fill()) {
+					if (position >= limit) {
+						close();
+						return null;
+					}
+					// last line without line terminator
+					return parseLine(position, limit);
+				}
+			}
+		} catch (final IOException e) {
+			LOG.warn(e.getLocalizedMessage());
+			failed = true;
+			close();
+			return null;
+		}
+	}
+
+	private ReadonlyLogEntry parseLine(final int first, final int terminator) {
+		position = terminator < limit ? terminator + 1 : terminator;
+		lineStart = bufferStart + first;
+		lineEnd = bufferStart + position;
+		lineNumber++;
+
+		int length = terminator - first;
+		if (length > 0 && buffer[first + length - 1] == '\r') {
+			length--;
+		}
+		lineOffset = first;
+		lineLength = length;
+
+		try {
+			return parser.parseLine(buffer, first, length);
+		} catch (final MappingException e) {
+			final String prefix = "at line " + lineNumber + ": ";
+			throw new MappingException(prefix + e.getLocalizedMessage(), e);
+		}
+	}
+
+}
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.util.Date;
+import java.util.Set;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.api.domain.http.HttpConnectionStatus;
+import net.sf.jacclog.api.domain.http.HttpRequestMethod;
+import net.sf.jacclog.api.domain.http.HttpStatus;
+import net.sf.jacclog.api.domain.http.ReadableHttpRequestHeaderField;
+import net.sf.jacclog.api.domain.http.ReadableHttpResponseHeaderField;
+
+/**
+ * A log entry which remembers the byte range of its line within the log file, so the persister can report the line
+ * as committed to the <code>ImportProgress</code> of the file.
+ * 
+ * @author André Rouél
+ */
+public final class TrackedLogEntry implements ReadonlyLogEntry {
+
+	private final long end;
+
+	private final ReadonlyLogEntry entry;
+
+	private final ImportProgress progress;
+
+	private final long start;
+
+	public TrackedLogEntry(final ReadonlyLogEntry entry, final ImportProgress progress, final long start,
+			final long end) {
+		if (entry == null) {
+			throw new IllegalArgumentException("Argument 'entry' can not be null.");
+		}
+
+		if (progress == null) {
+			throw new IllegalArgumentException("Argument 'progress' can not be null.");
+		}
+
+		this.entry = entry;
+		this.progress = progress;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Marks the line of this entry as committed into the repository.
+	 */
+	public void commit() {
+		progress.commit(start, end);
+	}
+
+	@Override
+	public Long getBytesReceived() {
+		return entry.getBytesReceived();
+	}
+
+	@Override
+	public Long getBytesSent() {
+		return entry.getBytesSent();
+	}
+
+	@Override
+	public HttpConnectionStatus getConnectionStatus() {
+		return entry.getConnectionStatus();
+	}
+
+	/**
+	 * Gets the position behind the line terminator of the line of this entry.
+	 * 
+	 * @return byte offset
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * Gets the wrapped log entry.
+	 * 
+	 * @return log entry
+	 */
+	public ReadonlyLogEntry getEntry() {
+		return entry;
+	}
+
+	@Override
+	public String getFilename() {
+		return entry.getFilename();
+	}
+
+	@Override
+	public HttpStatus getLastStatusCode() {
+		return entry.getLastStatusCode();
+	}
+
+	@Override
+	public String getLocalIpAddress() {
+		return entry.getLocalIpAddress();
+	}
+
+	@Override
+	public Integer getProcessId() {
+		return entry.getProcessId();
+	}
+
+	/**
+	 * Gets the progress of the import of the file of this entry.
+	 * 
+	 * @return import progress
+	 */
+	public ImportProgress getProgress() {
+		return progress;
+	}
+
+	@Override
+	public String getQueryString() {
+		return entry.getQueryString();
+	}
+
+	@Override
+	public String getRemoteHost() {
+		return entry.getRemoteHost();
+	}
+
+	@Override
+	public String getRemoteIpAddress() {
+		return entry.getRemoteIpAddress();
+	}
+
+	@Override
+	public String getRemoteLogname() {
+		return entry.getRemoteLogname();
+	}
+
+	@Override
+	public String getRemoteUser() {
+		return entry.getRemoteUser();
+	}
+
+	@Override
+	public Set<ReadableHttpRequestHeaderField> getRequestHeaders() {
+		return entry.getRequestHeaders();
+	}
+
+	@Override
+	public Long getRequestInMillis() {
+		return entry.getRequestInMillis();
+	}
+
+	@Override
+	public HttpRequestMethod getRequestMethod() {
+		return entry.getRequestMethod();
+	}
+
+	@Override
+	public String getRequestProtocol() {
+		return entry.getRequestProtocol();
+	}
+
+	@Override
+	public Date getRequestTime() {
+		return entry.getRequestTime();
+	}
+
+	@Override
+	public Set<ReadableHttpResponseHeaderField> getResponseHeaders() {
+		return entry.getResponseHeaders();
+	}
+
+	@Override
+	public Long getResponseInBytes() {
+		return entry.getResponseInBytes();
+	}
+
+	@Override
+	public String getServerName() {
+		return entry.getServerName();
+	}
+
+	@Override
+	public Integer getServerPort() {
+		return entry.getServerPort();
+	}
+
+	/**
+	 * Gets the position of the first byte of the line of this entry.
+	 * 
+	 * @return byte offset
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	@Override
+	public HttpStatus getStatusCode() {
+		return entry.getStatusCode();
+	}
+
+	@Override
+	public String getUrlPath() {
+		return entry.getUrlPath();
+	}
+
+	@Override
+	public String toString() {
+		return entry.toString();
+	}
+
+}
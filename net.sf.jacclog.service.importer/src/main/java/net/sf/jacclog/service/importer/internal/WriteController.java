@@ -0,0 +1,384 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adapts the size of the batches and the number of concurrent writes into the repository to the measured commit
+ * latency and error rate (additive increase, multiplicative decrease).<br>
+ * <br>
+ * Every successful write which is not slower than <code>TOLERANCE</code> times the best observed latency per entry
+ * increases the batch size by <code>BATCH_SIZE_STEP</code>, and after as many successful writes as are allowed to run
+ * concurrently, one more concurrent write is allowed. A failed or a slow write halves both limits, at most once per
+ * round of concurrent writes, so the writes which were already running when the repository became busy do not shrink
+ * the limits again. The best observed latency drifts slowly towards the current latency, so the controller adapts to a
+ * repository which became permanently slower.<br>
+ * <br>
+ * Failed writes should be retried after the delay of <code>getBackoff(int)</code>, which grows exponentially with the
+ * number of attempts.
+ * 
+ * @author André Rouél
+ */
+public class WriteController {
+
+	private static final Logger LOG = LoggerFactory.getLogger(WriteController.class);
+
+	/**
+	 * Weight of a new sample within the moving averages of the latency and the error rate
+	 */
+	private static final double ALPHA = 0.2;
+
+	/**
+	 * Rate at which the best observed latency drifts towards the current latency
+	 */
+	private static final double BASELINE_DRIFT = 0.01;
+
+	/**
+	 * Number of entries by which the batch size grows after a fast write
+	 */
+	public static final int BATCH_SIZE_STEP = 100;
+
+	/**
+	 * Default initial batch size
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	/**
+	 * Default delay in milliseconds before the first retry of a failed write
+	 */
+	public static final long DEFAULT_BACKOFF = 100;
+
+	/**
+	 * Default maximum batch size
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 10000;
+
+	/**
+	 * Default maximum delay in milliseconds before a retry of a failed write
+	 */
+	public static final long DEFAULT_MAX_BACKOFF = 10000;
+
+	/**
+	 * Default minimum batch size
+	 */
+	public static final int DEFAULT_MIN_BATCH_SIZE = 100;
+
+	/**
+	 * Factor by which a write may be slower than the best observed write until the repository counts as overloaded
+	 */
+	public static final double TOLERANCE = 2.0;
+
+	private final long backoff;
+
+	/**
+	 * Best observed latency per entry in nanoseconds or <code>0</code> if nothing has been written yet
+	 */
+	private double baseline;
+
+	private int batchSize;
+
+	/**
+	 * Number of concurrent writes which are allowed
+	 */
+	private int concurrency;
+
+	/**
+	 * Number of writes which completed since the limits have been decreased last
+	 */
+	private int completedSinceDecrease;
+
+	private double errorRate;
+
+	private long failures;
+
+	private int inFlight;
+
+	/**
+	 * Moving average of the latency per entry in nanoseconds
+	 */
+	private double latency;
+
+	private final long maxBackoff;
+
+	private final int maxBatchSize;
+
+	private final int maxConcurrency;
+
+	private final int minBatchSize;
+
+	private final Random random = new Random();
+
+	/**
+	 * Number of successful writes since the number of concurrent writes has been increased last
+	 */
+	private int successesSinceIncrease;
+
+	private long writes;
+
+	/**
+	 * Creates a controller with the default limits, which allows at most one concurrent write per processor.
+	 */
+	public WriteController() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a controller with the default limits of the batch size.
+	 * 
+	 * @param maxConcurrency
+	 *            maximum number of concurrent writes
+	 */
+	public WriteController(final int maxConcurrency) {
+		this(DEFAULT_MIN_BATCH_SIZE, DEFAULT_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE, maxConcurrency, DEFAULT_BACKOFF,
+				DEFAULT_MAX_BACKOFF);
+	}
+
+	/**
+	 * Creates a controller. The writes start with the initial batch size and the maximum number of concurrent writes.
+	 * 
+	 * @param minBatchSize
+	 *            minimum batch size
+	 * @param batchSize
+	 *            initial batch size
+	 * @param maxBatchSize
+	 *            maximum batch size
+	 * @param maxConcurrency
+	 *            maximum number of concurrent writes
+	 * @param backoff
+	 *            delay in milliseconds before the first retry of a failed write
+	 * @param maxBackoff
+	 *            maximum delay in milliseconds before a retry
+	 */
+	public WriteController(final int minBatchSize, final int batchSize, final int maxBatchSize,
+			final int maxConcurrency, final long backoff, final long maxBackoff) {
+		if (minBatchSize < 1) {
+			throw new IllegalArgumentException("Argument 'minBatchSize' must be greater than 0.");
+		}
+
+		if (batchSize < minBatchSize || batchSize > maxBatchSize) {
+			throw new IllegalArgumentException(
+					"Argument 'batchSize' must be between 'minBatchSize' and 'maxBatchSize'.");
+		}
+
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("Argument 'maxConcurrency' must be greater than 0.");
+		}
+
+		if (backoff < 0) {
+			throw new IllegalArgumentException("Argument 'backoff' can not be smaller than 0.");
+		}
+
+		if (maxBackoff < backoff) {
+			throw new IllegalArgumentException("Argument 'maxBackoff' can not be smaller than 'backoff'.");
+		}
+
+		this.minBatchSize = minBatchSize;
+		this.batchSize = batchSize;
+		this.maxBatchSize = maxBatchSize;
+		this.maxConcurrency = maxConcurrency;
+		concurrency = maxConcurrency;
+		completedSinceDecrease = maxConcurrency;
+		this.backoff = backoff;
+		this.maxBackoff = maxBackoff;
+	}
+
+	/**
+	 * Waits until one more concurrent write is allowed. Every acquired write must be completed by
+	 * <code>succeeded</code> or <code>failed</code>.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		while (inFlight >= concurrency) {
+			wait();
+		}
+		inFlight++;
+	}
+
+	/**
+	 * Halves the limits, unless they have been decreased within the current round of concurrent writes.
+	 */
+	private void decrease(final String reason) {
+		if (completedSinceDecrease >= concurrency) {
+			batchSize = Math.max(minBatchSize, batchSize / 2);
+			concurrency = Math.max(1, concurrency / 2);
+			completedSinceDecrease = 0;
+			successesSinceIncrease = 0;
+			LOG.debug("Decreased limits of the writes (" + reason + "): " + this);
+		}
+	}
+
+	/**
+	 * Completes an acquired write which failed.
+	 * 
+	 * @param entries
+	 *            number of entries of the write
+	 * @param nanos
+	 *            time the write took in nanoseconds
+	 */
+	public synchronized void failed(final int entries, final long nanos) {
+		release();
+		failures++;
+		errorRate += ALPHA * (1 - errorRate);
+		decrease("failure");
+	}
+
+	/**
+	 * Gets the delay before the given retry of a failed write. The delay doubles with every attempt up to the maximum
+	 * delay, and a random part of up to half of the delay spreads the retries of concurrent writes.
+	 * 
+	 * @param attempt
+	 *            number of the retry, starting at <code>1</code>
+	 * @return delay in milliseconds
+	 */
+	public long getBackoff(final int attempt) {
+		if (attempt < 1) {
+			throw new IllegalArgumentException("Argument 'attempt' must be greater than 0.");
+		}
+
+		final long delay = Math.min(maxBackoff, backoff << Math.min(attempt - 1, 30));
+		final long half = delay / 2;
+		synchronized (random) {
+			return delay - half + (half > 0 ? (long) (random.nextDouble() * half) : 0);
+		}
+	}
+
+	/**
+	 * Gets the current batch size.
+	 * 
+	 * @return maximum number of entries of a write
+	 */
+	public synchronized int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Gets the current number of concurrent writes which are allowed.
+	 * 
+	 * @return number of writes
+	 */
+	public synchronized int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Gets the moving average of the error rate of the writes.
+	 * 
+	 * @return rate between <code>0</code> and <code>1</code>
+	 */
+	public synchronized double getErrorRate() {
+		return errorRate;
+	}
+
+	/**
+	 * Gets the number of failed writes.
+	 * 
+	 * @return number of writes
+	 */
+	public synchronized long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Gets the number of writes which are currently running.
+	 * 
+	 * @return number of writes
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * Gets the moving average of the latency per entry of the successful writes.
+	 * 
+	 * @return latency in microseconds
+	 */
+	public synchronized double getLatency() {
+		return latency / 1000;
+	}
+
+	/**
+	 * Gets the maximum number of concurrent writes.
+	 * 
+	 * @return number of writes
+	 */
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * Gets the number of completed writes, including the failed ones.
+	 * 
+	 * @return number of writes
+	 */
+	public synchronized long getWrites() {
+		return writes;
+	}
+
+	private void release() {
+		inFlight--;
+		writes++;
+		completedSinceDecrease++;
+		notifyAll();
+	}
+
+	/**
+	 * Completes an acquired write which succeeded and adapts the limits to its latency.
+	 * 
+	 * @param entries
+	 *            number of entries of the write
+	 * @param nanos
+	 *            time the write took in nanoseconds
+	 */
+	public synchronized void succeeded(final int entries, final long nanos) {
+		release();
+		errorRate -= ALPHA * errorRate;
+		if (entries < 1) {
+			return;
+		}
+
+		final double sample = (double) nanos / entries;
+		latency = (latency == 0) ? sample : latency + ALPHA * (sample - latency);
+		if (baseline == 0 || sample < baseline) {
+			baseline = sample;
+		} else {
+			baseline += BASELINE_DRIFT * (sample - baseline);
+		}
+
+		if (latency > TOLERANCE * baseline) {
+			decrease("latency");
+		} else {
+			batchSize = Math.min(maxBatchSize, batchSize + BATCH_SIZE_STEP);
+			successesSinceIncrease++;
+			if (successesSinceIncrease >= concurrency) {
+				concurrency = Math.min(maxConcurrency, concurrency + 1);
+				successesSinceIncrease = 0;
+			}
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "WriteController [batchSize=" + batchSize + ", concurrency=" + concurrency + ", inFlight=" + inFlight
+				+ ", latency=" + Math.round(latency / 1000) + "us, errorRate=" + errorRate + "]";
+	}
+
+}
@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.sf.jacclog.service.importer.api.LogFileImporterStatistic.Throughput;
+import net.sf.jacclog.service.importer.internal.LogEntrySpool;
+import net.sf.jacclog.service.importer.internal.WriteController;
+import net.sf.jacclog.service.importer.internal.parser.ValueInterner;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread-safe measurements of every stage of the import pipeline: the bytes read from the log files, the parsed and
+ * rejected lines, the lookups of recurring values, the depth of the queue, the latency of the writes into the
+ * repository and the committed entries.<br>
+ * <br>
+ * Comparing the rates of the stages shows where an import is bound: a full queue means the repository is the
+ * bottleneck, an empty queue while the read rate is low means reading or parsing is.
+ * 
+ * @author André Rouél
+ */
+public class ImportMetrics implements ImportMetricsMBean, Throughput {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ImportMetrics.class);
+
+	/**
+	 * Name under which the metrics are registered at the platform MBean server
+	 */
+	public static final String OBJECT_NAME = "net.sf.jacclog:type=ImportMetrics";
+
+	private final Meter committedEntries = new Meter();
+
+	private volatile WriteController controller;
+
+	private final AtomicLong failedBatches = new AtomicLong();
+
+	private volatile ValueInterner interner;
+
+	private final AtomicLong mappingFailures = new AtomicLong();
+
+	private final Meter parsedLines = new Meter();
+
+	private final LatencyHistogram persistLatency = new LatencyHistogram();
+
+	private volatile BlockingQueue<?> queue;
+
+	private final Meter readBytes = new Meter();
+
+	private volatile LogEntrySpool spool;
+
+	/**
+	 * Binds the components of the pipeline whose state is part of the metrics.
+	 * 
+	 * @param queue
+	 *            queue between the readers and the persisters
+	 * @param controller
+	 *            controller of the writes into the repository
+	 * @param spool
+	 *            spool of the batches which could not be stored
+	 */
+	public void bind(final BlockingQueue<?> queue, final WriteController controller, final LogEntrySpool spool) {
+		this.queue = queue;
+		this.controller = controller;
+		this.spool = spool;
+	}
+
+	/**
+	 * Binds the pool of recurring values whose lookups are part of the metrics.
+	 * 
+	 * @param interner
+	 *            pool of recurring values or <code>null</code> if the values are not pooled
+	 */
+	public void bind(final ValueInterner interner) {
+		this.interner = interner;
+	}
+
+	@Override
+	public int getBatchSize() {
+		final WriteController writes = controller;
+		return (writes != null) ? writes.getBatchSize() : 0;
+	}
+
+	@Override
+	public long getCommittedEntries() {
+		return committedEntries.getCount();
+	}
+
+	@Override
+	public double getCommittedEntriesPerSecond() {
+		return committedEntries.getRate();
+	}
+
+	@Override
+	public int getConcurrency() {
+		final WriteController writes = controller;
+		return (writes != null) ? writes.getConcurrency() : 0;
+	}
+
+	@Override
+	public long getFailedBatches() {
+		return failedBatches.get();
+	}
+
+	@Override
+	public double getInternerHitRatio() {
+		final ValueInterner values = interner;
+		return (values != null) ? values.getHitRatio() : 0;
+	}
+
+	@Override
+	public long getInternerHits() {
+		final ValueInterner values = interner;
+		return (values != null) ? values.getHits() : 0;
+	}
+
+	@Override
+	public long getInternerMisses() {
+		final ValueInterner values = interner;
+		return (values != null) ? values.getMisses() : 0;
+	}
+
+	@Override
+	public long getMappingFailures() {
+		return mappingFailures.get();
+	}
+
+	@Override
+	public long getParsedLines() {
+		return parsedLines.getCount();
+	}
+
+	@Override
+	public double getParsedLinesPerSecond() {
+		return parsedLines.getRate();
+	}
+
+	@Override
+	public long getPersistedBatches() {
+		return persistLatency.getCount();
+	}
+
+	@Override
+	public double getPersistLatency(final double percentile) {
+		return persistLatency.getPercentile(percentile);
+	}
+
+	@Override
+	public double getPersistLatency50th() {
+		return persistLatency.getPercentile(50);
+	}
+
+	@Override
+	public double getPersistLatency95th() {
+		return persistLatency.getPercentile(95);
+	}
+
+	@Override
+	public double getPersistLatency99th() {
+		return persistLatency.getPercentile(99);
+	}
+
+	@Override
+	public String getPersistLatencyHistogram() {
+		return persistLatency.toString();
+	}
+
+	@Override
+	public double getPersistLatencyMax() {
+		return persistLatency.getMax();
+	}
+
+	@Override
+	public double getPersistLatencyMean() {
+		return persistLatency.getMean();
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		final BlockingQueue<?> entries = queue;
+		if (entries == null) {
+			return -1;
+		}
+		final long capacity = (long) entries.size() + entries.remainingCapacity();
+		return (int) Math.min(Integer.MAX_VALUE, capacity);
+	}
+
+	@Override
+	public int getQueueDepth() {
+		final BlockingQueue<?> entries = queue;
+		return (entries != null) ? entries.size() : 0;
+	}
+
+	@Override
+	public long getReadBytes() {
+		return readBytes.getCount();
+	}
+
+	@Override
+	public double getReadBytesPerSecond() {
+		return readBytes.getRate();
+	}
+
+	@Override
+	public long getSpooledEntries() {
+		final LogEntrySpool batches = spool;
+		return (batches != null) ? batches.getSpooledEntries() : 0;
+	}
+
+	@Override
+	public double getSpoolReplayRate() {
+		final LogEntrySpool batches = spool;
+		return (batches != null) ? batches.getReplayRate() : 0;
+	}
+
+	@Override
+	public long getSpoolSize() {
+		final LogEntrySpool batches = spool;
+		return (batches != null) ? batches.getSize() : 0;
+	}
+
+	/**
+	 * Counts a write of a batch into the repository.
+	 * 
+	 * @param entries
+	 *            number of entries of the batch
+	 * @param nanos
+	 *            time the write took in nanoseconds
+	 * @param succeeded
+	 *            <code>true</code> if the entries have been stored
+	 */
+	public void persisted(final int entries, final long nanos, final boolean succeeded) {
+		persistLatency.record(nanos);
+		if (succeeded) {
+			committedEntries.mark(entries);
+		} else {
+			failedBatches.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Counts a batch of lines which have been read.
+	 * 
+	 * @param length
+	 *            length of the lines in bytes
+	 * @param entries
+	 *            number of lines which have been read as log entries
+	 * @param rejected
+	 *            number of lines which have been rejected
+	 */
+	public void read(final long length, final int entries, final int rejected) {
+		readBytes.mark(length);
+		if (entries > 0) {
+			parsedLines.mark(entries);
+		}
+		if (rejected > 0) {
+			mappingFailures.addAndGet(rejected);
+		}
+	}
+
+	/**
+	 * Registers the metrics at the platform MBean server. Metrics which have been registered before under the same
+	 * name (e.g. by a previous installation of the bundle) will be replaced.
+	 */
+	public void register() {
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		} catch (final JMException e) {
+			LOG.warn("The import metrics can not be registered: " + e.getLocalizedMessage());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ImportMetrics [readBytesPerSecond=" + Math.round(getReadBytesPerSecond()) + ", parsedLinesPerSecond="
+				+ Math.round(getParsedLinesPerSecond()) + ", mappingFailures=" + getMappingFailures() + ", queueDepth="
+				+ getQueueDepth() + ", internerHitRatio=" + getInternerHitRatio() + ", persistLatency="
+				+ getPersistLatencyMean() + "ms, committedEntriesPerSecond="
+				+ Math.round(getCommittedEntriesPerSecond()) + "]";
+	}
+
+}
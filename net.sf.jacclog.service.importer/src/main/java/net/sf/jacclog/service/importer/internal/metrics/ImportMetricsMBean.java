@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.metrics;
+
+/**
+ * Management interface of the throughput of the import pipeline. The rates are moving averages over about one minute
+ * and the latencies are given in milliseconds.
+ * 
+ * @author André Rouél
+ */
+public interface ImportMetricsMBean {
+
+	int getBatchSize();
+
+	long getCommittedEntries();
+
+	double getCommittedEntriesPerSecond();
+
+	int getConcurrency();
+
+	long getFailedBatches();
+
+	double getInternerHitRatio();
+
+	long getInternerHits();
+
+	long getInternerMisses();
+
+	long getMappingFailures();
+
+	long getParsedLines();
+
+	double getParsedLinesPerSecond();
+
+	long getPersistedBatches();
+
+	double getPersistLatency50th();
+
+	double getPersistLatency95th();
+
+	double getPersistLatency99th();
+
+	String getPersistLatencyHistogram();
+
+	double getPersistLatencyMax();
+
+	double getPersistLatencyMean();
+
+	int getQueueCapacity();
+
+	int getQueueDepth();
+
+	long getReadBytes();
+
+	double getReadBytesPerSecond();
+
+	long getSpooledEntries();
+
+	double getSpoolReplayRate();
+
+	long getSpoolSize();
+
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies with buckets of exponentially growing width.<br>
+ * <br>
+ * The bucket <code>i</code> counts the latencies from <code>2^(i-1)</code> up to <code>2^i</code> microseconds, so
+ * recording a latency is one atomic increment and a percentile is exact up to a factor of two, which is enough to
+ * tell a healthy repository from an overloaded one.
+ * 
+ * @author André Rouél
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of buckets; the last bucket counts all latencies above 2^30 microseconds (about 18 minutes)
+	 */
+	private static final int BUCKETS = 32;
+
+	private static int bucketOf(final long micros) {
+		if (micros <= 0) {
+			return 0;
+		}
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+	}
+
+	/**
+	 * Returns the upper bound of a bucket in milliseconds.
+	 */
+	private static double upperBoundOf(final int bucket) {
+		return (1L << bucket) / 1000.0;
+	}
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Sum of all latencies in nanoseconds
+	 */
+	private final AtomicLong sum = new AtomicLong();
+
+	/**
+	 * Gets the number of recorded latencies.
+	 * 
+	 * @return number of latencies
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Gets the highest recorded latency.
+	 * 
+	 * @return latency in milliseconds
+	 */
+	public double getMax() {
+		return max.get() / 1e6;
+	}
+
+	/**
+	 * Gets the average of the recorded latencies.
+	 * 
+	 * @return latency in milliseconds or <code>0</code> if nothing has been recorded
+	 */
+	public double getMean() {
+		final long n = count.get();
+		return (n > 0) ? sum.get() / 1e6 / n : 0;
+	}
+
+	/**
+	 * Gets the latency which is not exceeded by the given percentage of the recorded latencies.
+	 * 
+	 * @param percentile
+	 *            percentage between <code>0</code> and <code>100</code>
+	 * @return upper bound of the bucket of the percentile in milliseconds or <code>0</code> if nothing has been
+	 *         recorded
+	 */
+	public double getPercentile(final double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Argument 'percentile' must be between 0 and 100.");
+		}
+
+		long total = 0;
+		final long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		final double rank = Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] > 0) {
+				return Math.min(upperBoundOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Records a latency.
+	 * 
+	 * @param nanos
+	 *            latency in nanoseconds
+	 */
+	public void record(final long nanos) {
+		buckets.incrementAndGet(bucketOf(nanos / 1000));
+		count.incrementAndGet();
+		sum.addAndGet(nanos);
+		long current;
+		while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+			// retry until the maximum has been updated or a higher one has been recorded concurrently
+		}
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < BUCKETS; i++) {
+			final long n = buckets.get(i);
+			if (n > 0) {
+				if (builder.length() > 0) {
+					builder.append(", ");
+				}
+				builder.append("<=").append(upperBoundOf(i)).append("ms: ").append(n);
+			}
+		}
+		return "[" + builder + "]";
+	}
+
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts events and measures their rate.<br>
+ * <br>
+ * Marking events is a single atomic addition, so a meter can be marked for every line. The rate is a moving average
+ * over about one minute, which is updated in intervals of <code>TICK_INTERVAL</code> when it is read, so no timer
+ * thread is needed.
+ * 
+ * @author André Rouél
+ */
+public class Meter {
+
+	/**
+	 * Interval in nanoseconds in which the rate is updated
+	 */
+	private static final long TICK_INTERVAL = 5000000000L;
+
+	/**
+	 * Weight of the rate of the last interval (the moving average decays within one minute)
+	 */
+	private static final double ALPHA = 1 - Math.exp(-5.0 / 60.0);
+
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * Count at the end of the last interval
+	 */
+	private long lastCount;
+
+	private final AtomicLong lastTick;
+
+	private volatile double rate;
+
+	private volatile boolean initialized;
+
+	public Meter() {
+		lastTick = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Gets the number of events.
+	 * 
+	 * @return number of events
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Gets the moving average of the number of events per second.
+	 * 
+	 * @return events per second
+	 */
+	public double getRate() {
+		tickIfNecessary();
+		return rate;
+	}
+
+	/**
+	 * Counts the given number of events.
+	 * 
+	 * @param n
+	 *            number of events
+	 */
+	public void mark(final long n) {
+		count.addAndGet(n);
+	}
+
+	/**
+	 * Updates the rate once for every elapsed interval.
+	 */
+	private void tickIfNecessary() {
+		final long previous = lastTick.get();
+		final long now = System.nanoTime();
+		final long age = now - previous;
+		if (age >= TICK_INTERVAL) {
+			final long ticks = age / TICK_INTERVAL;
+			if (lastTick.compareAndSet(previous, previous + ticks * TICK_INTERVAL)) {
+				synchronized (this) {
+					final long current = count.get();
+					final double instant = (current - lastCount) / (ticks * TICK_INTERVAL / 1e9);
+					lastCount = current;
+					// every elapsed interval counts as one sample of the average rate of the elapsed intervals
+					final double weight = 1 - Math.pow(1 - ALPHA, ticks);
+					rate = initialized ? rate + weight * (instant - rate) : instant;
+					initialized = true;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A reusable list of tokens which are backed by byte regions of a line.<br>
+ * <br>
+ * A token will be decoded to a <code>String</code> not until it is requested with <code>get(int)</code>. Quotes and
+ * brackets will be stripped out of a token as done by <code>NcsaLogParser.parse(String)</code>.<br>
+ * <br>
+ * This list is not thread-safe and will be overwritten by every call of <code>reset(byte[])</code>.
+ * 
+ * @author André Rouél
+ */
+public final class ByteTokenList extends AbstractList<String> implements RandomAccess {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private static boolean isStripped(final byte b) {
+		return b == '"' || b == '[' || b == ']';
+	}
+
+	private final Charset charset;
+
+	private byte[] bytes;
+
+	/**
+	 * Pool of values or <code>null</code> if every token should be decoded into a new string
+	 */
+	private ValueInterner interner;
+
+	/**
+	 * Positions of the tokens which should be looked up in the pool
+	 */
+	private boolean[] interned = new boolean[0];
+
+	private int size;
+
+	private int[] starts = new int[DEFAULT_CAPACITY];
+
+	private int[] ends = new int[DEFAULT_CAPACITY];
+
+	private String[] values = new String[DEFAULT_CAPACITY];
+
+	public ByteTokenList(final Charset charset) {
+		if (charset == null) {
+			throw new IllegalArgumentException("Argument 'charset' can not be null.");
+		}
+
+		this.charset = charset;
+	}
+
+	/**
+	 * Adds the byte region of a token.
+	 * 
+	 * @param start
+	 *            first index of the token (inclusive)
+	 * @param end
+	 *            last index of the token (exclusive)
+	 */
+	void add(final int start, final int end) {
+		if (size == starts.length) {
+			final int capacity = size * 2;
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		starts[size] = start;
+		ends[size] = end;
+		values[size] = null;
+		size++;
+	}
+
+	private String decode(final int index) {
+		int start = starts[index];
+		int end = ends[index];
+
+		// strip enclosing quotes and brackets without copying
+		while (start < end && isStripped(bytes[start])) {
+			start++;
+		}
+		while (end > start && isStripped(bytes[end - 1])) {
+			end--;
+		}
+
+		for (int i = start; i < end; i++) {
+			if (isStripped(bytes[i])) {
+				return decodeFiltered(start, end);
+			}
+		}
+
+		if (interner != null && index < interned.length && interned[index]) {
+			return interner.intern(bytes, start, end - start, charset);
+		}
+		return new String(bytes, start, end - start, charset);
+	}
+
+	private String decodeFiltered(final int start, final int end) {
+		final byte[] buffer = new byte[end - start];
+		int length = 0;
+		for (int i = start; i < end; i++) {
+			if (!isStripped(bytes[i])) {
+				buffer[length++] = bytes[i];
+			}
+		}
+		return new String(buffer, 0, length, charset);
+	}
+
+	@Override
+	public String get(final int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		String value = values[index];
+		if (value == null) {
+			value = decode(index);
+			values[index] = value;
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the charset which is used to decode the tokens.
+	 * 
+	 * @return charset
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * Discards all tokens and binds this list to the given bytes.
+	 * 
+	 * @param bytes
+	 *            buffer which contains the tokens
+	 */
+	void reset(final byte[] bytes) {
+		Arrays.fill(values, 0, size, null);
+		this.bytes = bytes;
+		size = 0;
+	}
+
+	/**
+	 * Sets a pool of values for the tokens at the given positions. These tokens will be looked up by their bytes, so a
+	 * recurring value shares one instance.
+	 * 
+	 * @param interner
+	 *            pool of values or <code>null</code> to decode every token into a new string
+	 * @param positions
+	 *            flags per position which tokens should be pooled
+	 */
+	public void setInterner(final ValueInterner interner, final boolean[] positions) {
+		if (positions == null) {
+			throw new IllegalArgumentException("Argument 'positions' can not be null.");
+		}
+
+		this.interner = interner;
+		interned = positions.clone();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.logformat.field.CustomRequestTimeField;
+import net.sf.jacclog.logformat.field.Field;
+import net.sf.jacclog.logformat.field.RequestTimeField;
+
+/**
+ * An immutable, precompiled plan to decode the tokens of a log line into a <code>LogEntryBuilder</code>.<br>
+ * <br>
+ * The plan consists of one <code>TokenDecoder</code> per position of the log format. Positions of fields which are
+ * not mapped into a log entry (like <code>IgnorableField</code>) have no decoder, so their tokens will never be
+ * requested. If a field occurs more than once within a format only the last position will be decoded.<br>
+ * <br>
+ * A plan will be compiled only once per format and can be shared between threads. Decoders which remember the last
+ * decoded value (like the <code>RequestTimeDecoder</code>) work best if they are not shared, so a parser should decode
+ * with its own copy of a plan (see {@link #copy()}).
+ * 
+ * @author André Rouél
+ */
+public final class DecodingPlan {
+
+	/**
+	 * Compiled plans per log format
+	 */
+	private static final ConcurrentMap<LogFormat, DecodingPlan> PLANS = new ConcurrentHashMap<LogFormat, DecodingPlan>();
+
+	/**
+	 * Returns the decoding plan of the given format. The plan will be compiled on the first request.
+	 * 
+	 * @param format
+	 *            log format
+	 * @return decoding plan
+	 */
+	public static DecodingPlan compile(final LogFormat format) {
+		if (format == null) {
+			throw new IllegalArgumentException("Argument 'format' can not be null.");
+		}
+
+		DecodingPlan plan = PLANS.get(format);
+		if (plan == null) {
+			plan = new DecodingPlan(format);
+			final DecodingPlan previous = PLANS.putIfAbsent(format, plan);
+			if (previous != null) {
+				plan = previous;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Searches a decoder for the given field.
+	 * 
+	 * @return decoder or <code>null</code> if the field will not be mapped into a log entry
+	 */
+	private static TokenDecoder evaluate(final Field field) {
+		if (field instanceof CustomRequestTimeField) {
+			return RequestTimeDecoder.forStrftime(((CustomRequestTimeField) field).getParameter());
+		}
+		if (field instanceof RequestTimeField) {
+			return RequestTimeDecoder.getDefault().copy();
+		}
+		return FieldDecoder.evaluate(field);
+	}
+
+	/**
+	 * Decoder per position or <code>null</code> if the token at a position should be skipped
+	 */
+	private final TokenDecoder[] decoders;
+
+	/**
+	 * Flags per position whether the token is worth to be pooled
+	 */
+	private final boolean[] internable;
+
+	private DecodingPlan(final DecodingPlan plan) {
+		decoders = plan.decoders.clone();
+		internable = plan.internable;
+		for (int i = 0; i < decoders.length; i++) {
+			if (decoders[i] instanceof RequestTimeDecoder) {
+				decoders[i] = ((RequestTimeDecoder) decoders[i]).copy();
+			}
+		}
+	}
+
+	private DecodingPlan(final LogFormat format) {
+		final List<Field> fields = format.getFields();
+		decoders = new TokenDecoder[fields.size()];
+		internable = new boolean[decoders.length];
+		for (int i = 0; i < decoders.length; i++) {
+			final TokenDecoder decoder = evaluate(fields.get(i));
+			if (decoder != null) {
+				// the last position of a field wins
+				for (int j = 0; j < i; j++) {
+					if (fields.get(j).equals(fields.get(i))) {
+						decoders[j] = null;
+					}
+				}
+				decoders[i] = decoder;
+			}
+		}
+		for (int i = 0; i < decoders.length; i++) {
+			internable[i] = decoders[i] instanceof FieldDecoder && ((FieldDecoder) decoders[i]).isInternable();
+		}
+	}
+
+	/**
+	 * Creates a copy of this plan for a single parser. Stateless decoders will be shared, but decoders which cache the
+	 * last decoded value will be copied, so parallel parsers do not overwrite each others caches.
+	 * 
+	 * @return new plan for the same format
+	 */
+	public DecodingPlan copy() {
+		return new DecodingPlan(this);
+	}
+
+	/**
+	 * Decodes the tokens of a line into a new <code>LogEntryBuilder</code>.
+	 * <p>
+	 * Be aware if the size of tokens does not fit together with the set of fields an <code>MappingException</code> will
+	 * thrown.
+	 * </p>
+	 * 
+	 * @param tokens
+	 *            tokens of a log line
+	 * @return builder which contains the decoded values
+	 */
+	public LogEntryBuilder decode(final List<String> tokens) {
+		return decode(tokens, new LogEntryBuilder());
+	}
+
+	/**
+	 * Decodes the tokens of a line into the given <code>LogEntryBuilder</code>, which should be in its default state.
+	 * <p>
+	 * Be aware if the size of tokens does not fit together with the set of fields an <code>MappingException</code> will
+	 * thrown.
+	 * </p>
+	 * 
+	 * @param tokens
+	 *            tokens of a log line
+	 * @param builder
+	 *            builder which receives the decoded values (e.g. a reused one)
+	 * @return the given builder
+	 */
+	public LogEntryBuilder decode(final List<String> tokens, final LogEntryBuilder builder) {
+		if (tokens == null) {
+			throw new IllegalArgumentException("Argument 'tokens' can not be null.");
+		}
+
+		if (builder == null) {
+			throw new IllegalArgumentException("Argument 'builder' can not be null.");
+		}
+
+		if (tokens.size() != decoders.length) {
+			final StringBuilder buffer = new StringBuilder(100);
+			buffer.append("The amount of tokens (");
+			buffer.append(tokens.size());
+			buffer.append(") will not fit together with the amount of fields (");
+			buffer.append(decoders.length);
+			buffer.append(").");
+			throw new MappingException(buffer.toString());
+		}
+
+		for (int i = 0; i < decoders.length; i++) {
+			final TokenDecoder decoder = decoders[i];
+			if (decoder != null) {
+				decoder.decode(builder, tokens.get(i));
+			}
+		}
+		return builder;
+	}
+
+	/**
+	 * Gets the decoder of a position.
+	 * 
+	 * @return decoder or <code>null</code> if the token at the position will be skipped
+	 */
+	TokenDecoder getDecoder(final int position) {
+		return decoders[position];
+	}
+
+	/**
+	 * Gets the positions whose tokens are stored unchanged in a log entry and repeat often.
+	 * 
+	 * @return flags per position (a copy)
+	 */
+	public boolean[] getInternablePositions() {
+		return internable.clone();
+	}
+
+	/**
+	 * Gets the number of positions of this plan.
+	 * 
+	 * @return number of fields of the compiled format
+	 */
+	public int size() {
+		return decoders.length;
+	}
+
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.api.domain.http.HttpRequestHeader;
+import net.sf.jacclog.api.domain.http.HttpRequestHeaderField;
+import net.sf.jacclog.api.domain.http.HttpStatus;
+import net.sf.jacclog.logformat.field.Field;
+import net.sf.jacclog.logformat.field.HttpLastStatusField;
+import net.sf.jacclog.logformat.field.HttpStatusField;
+import net.sf.jacclog.logformat.field.RemoteHostField;
+import net.sf.jacclog.logformat.field.RemoteUserField;
+import net.sf.jacclog.logformat.field.RequestFirstLineField;
+import net.sf.jacclog.logformat.field.RequestHeaderRefererField;
+import net.sf.jacclog.logformat.field.RequestHeaderUserAgentField;
+import net.sf.jacclog.logformat.field.RequestProtocolField;
+import net.sf.jacclog.logformat.field.RequestTimeField;
+import net.sf.jacclog.logformat.field.ResponseInBytesClfField;
+import net.sf.jacclog.logformat.field.ResponseInBytesField;
+
+/**
+ * Decodes the token of a log format field and writes the value into a <code>LogEntryBuilder</code>.<br>
+ * <br>
+ * Tokens which can not be interpreted will be ignored, so the builder keeps its default value.
+ * 
+ * @author André Rouél
+ */
+public enum FieldDecoder implements TokenDecoder {
+
+	HTTP_LAST_STATUS(HttpLastStatusField.getInstance()) {
+		@Override
+		public void decode(final LogEntryBuilder builder, final String value) {
+			try {
+				builder.lastStatusCode(HttpStatus.evaluate(Integer.parseInt(value)));
+			} catch (final NumberFormatException e) {
+				// ignore this value
+			}
+		}
+	},
+
+	HTTP_STATUS(HttpStatusField.getInstance()) {
+		@Override
+		public void decode(final LogEntryBuilder builder, final String value) {
+			try {
+				builder.statusCode(HttpStatus.evaluate(Integer.parseInt(value)));
+			} catch (final NumberFormatException e) {
+				// ignore this value
+			}
+		}
+	},
+
+	REMOTE_HOST(RemoteHostField.getInstance(), true) {
+		@Override
+		public void decode(final LogEntryBuilder builder, final String value) {
+			builder.remoteHost(value);
+		}
+	},
+
+	REMOTE_USER(RemoteUserField.getInstance(), true) {
+		@Override
+		public void decode(final LogEntryBuilder builder, final String value) {
+			builder.remoteUser(value);
+		}
+	},
+
+	REQUEST_FIRST_LINE(RequestFirstLineField.getInstance()) {
+		@Override
+		public void decode(final LogEntryBuilder builder, final String value) {
+			RequestLineDecoder.getInstance().decode(builder, value);
+		}
+	},
+
+	REQUEST_HEADER_REFERER(RequestHeaderRefererField.getInstance(), true) {
+		@Override
+		public void decode(final LogEntryBuilder builder, final String value) {
+			builder.appendRequestHeaders(new HttpRequestHeaderField(HttpRequestHeader.REFERER, value));
+		}
+	},
+
+	REQUEST_HEADER_USER_AGENT(RequestHeaderUserAgentField.getInstance(), true) {
+		@Override
+		public void decode(final LogEntryBuilder builder, final String value) {
+			builder.appendRequestHeaders(new HttpRequestHeaderField(HttpRequestHeader.USER_AGENT, value));
+		}
+	},
+
+	REQUEST_PROTOCOL(RequestProtocolField.getInstance(), true) {
+		@Override
+		public void decode(final LogEntryBuilder builder, final String value) {
+			builder.requestProtocol(value);
+		}
+	},
+
+	REQUEST_TIME(RequestTimeField.getInstance()) {
+		@Override
+		public void decode(final LogEntryBuilder builder, final String value) {
+			RequestTimeDecoder.getDefault().decode(builder, value);
+		}
+	},
+
+	RESPONSE_IN_BYTES(ResponseInBytesField.getInstance()) {
+		@Override
+		public void decode(final LogEntryBuilder builder, final String value) {
+			try {
+				builder.responseInBytes(Long.parseLong(value));
+			} catch (final NumberFormatException e) {
+				// ignore this value
+			}
+		}
+	},
+
+	RESPONSE_IN_BYTES_CLF(ResponseInBytesClfField.getInstance()) {
+		@Override
+		public void decode(final LogEntryBuilder builder, final String value) {
+			if ("-".equals(value)) {
+				builder.responseInBytes(Long.valueOf(0));
+			} else {
+				try {
+					builder.responseInBytes(Long.parseLong(value));
+				} catch (final NumberFormatException e) {
+					// ignore this value
+				}
+			}
+		}
+	};
+
+	/**
+	 * Searches the decoder of the given field.
+	 * 
+	 * @param field
+	 *            field of a log format
+	 * @return decoder or <code>null</code> if the field will not be mapped into a log entry
+	 */
+	public static FieldDecoder evaluate(final Field field) {
+		if (field == null) {
+			throw new IllegalArgumentException("Argument 'field' can not be null.");
+		}
+
+		for (final FieldDecoder decoder : values()) {
+			if (decoder.field.equals(field)) {
+				return decoder;
+			}
+		}
+		return null;
+	}
+
+	private final Field field;
+
+	/**
+	 * Indicates whether the values of the field repeat often and are stored as they are
+	 */
+	private final boolean internable;
+
+	private FieldDecoder(final Field field) {
+		this(field, false);
+	}
+
+	private FieldDecoder(final Field field, final boolean internable) {
+		this.field = field;
+		this.internable = internable;
+	}
+
+	@Override
+	public abstract void decode(final LogEntryBuilder builder, final String value);
+
+	/**
+	 * Gets the field which will be decoded.
+	 * 
+	 * @return field
+	 */
+	public Field getField() {
+		return field;
+	}
+
+	/**
+	 * Indicates whether the token of the field is stored unchanged in a log entry and its values repeat often, so
+	 * they are worth to be pooled (see <code>ValueInterner</code>).
+	 * 
+	 * @return <code>true</code> if the token should be pooled
+	 */
+	public boolean isInternable() {
+		return internable;
+	}
+
+}
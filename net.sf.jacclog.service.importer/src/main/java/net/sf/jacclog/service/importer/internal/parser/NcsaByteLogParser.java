@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import java.nio.charset.Charset;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.api.parser.LogEntryPostProcessor;
+import net.sf.jacclog.service.importer.api.parser.LogParser;
+import net.sf.jacclog.service.importer.internal.LogEntryPool;
+import net.sf.jacclog.service.importer.internal.PooledLogEntry;
+
+/**
+ * This is a NCSA-conform log parser which works directly on the raw bytes of a line.<br>
+ * <br>
+ * The tokenization follows the same rules as <code>NcsaLogParser.parse(String)</code>, but no characters will be
+ * decoded while scanning a line. A token will be converted into a <code>String</code> only if the mapping stage
+ * requests it.<br>
+ * <br>
+ * An instance of this parser reuses its token buffer and is therefore not thread-safe.
+ * 
+ * @author André Rouél
+ */
+public class NcsaByteLogParser implements LogParser<ReadonlyLogEntry> {
+
+	/**
+	 * The default charset to decode tokens
+	 */
+	public static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * Splits the given byte region of a line into tokens.<br>
+	 * <br>
+	 * Separators are spaces outside of quotes and brackets. Like <code>NcsaLogParser.parse(String)</code> a separator
+	 * always completes a token (even an empty one) and a trailing empty token will be dropped.
+	 * 
+	 * @param bytes
+	 *            buffer which contains the line
+	 * @param offset
+	 *            first index of the line
+	 * @param length
+	 *            length of the line in bytes (without line terminator)
+	 * @param tokens
+	 *            list which will be reset and filled with the token regions
+	 */
+	public static void parse(final byte[] bytes, final int offset, final int length, final ByteTokenList tokens) {
+		if (bytes == null) {
+			throw new IllegalArgumentException("Argument 'bytes' can not be null.");
+		}
+
+		if (offset < 0 || length < 0 || offset + length > bytes.length) {
+			throw new IllegalArgumentException("Arguments 'offset' and 'length' must describe a region of 'bytes'.");
+		}
+
+		if (tokens == null) {
+			throw new IllegalArgumentException("Argument 'tokens' can not be null.");
+		}
+
+		tokens.reset(bytes);
+		final int end = offset + length;
+		boolean inQuotes = false;
+		boolean inBrackets = false;
+		boolean filled = false;
+		int start = offset;
+		for (int i = offset; i < end; i++) {
+			final byte b = bytes[i];
+			if (b == '"') {
+				inQuotes = !inQuotes;
+			} else if (b == '[') {
+				inBrackets = true;
+			} else if (b == ']') {
+				inBrackets = false;
+			} else if (b == ' ' && !inQuotes && !inBrackets) {
+				tokens.add(start, i);
+				start = i + 1;
+				filled = false;
+			} else {
+				filled = true;
+			}
+		}
+		if (filled) {
+			tokens.add(start, end);
+		}
+	}
+
+	/**
+	 * Pool of recurring values or <code>null</code> if every value should be a new string
+	 */
+	private ValueInterner interner;
+
+	/**
+	 * Compiled plan to decode the tokens
+	 */
+	private final DecodingPlan plan;
+
+	/**
+	 * Pool of reusable entries or <code>null</code> if immutable entries should be built
+	 */
+	private LogEntryPool pool;
+
+	/**
+	 * Post processor for an log entry
+	 */
+	private LogEntryPostProcessor postProcessor;
+
+	/**
+	 * Reusable token buffer
+	 */
+	private final ByteTokenList tokens;
+
+	public NcsaByteLogParser(final LogFormat format) {
+		this(format, DEFAULT_CHARSET);
+	}
+
+	public NcsaByteLogParser(final LogFormat format, final Charset charset) {
+		if (format == null) {
+			throw new IllegalArgumentException("Argument 'format' can not be null.");
+		}
+
+		if (charset == null) {
+			throw new IllegalArgumentException("Argument 'charset' can not be null.");
+		}
+
+		plan = DecodingPlan.compile(format).copy();
+		tokens = new ByteTokenList(charset);
+	}
+
+	/**
+	 * Returns the charset to decode the tokens of a line.
+	 * 
+	 * @return charset
+	 */
+	public Charset getCharset() {
+		return tokens.getCharset();
+	}
+
+	/**
+	 * Parses a line of a log file which is stored in the given byte region.
+	 * <p>
+	 * If errors happen while mapping the tokens to the fields of a log entry, then a <code>MappingException</code> will
+	 * be thrown.
+	 * </p>
+	 * 
+	 * @param bytes
+	 *            buffer which contains the line
+	 * @param offset
+	 *            first index of the line
+	 * @param length
+	 *            length of the line in bytes (without line terminator)
+	 * @return log entry
+	 */
+	public ReadonlyLogEntry parseLine(final byte[] bytes, final int offset, final int length) {
+		parse(bytes, offset, length, tokens);
+		final LogEntryBuilder builder = (pool != null) ? pool.acquire() : new LogEntryBuilder();
+		try {
+			plan.decode(tokens, builder);
+		} catch (final MappingException e) {
+			if (builder instanceof PooledLogEntry) {
+				((PooledLogEntry) builder).release();
+			}
+			throw e;
+		}
+
+		if (interner != null) {
+			// the path and the protocol are derived from the request line and therefore not pooled by their bytes
+			if (builder.getUrlPath().length() > 0) {
+				builder.urlPath(interner.intern(builder.getUrlPath()));
+			}
+			if (builder.getRequestProtocol().length() > 0) {
+				builder.requestProtocol(interner.intern(builder.getRequestProtocol()));
+			}
+		}
+
+		if (postProcessor != null) {
+			postProcessor.process(builder);
+		}
+
+		return (builder instanceof PooledLogEntry) ? (PooledLogEntry) builder : builder.build();
+	}
+
+	/**
+	 * Parses a line of a log file.
+	 * <p>
+	 * If errors happen while mapping the tokens to the fields of a log entry, then a <code>MappingException</code> will
+	 * be thrown.
+	 * </p>
+	 */
+	@Override
+	public ReadonlyLogEntry parseLine(final String line) {
+		if (line == null) {
+			throw new IllegalArgumentException("Argument 'line' can not be null.");
+		}
+
+		final byte[] bytes = line.getBytes(tokens.getCharset());
+		return parseLine(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Sets a pool of recurring values. If a pool is set, the values of fields which repeat often (like remote hosts,
+	 * referers and user agents) will be looked up by their bytes, so identical values share one instance.
+	 * 
+	 * @param interner
+	 *            pool of values or <code>null</code> to create a new string for every value
+	 */
+	public void setInterner(final ValueInterner interner) {
+		this.interner = interner;
+		tokens.setInterner(interner, plan.getInternablePositions());
+	}
+
+	/**
+	 * Sets a pool of reusable entries. If a pool is set, every line will be decoded into an entry of the pool instead
+	 * of an immutable <code>LogEntry</code>, and the receiver of the entry is responsible to release it.
+	 * 
+	 * @param pool
+	 *            pool of entries or <code>null</code> to build immutable entries
+	 */
+	public void setPool(final LogEntryPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void setPostProcessor(final LogEntryPostProcessor processor) {
+		postProcessor = processor;
+	}
+
+}
@@ -65,7 +65,10 @@ public class NcsaLogParser implements LogParser<ReadonlyLogEntry> {
 		return tokens;
 	}
 
-	private final LogFormat format;
+	/**
+	 * Compiled plan to decode the tokens
+	 */
+	private final DecodingPlan plan;
 
 	/**
 	 * Post processor for an log entry
@@ -77,7 +80,7 @@ public class NcsaLogParser implements LogParser<ReadonlyLogEntry> {
 			throw new IllegalArgumentException("Argument 'format' can not be null.");
 		}
 
-		this.format = format;
+		plan = DecodingPlan.compile(format).copy();
 	}
 
 	/**
@@ -94,7 +97,7 @@ public class NcsaLogParser implements LogParser<ReadonlyLogEntry> {
 		}
 
 		final List<String> tokens = parse(line);
-		final LogEntryBuilder builder = TokensToLogEntryMapper.map(format, tokens);
+		final LogEntryBuilder builder = plan.decode(tokens);
 		if (postProcessor != null) {
 			postProcessor.process(builder);
 		}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.api.domain.http.HttpRequestMethod;
+
+/**
+ * Decodes the first line of a request (<code>%r</code>) into the request method, the path, the query string and the
+ * protocol.<br>
+ * <br>
+ * The line will be scanned by hand instead of being split by a regular expression and parsed by
+ * <code>java.net.URI</code>. Real-world request lines often contain unescaped characters (even spaces) within the
+ * path, which are rejected by <code>URI</code>. Therefore the request target is everything between the method and the
+ * protocol, the path and the query string are taken as they are (not percent-decoded) and an absolute target like
+ * <code>http://host/path</code> is reduced to its path.<br>
+ * <br>
+ * This decoder is stateless and thread-safe.
+ * 
+ * @author André Rouél
+ */
+public final class RequestLineDecoder implements TokenDecoder {
+
+	private static final RequestLineDecoder INSTANCE = new RequestLineDecoder();
+
+	/**
+	 * Prefix of the protocol part of a request line
+	 */
+	private static final String PROTOCOL_PREFIX = "HTTP/";
+
+	/**
+	 * Returns the instance of this decoder.
+	 * 
+	 * @return decoder
+	 */
+	public static RequestLineDecoder getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Checks for the same characters which are matched by the regular expression <code>\s</code>.
+	 */
+	private static boolean isWhitespace(final char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private RequestLineDecoder() {
+	}
+
+	@Override
+	public void decode(final LogEntryBuilder builder, final String value) {
+		final int length = value.length();
+		int methodStart = 0;
+		while (methodStart < length && isWhitespace(value.charAt(methodStart))) {
+			methodStart++;
+		}
+		int methodEnd = methodStart;
+		while (methodEnd < length && !isWhitespace(value.charAt(methodEnd))) {
+			methodEnd++;
+		}
+		if (methodEnd == length) {
+			// no request target (e.g. a line which is logged as "-")
+			return;
+		}
+
+		int end = length;
+		while (end > methodEnd && isWhitespace(value.charAt(end - 1))) {
+			end--;
+		}
+
+		// the protocol is the last part, but only if it looks like one (HTTP/0.9 requests have no protocol)
+		int protocolStart = end;
+		while (protocolStart > methodEnd && !isWhitespace(value.charAt(protocolStart - 1))) {
+			protocolStart--;
+		}
+		int targetEnd = end;
+		if (protocolStart > methodEnd && value.regionMatches(true, protocolStart, PROTOCOL_PREFIX, 0,
+				PROTOCOL_PREFIX.length())) {
+			builder.requestProtocol(value.substring(protocolStart, end));
+			targetEnd = protocolStart;
+			while (targetEnd > methodEnd && isWhitespace(value.charAt(targetEnd - 1))) {
+				targetEnd--;
+			}
+		}
+
+		builder.requestMethod(HttpRequestMethod.evaluate(value.substring(methodStart, methodEnd)));
+
+		int targetStart = methodEnd;
+		while (targetStart < targetEnd && isWhitespace(value.charAt(targetStart))) {
+			targetStart++;
+		}
+		if (targetStart < targetEnd) {
+			decodeTarget(builder, value, targetStart, targetEnd);
+		}
+	}
+
+	/**
+	 * Splits the request target into the path and the query string. A fragment will be dropped.
+	 */
+	private void decodeTarget(final LogEntryBuilder builder, final String value, final int start, final int end) {
+		int pathStart = start;
+		if (value.charAt(start) != '/') {
+			// absolute form: skip the scheme and the authority
+			final int scheme = value.indexOf("://", start);
+			if (scheme > 0 && scheme < end) {
+				pathStart = scheme + 3;
+				while (pathStart < end && value.charAt(pathStart) != '/' && value.charAt(pathStart) != '?'
+						&& value.charAt(pathStart) != '#') {
+					pathStart++;
+				}
+			}
+		}
+
+		int pathEnd = pathStart;
+		while (pathEnd < end && value.charAt(pathEnd) != '?' && value.charAt(pathEnd) != '#') {
+			pathEnd++;
+		}
+		builder.urlPath(value.substring(pathStart, pathEnd));
+
+		if (pathEnd < end && value.charAt(pathEnd) == '?') {
+			int queryEnd = pathEnd + 1;
+			while (queryEnd < end && value.charAt(queryEnd) != '#') {
+				queryEnd++;
+			}
+			builder.queryString(value.substring(pathEnd + 1, queryEnd));
+		}
+	}
+
+}
@@ -0,0 +1,459 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes the request time of a log line (<code>%t</code> or <code>%{format}t</code>).<br>
+ * <br>
+ * Consecutive lines of an access log mostly share the same second or at least the same day. Therefore the decoder
+ * remembers the last decoded value and the start of the last decoded day, so a timestamp will be computed only if the
+ * second changes and no <code>Calendar</code> or <code>SimpleDateFormat</code> will be touched for the common
+ * <code>%t</code> layout <code>dd/MMM/yyyy:HH:mm:ss Z</code>. Other layouts will be parsed by a
+ * <code>SimpleDateFormat</code> per thread.<br>
+ * <br>
+ * Instances are thread-safe, but parallel callers of one instance overwrite each others cached values and contend for
+ * them. Therefore each parser should decode with its own instance (see {@link #copy()}).
+ * 
+ * @author André Rouél
+ */
+public final class RequestTimeDecoder implements TokenDecoder {
+
+	/**
+	 * Start of a day in milliseconds since epoch for a date and time zone part of a <code>%t</code> value
+	 */
+	private static final class Day {
+
+		private final long millis;
+
+		private final String value;
+
+		private Day(final String value, final long millis) {
+			this.value = value;
+			this.millis = millis;
+		}
+
+		private boolean matches(final String other) {
+			return value.regionMatches(0, other, 0, DAY_LENGTH)
+					&& value.regionMatches(ZONE_OFFSET, other, ZONE_OFFSET, ZONE_LENGTH);
+		}
+
+	}
+
+	/**
+	 * Last decoded value and its milliseconds since epoch
+	 */
+	private static final class Entry {
+
+		private final long millis;
+
+		private final String value;
+
+		private Entry(final String value, final long millis) {
+			this.value = value;
+			this.millis = millis;
+		}
+
+	}
+
+	private static final int DAY_LENGTH = 11;
+
+	/**
+	 * Time format of the field <code>%t</code> as <code>SimpleDateFormat</code> pattern
+	 */
+	public static final String DEFAULT_PATTERN = "dd/MMM/yyyy:HH:mm:ss Z";
+
+	private static final RequestTimeDecoder DEFAULT = new RequestTimeDecoder(DEFAULT_PATTERN, null);
+
+	private static final int FIXED_WIDTH_LENGTH = 26;
+
+	private static final Logger LOG = LoggerFactory.getLogger(RequestTimeDecoder.class);
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private static final String[] MONTHS = { "jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct",
+			"nov", "dec" };
+
+	private static final int ZONE_LENGTH = 5;
+
+	private static final int ZONE_OFFSET = 21;
+
+	/**
+	 * Computes the number of days since 1970-01-01 of a date of the proleptic Gregorian calendar.
+	 */
+	static long daysFromCivil(final int year, final int month, final int day) {
+		final long y = month <= 2 ? year - 1 : year;
+		final long era = (y >= 0 ? y : y - 399) / 400;
+		final long yoe = y - era * 400;
+		final long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		final long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+
+	/**
+	 * Interprets a fixed amount of decimal digits.
+	 * 
+	 * @return value or <code>-1</code> if a character is not a digit
+	 */
+	private static int digits(final String value, final int offset, final int length) {
+		int result = 0;
+		for (int i = offset; i < offset + length; i++) {
+			final int digit = value.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			result = result * 10 + digit;
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a decoder for the time format of the field <code>%{format}t</code>.<br>
+	 * <br>
+	 * Next to the strftime(3) conversions the formats <code>sec</code>, <code>msec</code> and <code>usec</code> (time
+	 * since epoch) of the Apache HTTP Server are supported. The prefixes <code>begin:</code> and <code>end:</code> will
+	 * be ignored.
+	 * 
+	 * @param format
+	 *            time format in strftime(3) notation
+	 * @return decoder or <code>null</code> if the format represents only a fraction of a second
+	 * @throws IllegalArgumentException
+	 *             if the format contains an unsupported conversion
+	 */
+	public static RequestTimeDecoder forStrftime(final String format) {
+		if (format == null) {
+			throw new IllegalArgumentException("Argument 'format' can not be null.");
+		}
+
+		String f = format;
+		if (f.startsWith("begin:")) {
+			f = f.substring(6);
+		} else if (f.startsWith("end:")) {
+			f = f.substring(4);
+		}
+
+		if ("sec".equals(f)) {
+			return new RequestTimeDecoder(null, TimeUnit.SECONDS);
+		} else if ("msec".equals(f)) {
+			return new RequestTimeDecoder(null, TimeUnit.MILLISECONDS);
+		} else if ("usec".equals(f)) {
+			return new RequestTimeDecoder(null, TimeUnit.MICROSECONDS);
+		} else if ("msec_frac".equals(f) || "usec_frac".equals(f)) {
+			return null;
+		}
+		return new RequestTimeDecoder(toPattern(f), null);
+	}
+
+	/**
+	 * Returns the shared decoder for the field <code>%t</code>. Parsers should use a copy of it.
+	 * 
+	 * @return default decoder
+	 */
+	public static RequestTimeDecoder getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Interprets the abbreviation of an english month name (case-insensitive).
+	 * 
+	 * @return month (1-12) or <code>-1</code> if the abbreviation is unknown
+	 */
+	private static int month(final String value, final int offset) {
+		final char c0 = Character.toLowerCase(value.charAt(offset));
+		final char c1 = Character.toLowerCase(value.charAt(offset + 1));
+		final char c2 = Character.toLowerCase(value.charAt(offset + 2));
+		for (int i = 0; i < MONTHS.length; i++) {
+			final String month = MONTHS[i];
+			if (month.charAt(0) == c0 && month.charAt(1) == c1 && month.charAt(2) == c2) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Converts a time format in strftime(3) notation into a <code>SimpleDateFormat</code> pattern.
+	 * 
+	 * @param format
+	 *            time format in strftime(3) notation
+	 * @return pattern
+	 * @throws IllegalArgumentException
+	 *             if the format contains an unsupported conversion
+	 */
+	static String toPattern(final String format) {
+		final StringBuilder pattern = new StringBuilder(format.length() * 2);
+		boolean quoted = false;
+		for (int i = 0; i < format.length(); i++) {
+			final char c = format.charAt(i);
+			if (c == '%' && i + 1 < format.length() && format.charAt(i + 1) != '%') {
+				if (quoted) {
+					pattern.append('\'');
+					quoted = false;
+				}
+				final char conversion = format.charAt(++i);
+				switch (conversion) {
+				case 'a':
+					pattern.append("EEE");
+					break;
+				case 'A':
+					pattern.append("EEEE");
+					break;
+				case 'b':
+				case 'h':
+					pattern.append("MMM");
+					break;
+				case 'B':
+					pattern.append("MMMM");
+					break;
+				case 'd':
+					pattern.append("dd");
+					break;
+				case 'D':
+					pattern.append("MM/dd/yy");
+					break;
+				case 'e':
+					pattern.append("d");
+					break;
+				case 'F':
+					pattern.append("yyyy-MM-dd");
+					break;
+				case 'H':
+					pattern.append("HH");
+					break;
+				case 'I':
+					pattern.append("hh");
+					break;
+				case 'j':
+					pattern.append("DDD");
+					break;
+				case 'm':
+					pattern.append("MM");
+					break;
+				case 'M':
+					pattern.append("mm");
+					break;
+				case 'p':
+					pattern.append("a");
+					break;
+				case 'R':
+					pattern.append("HH:mm");
+					break;
+				case 'S':
+					pattern.append("ss");
+					break;
+				case 'T':
+					pattern.append("HH:mm:ss");
+					break;
+				case 'y':
+					pattern.append("yy");
+					break;
+				case 'Y':
+					pattern.append("yyyy");
+					break;
+				case 'z':
+					pattern.append("Z");
+					break;
+				case 'Z':
+					pattern.append("z");
+					break;
+				default:
+					throw new IllegalArgumentException("The conversion '%" + conversion
+							+ "' of the time format '" + format + "' is not supported.");
+				}
+			} else {
+				if (c == '%') {
+					// escaped percent sign
+					i++;
+				}
+				if (c == '\'') {
+					pattern.append("''");
+				} else {
+					if (!quoted && ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+						pattern.append('\'');
+						quoted = true;
+					}
+					pattern.append(c);
+				}
+			}
+		}
+		if (quoted) {
+			pattern.append('\'');
+		}
+		return pattern.toString();
+	}
+
+	/**
+	 * Start of the last decoded day (only used for the fixed-width layout)
+	 */
+	private volatile Day day;
+
+	/**
+	 * Unit of a time since epoch or <code>null</code> if a pattern will be used
+	 */
+	private final TimeUnit epochUnit;
+
+	/**
+	 * Indicates whether the pattern is the fixed-width layout of <code>%t</code>
+	 */
+	private final boolean fixedWidth;
+
+	private final ThreadLocal<SimpleDateFormat> formatter;
+
+	private volatile Entry last;
+
+	private final String pattern;
+
+	private RequestTimeDecoder(final String pattern, final TimeUnit epochUnit) {
+		this.pattern = pattern;
+		this.epochUnit = epochUnit;
+		fixedWidth = DEFAULT_PATTERN.equals(pattern);
+		if (pattern != null) {
+			// fail early on an invalid pattern
+			new SimpleDateFormat(pattern, Locale.ENGLISH);
+			formatter = new ThreadLocal<SimpleDateFormat>() {
+				@Override
+				protected SimpleDateFormat initialValue() {
+					return new SimpleDateFormat(RequestTimeDecoder.this.pattern, Locale.ENGLISH);
+				}
+			};
+		} else {
+			formatter = null;
+		}
+	}
+
+	/**
+	 * Creates a decoder for the same time format with empty caches.
+	 * 
+	 * @return new decoder
+	 */
+	public RequestTimeDecoder copy() {
+		return new RequestTimeDecoder(pattern, epochUnit);
+	}
+
+	@Override
+	public void decode(final LogEntryBuilder builder, final String value) {
+		try {
+			// LogEntry holds a mutable Date, so it can not be shared between entries
+			builder.requestTime(new Date(parse(value)));
+		} catch (final ParseException e) {
+			LOG.info(e.getLocalizedMessage() + ": " + value);
+			// ignore this value
+		}
+	}
+
+	/**
+	 * Interprets the fixed-width layout <code>dd/MMM/yyyy:HH:mm:ss Z</code> without a <code>Calendar</code>.
+	 * 
+	 * @return milliseconds since epoch or <code>Long.MIN_VALUE</code> if the value does not match the layout
+	 */
+	private long decodeFixedWidth(final String value) {
+		if (value.length() != FIXED_WIDTH_LENGTH || value.charAt(2) != '/' || value.charAt(6) != '/'
+				|| value.charAt(11) != ':' || value.charAt(14) != ':' || value.charAt(17) != ':'
+				|| value.charAt(20) != ' ') {
+			return Long.MIN_VALUE;
+		}
+
+		final int hours = digits(value, 12, 2);
+		final int minutes = digits(value, 15, 2);
+		final int seconds = digits(value, 18, 2);
+		if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+			return Long.MIN_VALUE;
+		}
+
+		Day d = day;
+		if (d == null || !d.matches(value)) {
+			final int dayOfMonth = digits(value, 0, 2);
+			final int month = month(value, 3);
+			final int year = digits(value, 7, 4);
+			final char sign = value.charAt(ZONE_OFFSET);
+			final int zoneHours = digits(value, ZONE_OFFSET + 1, 2);
+			final int zoneMinutes = digits(value, ZONE_OFFSET + 3, 2);
+			if (dayOfMonth < 1 || dayOfMonth > 31 || month < 0 || year < 1600 || (sign != '+' && sign != '-')
+					|| zoneHours < 0 || zoneMinutes < 0 || zoneMinutes > 59) {
+				return Long.MIN_VALUE;
+			}
+
+			final long offset = (zoneHours * 60L + zoneMinutes) * 60 * 1000;
+			final long millis = daysFromCivil(year, month, dayOfMonth) * MILLIS_PER_DAY
+					- (sign == '-' ? -offset : offset);
+			d = new Day(value, millis);
+			day = d;
+		}
+		return d.millis + ((hours * 60L + minutes) * 60 + seconds) * 1000;
+	}
+
+	/**
+	 * Returns the <code>SimpleDateFormat</code> pattern of this decoder.
+	 * 
+	 * @return pattern or <code>null</code> if a time since epoch will be decoded
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Interprets the given value as point in time.
+	 * 
+	 * @param value
+	 *            token of a request time field
+	 * @return milliseconds since epoch
+	 * @throws ParseException
+	 *             if the value can not be interpreted
+	 */
+	public long parse(final String value) throws ParseException {
+		if (value == null) {
+			throw new IllegalArgumentException("Argument 'value' can not be null.");
+		}
+
+		final Entry e = last;
+		if (e != null && e.value.equals(value)) {
+			return e.millis;
+		}
+
+		final long millis = parseUncached(value);
+		last = new Entry(value, millis);
+		return millis;
+	}
+
+	private long parseUncached(final String value) throws ParseException {
+		if (epochUnit != null) {
+			try {
+				return epochUnit.toMillis(Long.parseLong(value));
+			} catch (final NumberFormatException e) {
+				throw new ParseException("Unparseable time since epoch: \"" + value + "\"", 0);
+			}
+		}
+
+		if (fixedWidth) {
+			final long millis = decodeFixedWidth(value);
+			if (millis != Long.MIN_VALUE) {
+				return millis;
+			}
+		}
+		return formatter.get().parse(value).getTime();
+	}
+
+}
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+
+/**
+ * Decodes the token of a single position of a log line into a <code>LogEntryBuilder</code>.<br>
+ * <br>
+ * Implementations must be thread-safe, because a <code>DecodingPlan</code> is shared between threads.
+ * 
+ * @author André Rouél
+ */
+public interface TokenDecoder {
+
+	/**
+	 * Decodes the given token and writes the result into the builder.
+	 * 
+	 * @param builder
+	 *            builder of a log entry
+	 * @param value
+	 *            token of the field (never <code>null</code>)
+	 */
+	void decode(final LogEntryBuilder builder, final String value);
+
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import java.nio.charset.Charset;
+
+import net.sf.jacclog.util.cache.SlotCache;
+
+/**
+ * A bounded, thread-safe pool of strings which lets identical values of log entries share one instance.<br>
+ * <br>
+ * Values like remote hosts, referers or user agents repeat enormously within access logs. A value will be looked up
+ * by its raw bytes, so a hit returns the pooled instance without decoding the bytes at all. The pool is a
+ * {@link SlotCache}, so it never grows and frequent values stay in the pool while rare values get evicted.<br>
+ * <br>
+ * Values longer than the maximum length will not be pooled, because long values rarely repeat.
+ * 
+ * @author André Rouél
+ */
+public final class ValueInterner {
+
+	/**
+	 * Region of a buffer which is looked up without copying it
+	 */
+	private static final class Region {
+
+		private final byte[] bytes;
+
+		private final int length;
+
+		private final int offset;
+
+		private Region(final byte[] bytes, final int offset, final int length) {
+			this.bytes = bytes;
+			this.offset = offset;
+			this.length = length;
+		}
+
+	}
+
+	/**
+	 * Default number of slots
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * Default maximum length of a pooled value in bytes
+	 */
+	public static final int DEFAULT_MAX_LENGTH = 1024;
+
+	/**
+	 * Compares the raw bytes of a pooled value with a region of a buffer. Values which have been interned as strings
+	 * are pooled with the string itself as key, so they never match a region.
+	 */
+	private static final SlotCache.Matcher<Object, Region> REGION_MATCHER = new SlotCache.Matcher<Object, Region>() {
+		@Override
+		public boolean matches(final Object key, final Region region) {
+			if (!(key instanceof byte[])) {
+				return false;
+			}
+			final byte[] k = (byte[]) key;
+			if (k.length != region.length) {
+				return false;
+			}
+			for (int i = 0; i < region.length; i++) {
+				if (k[i] != region.bytes[region.offset + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	};
+
+	private static int hash(final byte[] bytes, final int offset, final int length) {
+		int hash = 1;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		return hash;
+	}
+
+	private final int maxLength;
+
+	/**
+	 * Pooled values by their raw bytes or by themselves
+	 */
+	private final SlotCache<Object, String> values;
+
+	public ValueInterner() {
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Creates a pool with the given number of slots.
+	 * 
+	 * @param capacity
+	 *            number of slots (will be rounded up to a power of two)
+	 * @param maxLength
+	 *            maximum length of a pooled value in bytes
+	 */
+	public ValueInterner(final int capacity, final int maxLength) {
+		if (maxLength < 0) {
+			throw new IllegalArgumentException("Argument 'maxLength' can not be smaller than 0.");
+		}
+
+		values = new SlotCache<Object, String>(capacity);
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Gets the number of slots.
+	 * 
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return values.getCapacity();
+	}
+
+	/**
+	 * Gets the ratio of hits to all lookups.
+	 * 
+	 * @return ratio between <code>0</code> and <code>1</code>
+	 */
+	public double getHitRatio() {
+		return values.getHitRatio();
+	}
+
+	/**
+	 * Gets the number of lookups which returned a pooled value.
+	 * 
+	 * @return number of hits
+	 */
+	public long getHits() {
+		return values.getHits();
+	}
+
+	/**
+	 * Gets the number of lookups which had to create a new value.
+	 * 
+	 * @return number of misses
+	 */
+	public long getMisses() {
+		return values.getMisses();
+	}
+
+	/**
+	 * Returns the pooled string of the given byte region or decodes and pools it.
+	 * 
+	 * @param bytes
+	 *            buffer which contains the value
+	 * @param offset
+	 *            first index of the value
+	 * @param length
+	 *            length of the value in bytes
+	 * @param charset
+	 *            charset to decode the value (all lookups of a pool should use the same charset)
+	 * @return string of the byte region
+	 */
+	public String intern(final byte[] bytes, final int offset, final int length, final Charset charset) {
+		if (length > maxLength) {
+			return new String(bytes, offset, length, charset);
+		}
+
+		final int hash = hash(bytes, offset, length);
+		final String pooled = values.get(hash, new Region(bytes, offset, length), REGION_MATCHER);
+		if (pooled != null) {
+			return pooled;
+		}
+
+		final byte[] key = new byte[length];
+		System.arraycopy(bytes, offset, key, 0, length);
+		final String value = new String(key, charset);
+		values.put(hash, key, value);
+		return value;
+	}
+
+	/**
+	 * Returns the pooled instance of the given string or pools it. This lookup is meant for values which are derived
+	 * from a token (e.g. the path of a request line) and therefore have no byte region of their own.
+	 * 
+	 * @param value
+	 *            string or <code>null</code>
+	 * @return pooled string or <code>null</code>
+	 */
+	public String intern(final String value) {
+		if (value == null || value.length() > maxLength) {
+			return value;
+		}
+
+		final int hash = value.hashCode();
+		final String pooled = values.get(hash, value);
+		if (pooled != null) {
+			return pooled;
+		}
+
+		values.put(hash, value, value);
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "ValueInterner [capacity=" + getCapacity() + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+	}
+
+}
@@ -15,7 +15,7 @@
  ******************************************************************************/
 package net.sf.jacclog.service.importer.internal.queue;
 
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
@@ -24,6 +24,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sf.jacclog.api.domain.ReadonlyLogEntry;
 import net.sf.jacclog.service.importer.api.service.LogEntryImportService;
+import net.sf.jacclog.service.importer.internal.LogEntrySpool;
+import net.sf.jacclog.service.importer.internal.LogFileImporterStatistic;
+import net.sf.jacclog.service.importer.internal.PooledLogEntry;
+import net.sf.jacclog.service.importer.internal.TrackedLogEntry;
+import net.sf.jacclog.service.importer.internal.WriteController;
 import net.sf.jacclog.util.observer.BlockingQueueObserver;
 
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
@@ -36,12 +41,19 @@ public class LogEntryQueuePersisterObserver implements BlockingQueueObserver<Rea
 
 		private static final int MAX_ATTEMPTS = 3;
 
+		private final WriteController controller;
+
 		private final BlockingQueue<ReadonlyLogEntry> queue;
 
 		private final LogEntryImportService<ReadonlyLogEntry> service;
 
+		/**
+		 * Spool of the batches which could not be stored in the repository
+		 */
+		private final LogEntrySpool spool;
+
 		public LogEntryPersisterTask(final LogEntryImportService<ReadonlyLogEntry> service,
-				final BlockingQueue<ReadonlyLogEntry> queue) {
+				final BlockingQueue<ReadonlyLogEntry> queue, final WriteController controller, final LogEntrySpool spool) {
 			if (queue == null) {
 				throw new IllegalArgumentException("Argument 'queue' can not be null.");
 			}
@@ -50,11 +62,58 @@ public class LogEntryQueuePersisterObserver implements BlockingQueueObserver<Rea
 				throw new IllegalArgumentException("Argument 'service' can not be null.");
 			}
 
+			if (controller == null) {
+				throw new IllegalArgumentException("Argument 'controller' can not be null.");
+			}
+
+			if (spool == null) {
+				throw new IllegalArgumentException("Argument 'spool' can not be null.");
+			}
+
 			this.queue = queue;
 			this.service = service;
+			this.controller = controller;
+			this.spool = spool;
 		}
 
+		/**
+		 * Reports the lines of the persisted entries as committed, so the checkpoints of their files can advance.
+		 */
+		private void commit(final Collection<ReadonlyLogEntry> entries) {
+			for (final ReadonlyLogEntry entry : entries) {
+				if (entry instanceof TrackedLogEntry) {
+					((TrackedLogEntry) entry).commit();
+				}
+			}
+		}
+
+		/**
+		 * Returns the pooled entries to their pool, after their values have been copied into the repository (or the
+		 * persisting has finally failed).
+		 */
+		private void release(final Collection<ReadonlyLogEntry> entries) {
+			for (final ReadonlyLogEntry entry : entries) {
+				final ReadonlyLogEntry unwrapped = (entry instanceof TrackedLogEntry) ? ((TrackedLogEntry) entry)
+						.getEntry() : entry;
+				if (unwrapped instanceof PooledLogEntry) {
+					((PooledLogEntry) unwrapped).release();
+				}
+			}
+		}
+
+		/**
+		 * Persists the entries as soon as the controller allows one more concurrent write and reports the latency of
+		 * the write to the controller.
+		 */
 		private boolean persist(final Collection<ReadonlyLogEntry> entries) {
+			try {
+				controller.acquire();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+
+			final long start = System.nanoTime();
 			boolean result = false;
 			try {
 				service.create(entries);
@@ -62,6 +121,14 @@ public class LogEntryQueuePersisterObserver implements BlockingQueueObserver<Rea
 			} catch (final Exception e) {
 				// no problem with an exception here, we try it multiple times
 				LOG.info("Persisting failed: " + e.getLocalizedMessage());
+			} finally {
+				final long nanos = System.nanoTime() - start;
+				if (result) {
+					controller.succeeded(entries.size(), nanos);
+				} else {
+					controller.failed(entries.size(), nanos);
+				}
+				LogFileImporterStatistic.getInstance().getMetrics().persisted(entries.size(), nanos, result);
 			}
 			return result;
 		}
@@ -69,9 +136,19 @@ public class LogEntryQueuePersisterObserver implements BlockingQueueObserver<Rea
 		private boolean persistWithMultipleAttempts(final Collection<ReadonlyLogEntry> entries) {
 			boolean isPersisted = false;
 			if (!entries.isEmpty()) {
-				for (int i = 0; i < MAX_ATTEMPTS; i++) {
+				for (int i = 0; i < MAX_ATTEMPTS && !Thread.currentThread().isInterrupted(); i++) {
+					if (i > 0) {
+						// give the repository time to recover
+						try {
+							Thread.sleep(controller.getBackoff(i));
+						} catch (final InterruptedException e) {
+							Thread.currentThread().interrupt();
+							break;
+						}
+					}
 					isPersisted = persist(entries);
 					if (isPersisted) {
+						commit(entries);
 						break;
 					}
 				}
@@ -79,6 +156,17 @@ public class LogEntryQueuePersisterObserver implements BlockingQueueObserver<Rea
 			return isPersisted;
 		}
 
+		/**
+		 * Appends the entries to the spool. The spooled entries are durable, so their lines count as committed.
+		 */
+		private boolean spool(final Collection<ReadonlyLogEntry> entries) {
+			if (spool.append(entries)) {
+				commit(entries);
+				return true;
+			}
+			return false;
+		}
+
 		@Override
 		public void run() {
 			if (!queue.isEmpty()) {
@@ -90,22 +178,33 @@ public class LogEntryQueuePersisterObserver implements BlockingQueueObserver<Rea
 					LOG.warn(e1.getLocalizedMessage(), e1);
 				}
 
-				// take all available entries from the queue
-				final Collection<ReadonlyLogEntry> entries = new ArrayDeque<ReadonlyLogEntry>();
-				ReadonlyLogEntry entry = null;
-				int count = 0;
-				do {
-					entry = queue.poll();
-					if (entry != null) {
-						entries.add(entry);
-						count++;
-					}
-				} while (entry != null && count < BATCH_SIZE);
+				// take all available entries from the queue at once
+				final int batchSize = controller.getBatchSize();
+				final Collection<ReadonlyLogEntry> entries = new ArrayList<ReadonlyLogEntry>(batchSize);
+				queue.drainTo(entries, batchSize);
+
+				persistBatch(entries);
+			}
+		}
 
-				if (!entries.isEmpty()) {
-					if (!persistWithMultipleAttempts(entries)) {
+		/**
+		 * Persists a batch of entries taken from the queue and returns the pooled entries to their pool afterwards. A
+		 * batch which can not be stored will be appended to the spool. While the repository is failing, the batch will
+		 * be spooled directly, so the readers are not slowed down by the retries.
+		 * 
+		 * @param entries
+		 *            entries taken from the queue
+		 */
+		public void persistBatch(final Collection<ReadonlyLogEntry> entries) {
+			if (!entries.isEmpty()) {
+				try {
+					if (spool.isFailing() && spool(entries)) {
+						LOG.debug(entries.size() + " entries were spooled, because the repository is failing.");
+					} else if (!persistWithMultipleAttempts(entries) && !spool(entries)) {
 						LOG.warn(entries.size() + " entries were not stored in the repository.");
 					}
+				} finally {
+					release(entries);
 				}
 			}
 		}
@@ -125,26 +224,46 @@ public class LogEntryQueuePersisterObserver implements BlockingQueueObserver<Rea
 
 	private static final Logger LOG = LoggerFactory.getLogger(LogEntryQueuePersisterObserver.class);
 
+	/**
+	 * Controller of the batch size and of the number of concurrent writes
+	 */
+	private final WriteController controller;
+
 	private final ExecutorService executor;
 
 	private final LogEntryImportService<ReadonlyLogEntry> service;
 
-	private final AtomicInteger counter = new AtomicInteger();
+	/**
+	 * Spool of the batches which could not be stored in the repository
+	 */
+	private final LogEntrySpool spool;
 
-	private static final int BATCH_SIZE = 1000;
+	private final AtomicInteger counter = new AtomicInteger();
 
-	public LogEntryQueuePersisterObserver(final LogEntryImportService<ReadonlyLogEntry> service) {
+	public LogEntryQueuePersisterObserver(final LogEntryImportService<ReadonlyLogEntry> service,
+			final WriteController controller, final LogEntrySpool spool) {
 		if (service == null) {
 			throw new IllegalArgumentException("Argument 'service' can not be null.");
 		}
 
+		if (controller == null) {
+			throw new IllegalArgumentException("Argument 'controller' can not be null.");
+		}
+
+		if (spool == null) {
+			throw new IllegalArgumentException("Argument 'spool' can not be null.");
+		}
+
 		this.service = service;
+		this.controller = controller;
+		this.spool = spool;
 
+		// the controller limits the concurrent writes, so the persisters do not need to preempt the readers
 		final BasicThreadFactory factory = new BasicThreadFactory.Builder()
 				// attributes
-				.namingPattern("persister-%d").daemon(true).priority(Thread.MAX_PRIORITY)
+				.namingPattern("persister-%d").daemon(true).priority(Thread.NORM_PRIORITY)
 				.uncaughtExceptionHandler(new UncaughtExceptionHandler()).build();
-		executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), factory);
+		executor = Executors.newFixedThreadPool(controller.getMaxConcurrency(), factory);
 	}
 
 	@Override
@@ -152,8 +271,17 @@ public class LogEntryQueuePersisterObserver implements BlockingQueueObserver<Rea
 		LOG.debug("Added entry '" + element.hashCode() + "' to queue.");
 
 		if (counter.decrementAndGet() <= 0) {
-			counter.set(BATCH_SIZE);
-			executor.execute(new LogEntryPersisterTask(service, queue));
+			counter.set(controller.getBatchSize());
+			executor.execute(new LogEntryPersisterTask(service, queue, controller, spool));
+		}
+	}
+
+	@Override
+	public void addedAll(final BlockingQueue<ReadonlyLogEntry> queue,
+			final Collection<? extends ReadonlyLogEntry> entries) {
+		if (counter.addAndGet(-entries.size()) <= 0) {
+			counter.set(controller.getBatchSize());
+			executor.execute(new LogEntryPersisterTask(service, queue, controller, spool));
 		}
 	}
 
@@ -162,7 +290,7 @@ public class LogEntryQueuePersisterObserver implements BlockingQueueObserver<Rea
 		LOG.debug("Log entry queue is empty. (size: " + queue.size() + ")");
 
 		// cleaning task
-		executor.execute(new LogEntryPersisterTask(service, queue));
+		executor.execute(new LogEntryPersisterTask(service, queue, controller, spool));
 	}
 
 	@Override
@@ -170,4 +298,10 @@ public class LogEntryQueuePersisterObserver implements BlockingQueueObserver<Rea
 		LOG.debug("Removed entry '" + entry.hashCode() + "' from queue.");
 	}
 
+	@Override
+	public void removedAll(final BlockingQueue<ReadonlyLogEntry> queue,
+			final Collection<? extends ReadonlyLogEntry> entries) {
+		LOG.debug("Removed " + entries.size() + " entries from queue.");
+	}
+
 }
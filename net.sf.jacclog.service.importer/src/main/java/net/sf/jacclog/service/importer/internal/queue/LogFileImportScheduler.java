@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.queue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.api.service.LogEntryImportService;
+import net.sf.jacclog.service.importer.internal.MountTable;
+import net.sf.jacclog.service.importer.internal.queue.LogFileQueueImporterObserver.UncaughtExceptionHandler;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Imports the files of a queue concurrently.<br>
+ * <br>
+ * At most <code>concurrency</code> files will be imported at once, but no more than <code>maxImportsPerDevice</code>
+ * files of the same device (see <code>MountTable</code>), so the heads of a spinning disk are not thrashed by parallel
+ * reads while files on other disks can be imported at the same time. Among the queued files which are allowed to
+ * start, the largest file will be imported first, because starting the longest imports early shortens the total
+ * duration of a batch.<br>
+ * <br>
+ * Requests to dispatch files are coalesced and delayed for a moment, so a directory which is added file by file to
+ * the queue will be prioritized as a whole.
+ * 
+ * @author André Rouél
+ */
+public class LogFileImportScheduler {
+
+	/**
+	 * Device and size of a queued file, which are resolved only once
+	 */
+	private static final class Candidate {
+
+		private final String device;
+
+		private final long size;
+
+		private Candidate(final String device, final long size) {
+			this.device = device;
+			this.size = size;
+		}
+
+	}
+
+	/**
+	 * Default number of files which are imported at once
+	 */
+	public static final int DEFAULT_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Default number of files of the same device which are imported at once
+	 */
+	public static final int DEFAULT_MAX_IMPORTS_PER_DEVICE = 1;
+
+	/**
+	 * Delay in milliseconds before files which have been added to the queue will be dispatched
+	 */
+	public static final long DISPATCH_DELAY = 100;
+
+	private static final Logger LOG = LoggerFactory.getLogger(LogFileImportScheduler.class);
+
+	/**
+	 * Resolved candidates of the queued files
+	 */
+	private final Map<LogFile, Candidate> candidates = new HashMap<LogFile, Candidate>();
+
+	private int concurrency = DEFAULT_CONCURRENCY;
+
+	/**
+	 * Executor which dispatches the queued files
+	 */
+	private final ScheduledExecutorService dispatcher;
+
+	/**
+	 * Indicates whether a dispatch has been scheduled but not yet executed
+	 */
+	private boolean dispatchPending;
+
+	/**
+	 * Executor which imports the files (the number of its threads is limited by the concurrency)
+	 */
+	private final ExecutorService executor;
+
+	private int maxImportsPerDevice = DEFAULT_MAX_IMPORTS_PER_DEVICE;
+
+	private final MountTable mounts;
+
+	private final BlockingQueue<LogFile> queue;
+
+	/**
+	 * Number of running imports
+	 */
+	private int running;
+
+	/**
+	 * Number of running imports per device
+	 */
+	private final Map<String, Integer> runningPerDevice = new HashMap<String, Integer>();
+
+	/**
+	 * Import service for log entries
+	 */
+	private final LogEntryImportService<ReadonlyLogEntry> service;
+
+	/**
+	 * Indicates that the scheduler has been shut down and does not dispatch files anymore
+	 */
+	private boolean shutdown;
+
+	public LogFileImportScheduler(final LogEntryImportService<ReadonlyLogEntry> service,
+			final BlockingQueue<LogFile> queue) {
+		this(service, queue, MountTable.load());
+	}
+
+	public LogFileImportScheduler(final LogEntryImportService<ReadonlyLogEntry> service,
+			final BlockingQueue<LogFile> queue, final MountTable mounts) {
+		if (service == null) {
+			throw new IllegalArgumentException("Argument 'service' can not be null.");
+		}
+
+		if (queue == null) {
+			throw new IllegalArgumentException("Argument 'queue' can not be null.");
+		}
+
+		if (mounts == null) {
+			throw new IllegalArgumentException("Argument 'mounts' can not be null.");
+		}
+
+		this.service = service;
+		this.queue = queue;
+		this.mounts = mounts;
+
+		executor = Executors.newCachedThreadPool(new BasicThreadFactory.Builder()
+				// attributes
+				.namingPattern("file-importer-%d").daemon(true).priority(Thread.MIN_PRIORITY)
+				.uncaughtExceptionHandler(new UncaughtExceptionHandler()).build());
+		dispatcher = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+				// attributes
+				.namingPattern("file-scheduler-%d").daemon(true).priority(Thread.MIN_PRIORITY)
+				.uncaughtExceptionHandler(new UncaughtExceptionHandler()).build());
+	}
+
+	/**
+	 * Starts the imports of queued files as long as the limits permit.
+	 */
+	private synchronized void dispatch() {
+		dispatchPending = false;
+		while (running < concurrency) {
+			final LogFile file = next();
+			if (file == null) {
+				break;
+			}
+
+			final Candidate candidate = candidates.remove(file);
+			if (queue.remove(file)) {
+				start(file, candidate.device);
+			}
+		}
+
+		// forget the candidates of files which have been removed from the queue by others
+		if (candidates.size() > queue.size()) {
+			candidates.keySet().retainAll(queue);
+		}
+	}
+
+	/**
+	 * Marks the import of a file as finished and dispatches the next files.
+	 */
+	private synchronized void finished(final String device) {
+		running--;
+		final int count = runningOn(device) - 1;
+		if (count > 0) {
+			runningPerDevice.put(device, count);
+		} else {
+			runningPerDevice.remove(device);
+		}
+		schedule(0);
+	}
+
+	/**
+	 * Gets the maximum number of files which are imported at once.
+	 * 
+	 * @return number of files
+	 */
+	public synchronized int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Gets the maximum number of files of the same device which are imported at once.
+	 * 
+	 * @return number of files
+	 */
+	public synchronized int getMaxImportsPerDevice() {
+		return maxImportsPerDevice;
+	}
+
+	/**
+	 * Gets the number of running imports.
+	 * 
+	 * @return number of imports
+	 */
+	public synchronized int getRunning() {
+		return running;
+	}
+
+	/**
+	 * Searches the largest queued file whose device has not reached its limit.
+	 * 
+	 * @return file or <code>null</code> if no file can be started
+	 */
+	private LogFile next() {
+		LogFile result = null;
+		long size = -1;
+		for (final LogFile file : queue) {
+			Candidate candidate = candidates.get(file);
+			if (candidate == null) {
+				candidate = new Candidate(mounts.deviceOf(file.getFile()), file.getFile().length());
+				candidates.put(file, candidate);
+			}
+			if (candidate.size > size && runningOn(candidate.device) < maxImportsPerDevice) {
+				result = file;
+				size = candidate.size;
+			}
+		}
+		return result;
+	}
+
+	private int runningOn(final String device) {
+		final Integer count = runningPerDevice.get(device);
+		return (count != null) ? count : 0;
+	}
+
+	/**
+	 * Requests to dispatch the queued files.
+	 */
+	public void schedule() {
+		schedule(DISPATCH_DELAY);
+	}
+
+	private synchronized void schedule(final long delay) {
+		if (!dispatchPending && !shutdown) {
+			dispatchPending = true;
+			dispatcher.schedule(new Runnable() {
+				@Override
+				public void run() {
+					dispatch();
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Sets the maximum number of files which are imported at once.
+	 * 
+	 * @param concurrency
+	 *            number of files
+	 */
+	public synchronized void setConcurrency(final int concurrency) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("Argument 'concurrency' must be greater than 0.");
+		}
+
+		this.concurrency = concurrency;
+		schedule(0);
+	}
+
+	/**
+	 * Sets the maximum number of files of the same device which are imported at once.
+	 * 
+	 * @param maxImportsPerDevice
+	 *            number of files
+	 */
+	public synchronized void setMaxImportsPerDevice(final int maxImportsPerDevice) {
+		if (maxImportsPerDevice < 1) {
+			throw new IllegalArgumentException("Argument 'maxImportsPerDevice' must be greater than 0.");
+		}
+
+		this.maxImportsPerDevice = maxImportsPerDevice;
+		schedule(0);
+	}
+
+	/**
+	 * Stops dispatching the queued files and interrupts the running imports. The files which are not yet started
+	 * remain in the queue.
+	 */
+	public synchronized void shutdown() {
+		shutdown = true;
+		dispatcher.shutdownNow();
+		executor.shutdownNow();
+	}
+
+	private void start(final LogFile file, final String device) {
+		running++;
+		runningPerDevice.put(device, runningOn(device) + 1);
+		LOG.debug("Starting import of '" + file.getFile().getPath() + "' on device '" + device + "' (" + running
+				+ " running).");
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					service.importLogEntries(file);
+				} finally {
+					finished(device);
+				}
+			}
+		});
+	}
+
+}
@@ -16,19 +16,78 @@
 package net.sf.jacclog.service.importer.internal.queue;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.util.observer.BlockingQueueObserver;
 import net.sf.jacclog.util.queue.ObservableLinkedBlockingQueue;
 
 /**
- * Thread-safe queue of log files.
+ * Thread-safe queue of log files.<br>
+ * <br>
+ * The canonical paths of the queued files are indexed in a hash set, so it can be tested in constant time whether a
+ * file is already queued.
  * 
  * @author André Rouél
  */
 public class LogFileQueue extends ObservableLinkedBlockingQueue<LogFile> {
 
+	/**
+	 * Keeps the index of the queued files up to date
+	 */
+	private final class Index implements BlockingQueueObserver<LogFile> {
+
+		@Override
+		public void added(final BlockingQueue<LogFile> queue, final LogFile file) {
+			queued.add(canonicalize(file.getFile()));
+		}
+
+		@Override
+		public void addedAll(final BlockingQueue<LogFile> queue, final Collection<? extends LogFile> files) {
+			for (final LogFile file : files) {
+				queued.add(canonicalize(file.getFile()));
+			}
+		}
+
+		@Override
+		public void empty(final BlockingQueue<LogFile> queue) {
+			// nothing to do
+		}
+
+		@Override
+		public void removed(final BlockingQueue<LogFile> queue, final LogFile file) {
+			queued.remove(canonicalize(file.getFile()));
+		}
+
+		@Override
+		public void removedAll(final BlockingQueue<LogFile> queue, final Collection<? extends LogFile> files) {
+			for (final LogFile file : files) {
+				queued.remove(canonicalize(file.getFile()));
+			}
+		}
+
+	}
+
+	private static File canonicalize(final File file) {
+		try {
+			return file.getCanonicalFile();
+		} catch (final IOException e) {
+			return file.getAbsoluteFile();
+		}
+	}
+
+	/**
+	 * Canonical files of the queued log files
+	 */
+	private final Set<File> queued = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
 	/**
 	 * Creates a <code>LogFileQueue</code> with the given (fixed) capacity.
 	 * 
@@ -36,6 +95,7 @@ public class LogFileQueue extends ObservableLinkedBlockingQueue<LogFile> {
 	 */
 	public LogFileQueue(final int capacity) {
 		super(capacity);
+		addObserver(new Index());
 	}
 
 	/**
@@ -50,4 +110,18 @@ public class LogFileQueue extends ObservableLinkedBlockingQueue<LogFile> {
 		return Arrays.asList(this.toArray(new File[0]));
 	}
 
+	/**
+	 * Returns <code>true</code> if a log file with the same canonical path as the given file is queued.
+	 * 
+	 * @param file
+	 * @return <code>true</code> if the file is queued, otherwise <code>false</code>
+	 */
+	public boolean isQueued(final File file) {
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		return queued.contains(canonicalize(file));
+	}
+
 }
@@ -15,16 +15,12 @@
  ******************************************************************************/
 package net.sf.jacclog.service.importer.internal.queue;
 
+import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
-import net.sf.jacclog.api.domain.ReadonlyLogEntry;
 import net.sf.jacclog.service.importer.api.LogFile;
-import net.sf.jacclog.service.importer.api.service.LogEntryImportService;
 import net.sf.jacclog.util.observer.BlockingQueueObserver;
 
-import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,38 +39,29 @@ public class LogFileQueueImporterObserver implements BlockingQueueObserver<LogFi
 
 	private static final Logger LOG = LoggerFactory.getLogger(LogFileQueueImporterObserver.class);
 
-	private final ExecutorService executor;
-
 	/**
-	 * Import service for log entries
+	 * Scheduler which imports the queued files
 	 */
-	private final LogEntryImportService<ReadonlyLogEntry> service;
+	private final LogFileImportScheduler scheduler;
 
-	public LogFileQueueImporterObserver(final LogEntryImportService<ReadonlyLogEntry> service) {
-		if (service == null) {
-			throw new IllegalArgumentException("Argument 'service' must be not null.");
+	public LogFileQueueImporterObserver(final LogFileImportScheduler scheduler) {
+		if (scheduler == null) {
+			throw new IllegalArgumentException("Argument 'scheduler' must be not null.");
 		}
 
-		this.service = service;
-
-		final BasicThreadFactory factory = new BasicThreadFactory.Builder()
-				// attributes
-				.namingPattern("file-importer-%d").daemon(true).priority(Thread.MIN_PRIORITY)
-				.uncaughtExceptionHandler(new UncaughtExceptionHandler()).build();
-		executor = Executors.newSingleThreadExecutor(factory);
+		this.scheduler = scheduler;
 	}
 
 	@Override
 	public void added(final BlockingQueue<LogFile> queue, final LogFile file) {
 		LOG.debug("Added file '" + file.getFile().getPath() + "' to queue.");
+		scheduler.schedule();
+	}
 
-		executor.execute(new Runnable() {
-			@Override
-			public void run() {
-				final LogFile file = queue.poll();
-				service.importLogEntries(file);
-			}
-		});
+	@Override
+	public void addedAll(final BlockingQueue<LogFile> queue, final Collection<? extends LogFile> files) {
+		LOG.debug("Added " + files.size() + " files to queue.");
+		scheduler.schedule();
 	}
 
 	@Override
@@ -87,4 +74,9 @@ public class LogFileQueueImporterObserver implements BlockingQueueObserver<LogFi
 		LOG.debug("Removed file '" + file.getFile().getPath() + "' from queue.");
 	}
 
+	@Override
+	public void removedAll(final BlockingQueue<LogFile> queue, final Collection<? extends LogFile> files) {
+		LOG.debug("Removed " + files.size() + " files from queue.");
+	}
+
 }
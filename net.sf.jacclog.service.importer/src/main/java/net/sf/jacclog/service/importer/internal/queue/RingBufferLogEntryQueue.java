@@ -0,0 +1,599 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.queue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.util.observer.BlockingQueueObserver;
+import net.sf.jacclog.util.observer.CollectionObserver;
+import net.sf.jacclog.util.observer.CurrentElementCounter;
+import net.sf.jacclog.util.observer.QueueObserver;
+import net.sf.jacclog.util.observer.TotalElementCounter;
+
+/**
+ * A bounded log entry queue on a pre-allocated ring of slots, which hands the entries over from the reader threads to
+ * the persister threads by sequences instead of locks.<br>
+ * <br>
+ * Every entry gets a sequence number. A producer claims the next free sequences by a compare-and-set on the
+ * <code>cursor</code>, writes its entries into their slots and publishes them by marking the slots as available for
+ * the round of the ring (so producers can publish out of order). The consumers take the published entries in order
+ * behind the <code>consumed</code> sequence, which in turn is the barrier for the producers: a sequence can only be
+ * claimed if its slot has been consumed in the previous round. Consumers take batches (see
+ * <code>drainTo(Collection, int, long, TimeUnit)</code>) with one claim, and producers can publish batches with
+ * <code>putAll(Collection)</code>.<br>
+ * <br>
+ * A thread only blocks if the ring is full or empty, and the lock for waiting is only touched if a thread waits on the
+ * other side. The counters of the current and total number of entries are derived from the sequences, so a
+ * <code>put</code> does not notify any observer unless others than the counters have been added.<br>
+ * <br>
+ * The iterator works on a snapshot of the published entries and does not support removal, therefore
+ * <code>remove(Object)</code> is not supported.
+ * 
+ * @author André Rouél
+ */
+public class RingBufferLogEntryQueue extends AbstractQueue<ReadonlyLogEntry> implements
+		net.sf.jacclog.service.importer.api.queue.LogEntryQueue<ReadonlyLogEntry> {
+
+	/**
+	 * Counts the entries which are currently stored by the sequences of the ring
+	 */
+	private final class SequenceCurrentElementCounter extends CurrentElementCounter<ReadonlyLogEntry> {
+
+		@Override
+		public int getCount() {
+			return size();
+		}
+
+	}
+
+	/**
+	 * Counts the entries which went through the ring by its cursor
+	 */
+	private final class SequenceTotalElementCounter extends TotalElementCounter<ReadonlyLogEntry> {
+
+		@Override
+		public int getCount() {
+			return (int) (cursor.get() + 1);
+		}
+
+	}
+
+	/**
+	 * Round of the ring in which a slot has been published last
+	 */
+	private final AtomicIntegerArray available;
+
+	private final int capacity;
+
+	/**
+	 * Serializes the consumers, which take their batches in order of the sequences
+	 */
+	private final ReentrantLock consumer = new ReentrantLock();
+
+	/**
+	 * Highest sequence which has been taken by a consumer, its slot is free for the next round
+	 */
+	private final AtomicLong consumed = new AtomicLong(-1);
+
+	private final CurrentElementCounter<ReadonlyLogEntry> currentElementCounter = new SequenceCurrentElementCounter();
+
+	/**
+	 * Highest sequence which has been claimed by a producer
+	 */
+	private final AtomicLong cursor = new AtomicLong(-1);
+
+	/**
+	 * Number of bits of the index of a slot, a sequence shifted by it is the round of the ring
+	 */
+	private final int indexShift;
+
+	/**
+	 * Lock for threads which wait on a full or an empty ring
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final int mask;
+
+	private final Condition notEmpty = lock.newCondition();
+
+	private final Condition notFull = lock.newCondition();
+
+	/**
+	 * Observers other than the counters of elements
+	 */
+	private final List<CollectionObserver<Queue<ReadonlyLogEntry>, ReadonlyLogEntry>> observers = new CopyOnWriteArrayList<CollectionObserver<Queue<ReadonlyLogEntry>, ReadonlyLogEntry>>();
+
+	private final ReadonlyLogEntry[] slots;
+
+	private final TotalElementCounter<ReadonlyLogEntry> totalElementCounter = new SequenceTotalElementCounter();
+
+	private final AtomicInteger waitingConsumers = new AtomicInteger();
+
+	private final AtomicInteger waitingProducers = new AtomicInteger();
+
+	/**
+	 * Creates a ring buffer with at least the given capacity. The capacity will be rounded up to a power of two.
+	 * 
+	 * @param capacity
+	 *            minimum number of slots
+	 */
+	public RingBufferLogEntryQueue(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Argument 'capacity' must be greater than 0.");
+		}
+
+		if (capacity > 1 << 30) {
+			throw new IllegalArgumentException("Argument 'capacity' can not be greater than 2^30.");
+		}
+
+		int size = 1;
+		int shift = 0;
+		while (size < capacity) {
+			size <<= 1;
+			shift++;
+		}
+		this.capacity = size;
+		indexShift = shift;
+		mask = size - 1;
+		slots = new ReadonlyLogEntry[size];
+		available = new AtomicIntegerArray(size);
+		for (int i = 0; i < size; i++) {
+			available.set(i, -1);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public void addObserver(final BlockingQueueObserver<ReadonlyLogEntry> observer) {
+		addObserver((CollectionObserver) observer);
+	}
+
+	@Override
+	public void addObserver(final CollectionObserver<Queue<ReadonlyLogEntry>, ReadonlyLogEntry> observer) {
+		if (observer == null) {
+			throw new IllegalArgumentException("Argument 'observer' can not be null.");
+		}
+
+		// the numbers of elements will be derived from the sequences
+		if (!(observer instanceof CurrentElementCounter) && !(observer instanceof TotalElementCounter)) {
+			observers.add(observer);
+		}
+	}
+
+	@Override
+	public void addObserver(final QueueObserver<ReadonlyLogEntry> observer) {
+		addObserver((CollectionObserver<Queue<ReadonlyLogEntry>, ReadonlyLogEntry>) observer);
+	}
+
+	/**
+	 * Claims the given number of sequences, if their slots are free.
+	 * 
+	 * @return highest claimed sequence or <code>-1</code> if the ring is full
+	 */
+	private long claim(final int n) {
+		while (true) {
+			final long current = cursor.get();
+			final long next = current + n;
+			if (next - capacity > consumed.get()) {
+				return -1;
+			}
+			if (cursor.compareAndSet(current, next)) {
+				return next;
+			}
+		}
+	}
+
+	/**
+	 * Claims the given number of sequences and waits for free slots if necessary.
+	 * 
+	 * @param nanos
+	 *            maximum time to wait or a negative value to wait without a time limit
+	 * @return highest claimed sequence or <code>-1</code> if the time elapsed
+	 */
+	private long claim(final int n, final long nanos) throws InterruptedException {
+		long next = claim(n);
+		if (next >= 0) {
+			return next;
+		}
+
+		long remaining = nanos;
+		lock.lockInterruptibly();
+		waitingProducers.incrementAndGet();
+		try {
+			while ((next = claim(n)) < 0) {
+				if (nanos < 0) {
+					notFull.await();
+				} else if (remaining <= 0) {
+					return -1;
+				} else {
+					remaining = notFull.awaitNanos(remaining);
+				}
+			}
+			return next;
+		} finally {
+			waitingProducers.decrementAndGet();
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(final Collection<? super ReadonlyLogEntry> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(final Collection<? super ReadonlyLogEntry> c, final int maxElements) {
+		if (c == null) {
+			throw new IllegalArgumentException("Argument 'c' can not be null.");
+		}
+
+		if (c == this) {
+			throw new IllegalArgumentException("Argument 'c' can not be the queue itself.");
+		}
+
+		if (maxElements <= 0) {
+			return 0;
+		}
+
+		final List<ReadonlyLogEntry> taken = new ArrayList<ReadonlyLogEntry>();
+		int count = 0;
+		consumer.lock();
+		try {
+			final long first = consumed.get() + 1;
+			final long limit = Math.min(cursor.get(), first + maxElements - 1);
+			long sequence = first;
+			try {
+				while (sequence <= limit && isPublished(sequence)) {
+					final int index = (int) sequence & mask;
+					final ReadonlyLogEntry entry = slots[index];
+					c.add(entry);
+					slots[index] = null;
+					if (!observers.isEmpty()) {
+						taken.add(entry);
+					}
+					sequence++;
+				}
+			} finally {
+				count = (int) (sequence - first);
+				if (count > 0) {
+					consumed.set(sequence - 1);
+				}
+			}
+		} finally {
+			consumer.unlock();
+		}
+
+		if (count > 0) {
+			signal(waitingProducers, notFull);
+		}
+		if (!observers.isEmpty()) {
+			notifyRemoved(taken, count < maxElements);
+		}
+		return count;
+	}
+
+	/**
+	 * Takes the published entries in order, at most the given number of entries, and waits for at least one entry if
+	 * the ring is empty. This is the batch claim of a consumer: all taken slots are freed by a single step of the
+	 * <code>consumed</code> sequence.
+	 * 
+	 * @param c
+	 *            collection to add the entries to
+	 * @param maxElements
+	 *            maximum number of entries
+	 * @param timeout
+	 *            maximum time to wait for the first entry
+	 * @param unit
+	 *            unit of the timeout
+	 * @return number of taken entries, <code>0</code> if the time elapsed
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public int drainTo(final Collection<? super ReadonlyLogEntry> c, final int maxElements, final long timeout,
+			final TimeUnit unit) throws InterruptedException {
+		int count = drainTo(c, maxElements);
+		if (count > 0 || maxElements <= 0) {
+			return count;
+		}
+
+		long remaining = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		waitingConsumers.incrementAndGet();
+		try {
+			while ((count = drainTo(c, maxElements)) == 0) {
+				if (remaining <= 0) {
+					return 0;
+				}
+				remaining = notEmpty.awaitNanos(remaining);
+			}
+			return count;
+		} finally {
+			waitingConsumers.decrementAndGet();
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of slots of the ring.
+	 * 
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public CurrentElementCounter<ReadonlyLogEntry> getCurrentElementCounter() {
+		return currentElementCounter;
+	}
+
+	/**
+	 * Gets a unmodifiable copied list of all observers other than the counters of elements.
+	 * 
+	 * @return list of observers
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public List<CollectionObserver<Collection<ReadonlyLogEntry>, ReadonlyLogEntry>> getObservers() {
+		final List<CollectionObserver<Collection<ReadonlyLogEntry>, ReadonlyLogEntry>> result = new ArrayList<CollectionObserver<Collection<ReadonlyLogEntry>, ReadonlyLogEntry>>();
+		for (final CollectionObserver collectionObserver : observers) {
+			result.add(collectionObserver);
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	@Override
+	public TotalElementCounter<ReadonlyLogEntry> getTotalElementCountCounter() {
+		return totalElementCounter;
+	}
+
+	private boolean isPublished(final long sequence) {
+		return available.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+	}
+
+	/**
+	 * Returns a snapshot of the published entries, which does not support removal.
+	 */
+	@Override
+	public Iterator<ReadonlyLogEntry> iterator() {
+		final List<ReadonlyLogEntry> entries = new ArrayList<ReadonlyLogEntry>();
+		consumer.lock();
+		try {
+			final long limit = cursor.get();
+			for (long sequence = consumed.get() + 1; sequence <= limit && isPublished(sequence); sequence++) {
+				entries.add(slots[(int) sequence & mask]);
+			}
+		} finally {
+			consumer.unlock();
+		}
+		return Collections.unmodifiableList(entries).iterator();
+	}
+
+	private void notifyAdded(final ReadonlyLogEntry entry) {
+		for (final CollectionObserver<Queue<ReadonlyLogEntry>, ReadonlyLogEntry> observer : observers) {
+			observer.added(this, entry);
+		}
+	}
+
+	private void notifyRemoved(final List<ReadonlyLogEntry> entries, final boolean empty) {
+		for (final CollectionObserver<Queue<ReadonlyLogEntry>, ReadonlyLogEntry> observer : observers) {
+			if (!entries.isEmpty()) {
+				observer.removedAll(this, entries);
+			}
+			if (empty) {
+				observer.empty(this);
+			}
+		}
+	}
+
+	@Override
+	public boolean offer(final ReadonlyLogEntry e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+
+		final long sequence = claim(1);
+		if (sequence < 0) {
+			return false;
+		}
+		publish(sequence, e);
+		return true;
+	}
+
+	@Override
+	public boolean offer(final ReadonlyLogEntry e, final long timeout, final TimeUnit unit) throws InterruptedException {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+
+		final long sequence = claim(1, Math.max(0, unit.toNanos(timeout)));
+		if (sequence < 0) {
+			return false;
+		}
+		publish(sequence, e);
+		return true;
+	}
+
+	@Override
+	public ReadonlyLogEntry peek() {
+		consumer.lock();
+		try {
+			final long sequence = consumed.get() + 1;
+			return (sequence <= cursor.get() && isPublished(sequence)) ? slots[(int) sequence & mask] : null;
+		} finally {
+			consumer.unlock();
+		}
+	}
+
+	@Override
+	public ReadonlyLogEntry poll() {
+		final List<ReadonlyLogEntry> entries = new ArrayList<ReadonlyLogEntry>(1);
+		return (drainTo(entries, 1) > 0) ? entries.get(0) : null;
+	}
+
+	@Override
+	public ReadonlyLogEntry poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+		final List<ReadonlyLogEntry> entries = new ArrayList<ReadonlyLogEntry>(1);
+		return (drainTo(entries, 1, timeout, unit) > 0) ? entries.get(0) : null;
+	}
+
+	/**
+	 * Writes an entry into the slot of a claimed sequence and makes it available to the consumers.
+	 */
+	private void publish(final long sequence, final ReadonlyLogEntry entry) {
+		final int index = (int) sequence & mask;
+		slots[index] = entry;
+		available.set(index, (int) (sequence >>> indexShift));
+		if (!observers.isEmpty()) {
+			notifyAdded(entry);
+		}
+		signal(waitingConsumers, notEmpty);
+	}
+
+	@Override
+	public void put(final ReadonlyLogEntry e) throws InterruptedException {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+
+		publish(claim(1, -1), e);
+	}
+
+	/**
+	 * Inserts all entries and waits for free slots if necessary. This is the batch claim of a producer: the entries
+	 * will be published in runs of consecutive sequences, each claimed by a single step of the <code>cursor</code>.
+	 * 
+	 * @param entries
+	 *            entries to insert
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public void putAll(final Collection<? extends ReadonlyLogEntry> entries) throws InterruptedException {
+		if (entries == null) {
+			throw new IllegalArgumentException("Argument 'entries' can not be null.");
+		}
+
+		// a claimed sequence must be published, otherwise the ring stalls
+		for (final ReadonlyLogEntry entry : entries) {
+			if (entry == null) {
+				throw new NullPointerException();
+			}
+		}
+
+		final Iterator<? extends ReadonlyLogEntry> iterator = entries.iterator();
+		int remaining = entries.size();
+		while (remaining > 0) {
+			final int n = Math.min(remaining, capacity);
+			final List<ReadonlyLogEntry> published = new ArrayList<ReadonlyLogEntry>(n);
+			final long last = claim(n, -1);
+			for (long sequence = last - n + 1; sequence <= last; sequence++) {
+				final ReadonlyLogEntry entry = iterator.next();
+				final int index = (int) sequence & mask;
+				slots[index] = entry;
+				available.set(index, (int) (sequence >>> indexShift));
+				published.add(entry);
+			}
+			for (final CollectionObserver<Queue<ReadonlyLogEntry>, ReadonlyLogEntry> observer : observers) {
+				observer.addedAll(this, published);
+			}
+			signal(waitingConsumers, notEmpty);
+			remaining -= n;
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return capacity - size();
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public void removeObserver(final BlockingQueueObserver<ReadonlyLogEntry> observer) {
+		removeObserver((CollectionObserver) observer);
+	}
+
+	@Override
+	public void removeObserver(final CollectionObserver<Queue<ReadonlyLogEntry>, ReadonlyLogEntry> observer) {
+		if (observer == null) {
+			throw new IllegalArgumentException("Argument 'observer' can not be null.");
+		}
+
+		observers.remove(observer);
+	}
+
+	@Override
+	public void removeObserver(final QueueObserver<ReadonlyLogEntry> observer) {
+		removeObserver((CollectionObserver<Queue<ReadonlyLogEntry>, ReadonlyLogEntry>) observer);
+	}
+
+	@Override
+	public void removeObservers() {
+		observers.clear();
+	}
+
+	/**
+	 * Wakes up the threads waiting on the other side of the ring, if there are any.
+	 */
+	private void signal(final AtomicInteger waiting, final Condition condition) {
+		if (waiting.get() > 0) {
+			lock.lock();
+			try {
+				condition.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of claimed sequences which have not been consumed yet. This includes entries which are just
+	 * being written by a producer.
+	 */
+	@Override
+	public int size() {
+		return (int) Math.max(0, Math.min(capacity, cursor.get() - consumed.get()));
+	}
+
+	@Override
+	public ReadonlyLogEntry take() throws InterruptedException {
+		final List<ReadonlyLogEntry> entries = new ArrayList<ReadonlyLogEntry>(1);
+		while (drainTo(entries, 1, Long.MAX_VALUE, TimeUnit.NANOSECONDS) == 0) {
+			// wait again
+		}
+		return entries.get(0);
+	}
+
+	@Override
+	public String toString() {
+		return "RingBufferLogEntryQueue [capacity=" + capacity + ", cursor=" + cursor.get() + ", consumed="
+				+ consumed.get() + "]";
+	}
+
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.service.importer.api.service.LogEntryImportService;
+import net.sf.jacclog.service.importer.internal.LogEntrySpool;
+import net.sf.jacclog.service.importer.internal.WriteController;
+import net.sf.jacclog.service.importer.internal.queue.LogEntryQueuePersisterObserver.LogEntryPersisterTask;
+import net.sf.jacclog.service.importer.internal.queue.LogEntryQueuePersisterObserver.UncaughtExceptionHandler;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+/**
+ * Persists the entries of a <code>RingBufferLogEntryQueue</code> with dedicated persister threads.<br>
+ * <br>
+ * Every thread waits on the ring until entries have been published and takes all published entries up to the batch
+ * size of the <code>WriteController</code> at once. So a batch is persisted as soon as the previous one has been
+ * stored: under sustained load the batches fill up, and a single entry does not wait for a timer.
+ * 
+ * @author André Rouél
+ */
+public class RingBufferPersister {
+
+	private final class Worker implements Runnable {
+
+		@Override
+		public void run() {
+			final LogEntryPersisterTask task = new LogEntryPersisterTask(service, queue, controller, spool);
+			final List<ReadonlyLogEntry> batch = new ArrayList<ReadonlyLogEntry>();
+			while (!Thread.currentThread().isInterrupted()) {
+				try {
+					if (queue.drainTo(batch, controller.getBatchSize(), WAIT_TIMEOUT, TimeUnit.MILLISECONDS) > 0) {
+						task.persistBatch(batch);
+					}
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					batch.clear();
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Maximum time in milliseconds a persister thread waits for entries before it checks for a shutdown
+	 */
+	private static final long WAIT_TIMEOUT = 1000;
+
+	/**
+	 * Controller of the batch size and of the number of concurrent writes
+	 */
+	private final WriteController controller;
+
+	private final ExecutorService executor;
+
+	private final RingBufferLogEntryQueue queue;
+
+	private final LogEntryImportService<ReadonlyLogEntry> service;
+
+	/**
+	 * Spool of the batches which could not be stored in the repository
+	 */
+	private final LogEntrySpool spool;
+
+	private final int threads;
+
+	/**
+	 * Creates a persister with one thread per concurrent write which the controller allows at most.
+	 * 
+	 * @param service
+	 *            service which persists the entries
+	 * @param queue
+	 *            ring of the entries
+	 * @param controller
+	 *            controller of the batch size and of the number of concurrent writes
+	 * @param spool
+	 *            spool of the batches which could not be stored
+	 */
+	public RingBufferPersister(final LogEntryImportService<ReadonlyLogEntry> service,
+			final RingBufferLogEntryQueue queue, final WriteController controller, final LogEntrySpool spool) {
+		if (service == null) {
+			throw new IllegalArgumentException("Argument 'service' can not be null.");
+		}
+
+		if (queue == null) {
+			throw new IllegalArgumentException("Argument 'queue' can not be null.");
+		}
+
+		if (controller == null) {
+			throw new IllegalArgumentException("Argument 'controller' can not be null.");
+		}
+
+		if (spool == null) {
+			throw new IllegalArgumentException("Argument 'spool' can not be null.");
+		}
+
+		this.service = service;
+		this.queue = queue;
+		this.controller = controller;
+		this.spool = spool;
+		threads = controller.getMaxConcurrency();
+
+		// the controller limits the concurrent writes, so the persisters do not need to preempt the readers
+		final BasicThreadFactory factory = new BasicThreadFactory.Builder()
+				// attributes
+				.namingPattern("persister-%d").daemon(true).priority(Thread.NORM_PRIORITY)
+				.uncaughtExceptionHandler(new UncaughtExceptionHandler()).build();
+		executor = Executors.newFixedThreadPool(threads, factory);
+	}
+
+	/**
+	 * Stops the persister threads. A batch which is currently persisted will be completed.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Starts the persister threads.
+	 */
+	public void start() {
+		for (int i = 0; i < threads; i++) {
+			executor.execute(new Worker());
+		}
+	}
+
+}
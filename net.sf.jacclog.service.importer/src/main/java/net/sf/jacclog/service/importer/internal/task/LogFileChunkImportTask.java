@@ -0,0 +1,179 @@
+package net.sf.jacclog.service.importer.internal.task;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jsr166y.RecursiveAction;
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.internal.ImportContext;
+import net.sf.jacclog.service.importer.internal.ImportProgress;
+import net.sf.jacclog.service.importer.internal.ImportStatus;
+import net.sf.jacclog.service.importer.internal.LogFileChunk;
+import net.sf.jacclog.service.importer.internal.MappedLogFileReader;
+import net.sf.jacclog.service.importer.internal.Quarantine;
+import net.sf.jacclog.service.importer.internal.TrackedLogEntry;
+import net.sf.jacclog.service.importer.internal.parser.MappingException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses a range of chunks of a log file and puts the resulting entries into a queue. The range will be halved until
+ * only one chunk is left, so every chunk will be parsed by its own worker of the <code>ForkJoinPool</code>.
+ */
+public class LogFileChunkImportTask extends RecursiveAction {
+
+	private static final Logger LOG = LoggerFactory.getLogger(LogFileChunkImportTask.class);
+
+	private static final long serialVersionUID = 2716307851930412518L;
+
+	private final List<LogFileChunk> chunks;
+
+	private final ImportContext context;
+
+	private final AtomicInteger count;
+
+	private final LogFile file;
+
+	private final int maxResults;
+
+	private final BlockingQueue<ReadonlyLogEntry> queue;
+
+	private final int regionSize;
+
+	private final int startPosition;
+
+	public LogFileChunkImportTask(final LogFile file, final List<LogFileChunk> chunks,
+			final BlockingQueue<ReadonlyLogEntry> queue, final AtomicInteger count, final int regionSize) {
+		this(file, chunks, queue, count, regionSize, ImportContext.NONE);
+	}
+
+	/**
+	 * Creates a task which uses the collaborators of the given import context (e.g. to track the lines of the entries
+	 * or to write the lines which can not be interpreted into a quarantine).
+	 */
+	public LogFileChunkImportTask(final LogFile file, final List<LogFileChunk> chunks,
+			final BlockingQueue<ReadonlyLogEntry> queue, final AtomicInteger count, final int regionSize,
+			final ImportContext context) {
+		this(file, chunks, queue, count, regionSize, context, 0, chunks.size());
+	}
+
+	public LogFileChunkImportTask(final LogFile file, final List<LogFileChunk> chunks,
+			final BlockingQueue<ReadonlyLogEntry> queue, final AtomicInteger count, final int regionSize,
+			final ImportContext context, final int startPosition, final int maxResults) {
+
+		if (file == null) {
+			throw new IllegalArgumentException("Argument 'file' can not be null.");
+		}
+
+		if (chunks == null) {
+			throw new IllegalArgumentException("Argument 'chunks' can not be null.");
+		}
+
+		if (queue == null) {
+			throw new IllegalArgumentException("Argument 'queue' can not be null.");
+		}
+
+		if (count == null) {
+			throw new IllegalArgumentException("Argument 'count' can not be null.");
+		}
+
+		if (regionSize < 1) {
+			throw new IllegalArgumentException("Argument 'regionSize' can not be smaller than 1.");
+		}
+
+		if (context == null) {
+			throw new IllegalArgumentException("Argument 'context' can not be null.");
+		}
+
+		if (startPosition < 0) {
+			throw new IllegalArgumentException("Argument 'startPosition' can not be smaller than 0.");
+		}
+
+		if (maxResults < 0) {
+			throw new IllegalArgumentException("Argument 'maxResults' can not be smaller than 0.");
+		}
+
+		this.file = file;
+		this.chunks = chunks;
+		this.queue = queue;
+		this.count = count;
+		this.regionSize = regionSize;
+		this.context = context;
+		this.startPosition = startPosition;
+		this.maxResults = maxResults;
+	}
+
+	@Override
+	protected void compute() {
+		if (maxResults == 1) {
+			importChunk(chunks.get(startPosition));
+		} else if (maxResults > 1) {
+			final int midpoint = maxResults / 2;
+			final LogFileChunkImportTask a1 = new LogFileChunkImportTask(file, chunks, queue, count, regionSize,
+					context, startPosition, midpoint);
+			final LogFileChunkImportTask a2 = new LogFileChunkImportTask(file, chunks, queue, count, regionSize,
+					context, startPosition + midpoint, maxResults - midpoint);
+			invokeAll(a1, a2);
+		}
+	}
+
+	private void importChunk(final LogFileChunk chunk) {
+		final ImportProgress progress = context.getProgress();
+		final Quarantine quarantine = context.getQuarantine();
+		final ImportStatus.Counter lines = (context.getStatus() != null) ? context.getStatus().createCounter() : null;
+		final MappedLogFileReader reader = new MappedLogFileReader(file.getFile(), context.createParser(file),
+				chunk.getStart(), chunk.getEnd(), regionSize);
+		int entries = 0;
+		try {
+			while (true) {
+				final ReadonlyLogEntry entry;
+				try {
+					entry = reader.readEntry();
+				} catch (final MappingException e) {
+					LOG.warn(file.getFile().getPath() + " " + chunk + " " + e.getLocalizedMessage());
+					if (quarantine != null) {
+						quarantine.reject(chunk, reader.getLineNumber(), reader.getLineStart(), Quarantine.reasonOf(e),
+								reader.getLine());
+					}
+					if (progress != null) {
+						progress.skip(reader.getLineStart(), reader.getLineEnd());
+					}
+					if (lines != null) {
+						lines.advance(reader.getLineEnd() - reader.getLineStart(), false);
+					}
+					continue;
+				}
+
+				if (entry == null) {
+					break;
+				}
+
+				if (progress != null) {
+					queue.put(new TrackedLogEntry(entry, progress, reader.getLineStart(), reader.getLineEnd()));
+				} else {
+					queue.put(entry);
+				}
+				entries++;
+				if (lines != null) {
+					lines.advance(reader.getLineEnd() - reader.getLineStart(), true);
+				}
+			}
+		} catch (final InterruptedException e) {
+			LOG.warn(e.getLocalizedMessage());
+			Thread.currentThread().interrupt();
+		} finally {
+			reader.close();
+			count.addAndGet(entries);
+			if (lines != null) {
+				lines.flush();
+			}
+			if (quarantine != null) {
+				quarantine.setLineCount(chunk, reader.getLineNumber());
+			}
+		}
+	}
+
+}
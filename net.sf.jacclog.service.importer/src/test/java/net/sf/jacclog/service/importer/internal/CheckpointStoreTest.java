@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for storing and resuming import checkpoints.
+ */
+public class CheckpointStoreTest {
+
+	private static final String LINE = "192.168.123.12 - - [19/Oct/2008:19:45:38 -0700] \"GET /search?q1=foo HTTP/1.1\" 200 323\n";
+
+	private static void append(final File file, final String content) throws Exception {
+		final OutputStream out = new FileOutputStream(file, true);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+	}
+
+	private static File copy(final String content) throws Exception {
+		final File copy = File.createTempFile("access", ".log.1");
+		copy.deleteOnExit();
+		append(copy, content);
+		return copy;
+	}
+
+	private static String lines(final int count) {
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			builder.append(LINE);
+		}
+		return builder.toString();
+	}
+
+	private File directory;
+
+	private File file;
+
+	private CheckpointStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("access", ".log");
+		file.deleteOnExit();
+		directory = File.createTempFile("checkpoints", "");
+		Assert.assertTrue(directory.delete());
+		directory.deleteOnExit();
+		store = new CheckpointStore(directory);
+	}
+
+	@After
+	public void tearDown() {
+		store.delete(file);
+	}
+
+	@Test
+	public void testBeginWithoutCheckpoint() throws Exception {
+		append(file, LINE);
+		final ImportProgress progress = store.begin(file);
+		Assert.assertEquals(0, progress.getStartOffset());
+		Assert.assertFalse(progress.isComplete());
+		Assert.assertNull(store.load(file));
+	}
+
+	@Test
+	public void testChangedFileStartsOver() throws Exception {
+		append(file, LINE + LINE);
+		store.save(ImportCheckpoint.create(file, LINE.length(), 1, false));
+
+		new FileOutputStream(file).close();
+		append(file, "10.0.0.1" + LINE + LINE);
+		final ImportProgress progress = store.begin(file);
+		Assert.assertEquals(0, progress.getStartOffset());
+		Assert.assertEquals(0, progress.getLines());
+	}
+
+	@Test
+	public void testChangedTailIsUnknown() throws Exception {
+		final String content = lines(100);
+		append(file, content);
+		store.save(ImportCheckpoint.create(file, content.length(), 100, true));
+
+		// the same beginning but another end
+		final File copy = copy(content.substring(0, content.length() - 5) + "404 0\n");
+		Assert.assertNull(store.findByContent(copy));
+		Assert.assertEquals(0, store.begin(copy).getStartOffset());
+		store.delete(copy);
+	}
+
+	@Test
+	public void testCompleteFileIsUpToDate() throws Exception {
+		append(file, LINE);
+		store.save(ImportCheckpoint.create(file, LINE.length(), 1, true));
+		Assert.assertTrue(store.begin(file).isComplete());
+
+		// an appended line will be imported
+		append(file, LINE);
+		final ImportProgress progress = store.begin(file);
+		Assert.assertFalse(progress.isComplete());
+		Assert.assertEquals(LINE.length(), progress.getStartOffset());
+	}
+
+	@Test
+	public void testDiscardCheckpointAndContent() throws Exception {
+		final String content = lines(100);
+		append(file, content);
+		store.save(ImportCheckpoint.create(file, content.length(), 100, true));
+		final File copy = copy(content);
+
+		// neither the file nor a copy of its content will be skipped afterwards
+		Assert.assertTrue(store.discard(copy));
+		Assert.assertTrue(store.discard(file));
+		Assert.assertFalse(store.discard(file));
+		Assert.assertEquals(0, store.begin(file).getStartOffset());
+		Assert.assertEquals(0, store.begin(copy).getStartOffset());
+	}
+
+	@Test
+	public void testReadBackupOfInterruptedReplacement() throws Exception {
+		append(file, LINE + LINE);
+		final ImportCheckpoint checkpoint = ImportCheckpoint.create(file, LINE.length(), 1, false);
+		store.save(checkpoint);
+
+		// a crash after the previous manifest has been moved aside
+		final File[] manifests = directory.listFiles();
+		File backup = null;
+		for (final File manifest : manifests) {
+			if (manifest.getName().endsWith(".checkpoint")) {
+				backup = new File(manifest.getPath() + ".bak");
+				Assert.assertTrue(manifest.renameTo(backup));
+			}
+		}
+		Assert.assertNotNull(backup);
+		Assert.assertEquals(checkpoint.toProperties(), store.load(file).toProperties());
+
+		final ImportCheckpoint next = ImportCheckpoint.create(file, 2 * LINE.length(), 2, true);
+		store.save(next);
+		Assert.assertEquals(next.toProperties(), store.load(file).toProperties());
+		Assert.assertTrue(store.delete(file));
+		Assert.assertFalse(backup.exists());
+		Assert.assertNull(store.load(file));
+	}
+
+	@Test
+	public void testResumeGrowingFile() throws Exception {
+		append(file, LINE + LINE);
+		final ImportCheckpoint checkpoint = ImportCheckpoint.create(file, LINE.length(), 1, false);
+		store.save(checkpoint);
+		Assert.assertEquals(checkpoint.toProperties(), store.load(file).toProperties());
+
+		// the fingerprint of a small file stays the same while it grows
+		append(file, LINE + LINE);
+		final ImportProgress progress = store.begin(file);
+		Assert.assertEquals(LINE.length(), progress.getStartOffset());
+		Assert.assertEquals(1, progress.getLines());
+	}
+
+	@Test
+	public void testSkipRenamedFile() throws Exception {
+		final String content = lines(100);
+		append(file, content);
+		store.save(ImportCheckpoint.create(file, content.length(), 100, true));
+
+		// e.g. the log has been rotated after its import
+		final File copy = copy(content);
+		Assert.assertNull(store.load(copy));
+		final ImportProgress progress = store.begin(copy);
+		Assert.assertTrue(progress.isComplete());
+		Assert.assertEquals(100, progress.getLines());
+		Assert.assertEquals(copy.getCanonicalPath(), store.load(copy).getPath());
+		store.delete(copy);
+	}
+
+	@Test
+	public void testResumeRenamedFile() throws Exception {
+		final String content = lines(100);
+		append(file, content);
+		store.save(ImportCheckpoint.create(file, LINE.length() * 60, 60, false));
+
+		// the log has been rotated while it was imported and grew before
+		final File copy = copy(content + LINE);
+		final ImportProgress progress = store.begin(copy);
+		Assert.assertFalse(progress.isComplete());
+		Assert.assertEquals(LINE.length() * 60, progress.getStartOffset());
+		Assert.assertEquals(60, progress.getLines());
+		store.delete(copy);
+	}
+
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for reading compressed log files as stream.
+ */
+public class CompressionTest {
+
+	private static final String LINE = "192.168.123.12 - - [19/Oct/2008:19:45:38 -0700] \"GET /search?q1=foo HTTP/1.1\" 200 323\n";
+
+	private static File createFile(final String suffix, final byte[]... parts) throws Exception {
+		final File file = File.createTempFile("access", suffix);
+		file.deleteOnExit();
+		final OutputStream out = new FileOutputStream(file);
+		for (final byte[] part : parts) {
+			out.write(part);
+		}
+		out.close();
+		return file;
+	}
+
+	private static byte[] bzip2(final String content) throws Exception {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final OutputStream out = new BZip2CompressorOutputStream(bytes);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static String content(final int lines, final int offset) {
+		final StringBuilder content = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			content.append(i + offset).append(' ').append(LINE);
+		}
+		return content.toString();
+	}
+
+	static byte[] gzip(final String content) throws Exception {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final OutputStream out = new GZIPOutputStream(bytes);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static String read(final InputStream in) throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[1000];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return new String(out.toByteArray(), "UTF-8");
+	}
+
+	@Test
+	public void testDetect() throws Exception {
+		Assert.assertEquals(Compression.GZIP, Compression.detect(createFile(".gz", gzip(LINE))));
+		Assert.assertEquals(Compression.BZIP2, Compression.detect(createFile(".bz2", bzip2(LINE))));
+		Assert.assertEquals(Compression.NONE, Compression.detect(createFile(".log", LINE.getBytes("UTF-8"))));
+		Assert.assertEquals(Compression.NONE, Compression.detect(createFile(".log")));
+	}
+
+	@Test
+	public void testOpenBzip2WithConcatenatedStreams() throws Exception {
+		final File file = createFile(".bz2", bzip2(content(100, 0)), bzip2(content(100, 100)));
+		Assert.assertEquals(content(200, 0), read(Compression.BZIP2.open(file, null)));
+	}
+
+	@Test
+	public void testOpenMultiMemberGzipInParallel() throws Exception {
+		final byte[][] members = new byte[20][];
+		for (int i = 0; i < members.length; i++) {
+			members[i] = gzip(content(1000, i * 1000));
+		}
+		final File file = createFile(".gz", members);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Assert.assertEquals(content(20000, 0), read(Compression.GZIP.open(file, executor)));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testOpenSingleMemberGzip() throws Exception {
+		final File file = createFile(".gz", gzip(content(5000, 0)));
+		Assert.assertEquals(content(5000, 0), read(Compression.GZIP.open(file, null)));
+	}
+
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.api.ParseReport;
+import net.sf.jacclog.service.importer.internal.parser.NcsaByteLogParser;
+import net.sf.jacclog.service.repository.LogEntryRepositoryService;
+import net.sf.jacclog.service.repository.domain.PersistableLogEntry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for counting the entries and the values of their fields during a dry run.
+ */
+public class CountingLogEntrySinkTest {
+
+	private static final String CONTENT = "192.168.123.12 - - [19/Oct/2008:19:45:38 -0700] \"GET /search?q=foo HTTP/1.1\" "
+			+ "200 323 \"-\" \"Mozilla/5.0 (X11; U; Linux i686)\"\n"
+			+ "192.168.123.13 - jdoe [19/Oct/2008:19:45:39 -0700] \"GET / HTTP/1.1\" "
+			+ "304 - \"http://www.example.com/\" \"Mozilla/5.0 (X11; U; Linux i686)\"\n" + "garbage\n"
+			+ "192.168.123.14 - - [19/Oct/2008:19:45:40 -0700] \"POST /login HTTP/1.0\" "
+			+ "302 10 \"http://www.example.com/\" \"-\"\n";
+
+	private static File createLogFile(final String content) throws Exception {
+		final File file = File.createTempFile("access", ".log");
+		file.deleteOnExit();
+		final OutputStream out = new FileOutputStream(file);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+		return file;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static LogEntryRepositoryService<PersistableLogEntry> createRepository() {
+		return (LogEntryRepositoryService<PersistableLogEntry>) Proxy.newProxyInstance(
+				CountingLogEntrySinkTest.class.getClassLoader(), new Class<?>[] { LogEntryRepositoryService.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(final Object proxy, final Method method, final Object[] args) {
+						Assert.fail("A dry run must not access the repository.");
+						return null;
+					}
+				});
+	}
+
+	@Test
+	public void testCountFilledFields() throws Exception {
+		final File file = createLogFile(CONTENT);
+		final MappedLogFileReader reader = new MappedLogFileReader(file, new NcsaByteLogParser(
+				LogFormat.Defaults.COMBINED.getFormat()));
+		final CountingLogEntrySink sink = new CountingLogEntrySink();
+		for (final ReadonlyLogEntry entry : reader.read(2)) {
+			sink.put(entry);
+		}
+		reader.close();
+
+		Assert.assertEquals(0, sink.size());
+		Assert.assertNull(sink.poll());
+		Assert.assertEquals(2, sink.getEntries());
+		final Map<String, Long> filled = sink.getFilled();
+		Assert.assertEquals(Long.valueOf(2), filled.get("remoteHost"));
+		Assert.assertEquals(Long.valueOf(1), filled.get("remoteUser"));
+		Assert.assertEquals(Long.valueOf(1), filled.get("queryString"));
+		Assert.assertEquals(Long.valueOf(0), filled.get("serverName"));
+		Assert.assertEquals(Long.valueOf(1), filled.get("request:Referer"));
+		Assert.assertEquals(Long.valueOf(2), filled.get("request:User-Agent"));
+	}
+
+	@Test
+	public void testCountOfSeveralThreads() throws Exception {
+		final File file = createLogFile(CONTENT);
+		final MappedLogFileReader reader = new MappedLogFileReader(file, new NcsaByteLogParser(
+				LogFormat.Defaults.COMBINED.getFormat()));
+		final ReadonlyLogEntry entry = reader.readEntry();
+		reader.close();
+
+		final CountingLogEntrySink sink = new CountingLogEntrySink();
+		final Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						sink.offer(entry);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(4000, sink.getEntries());
+		Assert.assertEquals(Long.valueOf(4000), sink.getFilled().get("urlPath"));
+	}
+
+	@Test
+	public void testParseLogEntries() throws Exception {
+		final File file = createLogFile(CONTENT);
+		final LogEntryImportService service = new LogEntryImportService(createRepository());
+		final ParseReport report = service.parseLogEntries(new LogFile(LogFormat.Defaults.COMBINED.getFormat(), file));
+		Assert.assertEquals(3, report.getEntries());
+		Assert.assertEquals(1, report.getMalformedLines());
+		Assert.assertEquals(file.length(), report.getBytes());
+		Assert.assertEquals(1.0, report.getFillRates().get("requestMethod"), 0.001);
+		Assert.assertEquals(2.0 / 3, report.getFillRates().get("request:Referer"), 0.001);
+		Assert.assertFalse(Quarantine.fileOf(null, file).exists());
+		Assert.assertEquals(0, service.getQueue().size());
+	}
+
+	@Test
+	public void testParseLogEntriesInChunks() throws Exception {
+		final StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			content.append(CONTENT);
+		}
+		final File file = createLogFile(content.toString());
+		final LogEntryImportService service = new LogEntryImportService(createRepository());
+		service.setChunkSize(1024);
+		service.setEntryPoolSize(16);
+		final ParseReport report = service.parseLogEntries(new LogFile(LogFormat.Defaults.COMBINED.getFormat(), file));
+		Assert.assertEquals(300, report.getEntries());
+		Assert.assertEquals(100, report.getMalformedLines());
+		Assert.assertEquals(Long.valueOf(100), report.getFilled().get("remoteUser"));
+	}
+
+}
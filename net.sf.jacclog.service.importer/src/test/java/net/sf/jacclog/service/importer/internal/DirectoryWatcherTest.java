@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.api.queue.LogEntryQueue;
+import net.sf.jacclog.service.importer.api.service.LogEntryImportService;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for watching a directory for new log files.
+ */
+public class DirectoryWatcherTest {
+
+	private static class ImportServiceMock implements LogEntryImportService<ReadonlyLogEntry> {
+
+		private final Collection<LogFile> imported = new CopyOnWriteArrayList<LogFile>();
+
+		@Override
+		public void create(final Collection<ReadonlyLogEntry> entries) {
+		}
+
+		@Override
+		public void create(final ReadonlyLogEntry entry) {
+		}
+
+		@Override
+		public LogEntryQueue<ReadonlyLogEntry> getQueue() {
+			return null;
+		}
+
+		@Override
+		public void importLogEntries(final LogFile file) {
+			imported.add(file);
+		}
+
+	}
+
+	private static File createFile(final File directory, final String name) throws Exception {
+		final File file = new File(directory, name);
+		file.deleteOnExit();
+		final OutputStream out = new FileOutputStream(file);
+		out.write("content".getBytes("UTF-8"));
+		out.close();
+		return file;
+	}
+
+	private File directory;
+
+	private ImportServiceMock service;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = File.createTempFile("logs", "");
+		Assert.assertTrue(directory.delete());
+		Assert.assertTrue(directory.mkdir());
+		directory.deleteOnExit();
+		service = new ImportServiceMock();
+	}
+
+	@Test
+	public void testDestroyStopsWatching() throws Exception {
+		final LogFileImporter importer = new LogFileImporter(10, service);
+		importer.setPollInterval(10);
+		importer.watchDirectory(LogFormat.Defaults.COMMON.getFormat(), directory);
+		importer.destroy();
+		Assert.assertFalse(importer.unwatch(directory));
+
+		createFile(directory, "access.log.1");
+		Thread.sleep(100);
+		Assert.assertTrue(service.imported.isEmpty());
+	}
+
+	@Test
+	public void testFullQueueDoesNotBlock() throws Exception {
+		// the imports are stopped, so the queue with a capacity of one file stays full
+		final LogFileImporter importer = new LogFileImporter(1, service);
+		importer.destroy();
+		final LogFormat format = LogFormat.Defaults.COMMON.getFormat();
+		Assert.assertTrue(importer.offerFile(format, createFile(directory, "access.log.1")));
+
+		final DirectoryWatcher watcher = new DirectoryWatcher(importer, format, directory);
+		final File file = createFile(directory, "access.log.2");
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watcher.run();
+				watcher.run();
+				watcher.run();
+			}
+		});
+		thread.start();
+		thread.join(5000);
+		Assert.assertFalse(thread.isAlive());
+		Assert.assertFalse(importer.offerFile(format, file));
+	}
+
+	@Test
+	public void testQueueNewFiles() throws Exception {
+		createFile(directory, "access.log.1");
+		final LogFileImporter importer = new LogFileImporter(10, service);
+		final DirectoryWatcher watcher = new DirectoryWatcher(importer, LogFormat.Defaults.COMMON.getFormat(),
+				directory);
+		watcher.run();
+
+		final File file = createFile(directory, "access.log.2");
+		watcher.run();
+		// the size of a new file must be stable between two executions
+		watcher.run();
+		watcher.run();
+
+		final long timeout = System.currentTimeMillis() + 5000;
+		while (service.imported.isEmpty() && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(1, service.imported.size());
+		Assert.assertEquals(file, service.imported.iterator().next().getFile());
+	}
+
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for tracking the committed lines of an import.
+ */
+public class ImportProgressTest {
+
+	private File directory;
+
+	private File file;
+
+	private CheckpointStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("access", ".log");
+		file.deleteOnExit();
+		directory = File.createTempFile("checkpoints", "");
+		Assert.assertTrue(directory.delete());
+		directory.deleteOnExit();
+		store = new CheckpointStore(directory);
+	}
+
+	@Test
+	public void testCommitInOrder() throws Exception {
+		final ImportProgress progress = new ImportProgress(null, ImportCheckpoint.create(file, 0, 0, false));
+		progress.commit(0, 10);
+		progress.commit(10, 25);
+		Assert.assertEquals(25, progress.getOffset());
+		Assert.assertEquals(2, progress.getLines());
+		Assert.assertFalse(progress.isComplete());
+		progress.finish(25);
+		Assert.assertTrue(progress.isComplete());
+	}
+
+	@Test
+	public void testCommitOutOfOrder() throws Exception {
+		final ImportProgress progress = new ImportProgress(null, ImportCheckpoint.create(file, 0, 0, false));
+		progress.finish(50);
+		progress.commit(30, 40);
+		progress.commit(10, 20);
+		progress.commit(40, 50);
+		Assert.assertEquals(0, progress.getOffset());
+		Assert.assertEquals(0, progress.getLines());
+
+		// the gap between 20 and 30 holds the offset back
+		progress.commit(0, 10);
+		Assert.assertEquals(20, progress.getOffset());
+		Assert.assertEquals(2, progress.getLines());
+		Assert.assertFalse(progress.isComplete());
+
+		progress.skip(20, 30);
+		Assert.assertEquals(50, progress.getOffset());
+		Assert.assertEquals(5, progress.getLines());
+		Assert.assertTrue(progress.isComplete());
+	}
+
+	@Test
+	public void testCompleteCheckpointIsSaved() throws Exception {
+		final ImportProgress progress = store.begin(file);
+		progress.commit(0, 10);
+		progress.commit(10, 20);
+		progress.finish(20);
+
+		final ImportCheckpoint checkpoint = store.load(file);
+		Assert.assertNotNull(checkpoint);
+		Assert.assertEquals(20, checkpoint.getOffset());
+		Assert.assertEquals(2, checkpoint.getLines());
+		Assert.assertTrue(checkpoint.isComplete());
+		Assert.assertTrue(store.delete(file));
+	}
+
+	@Test
+	public void testResumedLinesAreIgnored() throws Exception {
+		final ImportProgress progress = new ImportProgress(null, ImportCheckpoint.create(file, 20, 2, false));
+		Assert.assertEquals(20, progress.getStartOffset());
+		progress.commit(10, 20);
+		progress.commit(20, 30);
+		Assert.assertEquals(30, progress.getOffset());
+		Assert.assertEquals(3, progress.getLines());
+	}
+
+}
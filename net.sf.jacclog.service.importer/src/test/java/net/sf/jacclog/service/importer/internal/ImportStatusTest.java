@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.internal.metrics.ImportMetrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for counting the read lines of an import in batches.
+ */
+public class ImportStatusTest {
+
+	@Test
+	public void testCountersAddTheirLinesInBatches() {
+		final ImportMetrics metrics = new ImportMetrics();
+		final ImportStatus status = new ImportStatus(new LogFile(LogFormat.Defaults.COMMON.getFormat(), new File(
+				"access.log")), 1000000, 100, metrics);
+		final ImportStatus.Counter first = status.createCounter();
+		final ImportStatus.Counter second = status.createCounter();
+		first.advance(10, true);
+		first.advance(10, false);
+		second.advance(10, true);
+		Assert.assertEquals(100, status.getPosition());
+		Assert.assertEquals(0, metrics.getParsedLines());
+
+		first.flush();
+		second.flush();
+		Assert.assertEquals(130, status.getPosition());
+		Assert.assertEquals(2, status.getCount());
+		Assert.assertEquals(2, metrics.getParsedLines());
+		Assert.assertEquals(1, metrics.getMappingFailures());
+		Assert.assertEquals(30, metrics.getReadBytes());
+
+		// a full batch is added without flushing
+		for (int i = 0; i < ImportStatus.FLUSH_LINES; i++) {
+			first.advance(1, true);
+		}
+		Assert.assertEquals(2 + ImportStatus.FLUSH_LINES, status.getCount());
+	}
+
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+
+import net.sf.jacclog.service.importer.internal.queue.RingBufferLogEntryQueue;
+import net.sf.jacclog.service.repository.LogEntryRepositoryService;
+import net.sf.jacclog.service.repository.domain.PersistableLogEntry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for starting and stopping the threads of the import service.
+ */
+public class LogEntryImportServiceTest {
+
+	@SuppressWarnings("unchecked")
+	private static LogEntryRepositoryService<PersistableLogEntry> createRepository() {
+		return (LogEntryRepositoryService<PersistableLogEntry>) Proxy.newProxyInstance(
+				LogEntryImportServiceTest.class.getClassLoader(), new Class<?>[] { LogEntryRepositoryService.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(final Object proxy, final Method method, final Object[] args) {
+						Assert.fail("An idle service must not access the repository.");
+						return null;
+					}
+				});
+	}
+
+	private static Set<Thread> findPersisterThreads() {
+		final Set<Thread> threads = new HashSet<Thread>();
+		for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("persister-") && thread.isAlive()) {
+				threads.add(thread);
+			}
+		}
+		return threads;
+	}
+
+	@Test
+	public void testDestroyStopsRingBufferPersisters() throws Exception {
+		final Set<Thread> before = findPersisterThreads();
+		final LogEntryImportService service = new LogEntryImportService(createRepository(),
+				new RingBufferLogEntryQueue(64));
+
+		final Set<Thread> started = findPersisterThreads();
+		started.removeAll(before);
+		Assert.assertFalse(started.isEmpty());
+
+		service.destroy();
+		for (final Thread thread : started) {
+			thread.join(5000);
+			Assert.assertFalse(thread.isAlive());
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.util.Date;
+
+import net.sf.jacclog.api.domain.LogEntry;
+import net.sf.jacclog.api.domain.http.HttpStatus;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the pool of reusable log entries.
+ */
+public class LogEntryPoolTest {
+
+	@Test
+	public void testAcquireAllocatesIfEmpty() throws Exception {
+		final LogEntryPool pool = new LogEntryPool(2);
+		final PooledLogEntry first = pool.acquire();
+		final PooledLogEntry second = pool.acquire();
+		final PooledLogEntry third = pool.acquire();
+		Assert.assertNotSame(first, second);
+		Assert.assertNotSame(second, third);
+		Assert.assertEquals(3, pool.getAllocations());
+	}
+
+	@Test
+	public void testReleaseResetsEntry() throws Exception {
+		final LogEntryPool pool = new LogEntryPool(1);
+		final PooledLogEntry entry = pool.acquire();
+		entry.remoteHost("127.0.0.1").requestTime(new Date()).statusCode(HttpStatus.NOT_FOUND).bytesSent(123L);
+		entry.release();
+
+		final PooledLogEntry reused = pool.acquire();
+		Assert.assertSame(entry, reused);
+		Assert.assertEquals(LogEntry.EMPTY, reused.build());
+		Assert.assertEquals(1, pool.getAllocations());
+	}
+
+	@Test
+	public void testRetainsAtMostCapacity() throws Exception {
+		final LogEntryPool pool = new LogEntryPool(2);
+		final PooledLogEntry[] entries = { pool.acquire(), pool.acquire(), pool.acquire() };
+		for (final PooledLogEntry entry : entries) {
+			entry.release();
+		}
+		Assert.assertEquals(2, pool.getAvailable());
+
+		pool.acquire();
+		pool.acquire();
+		pool.acquire();
+		Assert.assertEquals(4, pool.getAllocations());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroCapacity() throws Exception {
+		new LogEntryPool(0);
+	}
+
+}
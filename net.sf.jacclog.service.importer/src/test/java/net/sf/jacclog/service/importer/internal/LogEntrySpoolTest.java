@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.api.domain.http.HttpConnectionStatus;
+import net.sf.jacclog.api.domain.http.HttpRequestHeader;
+import net.sf.jacclog.api.domain.http.HttpRequestHeaderField;
+import net.sf.jacclog.api.domain.http.HttpRequestMethod;
+import net.sf.jacclog.api.domain.http.HttpStatus;
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.api.queue.LogEntryQueue;
+import net.sf.jacclog.service.importer.api.service.LogEntryImportService;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the spool of the batches which could not be stored in the repository.
+ */
+public class LogEntrySpoolTest {
+
+	private static final class Repository implements LogEntryImportService<ReadonlyLogEntry> {
+
+		private final List<ReadonlyLogEntry> entries = new ArrayList<ReadonlyLogEntry>();
+
+		/**
+		 * Number of batches which will be accepted until the repository fails
+		 */
+		private int remaining = Integer.MAX_VALUE;
+
+		@Override
+		public void create(final Collection<ReadonlyLogEntry> batch) {
+			if (remaining-- <= 0) {
+				throw new IllegalStateException("repository is down");
+			}
+			entries.addAll(batch);
+		}
+
+		@Override
+		public void create(final ReadonlyLogEntry entry) {
+			create(Arrays.asList(entry));
+		}
+
+		@Override
+		public LogEntryQueue<ReadonlyLogEntry> getQueue() {
+			return null;
+		}
+
+		@Override
+		public void importLogEntries(final LogFile file) {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	private static List<ReadonlyLogEntry> batch(final int first, final int count) {
+		final List<ReadonlyLogEntry> batch = new ArrayList<ReadonlyLogEntry>();
+		for (int i = first; i < first + count; i++) {
+			batch.add(entry(i));
+		}
+		return batch;
+	}
+
+	private static ReadonlyLogEntry entry(final long number) {
+		return new LogEntryBuilder().bytesSent(number).remoteHost("192.168.0." + number % 256)
+				.requestMethod(HttpRequestMethod.GET).requestTime(new Date(1300000000000L + number))
+				.statusCode(HttpStatus.OK).connectionStatus(HttpConnectionStatus.KEPT_ALIVE).urlPath("/ä/" + number)
+				.appendRequestHeaders(new HttpRequestHeaderField(HttpRequestHeader.USER_AGENT, "Mozilla/5.0"))
+				.build();
+	}
+
+	/**
+	 * Returns the only segment file of the given directory.
+	 */
+	private static File segment(final File directory) {
+		final File[] segments = directory.listFiles();
+		File result = null;
+		for (final File file : segments) {
+			if (file.getName().endsWith(".spool")) {
+				Assert.assertNull("more than one segment", result);
+				result = file;
+			}
+		}
+		Assert.assertNotNull(result);
+		return result;
+	}
+
+	private File directory;
+
+	private Repository repository;
+
+	private LogEntrySpool spool;
+
+	private LogEntrySpool createSpool(final long segmentSize) throws IOException {
+		final LogEntrySpool spool = new LogEntrySpool(repository, new WriteController(100, 1000, 10000, 1, 0, 0),
+				segmentSize);
+		spool.open(directory);
+		return spool;
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		directory = File.createTempFile("spool", "");
+		directory.delete();
+		repository = new Repository();
+		spool = createSpool(LogEntrySpool.DEFAULT_SEGMENT_SIZE);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		spool.close();
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testAppendAndReplay() throws Exception {
+		Assert.assertFalse(spool.isFailing());
+		Assert.assertTrue(spool.append(batch(0, 10)));
+		Assert.assertTrue(spool.append(batch(10, 5)));
+		Assert.assertTrue(spool.isFailing());
+		Assert.assertEquals(15, spool.getSpooledEntries());
+		Assert.assertEquals(2, spool.getSpooledBatches());
+		Assert.assertTrue(spool.getSize() > 0);
+
+		Assert.assertEquals(15, spool.replay());
+		Assert.assertEquals(batch(0, 15), repository.entries);
+		Assert.assertFalse(spool.isFailing());
+		Assert.assertEquals(0, spool.getSize());
+		Assert.assertEquals(0, spool.getSegmentCount());
+		Assert.assertEquals(15, spool.getReplayedEntries());
+		Assert.assertTrue(spool.getReplayRate() > 0);
+	}
+
+	@Test
+	public void testClosedSpoolRejectsBatches() throws Exception {
+		spool.close();
+		Assert.assertFalse(spool.isOpen());
+		Assert.assertFalse(spool.append(batch(0, 1)));
+		Assert.assertEquals(0, spool.replay());
+	}
+
+	@Test
+	public void testDamagedRecordKeepsSegment() throws Exception {
+		spool.append(batch(0, 3));
+		spool.append(batch(3, 3));
+		spool.append(batch(6, 3));
+		spool.close();
+
+		// flip a byte within the body of the second record
+		final File segment = segment(directory);
+		final long length = segment.length();
+		final RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		try {
+			file.seek(5);
+			final long second = 5 + 8 + file.readInt();
+			file.seek(second + 8 + 2);
+			final int b = file.read();
+			file.seek(second + 8 + 2);
+			file.write(b ^ 0xff);
+		} finally {
+			file.close();
+		}
+
+		spool = createSpool(LogEntrySpool.DEFAULT_SEGMENT_SIZE);
+		Assert.assertEquals(3, spool.replay());
+		Assert.assertEquals(batch(0, 3), repository.entries);
+		Assert.assertEquals(0, spool.getSegmentCount());
+		Assert.assertEquals(0, spool.getSize());
+
+		// the undamaged records behind the damaged one must not get lost
+		final File damaged = new File(directory, segment.getName() + ".damaged");
+		Assert.assertTrue(damaged.isFile());
+		Assert.assertEquals(length, damaged.length());
+	}
+
+	@Test
+	public void testDamagedStateIsIgnored() throws Exception {
+		spool.append(batch(0, 3));
+		spool.close();
+
+		final OutputStream out = new FileOutputStream(new File(directory, "replay.state"));
+		try {
+			out.write(("segment=" + segment(directory).getName() + "\noffset=garbage\n").getBytes("ISO-8859-1"));
+		} finally {
+			out.close();
+		}
+
+		spool = createSpool(LogEntrySpool.DEFAULT_SEGMENT_SIZE);
+		Assert.assertEquals(3, spool.replay());
+		Assert.assertEquals(batch(0, 3), repository.entries);
+		Assert.assertEquals(0, spool.getSegmentCount());
+	}
+
+	@Test
+	public void testIncompleteRecordAtTheEndIsDropped() throws Exception {
+		spool.append(batch(0, 3));
+		spool.append(batch(3, 3));
+		spool.close();
+
+		final File segment = segment(directory);
+		final RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		try {
+			file.setLength(segment.length() - 10);
+		} finally {
+			file.close();
+		}
+
+		spool = createSpool(LogEntrySpool.DEFAULT_SEGMENT_SIZE);
+		Assert.assertEquals(3, spool.replay());
+		Assert.assertEquals(batch(0, 3), repository.entries);
+		Assert.assertEquals(0, spool.getSegmentCount());
+		Assert.assertFalse(new File(directory, segment.getName() + ".damaged").exists());
+	}
+
+	@Test
+	public void testReplayResumesAfterRestart() throws Exception {
+		spool.append(batch(0, 3));
+		spool.append(batch(3, 3));
+		spool.append(batch(6, 3));
+
+		repository.remaining = 1;
+		Assert.assertEquals(3, spool.replay());
+		Assert.assertTrue(spool.isFailing());
+		spool.close();
+
+		repository.remaining = Integer.MAX_VALUE;
+		spool = createSpool(LogEntrySpool.DEFAULT_SEGMENT_SIZE);
+		Assert.assertTrue(spool.isFailing());
+		Assert.assertEquals(6, spool.replay());
+		Assert.assertEquals(batch(0, 9), repository.entries);
+		Assert.assertEquals(0, spool.getSegmentCount());
+	}
+
+	@Test
+	public void testReplayStopsWhileRepositoryFails() throws Exception {
+		spool.append(batch(0, 5));
+		repository.remaining = 0;
+		Assert.assertEquals(0, spool.replay());
+		Assert.assertTrue(spool.isFailing());
+		Assert.assertEquals(1, spool.getSegmentCount());
+
+		repository.remaining = Integer.MAX_VALUE;
+		Assert.assertEquals(5, spool.replay());
+		Assert.assertFalse(spool.isFailing());
+	}
+
+	@Test
+	public void testSegmentsRoll() throws Exception {
+		spool.close();
+		spool = createSpool(256);
+		for (int i = 0; i < 10; i++) {
+			spool.append(batch(i * 5, 5));
+		}
+		Assert.assertTrue(spool.getSegmentCount() > 1);
+
+		Assert.assertEquals(50, spool.replay());
+		Assert.assertEquals(batch(0, 50), repository.entries);
+		Assert.assertEquals(0, spool.getSegmentCount());
+	}
+
+}
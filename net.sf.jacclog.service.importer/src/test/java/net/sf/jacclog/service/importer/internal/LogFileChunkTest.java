@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jsr166y.ForkJoinPool;
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.internal.task.LogFileChunkImportTask;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for splitting a log file into chunks and parsing them in parallel.
+ */
+public class LogFileChunkTest {
+
+	private static final String LINE = "192.168.123.12 - - [19/Oct/2008:19:45:38 -0700] \"GET /search?q1=foo HTTP/1.1\" 200 323";
+
+	private static File createLogFile(final String content) throws Exception {
+		final File file = File.createTempFile("access", ".log");
+		file.deleteOnExit();
+		final OutputStream out = new FileOutputStream(file);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+		return file;
+	}
+
+	@Test
+	public void testImportChunksInParallel() throws Exception {
+		final StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			content.append(i == 500 ? "invalid line" : LINE).append('\n');
+		}
+		final File file = createLogFile(content.toString());
+		final List<LogFileChunk> chunks = LogFileChunk.split(file, 4096);
+		Assert.assertTrue(chunks.size() > 10);
+
+		final LinkedBlockingQueue<ReadonlyLogEntry> queue = new LinkedBlockingQueue<ReadonlyLogEntry>();
+		final AtomicInteger count = new AtomicInteger();
+		final LogFile logFile = new LogFile(LogFormat.Defaults.COMMON.getFormat(), file);
+		new ForkJoinPool(4).invoke(new LogFileChunkImportTask(logFile, chunks, queue, count, 1024));
+		Assert.assertEquals(999, count.get());
+		Assert.assertEquals(999, queue.size());
+	}
+
+	@Test
+	public void testQuarantineOfChunks() throws Exception {
+		final StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			content.append(i == 100 || i == 900 ? "invalid line" : LINE).append('\n');
+		}
+		final File file = createLogFile(content.toString());
+		final List<LogFileChunk> chunks = LogFileChunk.split(file, 4096);
+
+		final File quarantineFile = Quarantine.fileOf(null, file);
+		quarantineFile.deleteOnExit();
+		final Quarantine quarantine = new Quarantine(quarantineFile, 0);
+		final LogFile logFile = new LogFile(LogFormat.Defaults.COMMON.getFormat(), file);
+		new ForkJoinPool(4).invoke(new LogFileChunkImportTask(logFile, chunks,
+				new LinkedBlockingQueue<ReadonlyLogEntry>(), new AtomicInteger(), 1024,
+				new ImportContext(null, quarantine, null, null, null)));
+		quarantine.close();
+		Assert.assertEquals(2, quarantine.getCount());
+
+		// the line numbers are counted from the beginning of the file
+		final BufferedReader reader = new BufferedReader(new FileReader(quarantineFile));
+		Assert.assertTrue(reader.readLine().startsWith("101\t" + 100 * (LINE.length() + 1) + "\t"));
+		Assert.assertTrue(reader.readLine().startsWith("901\t"));
+		Assert.assertNull(reader.readLine());
+		reader.close();
+	}
+
+	@Test
+	public void testSplitAlignsOnLineBreaks() throws Exception {
+		final StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			content.append(LINE).append('\n');
+		}
+		content.append(LINE);
+		final File file = createLogFile(content.toString());
+
+		final List<LogFileChunk> chunks = LogFileChunk.split(file, 1000);
+		Assert.assertEquals(0, chunks.get(0).getStart());
+		Assert.assertEquals(file.length(), chunks.get(chunks.size() - 1).getEnd());
+		final int lineLength = LINE.length() + 1;
+		for (int i = 0; i < chunks.size(); i++) {
+			final LogFileChunk chunk = chunks.get(i);
+			Assert.assertEquals(i, chunk.getIndex());
+			Assert.assertEquals(0, chunk.getStart() % lineLength);
+			if (i > 0) {
+				Assert.assertEquals(chunks.get(i - 1).getEnd(), chunk.getStart());
+			}
+		}
+	}
+
+	@Test
+	public void testSplitEmptyFile() throws Exception {
+		Assert.assertTrue(LogFileChunk.split(createLogFile(""), 1000).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSplitWithInvalidChunkSize() throws Exception {
+		LogFileChunk.split(createLogFile(""), 0);
+	}
+
+}
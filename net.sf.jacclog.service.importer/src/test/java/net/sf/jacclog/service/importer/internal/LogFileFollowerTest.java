@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.api.LogFileImporterStatistic.Progress;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for following a growing log file.
+ */
+public class LogFileFollowerTest {
+
+	private static final String LINE = "192.168.123.12 - - [19/Oct/2008:19:45:38 -0700] \"GET /search?q1=foo HTTP/1.1\" 200 323";
+
+	private static void append(final File file, final String content) throws Exception {
+		final OutputStream out = new FileOutputStream(file, true);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+	}
+
+	private File file;
+
+	private Progress findRunningImport() {
+		for (final Progress progress : LogFileImporterStatistic.getInstance().getRunningImports()) {
+			if (progress.getFile().getFile().equals(file)) {
+				return progress;
+			}
+		}
+		return null;
+	}
+
+	private LinkedBlockingQueue<ReadonlyLogEntry> queue;
+
+	private LogFileFollower createFollower(final boolean fromEnd) {
+		return createFollower(fromEnd, null);
+	}
+
+	private LogFileFollower createFollower(final boolean fromEnd, final CheckpointStore checkpoints) {
+		return new LogFileFollower(new LogFile(LogFormat.Defaults.COMMON.getFormat(), file), queue, fromEnd,
+				checkpoints, null);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("access", ".log");
+		file.deleteOnExit();
+		Quarantine.fileOf(null, file).deleteOnExit();
+		queue = new LinkedBlockingQueue<ReadonlyLogEntry>();
+	}
+
+	@Test
+	public void testFollowAppendedLines() throws Exception {
+		append(file, LINE + "\n" + LINE + "\n");
+		final LogFileFollower follower = createFollower(false);
+		follower.run();
+		Assert.assertEquals(2, queue.size());
+
+		// an incomplete line will be read when it is terminated
+		append(file, LINE.substring(0, 20));
+		follower.run();
+		Assert.assertEquals(2, queue.size());
+		append(file, LINE.substring(20) + "\r\ninvalid line\n");
+		follower.run();
+		Assert.assertEquals(3, queue.size());
+		Assert.assertEquals(3, follower.getCount());
+		Assert.assertEquals(file.length(), follower.getOffset());
+		follower.close();
+	}
+
+	@Test
+	public void testQuarantineAndStatusOfFollowedFile() throws Exception {
+		final File rejected = Quarantine.fileOf(null, file);
+		append(file, LINE + "\ninvalid line\n");
+		final LogFileFollower follower = createFollower(false);
+		follower.run();
+		Assert.assertEquals(1, queue.size());
+		final Progress status = findRunningImport();
+		Assert.assertNotNull(status);
+		Assert.assertEquals(1, status.getCount());
+		Assert.assertEquals(file.length(), status.getPosition());
+
+		// the rejected line is written with its line number and offset
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(rejected), "UTF-8"));
+		final String record = reader.readLine();
+		reader.close();
+		Assert.assertTrue(record, record.startsWith("2\t" + (LINE.length() + 1) + "\t"));
+		Assert.assertTrue(record, record.endsWith("\tinvalid line"));
+
+		follower.close();
+		Assert.assertNull(findRunningImport());
+		Assert.assertTrue(rejected.delete());
+	}
+
+	@Test
+	public void testFollowFromEnd() throws Exception {
+		append(file, LINE + "\n" + LINE + "\n");
+		final LogFileFollower follower = createFollower(true);
+		follower.run();
+		Assert.assertEquals(0, queue.size());
+		append(file, LINE + "\n");
+		follower.run();
+		Assert.assertEquals(1, queue.size());
+		follower.close();
+	}
+
+	@Test
+	public void testFollowNotExistingFile() throws Exception {
+		Assert.assertTrue(file.delete());
+		final LogFileFollower follower = createFollower(false);
+		follower.run();
+		append(file, LINE + "\n");
+		follower.run();
+		Assert.assertEquals(1, queue.size());
+		follower.close();
+	}
+
+	@Test
+	public void testResumeAtCheckpoint() throws Exception {
+		final File directory = File.createTempFile("checkpoints", "");
+		Assert.assertTrue(directory.delete());
+		directory.deleteOnExit();
+		final CheckpointStore store = new CheckpointStore(directory);
+
+		append(file, "1" + LINE + "\n" + "2" + LINE + "\n");
+		LogFileFollower follower = createFollower(false, store);
+		follower.run();
+		Assert.assertEquals(2, queue.size());
+
+		// only the first line has been committed when the following stops
+		((TrackedLogEntry) queue.poll()).commit();
+		queue.clear();
+		follower.close();
+
+		// the uncommitted line will be read again, although the following should start at the end
+		append(file, "3" + LINE + "\n");
+		follower = createFollower(true, store);
+		follower.run();
+		Assert.assertEquals(2, queue.size());
+		Assert.assertEquals("2192.168.123.12", queue.poll().getRemoteHost());
+		Assert.assertEquals("3192.168.123.12", queue.poll().getRemoteHost());
+		follower.close();
+
+		for (final File manifest : directory.listFiles()) {
+			manifest.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testRotationByRename() throws Exception {
+		append(file, "1" + LINE + "\n");
+		final LogFileFollower follower = createFollower(false);
+		follower.run();
+		Assert.assertEquals(1, queue.size());
+
+		// the last line before the rotation is read from the renamed file
+		append(file, "2" + LINE + "\n");
+		final File rotated = new File(file.getPath() + ".1");
+		rotated.deleteOnExit();
+		Assert.assertTrue(file.renameTo(rotated));
+		append(file, "3" + LINE + "\n");
+		follower.run();
+		Assert.assertEquals(3, queue.size());
+		Assert.assertEquals("1192.168.123.12", queue.poll().getRemoteHost());
+		Assert.assertEquals("2192.168.123.12", queue.poll().getRemoteHost());
+		Assert.assertEquals("3192.168.123.12", queue.poll().getRemoteHost());
+		follower.close();
+	}
+
+	@Test
+	public void testRotationByTruncation() throws Exception {
+		append(file, LINE + "\n" + LINE + "\n");
+		final LogFileFollower follower = createFollower(false);
+		follower.run();
+		Assert.assertEquals(2, queue.size());
+
+		new FileOutputStream(file).close();
+		append(file, LINE + "\n");
+		follower.run();
+		Assert.assertEquals(3, queue.size());
+		follower.close();
+	}
+
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.api.GlobFilter;
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.internal.queue.LogFileQueue;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for walking lazily through directory trees of log files.
+ */
+public class LogFileWalkerTest {
+
+	private static File createFile(final File directory, final String name) throws Exception {
+		final File file = new File(directory, name);
+		file.getParentFile().mkdirs();
+		new FileOutputStream(file).close();
+		return file;
+	}
+
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private static List<String> walk(final List<File> roots, final boolean recursive, final GlobFilter filter,
+			final File base) {
+		final List<String> result = new ArrayList<String>();
+		final LogFileWalker walker = new LogFileWalker(roots, recursive, filter);
+		while (walker.hasNext()) {
+			final String path = walker.next().getPath().substring(base.getPath().length() + 1);
+			result.add(path.replace(File.separatorChar, '/'));
+		}
+		return result;
+	}
+
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = File.createTempFile("logs", "");
+		Assert.assertTrue(directory.delete());
+		Assert.assertTrue(directory.mkdir());
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				delete(directory);
+			}
+		});
+
+		createFile(directory, "access.log");
+		createFile(directory, "access.log.1.gz");
+		createFile(directory, "error.log");
+		createFile(directory, "2011/access.log.2.gz");
+		createFile(directory, "2011/access.log.3.bz2");
+		createFile(directory, "2011/old/access.log.4");
+	}
+
+	@Test
+	public void testExcludeDirectory() throws Exception {
+		final GlobFilter filter = new GlobFilter(Collections.<String> emptyList(), Arrays.asList("old"));
+		Assert.assertEquals(Arrays.asList("2011/access.log.2.gz", "2011/access.log.3.bz2", "access.log",
+				"access.log.1.gz", "error.log"), walk(Arrays.asList(directory), true, filter, directory));
+	}
+
+	@Test
+	public void testGlobs() throws Exception {
+		Assert.assertTrue(new GlobFilter(Arrays.asList("*.{gz,bz2}"), Collections.<String> emptyList()).accept(
+				"2011/access.log.3.bz2", false));
+		Assert.assertFalse(new GlobFilter(Arrays.asList("*.{gz,bz2}"), Collections.<String> emptyList()).accept(
+				"access.log", false));
+		Assert.assertTrue(new GlobFilter(Arrays.asList("**/old/*"), Collections.<String> emptyList()).accept(
+				"2011/old/access.log.4", false));
+		Assert.assertTrue(new GlobFilter(Arrays.asList("**/access.log"), Collections.<String> emptyList()).accept(
+				"access.log", false));
+		Assert.assertFalse(new GlobFilter(Arrays.asList("2011/*"), Collections.<String> emptyList()).accept(
+				"2011/old/access.log.4", false));
+		Assert.assertTrue(new GlobFilter(Arrays.asList("access.log.[0-9]*"), Collections.<String> emptyList())
+				.accept("access.log.1.gz", false));
+		Assert.assertFalse(new GlobFilter(Arrays.asList("access.log.[!0-9]*"), Collections.<String> emptyList())
+				.accept("access.log.1.gz", false));
+		Assert.assertTrue(new GlobFilter(Arrays.asList("access.log?"), Collections.<String> emptyList()).accept(
+				"access.logs", false));
+		Assert.assertFalse(new GlobFilter(Arrays.asList("access?log"), Collections.<String> emptyList()).accept(
+				"access/log", false));
+		// an include pattern never prevents the walk into a directory
+		Assert.assertTrue(new GlobFilter(Arrays.asList("*.gz"), Collections.<String> emptyList()).accept("2011",
+				true));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidGlob() throws Exception {
+		new GlobFilter(Arrays.asList("*.{gz,bz2"), Collections.<String> emptyList());
+	}
+
+	@Test
+	public void testIncludeAndExclude() throws Exception {
+		final GlobFilter filter = new GlobFilter(Arrays.asList("access.log*"), Arrays.asList("*.bz2"));
+		Assert.assertEquals(Arrays.asList("2011/access.log.2.gz", "2011/old/access.log.4", "access.log",
+				"access.log.1.gz"), walk(Arrays.asList(directory), true, filter, directory));
+	}
+
+	@Test
+	public void testLaziness() throws Exception {
+		final LogFileWalker walker = new LogFileWalker(Arrays.asList(directory), true, GlobFilter.ALL);
+		Assert.assertTrue(walker.hasNext());
+		Assert.assertEquals(new File(directory, "2011/access.log.2.gz"), walker.next());
+
+		// a directory is listed not before the walk reaches it
+		createFile(directory, "2011/old/access.log.5");
+		final List<File> rest = new ArrayList<File>();
+		while (walker.hasNext()) {
+			rest.add(walker.next());
+		}
+		Assert.assertTrue(rest.contains(new File(directory, "2011/old/access.log.5")));
+		Assert.assertFalse(walker.hasNext());
+	}
+
+	@Test
+	public void testNotRecursive() throws Exception {
+		Assert.assertEquals(Arrays.asList("access.log", "access.log.1.gz", "error.log"),
+				walk(Arrays.asList(directory), false, GlobFilter.ALL, directory));
+		Assert.assertEquals(3, LogFileImporter.addFileToList(directory).size());
+		Assert.assertEquals(6, LogFileImporter.addFileToList(directory, true).size());
+	}
+
+	@Test
+	public void testQueuedFiles() throws Exception {
+		final LogFileQueue queue = new LogFileQueue(10);
+		final File file = new File(directory, "access.log");
+		Assert.assertFalse(queue.isQueued(file));
+		queue.add(new LogFile(LogFormat.Defaults.COMMON.getFormat(), file));
+		Assert.assertTrue(queue.isQueued(new File(directory, "2011/../access.log")));
+		queue.clear();
+		Assert.assertFalse(queue.isQueued(file));
+	}
+
+	@Test
+	public void testReturnFilesOnlyOnce() throws Exception {
+		final File file = new File(directory, "2011/../error.log");
+		final List<File> roots = Arrays.asList(file, directory, new File(directory, "2011"), new File(directory,
+				"missing"));
+		final GlobFilter filter = new GlobFilter(Collections.<String> emptyList(), Arrays.asList("*.gz", "*.bz2"));
+		Assert.assertEquals(Arrays.asList("2011/../error.log", "2011/old/access.log.4", "access.log"),
+				walk(roots, true, filter, directory));
+	}
+
+}
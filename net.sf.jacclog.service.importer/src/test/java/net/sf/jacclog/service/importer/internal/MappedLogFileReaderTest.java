@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.internal.parser.MappingException;
+import net.sf.jacclog.service.importer.internal.parser.NcsaByteLogParser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the memory-mapped log file reader.
+ */
+public class MappedLogFileReaderTest {
+
+	private static final String LINE = "192.168.123.12 - - [19/Oct/2008:19:45:38 -0700] \""
+			+ "GET /search?q1=foo&st=bar HTTP/1.1\" 200 323 \"-\" \"Mozilla/5.0 (X11; U; Linux i686)\"";
+
+	private static File createLogFile(final String content) throws Exception {
+		final File file = File.createTempFile("access", ".log");
+		file.deleteOnExit();
+		final OutputStream out = new FileOutputStream(file);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+		return file;
+	}
+
+	private static MappedLogFileReader createReader(final File file, final int regionSize) {
+		return new MappedLogFileReader(file, new NcsaByteLogParser(LogFormat.Defaults.COMBINED.getFormat()),
+				regionSize);
+	}
+
+	@Test
+	public void testReadEmptyFile() throws Exception {
+		final MappedLogFileReader reader = createReader(createLogFile(""), 16);
+		Assert.assertNull(reader.readEntry());
+	}
+
+	@Test
+	public void testReadLinesAcrossRegions() throws Exception {
+		final StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			content.append(LINE).append(i % 2 == 0 ? "\n" : "\r\n");
+		}
+		// last line without line terminator
+		content.append(LINE);
+
+		final MappedLogFileReader reader = createReader(createLogFile(content.toString()), 50);
+		final List<ReadonlyLogEntry> entries = reader.read(100);
+		Assert.assertEquals(11, entries.size());
+		Assert.assertEquals(11, reader.getLineNumber());
+		for (final ReadonlyLogEntry entry : entries) {
+			Assert.assertEquals("/search", entry.getUrlPath());
+			Assert.assertEquals(2, entry.getRequestHeaders().size());
+		}
+		Assert.assertNull(reader.readEntry());
+	}
+
+	@Test
+	public void testReadMappingExceptionContainsLineNumber() throws Exception {
+		final MappedLogFileReader reader = createReader(createLogFile(LINE + "\ninvalid line\n" + LINE + "\n"), 1024);
+		Assert.assertNotNull(reader.readEntry());
+		try {
+			reader.readEntry();
+			Assert.fail("MappingException expected");
+		} catch (final MappingException e) {
+			Assert.assertTrue(e.getMessage().startsWith("at line 2: "));
+		}
+		Assert.assertNotNull(reader.readEntry());
+		Assert.assertNull(reader.readEntry());
+	}
+
+}
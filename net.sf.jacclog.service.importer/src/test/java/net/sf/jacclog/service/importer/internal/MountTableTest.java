@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.File;
+import java.io.StringReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for resolving the device of a file.
+ */
+public class MountTableTest {
+
+	private static final String MOUNTS = "/dev/sda1 / ext4 rw,relatime 0 0\n"
+			+ "/dev/sdb1 /var/log xfs rw 0 0\n" + "/dev/sdc1 /mnt/my\\040logs ext4 rw 0 0\n"
+			+ "proc /proc proc rw 0 0\n";
+
+	@Test
+	public void testLongestMountPointWins() throws Exception {
+		final MountTable mounts = MountTable.parse(new StringReader(MOUNTS));
+		Assert.assertEquals("/dev/sdb1", mounts.deviceOf(new File("/var/log/httpd/access_log")));
+		Assert.assertEquals("/dev/sdb1", mounts.deviceOf(new File("/var/log")));
+		Assert.assertEquals("/dev/sda1", mounts.deviceOf(new File("/var/logs/access_log")));
+		Assert.assertEquals("/dev/sdc1", mounts.deviceOf(new File("/mnt/my logs/access_log")));
+	}
+
+	@Test
+	public void testWithoutMounts() throws Exception {
+		final MountTable mounts = MountTable.parse(new StringReader(""));
+		Assert.assertNotNull(mounts.deviceOf(new File("access_log")));
+	}
+
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for inflating the members of a gzip file in parallel.
+ */
+public class ParallelGzipInputStreamTest {
+
+	private static File createFile(final byte[]... parts) throws Exception {
+		final File file = File.createTempFile("access", ".gz");
+		file.deleteOnExit();
+		final OutputStream out = new FileOutputStream(file);
+		for (final byte[] part : parts) {
+			out.write(part);
+		}
+		out.close();
+		return file;
+	}
+
+	private static String read(final InputStream in) throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int read;
+		while ((read = in.read()) != -1) {
+			out.write(read);
+		}
+		in.close();
+		return new String(out.toByteArray(), "ISO-8859-1");
+	}
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Compresses the data with stored (uncompressed) deflate blocks, so the data occurs as is within the file.
+	 */
+	private static byte[] gzipStored(final byte[] data) throws Exception {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final GZIPOutputStream out = new GZIPOutputStream(bytes) {
+			{
+				def.setLevel(Deflater.NO_COMPRESSION);
+			}
+		};
+		out.write(data);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	@Test
+	public void testCoincidentalHeaderWithinMember() throws Exception {
+		final byte[] data = { 'a', 'b', 'c', 0x1f, (byte) 0x8b, 0x08, 0x00, 'x', 'y', 'z' };
+		final File file = createFile(gzipStored(data), CompressionTest.gzip("second"));
+		final FileChannel channel = new FileInputStream(file).getChannel();
+		try {
+			Assert.assertEquals(3, ParallelGzipInputStream.scan(channel).length);
+		} finally {
+			channel.close();
+		}
+		final String expected = new String(data, "ISO-8859-1") + "second";
+		Assert.assertEquals(expected, read(new ParallelGzipInputStream(file, executor, 1)));
+	}
+
+	@Test
+	public void testInflate() throws Exception {
+		final byte[] first = CompressionTest.gzip("first");
+		final File file = createFile(first, CompressionTest.gzip("second"));
+		final FileChannel channel = new FileInputStream(file).getChannel();
+		try {
+			final ParallelGzipInputStream.Member member = ParallelGzipInputStream.inflate(channel, 0,
+					ParallelGzipInputStream.MAX_MEMBER_SIZE);
+			Assert.assertEquals("first", new String(member.getData(), "UTF-8"));
+			Assert.assertEquals(first.length, member.getEnd());
+
+			Assert.assertNull(ParallelGzipInputStream.inflate(channel, 1, ParallelGzipInputStream.MAX_MEMBER_SIZE));
+			Assert.assertNull(ParallelGzipInputStream.inflate(channel, 0, 2));
+			Assert.assertArrayEquals(new long[] { 0, first.length }, ParallelGzipInputStream.scan(channel));
+		} finally {
+			channel.close();
+		}
+	}
+
+	@Test
+	public void testReadMembersInOrder() throws Exception {
+		final File file = createFile(CompressionTest.gzip("a"), CompressionTest.gzip("b"), CompressionTest.gzip(""),
+				CompressionTest.gzip("c"));
+		Assert.assertEquals("abc", read(new ParallelGzipInputStream(file, executor, 2)));
+	}
+
+}
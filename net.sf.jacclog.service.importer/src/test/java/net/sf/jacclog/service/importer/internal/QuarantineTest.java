@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for writing rejected lines into a quarantine file.
+ */
+public class QuarantineTest {
+
+	private static String[] readLines(final File file) throws Exception {
+		final StringBuilder builder = new StringBuilder();
+		final BufferedReader reader = new BufferedReader(new FileReader(file));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			builder.append(line).append('\n');
+		}
+		reader.close();
+		return builder.toString().split("\n");
+	}
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("access", ".log" + Quarantine.SUFFIX);
+		Assert.assertTrue(file.delete());
+		file.deleteOnExit();
+	}
+
+	@Test
+	public void testAppendWhenResumed() throws Exception {
+		final Quarantine first = new Quarantine(file, 0);
+		first.reject(2, 10, "reason", "line");
+		first.close();
+
+		final Quarantine resumed = new Quarantine(file, 5);
+		resumed.reject(1, 50, "reason", "line");
+		resumed.close();
+		Assert.assertEquals(2, readLines(file).length);
+		Assert.assertEquals("6\t50\treason\tline", readLines(file)[1]);
+
+		// a new import replaces the file
+		new Quarantine(file, 0).close();
+		Assert.assertFalse(file.exists());
+	}
+
+	@Test
+	public void testChunkLineNumbers() throws Exception {
+		final Quarantine quarantine = new Quarantine(file, 0);
+		final LogFileChunk first = new LogFileChunk(0, 0, 100);
+		final LogFileChunk second = new LogFileChunk(1, 100, 200);
+		quarantine.reject(second, 2, 120, "second", "b");
+		quarantine.setLineCount(second, 4);
+		quarantine.reject(first, 3, 30, "first", "a");
+		quarantine.setLineCount(first, 10);
+		Assert.assertFalse(file.exists());
+		quarantine.close();
+
+		final String[] lines = readLines(file);
+		Assert.assertEquals("3\t30\tfirst\ta", lines[0]);
+		Assert.assertEquals("12\t120\tsecond\tb", lines[1]);
+		Assert.assertEquals(2, quarantine.getCount());
+	}
+
+	@Test
+	public void testCountOnly() throws Exception {
+		final Quarantine quarantine = new Quarantine();
+		quarantine.reject(1, 0, "reason", "line");
+		quarantine.reject(new LogFileChunk(0, 0, 100), 2, 20, "reason", "line");
+		quarantine.close();
+		Assert.assertEquals(2, quarantine.getCount());
+		Assert.assertNull(quarantine.getFile());
+	}
+
+	@Test
+	public void testFileOf() throws Exception {
+		final File log = new File("logs", "access.log");
+		Assert.assertEquals(new File("logs", "access.log" + Quarantine.SUFFIX), Quarantine.fileOf(null, log));
+		final File other = new File("other", "access.log");
+		final File directory = new File("quarantine");
+		Assert.assertFalse(Quarantine.fileOf(directory, log).equals(Quarantine.fileOf(directory, other)));
+	}
+
+	@Test
+	public void testRejectSanitizesFields() throws Exception {
+		final Quarantine quarantine = new Quarantine(file, 0);
+		Assert.assertFalse(file.exists());
+		quarantine.reject(7, 700, "bad\ttoken\ncount", "a\tb");
+		quarantine.close();
+		Assert.assertEquals("7\t700\tbad token count\ta b", readLines(file)[0]);
+		Assert.assertEquals(1, quarantine.getCount());
+	}
+
+	@Test
+	public void testReasonOf() {
+		final Exception e = new IllegalStateException("at line 3: wrapped", new IllegalArgumentException("reason"));
+		Assert.assertEquals("reason", Quarantine.reasonOf(e));
+	}
+
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for reading a stream ahead within a separate thread.
+ */
+public class ReadAheadInputStreamTest {
+
+	/**
+	 * A source which fails unexpectedly after some bytes
+	 */
+	private static final class FailingInputStream extends InputStream {
+
+		private final RuntimeException failure;
+
+		private int remaining;
+
+		private FailingInputStream(final int length, final RuntimeException failure) {
+			remaining = length;
+			this.failure = failure;
+		}
+
+		@Override
+		public int read() {
+			if (remaining == 0) {
+				throw failure;
+			}
+			remaining--;
+			return 'x';
+		}
+
+	}
+
+	private static byte[] readAll(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[7];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testRead() throws Exception {
+		final byte[] data = new byte[1000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		final InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), 64, 2);
+		try {
+			Assert.assertArrayEquals(data, readAll(in));
+			Assert.assertEquals(-1, in.read());
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testUnexpectedFailureOfSource() throws Exception {
+		final IllegalStateException failure = new IllegalStateException("corrupt data");
+		final InputStream in = new ReadAheadInputStream(new FailingInputStream(100, failure), 64, 2);
+		try {
+			readAll(in);
+			Assert.fail("An IOException was expected but was not thrown.");
+		} catch (final IOException e) {
+			Assert.assertSame(failure, e.getCause());
+		} finally {
+			in.close();
+		}
+	}
+
+}
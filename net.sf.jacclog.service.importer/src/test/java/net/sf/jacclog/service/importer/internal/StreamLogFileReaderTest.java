@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.io.ByteArrayInputStream;
+
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.internal.parser.NcsaByteLogParser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for reading log entries and their positions from a stream.
+ */
+public class StreamLogFileReaderTest {
+
+	private static final String LINE = "192.168.123.12 - - [19/Oct/2008:19:45:38 -0700] \"GET /search?q1=foo HTTP/1.1\" 200 323";
+
+	private static StreamLogFileReader createReader(final String content, final long start) throws Exception {
+		final NcsaByteLogParser parser = new NcsaByteLogParser(LogFormat.Defaults.COMMON.getFormat());
+		return new StreamLogFileReader(new ByteArrayInputStream(content.getBytes("UTF-8")), parser, start);
+	}
+
+	@Test
+	public void testLinePositions() throws Exception {
+		final String content = LINE + "\r\n" + LINE + "\n" + LINE;
+		final StreamLogFileReader reader = createReader(content, 0);
+		Assert.assertNotNull(reader.readEntry());
+		Assert.assertEquals(0, reader.getLineStart());
+		Assert.assertEquals(LINE.length() + 2, reader.getLineEnd());
+		Assert.assertNotNull(reader.readEntry());
+		Assert.assertEquals(LINE.length() + 2, reader.getLineStart());
+		Assert.assertEquals(2 * LINE.length() + 3, reader.getLineEnd());
+		Assert.assertNotNull(reader.readEntry());
+		Assert.assertEquals(content.length(), reader.getLineEnd());
+		Assert.assertNull(reader.readEntry());
+		Assert.assertFalse(reader.isFailed());
+	}
+
+	@Test
+	public void testLongLinesGrowBuffer() throws Exception {
+		final StringBuilder content = new StringBuilder();
+		final String path = "/" + new String(new char[StreamLogFileReader.DEFAULT_BUFFER_SIZE]).replace('\0', 'a');
+		for (int i = 0; i < 3; i++) {
+			content.append(LINE.replace("/search", path)).append('\n');
+		}
+		final StreamLogFileReader reader = createReader(content.toString(), 0);
+		Assert.assertEquals(3, reader.read(10).size());
+		Assert.assertEquals(content.length(), reader.getLineEnd());
+	}
+
+	@Test
+	public void testResumeAtPosition() throws Exception {
+		final String content = "1" + LINE + "\n" + "2" + LINE + "\n" + "3" + LINE + "\n";
+		final StreamLogFileReader reader = createReader(content, LINE.length() + 2);
+		Assert.assertEquals("2192.168.123.12", reader.readEntry().getRemoteHost());
+		Assert.assertEquals(LINE.length() + 2, reader.getLineStart());
+		Assert.assertEquals("3192.168.123.12", reader.readEntry().getRemoteHost());
+		Assert.assertEquals(content.length(), reader.getLineEnd());
+		Assert.assertNull(reader.readEntry());
+	}
+
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the adaptive limits of the writes into the repository.
+ */
+public class WriteControllerTest {
+
+	private static void write(final WriteController controller, final int entries, final long nanos, final boolean ok)
+			throws InterruptedException {
+		controller.acquire();
+		if (ok) {
+			controller.succeeded(entries, nanos);
+		} else {
+			controller.failed(entries, nanos);
+		}
+	}
+
+	@Test
+	public void testAcquireWaitsForFreeWrite() throws Exception {
+		final WriteController controller = new WriteController(1);
+		controller.acquire();
+
+		final CountDownLatch acquired = new CountDownLatch(1);
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					controller.acquire();
+					acquired.countDown();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}).start();
+
+		Assert.assertFalse(acquired.await(50, TimeUnit.MILLISECONDS));
+		controller.succeeded(10, 1000);
+		Assert.assertTrue(acquired.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(1, controller.getInFlight());
+	}
+
+	@Test
+	public void testBackoffGrowsUpToMaximum() throws Exception {
+		final WriteController controller = new WriteController(100, 1000, 10000, 4, 100, 1000);
+		final long first = controller.getBackoff(1);
+		Assert.assertTrue(first >= 50 && first <= 100);
+		final long second = controller.getBackoff(2);
+		Assert.assertTrue(second >= 100 && second <= 200);
+		final long last = controller.getBackoff(20);
+		Assert.assertTrue(last >= 500 && last <= 1000);
+	}
+
+	@Test
+	public void testFailureHalvesLimitsOncePerRound() throws Exception {
+		final WriteController controller = new WriteController(100, 1000, 10000, 4, 0, 0);
+		write(controller, 1000, 1000000, false);
+		Assert.assertEquals(500, controller.getBatchSize());
+		Assert.assertEquals(2, controller.getConcurrency());
+
+		// a second failure of the same round of writes does not decrease again
+		write(controller, 1000, 1000000, false);
+		Assert.assertEquals(500, controller.getBatchSize());
+		Assert.assertEquals(2, controller.getConcurrency());
+		Assert.assertEquals(2, controller.getFailures());
+		Assert.assertTrue(controller.getErrorRate() > 0);
+	}
+
+	@Test
+	public void testLimitsStayWithinBounds() throws Exception {
+		final WriteController controller = new WriteController(100, 200, 300, 2, 0, 0);
+		for (int i = 0; i < 10; i++) {
+			write(controller, 100, 100000, false);
+			write(controller, 100, 100000, false);
+		}
+		Assert.assertEquals(100, controller.getBatchSize());
+		Assert.assertEquals(1, controller.getConcurrency());
+
+		for (int i = 0; i < 20; i++) {
+			write(controller, 100, 100000, true);
+		}
+		Assert.assertEquals(300, controller.getBatchSize());
+		Assert.assertEquals(2, controller.getConcurrency());
+	}
+
+	@Test
+	public void testSlowWritesDecreaseLimits() throws Exception {
+		final WriteController controller = new WriteController(100, 1000, 10000, 4, 0, 0);
+		write(controller, 1000, 1000000, true);
+		Assert.assertEquals(1100, controller.getBatchSize());
+
+		// latency per entry grows tenfold
+		for (int i = 0; i < 4; i++) {
+			write(controller, 1000, 10000000, true);
+		}
+		Assert.assertTrue(controller.getBatchSize() < 1100);
+		Assert.assertTrue(controller.getConcurrency() < 4);
+	}
+
+	@Test
+	public void testSuccessesIncreaseLimits() throws Exception {
+		final WriteController controller = new WriteController(100, 1000, 10000, 4, 0, 0);
+		write(controller, 1000, 1000000, false);
+		Assert.assertEquals(2, controller.getConcurrency());
+
+		write(controller, 500, 500000, true);
+		write(controller, 500, 500000, true);
+		Assert.assertEquals(700, controller.getBatchSize());
+		Assert.assertEquals(3, controller.getConcurrency());
+		Assert.assertEquals(3, controller.getWrites());
+		Assert.assertEquals(0, controller.getInFlight());
+	}
+
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the histogram of the latencies of the writes into the repository.
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testEmptyHistogram() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getCount());
+		Assert.assertEquals(0, histogram.getMean(), 0);
+		Assert.assertEquals(0, histogram.getPercentile(99), 0);
+	}
+
+	@Test
+	public void testPercentilesAreBoundedByFactorOfTwo() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		// 90 writes of 1 ms and 10 writes of 100 ms
+		for (int i = 0; i < 90; i++) {
+			histogram.record(1000000);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(100000000);
+		}
+
+		Assert.assertEquals(100, histogram.getCount());
+		Assert.assertEquals(10.9, histogram.getMean(), 0.001);
+		Assert.assertEquals(100, histogram.getMax(), 0.001);
+
+		final double median = histogram.getPercentile(50);
+		Assert.assertTrue(median >= 1 && median <= 2);
+		final double p99 = histogram.getPercentile(99);
+		Assert.assertTrue(p99 >= 100 && p99 <= 200);
+		Assert.assertEquals(histogram.getMax(), histogram.getPercentile(100), 0.001);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPercentileOutOfRange() {
+		new LatencyHistogram().getPercentile(101);
+	}
+
+}
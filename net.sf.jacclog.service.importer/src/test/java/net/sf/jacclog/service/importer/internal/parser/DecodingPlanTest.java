@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.api.domain.http.HttpStatus;
+import net.sf.jacclog.logformat.LogFormat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the decoding plan of a log format.
+ */
+public class DecodingPlanTest {
+
+	@Test
+	public void testCompileOncePerFormat() {
+		final DecodingPlan plan = DecodingPlan.compile(LogFormat.Defaults.COMBINED.getFormat());
+		Assert.assertSame(plan, DecodingPlan.compile(LogFormat.Defaults.COMBINED.getFormat()));
+		Assert.assertNotSame(plan, DecodingPlan.compile(LogFormat.Defaults.COMMON.getFormat()));
+		Assert.assertEquals(9, plan.size());
+	}
+
+	@Test
+	public void testCopyHasOwnRequestTimeDecoders() {
+		final DecodingPlan plan = DecodingPlan.compile(LogFormat.Defaults.COMMON.getFormat());
+		final DecodingPlan first = plan.copy();
+		final DecodingPlan second = plan.copy();
+		Assert.assertEquals(plan.size(), first.size());
+
+		// %t is the fourth field of the common log format
+		Assert.assertTrue(first.getDecoder(3) instanceof RequestTimeDecoder);
+		Assert.assertNotSame(RequestTimeDecoder.getDefault(), first.getDecoder(3));
+		Assert.assertNotSame(first.getDecoder(3), second.getDecoder(3));
+		Assert.assertSame(first.getDecoder(0), second.getDecoder(0));
+
+		final List<String> tokens = Arrays.asList("127.0.0.1", "-", "frank", "10/Oct/2000:13:55:36 -0700",
+				"GET /apache_pb.gif HTTP/1.0", "200", "2326");
+		Assert.assertEquals(plan.decode(tokens).build(), second.decode(tokens).build());
+	}
+
+	@Test
+	public void testDecodeSkipsUnmappedFields() {
+		final LogFormat format = new LogFormat.Builder().appendRemoteHostField().appendIgnorableField()
+				.appendRequestInMillisField().appendHttpStatusField().build();
+		final List<String> tokens = new AbstractList<String>() {
+			private final String[] values = { "127.0.0.1", "ignored", "1234", "404" };
+
+			@Override
+			public String get(final int index) {
+				if (index == 1 || index == 2) {
+					Assert.fail("token at position " + index + " should not be requested");
+				}
+				return values[index];
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+		};
+		final ReadonlyLogEntry entry = DecodingPlan.compile(format).decode(tokens).build();
+		Assert.assertEquals("127.0.0.1", entry.getRemoteHost());
+		Assert.assertSame(HttpStatus.NOT_FOUND, entry.getStatusCode());
+	}
+
+	@Test
+	public void testDecodeLastPositionOfRepeatedField() {
+		final LogFormat format = new LogFormat.Builder().appendRemoteHostField().appendRemoteHostField().build();
+		final LogEntryBuilder builder = DecodingPlan.compile(format).decode(Arrays.asList("first", "second"));
+		Assert.assertEquals("second", builder.build().getRemoteHost());
+	}
+
+	@Test(expected = MappingException.class)
+	public void testDecodeWithWrongAmountOfTokens() {
+		DecodingPlan.compile(LogFormat.Defaults.COMMON.getFormat()).decode(Arrays.asList("a", "b"));
+	}
+
+}
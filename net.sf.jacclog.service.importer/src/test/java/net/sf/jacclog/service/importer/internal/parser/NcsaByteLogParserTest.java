@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.internal.LogEntryPool;
+import net.sf.jacclog.service.importer.internal.PooledLogEntry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the byte-level NCSA log parser.
+ */
+public class NcsaByteLogParserTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static List<String> parse(final String line) {
+		final ByteTokenList tokens = new ByteTokenList(UTF_8);
+		final byte[] bytes = line.getBytes(UTF_8);
+		NcsaByteLogParser.parse(bytes, 0, bytes.length, tokens);
+		return tokens;
+	}
+
+	@Test
+	public void testParseAccessLogLikeNcsaLogParser() throws Exception {
+		final File[] accesslogs = (new File("src/test/resources/access_logs")).listFiles();
+		for (final File accesslog : accesslogs) {
+			String line;
+			final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(accesslog),
+					UTF_8));
+			while ((line = reader.readLine()) != null) {
+				Assert.assertEquals(NcsaLogParser.parse(line), parse(line));
+			}
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testParseCombinedLogFormat() throws Exception {
+		final String line = "192.168.123.12 - - [19/Oct/2008:19:45:38 -0700] \""
+				+ "GET /search?q1=foo&st=bar HTTP/1.1\" 200 323 "
+				+ "\"-\" \"Mozilla/5.0 (X11; U; Linux i686; en-US; rv:1.8.1.14) "
+				+ "Gecko/20080416 Fedora/2.0.0.14-1.fc7 Firefox/2.0.0.14\"";
+		final LogFormat format = LogFormat.Defaults.COMBINED.getFormat();
+		final ReadonlyLogEntry expected = new NcsaLogParser(format).parseLine(line);
+		final ReadonlyLogEntry entry = new NcsaByteLogParser(format).parseLine(line);
+		Assert.assertEquals(expected, entry);
+		Assert.assertEquals("/search", entry.getUrlPath());
+		Assert.assertEquals(2, entry.getRequestHeaders().size());
+	}
+
+	@Test
+	public void testParseEdgeCases() throws Exception {
+		final String[] lines = { "", " ", "a  b", "a b ", "\"\" [] x", "\"a \\\"b\\\" c\" d", "x]y [a \"b] c\" d",
+				"ü [ö ä] \"ß\"" };
+		for (final String line : lines) {
+			Assert.assertEquals(line, NcsaLogParser.parse(line), parse(line));
+		}
+	}
+
+	@Test
+	public void testReuseTokenList() throws Exception {
+		final ByteTokenList tokens = new ByteTokenList(UTF_8);
+		final byte[] first = "a b c d e f g h i j k l m n o p q r s".getBytes(UTF_8);
+		NcsaByteLogParser.parse(first, 0, first.length, tokens);
+		Assert.assertEquals(19, tokens.size());
+		Assert.assertEquals("s", tokens.get(18));
+
+		final byte[] second = "xx [y z] \"w\"".getBytes(UTF_8);
+		NcsaByteLogParser.parse(second, 3, second.length - 3, tokens);
+		Assert.assertEquals(2, tokens.size());
+		Assert.assertEquals("y z", tokens.get(0));
+		Assert.assertEquals("w", tokens.get(1));
+	}
+
+	@Test
+	public void testParseLineIntoPooledEntries() throws Exception {
+		final String line = "192.168.123.12 - - [19/Oct/2008:19:45:38 -0700] \"GET /index.html HTTP/1.1\" 200 323";
+		final String other = "10.0.0.1 - frank [20/Oct/2008:10:00:00 +0200] \"POST /login HTTP/1.0\" 302 -";
+		final LogFormat format = LogFormat.Defaults.COMMON.getFormat();
+		final LogEntryPool pool = new LogEntryPool(1);
+		final NcsaByteLogParser parser = new NcsaByteLogParser(format);
+		parser.setPool(pool);
+
+		final ReadonlyLogEntry entry = parser.parseLine(line);
+		Assert.assertTrue(entry instanceof PooledLogEntry);
+		Assert.assertEquals(new NcsaLogParser(format).parseLine(line), ((PooledLogEntry) entry).build());
+
+		// a released entry will be reused without leftovers of the previous line
+		((PooledLogEntry) entry).release();
+		final ReadonlyLogEntry reused = parser.parseLine(other);
+		Assert.assertSame(entry, reused);
+		Assert.assertEquals(new NcsaLogParser(format).parseLine(other), ((PooledLogEntry) reused).build());
+		Assert.assertEquals(1, pool.getAllocations());
+	}
+
+	@Test
+	public void testReleasePooledEntryOfWrongLine() throws Exception {
+		final LogEntryPool pool = new LogEntryPool(1);
+		final NcsaByteLogParser parser = new NcsaByteLogParser(LogFormat.Defaults.COMBINED.getFormat());
+		parser.setPool(pool);
+		try {
+			parser.parseLine("a b c");
+			Assert.fail();
+		} catch (final MappingException e) {
+			Assert.assertEquals(1, pool.getAvailable());
+		}
+	}
+
+	@Test(expected = MappingException.class)
+	public void testParseLineWithWrongAmountOfTokens() throws Exception {
+		new NcsaByteLogParser(LogFormat.Defaults.COMBINED.getFormat()).parseLine("a b c");
+	}
+
+}
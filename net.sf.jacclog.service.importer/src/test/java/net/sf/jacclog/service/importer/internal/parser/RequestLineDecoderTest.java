@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.api.domain.http.HttpRequestMethod;
+import net.sf.jacclog.logformat.LogFormat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the decoder of the first line of a request.
+ */
+public class RequestLineDecoderTest {
+
+	private static LogEntryBuilder decode(final String line) {
+		final LogEntryBuilder builder = new LogEntryBuilder();
+		RequestLineDecoder.getInstance().decode(builder, line);
+		return builder;
+	}
+
+	@Test
+	public void testDecodeRequestLine() throws Exception {
+		final LogEntryBuilder builder = decode("GET /search?q1=foo&st=bar HTTP/1.1");
+		Assert.assertEquals(HttpRequestMethod.GET, builder.getRequestMethod());
+		Assert.assertEquals("/search", builder.getUrlPath());
+		Assert.assertEquals("q1=foo&st=bar", builder.getQueryString());
+		Assert.assertEquals("HTTP/1.1", builder.getRequestProtocol());
+	}
+
+	@Test
+	public void testDecodeAbsoluteTarget() throws Exception {
+		final LogEntryBuilder builder = decode("GET http://example.com:8080/a/b?c=d#top HTTP/1.0");
+		Assert.assertEquals("/a/b", builder.getUrlPath());
+		Assert.assertEquals("c=d", builder.getQueryString());
+		Assert.assertEquals("HTTP/1.0", builder.getRequestProtocol());
+	}
+
+	@Test
+	public void testDecodeJunkPath() throws Exception {
+		final LogEntryBuilder builder = decode("GET /foo bar/%zz|<x>?a=\"1 2\" HTTP/1.1");
+		Assert.assertEquals(HttpRequestMethod.GET, builder.getRequestMethod());
+		Assert.assertEquals("/foo bar/%zz|<x>", builder.getUrlPath());
+		Assert.assertEquals("a=\"1 2\"", builder.getQueryString());
+		Assert.assertEquals("HTTP/1.1", builder.getRequestProtocol());
+	}
+
+	@Test
+	public void testDecodeWithoutProtocol() throws Exception {
+		final LogEntryBuilder builder = decode("POST /login");
+		Assert.assertEquals(HttpRequestMethod.POST, builder.getRequestMethod());
+		Assert.assertEquals("/login", builder.getUrlPath());
+		Assert.assertEquals("", builder.getQueryString());
+		Assert.assertEquals("", builder.getRequestProtocol());
+	}
+
+	@Test
+	public void testDecodeIncompleteLines() throws Exception {
+		Assert.assertEquals(new LogEntryBuilder().build(), decode("-").build());
+		Assert.assertEquals(new LogEntryBuilder().build(), decode("").build());
+
+		final LogEntryBuilder builder = decode("FOO   HTTP/1.1 ");
+		Assert.assertEquals(HttpRequestMethod.UNKNOWN, builder.getRequestMethod());
+		Assert.assertEquals("", builder.getUrlPath());
+		Assert.assertEquals("HTTP/1.1", builder.getRequestProtocol());
+	}
+
+	@Test
+	public void testDecodeProtocolField() throws Exception {
+		final LogFormat format = LogFormat.Defaults.COMMON.getFormat();
+		final ReadonlyLogEntry entry = new NcsaByteLogParser(format)
+				.parseLine("127.0.0.1 - - [19/Oct/2008:19:45:38 -0700] \"GET / HTTP/1.1\" 200 5");
+		Assert.assertEquals("HTTP/1.1", entry.getRequestProtocol());
+		Assert.assertEquals("/", entry.getUrlPath());
+	}
+
+}
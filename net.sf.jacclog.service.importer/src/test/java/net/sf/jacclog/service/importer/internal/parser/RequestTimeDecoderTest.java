@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.logformat.LogFormat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the decoder of request times.
+ */
+public class RequestTimeDecoderTest {
+
+	private static long parseWithFormatter(final String pattern, final String value) throws ParseException {
+		return new SimpleDateFormat(pattern, Locale.ENGLISH).parse(value).getTime();
+	}
+
+	@Test
+	public void testCustomRequestTimeFieldInDecodingPlan() {
+		final LogFormat format = new LogFormat.Builder().appendRemoteHostField()
+				.appendCustomRequestTimeField("%Y-%m-%d %H:%M:%S %z").build();
+		final LogEntryBuilder builder = DecodingPlan.compile(format).decode(
+				Arrays.asList("127.0.0.1", "2008-10-19 19:45:38 -0700"));
+		Assert.assertEquals(1224470738000L, builder.build().getRequestTime().getTime());
+	}
+
+	@Test
+	public void testDefault() throws ParseException {
+		final RequestTimeDecoder decoder = RequestTimeDecoder.getDefault();
+		Assert.assertEquals(1224470738000L, decoder.parse("19/Oct/2008:19:45:38 -0700"));
+		Assert.assertEquals(1224470738000L, decoder.parse("19/Oct/2008:19:45:38 -0700"));
+		Assert.assertEquals(1224470739000L, decoder.parse("19/Oct/2008:19:45:39 -0700"));
+		Assert.assertEquals(1224470739000L, decoder.parse("20/oct/2008:04:15:39 +0130"));
+		Assert.assertEquals(0L, decoder.parse("01/Jan/1970:00:00:00 +0000"));
+	}
+
+	@Test
+	public void testDefaultEqualsFormatter() throws ParseException {
+		final RequestTimeDecoder decoder = RequestTimeDecoder.getDefault();
+		final String[] values = { "29/Feb/2000:23:59:59 +0000", "31/Dec/1999:00:00:00 -1200", "01/Mar/2100:12:30:00 +1400",
+				"15/Jun/1985:07:08:09 +0545", "31/Feb/2011:10:00:00 +0100", "5/Jan/2011:10:00:00 +0100" };
+		for (final String value : values) {
+			Assert.assertEquals(value, parseWithFormatter(RequestTimeDecoder.DEFAULT_PATTERN, value), decoder.parse(value));
+		}
+	}
+
+	@Test
+	public void testDecodeIgnoresInvalidValue() {
+		final LogEntryBuilder builder = new LogEntryBuilder();
+		RequestTimeDecoder.getDefault().decode(builder, "not a time");
+		Assert.assertEquals(new Date(0), builder.build().getRequestTime());
+	}
+
+	@Test
+	public void testEpoch() throws ParseException {
+		Assert.assertEquals(1224470738000L, RequestTimeDecoder.forStrftime("sec").parse("1224470738"));
+		Assert.assertEquals(1224470738123L, RequestTimeDecoder.forStrftime("begin:msec").parse("1224470738123"));
+		Assert.assertEquals(1224470738123L, RequestTimeDecoder.forStrftime("end:usec").parse("1224470738123456"));
+		Assert.assertNull(RequestTimeDecoder.forStrftime("msec_frac"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStrftimeUnsupportedConversion() {
+		RequestTimeDecoder.forStrftime("%Q");
+	}
+
+	@Test
+	public void testToPattern() {
+		Assert.assertEquals(RequestTimeDecoder.DEFAULT_PATTERN, RequestTimeDecoder.toPattern("%d/%b/%Y:%H:%M:%S %z"));
+		Assert.assertEquals("yyyy-MM-dd'T'HH:mm:ss", RequestTimeDecoder.toPattern("%FT%T"));
+		Assert.assertEquals("'at 'HH:mm % ''", RequestTimeDecoder.toPattern("at %R %% '"));
+	}
+
+}
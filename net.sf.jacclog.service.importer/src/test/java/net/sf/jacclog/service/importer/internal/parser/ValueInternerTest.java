@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.parser;
+
+import java.nio.charset.Charset;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.api.domain.http.HttpRequestHeader;
+import net.sf.jacclog.api.domain.http.ReadableHttpRequestHeaderField;
+import net.sf.jacclog.logformat.LogFormat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the pool of recurring values.
+ */
+public class ValueInternerTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static String userAgentOf(final ReadonlyLogEntry entry) {
+		for (final ReadableHttpRequestHeaderField field : entry.getRequestHeaders()) {
+			if (field.getType() == HttpRequestHeader.USER_AGENT) {
+				return field.getValue();
+			}
+		}
+		return null;
+	}
+
+	@Test
+	public void testInternBytes() throws Exception {
+		final ValueInterner interner = new ValueInterner(16, 64);
+		final byte[] bytes = "xx192.168.0.1xx192.168.0.1".getBytes(UTF_8);
+		final String first = interner.intern(bytes, 2, 11, UTF_8);
+		final String second = interner.intern(bytes, 15, 11, UTF_8);
+		Assert.assertEquals("192.168.0.1", first);
+		Assert.assertSame(first, second);
+		Assert.assertEquals(1, interner.getHits());
+		Assert.assertEquals(1, interner.getMisses());
+		Assert.assertEquals(0.5, interner.getHitRatio(), 0.0001);
+	}
+
+	@Test
+	public void testInternString() throws Exception {
+		final ValueInterner interner = new ValueInterner(16, 64);
+		final String first = interner.intern(new String("/index.html"));
+		Assert.assertSame(first, interner.intern(new String("/index.html")));
+		Assert.assertNull(interner.intern(null));
+	}
+
+	@Test
+	public void testLongValuesAreNotPooled() throws Exception {
+		final ValueInterner interner = new ValueInterner(16, 4);
+		final byte[] bytes = "abcdef".getBytes(UTF_8);
+		Assert.assertNotSame(interner.intern(bytes, 0, 6, UTF_8), interner.intern(bytes, 0, 6, UTF_8));
+		Assert.assertEquals(0, interner.getHits() + interner.getMisses());
+	}
+
+	@Test
+	public void testCapacityIsPowerOfTwo() throws Exception {
+		Assert.assertEquals(16, new ValueInterner(10, 64).getCapacity());
+		Assert.assertEquals(1, new ValueInterner(1, 64).getCapacity());
+	}
+
+	@Test
+	public void testParserSharesRecurringValues() throws Exception {
+		final String line = "192.168.123.12 - - [19/Oct/2008:19:45:38 -0700] \"GET /search?q=1 HTTP/1.1\" 200 323 "
+				+ "\"-\" \"Mozilla/5.0 (X11; U; Linux i686)\"";
+		final ValueInterner interner = new ValueInterner();
+		final NcsaByteLogParser parser = new NcsaByteLogParser(LogFormat.Defaults.COMBINED.getFormat());
+		parser.setInterner(interner);
+
+		final ReadonlyLogEntry first = parser.parseLine(line);
+		final ReadonlyLogEntry second = parser.parseLine(line);
+		Assert.assertEquals(first, second);
+		Assert.assertSame(first.getRemoteHost(), second.getRemoteHost());
+		Assert.assertSame(first.getUrlPath(), second.getUrlPath());
+		Assert.assertSame(userAgentOf(first), userAgentOf(second));
+		Assert.assertTrue(interner.getHits() >= 3);
+	}
+
+}
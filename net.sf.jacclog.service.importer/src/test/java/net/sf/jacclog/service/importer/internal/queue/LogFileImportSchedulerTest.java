@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.queue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+import net.sf.jacclog.logformat.LogFormat;
+import net.sf.jacclog.service.importer.api.LogFile;
+import net.sf.jacclog.service.importer.api.queue.LogEntryQueue;
+import net.sf.jacclog.service.importer.api.service.LogEntryImportService;
+import net.sf.jacclog.service.importer.internal.MountTable;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the concurrent import of queued log files.
+ */
+public class LogFileImportSchedulerTest {
+
+	private static class ImportServiceMock implements LogEntryImportService<ReadonlyLogEntry> {
+
+		private final AtomicInteger maxRunning = new AtomicInteger();
+
+		private final List<File> order = new CopyOnWriteArrayList<File>();
+
+		private final AtomicInteger running = new AtomicInteger();
+
+		@Override
+		public void create(final Collection<ReadonlyLogEntry> entries) {
+		}
+
+		@Override
+		public void create(final ReadonlyLogEntry entry) {
+		}
+
+		@Override
+		public LogEntryQueue<ReadonlyLogEntry> getQueue() {
+			return null;
+		}
+
+		@Override
+		public void importLogEntries(final LogFile file) {
+			final int current = running.incrementAndGet();
+			synchronized (maxRunning) {
+				maxRunning.set(Math.max(maxRunning.get(), current));
+			}
+			order.add(file.getFile());
+			try {
+				Thread.sleep(50);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+		}
+
+	}
+
+	private File diskA;
+
+	private File diskB;
+
+	private MountTable mounts;
+
+	private ImportServiceMock service;
+
+	private static File createFile(final File directory, final String name, final int size) throws IOException {
+		final File file = new File(directory, name);
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(new byte[size]);
+		} finally {
+			out.close();
+		}
+		file.deleteOnExit();
+		return file;
+	}
+
+	private static File createDirectory(final String name) throws IOException {
+		final File file = File.createTempFile(name, "");
+		Assert.assertTrue(file.delete());
+		Assert.assertTrue(file.mkdir());
+		file.deleteOnExit();
+		return file.getCanonicalFile();
+	}
+
+	private void awaitImports(final int count) throws InterruptedException {
+		final long timeout = System.currentTimeMillis() + 10000;
+		while (service.order.size() < count && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+		Assert.assertEquals(count, service.order.size());
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		diskA = createDirectory("diskA");
+		diskB = createDirectory("diskB");
+		mounts = MountTable.parse(new StringReader("/dev/sda1 " + diskA.getPath() + " ext4 rw 0 0\n/dev/sdb1 "
+				+ diskB.getPath() + " ext4 rw 0 0\n"));
+		service = new ImportServiceMock();
+	}
+
+	@Test
+	public void testLargestFileFirstAndOneImportPerDevice() throws Exception {
+		final LogFileQueue queue = new LogFileQueue(10);
+		final LogFileImportScheduler scheduler = new LogFileImportScheduler(service, queue, mounts);
+		scheduler.setConcurrency(4);
+		queue.addObserver(new LogFileQueueImporterObserver(scheduler));
+
+		final LogFormat format = LogFormat.Defaults.COMMON.getFormat();
+		final File small = createFile(diskA, "small.log", 10);
+		final File large = createFile(diskA, "large.log", 30);
+		final File medium = createFile(diskA, "medium.log", 20);
+		queue.add(new LogFile(format, small));
+		queue.add(new LogFile(format, large));
+		queue.add(new LogFile(format, medium));
+
+		awaitImports(3);
+		Assert.assertEquals(large, service.order.get(0));
+		Assert.assertEquals(medium, service.order.get(1));
+		Assert.assertEquals(small, service.order.get(2));
+		Assert.assertEquals(1, service.maxRunning.get());
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertEquals(0, scheduler.getRunning());
+	}
+
+	@Test
+	public void testConcurrentImportsOnDifferentDevices() throws Exception {
+		final LogFileQueue queue = new LogFileQueue(10);
+		final LogFileImportScheduler scheduler = new LogFileImportScheduler(service, queue, mounts);
+		scheduler.setConcurrency(2);
+		queue.addObserver(new LogFileQueueImporterObserver(scheduler));
+
+		final LogFormat format = LogFormat.Defaults.COMMON.getFormat();
+		for (int i = 0; i < 3; i++) {
+			queue.add(new LogFile(format, createFile(diskA, "a" + i + ".log", 10)));
+			queue.add(new LogFile(format, createFile(diskB, "b" + i + ".log", 10)));
+		}
+
+		awaitImports(6);
+		Assert.assertEquals(2, service.maxRunning.get());
+	}
+
+	@Test
+	public void testShutdown() throws Exception {
+		final LogFileQueue queue = new LogFileQueue(10);
+		final LogFileImportScheduler scheduler = new LogFileImportScheduler(service, queue, mounts);
+		queue.addObserver(new LogFileQueueImporterObserver(scheduler));
+		scheduler.shutdown();
+
+		// queued files are not imported anymore and remain in the queue
+		queue.add(new LogFile(LogFormat.Defaults.COMMON.getFormat(), createFile(diskA, "a.log", 10)));
+		Thread.sleep(LogFileImportScheduler.DISPATCH_DELAY * 3);
+		Assert.assertTrue(service.order.isEmpty());
+		Assert.assertEquals(1, queue.size());
+		Assert.assertEquals(0, scheduler.getRunning());
+	}
+
+	@Test
+	public void testConcurrencyLimit() throws Exception {
+		final LogFileQueue queue = new LogFileQueue(10);
+		final LogFileImportScheduler scheduler = new LogFileImportScheduler(service, queue, mounts);
+		scheduler.setConcurrency(2);
+		scheduler.setMaxImportsPerDevice(4);
+		queue.addObserver(new LogFileQueueImporterObserver(scheduler));
+
+		final LogFormat format = LogFormat.Defaults.COMMON.getFormat();
+		for (int i = 0; i < 6; i++) {
+			queue.add(new LogFile(format, createFile(diskA, "a" + i + ".log", 10)));
+		}
+
+		awaitImports(6);
+		Assert.assertEquals(2, service.maxRunning.get());
+	}
+
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.service.importer.internal.queue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.jacclog.api.domain.LogEntryBuilder;
+import net.sf.jacclog.api.domain.ReadonlyLogEntry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the ring buffer between the readers and the persisters.
+ */
+public class RingBufferLogEntryQueueTest {
+
+	private static ReadonlyLogEntry entry(final long number) {
+		return new LogEntryBuilder().bytesSent(number).build();
+	}
+
+	@Test
+	public void testCapacityIsPowerOfTwo() throws Exception {
+		Assert.assertEquals(1, new RingBufferLogEntryQueue(1).getCapacity());
+		Assert.assertEquals(16, new RingBufferLogEntryQueue(16).getCapacity());
+		Assert.assertEquals(32, new RingBufferLogEntryQueue(17).getCapacity());
+	}
+
+	@Test
+	public void testConcurrentProducersAndConsumers() throws Exception {
+		final int producers = 4;
+		final int perProducer = 20000;
+		final RingBufferLogEntryQueue queue = new RingBufferLogEntryQueue(64);
+		final BitSet received = new BitSet(producers * perProducer);
+		final AtomicInteger duplicates = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(producers);
+
+		for (int p = 0; p < producers; p++) {
+			final int offset = p * perProducer;
+			final boolean batched = p % 2 == 0;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						final List<ReadonlyLogEntry> batch = new ArrayList<ReadonlyLogEntry>();
+						for (int i = 0; i < perProducer; i++) {
+							if (batched) {
+								batch.add(entry(offset + i));
+								if (batch.size() == 10) {
+									queue.putAll(batch);
+									batch.clear();
+								}
+							} else {
+								queue.put(entry(offset + i));
+							}
+						}
+						queue.putAll(batch);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+
+		final Thread[] consumers = new Thread[2];
+		for (int c = 0; c < consumers.length; c++) {
+			consumers[c] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					final List<ReadonlyLogEntry> batch = new ArrayList<ReadonlyLogEntry>();
+					try {
+						while (done.getCount() > 0 || !queue.isEmpty()) {
+							batch.clear();
+							queue.drainTo(batch, 100, 10, TimeUnit.MILLISECONDS);
+							synchronized (received) {
+								for (final ReadonlyLogEntry entry : batch) {
+									final int number = entry.getBytesSent().intValue();
+									if (received.get(number)) {
+										duplicates.incrementAndGet();
+									}
+									received.set(number);
+								}
+							}
+						}
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			consumers[c].start();
+		}
+
+		Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+		for (final Thread consumer : consumers) {
+			consumer.join(30000);
+		}
+		Assert.assertEquals(0, duplicates.get());
+		Assert.assertEquals(producers * perProducer, received.cardinality());
+		Assert.assertEquals(producers * perProducer, queue.getTotalElementCountCounter().getCount());
+		Assert.assertEquals(0, queue.getCurrentElementCounter().getCount());
+	}
+
+	@Test
+	public void testDrainToKeepsOrderAcrossRounds() throws Exception {
+		final RingBufferLogEntryQueue queue = new RingBufferLogEntryQueue(4);
+		final List<ReadonlyLogEntry> batch = new ArrayList<ReadonlyLogEntry>();
+		long next = 0;
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < 3; i++) {
+				Assert.assertTrue(queue.offer(entry(round * 3 + i)));
+			}
+			batch.clear();
+			Assert.assertEquals(2, queue.drainTo(batch, 2));
+			Assert.assertEquals(1, queue.drainTo(batch));
+			for (final ReadonlyLogEntry entry : batch) {
+				Assert.assertEquals(Long.valueOf(next++), entry.getBytesSent());
+			}
+		}
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testDrainToTimesOutIfEmpty() throws Exception {
+		final RingBufferLogEntryQueue queue = new RingBufferLogEntryQueue(4);
+		final List<ReadonlyLogEntry> batch = new ArrayList<ReadonlyLogEntry>();
+		Assert.assertEquals(0, queue.drainTo(batch, 10, 10, TimeUnit.MILLISECONDS));
+		Assert.assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testOfferFailsIfFull() throws Exception {
+		final RingBufferLogEntryQueue queue = new RingBufferLogEntryQueue(2);
+		Assert.assertTrue(queue.offer(entry(1)));
+		Assert.assertTrue(queue.offer(entry(2)));
+		Assert.assertFalse(queue.offer(entry(3)));
+		Assert.assertFalse(queue.offer(entry(3), 10, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(0, queue.remainingCapacity());
+
+		Assert.assertEquals(Long.valueOf(1), queue.peek().getBytesSent());
+		Assert.assertEquals(Long.valueOf(1), queue.poll().getBytesSent());
+		Assert.assertTrue(queue.offer(entry(3)));
+		Assert.assertEquals(2, queue.size());
+	}
+
+	@Test
+	public void testPutWaitsForFreeSlot() throws Exception {
+		final RingBufferLogEntryQueue queue = new RingBufferLogEntryQueue(1);
+		queue.put(entry(1));
+		final Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					queue.put(entry(2));
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		producer.start();
+
+		Assert.assertEquals(Long.valueOf(1), queue.take().getBytesSent());
+		Assert.assertEquals(Long.valueOf(2), queue.take().getBytesSent());
+		producer.join(1000);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroCapacity() throws Exception {
+		new RingBufferLogEntryQueue(0);
+	}
+
+}
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.util.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, thread-safe cache for values which repeat enormously, like the remote hosts, referers or user agents of
+ * access logs.<br>
+ * <br>
+ * The cache is a table with a fixed number of slots. The slot of a key is selected by a hash which is calculated by
+ * the caller, so a caller can use a hash it needs anyway (e.g. a hash which is also stored in a database). A new entry
+ * replaces the entry of its slot, so the cache never grows and frequent values stay in the cache while rare values get
+ * evicted.<br>
+ * <br>
+ * Keys are compared with {@link Object#equals(Object)} or with a {@link Matcher}, which allows to look up a key in
+ * another form (e.g. a region of a buffer) without creating a key first.<br>
+ * <br>
+ * The hits and misses are counted in stripes, which are selected by the looking up thread, so parallel parsers do not
+ * contend for a single counter. The stripes are summed up when the counts are read.
+ * 
+ * @param <K>
+ *            type of the keys
+ * @param <V>
+ *            type of the cached values
+ * 
+ * @author André Rouél
+ */
+public final class SlotCache<K, V> {
+
+	/**
+	 * Compares the key of a cached entry with the key of a lookup in another form.
+	 * 
+	 * @param <K>
+	 *            type of the keys
+	 * @param <P>
+	 *            type of the key of a lookup
+	 */
+	public interface Matcher<K, P> {
+
+		/**
+		 * Checks whether the given cached key is equal to the key of a lookup.
+		 * 
+		 * @param key
+		 *            key of a cached entry
+		 * @param probe
+		 *            key of a lookup
+		 * @return <code>true</code> if the keys are equal, otherwise <code>false</code>
+		 */
+		boolean matches(K key, P probe);
+
+	}
+
+	/**
+	 * Immutable slot of the table
+	 */
+	private static final class Slot<K, V> {
+
+		private final long hash;
+
+		private final K key;
+
+		private final V value;
+
+		private Slot(final long hash, final K key, final V value) {
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+		}
+
+	}
+
+	/**
+	 * Distance between two stripes of counters within the array, so the stripes do not share a cache line
+	 */
+	private static final int PADDING = 16;
+
+	/**
+	 * Number of stripes of counters (a power of two with at least two stripes per processor)
+	 */
+	private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime()
+			.availableProcessors())) << 2;
+
+	/**
+	 * Compares keys by their equality
+	 */
+	private static final Matcher<Object, Object> EQUALS = new Matcher<Object, Object>() {
+		@Override
+		public boolean matches(final Object key, final Object probe) {
+			return key.equals(probe);
+		}
+	};
+
+	/**
+	 * Spreads the higher bits of a hash to the lower bits which select the slot
+	 */
+	private static int spread(final long hash) {
+		final int h = (int) (hash ^ (hash >>> 32));
+		final int s = h ^ (h >>> 20) ^ (h >>> 12);
+		return s ^ (s >>> 7) ^ (s >>> 4);
+	}
+
+	/**
+	 * Returns the index of the hit counter of the stripe of the current thread, the miss counter follows it.
+	 */
+	private static int stripe() {
+		return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+	}
+
+	/**
+	 * Hits and misses of all stripes
+	 */
+	private final AtomicLongArray counters = new AtomicLongArray(STRIPES * PADDING);
+
+	private final int mask;
+
+	private final AtomicReferenceArray<Slot<K, V>> slots;
+
+	/**
+	 * Creates a cache with the given number of slots.
+	 * 
+	 * @param capacity
+	 *            number of slots (will be rounded up to a power of two)
+	 */
+	public SlotCache(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Argument 'capacity' must be greater than 0.");
+		}
+
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		slots = new AtomicReferenceArray<Slot<K, V>>(size);
+		mask = size - 1;
+	}
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public void clear() {
+		for (int i = 0; i < slots.length(); i++) {
+			slots.set(i, null);
+		}
+	}
+
+	/**
+	 * Returns the cached value of the given key.
+	 * 
+	 * @param hash
+	 *            hash of the key
+	 * @param key
+	 *            key of the value
+	 * @return cached value or <code>null</code> if the key is not cached
+	 */
+	public V get(final long hash, final K key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Argument 'key' can not be null.");
+		}
+
+		return get(hash, key, EQUALS);
+	}
+
+	/**
+	 * Returns the cached value of the key which matches the given key of a lookup.
+	 * 
+	 * @param hash
+	 *            hash of the key, which must be equal to the hash the matching key has been cached with
+	 * @param probe
+	 *            key of the lookup
+	 * @param matcher
+	 *            compares a cached key with the key of the lookup
+	 * @return cached value or <code>null</code> if the key is not cached
+	 */
+	public <P> V get(final long hash, final P probe, final Matcher<? super K, ? super P> matcher) {
+		final Slot<K, V> slot = slots.get(spread(hash) & mask);
+		if (slot != null && slot.hash == hash && matcher.matches(slot.key, probe)) {
+			counters.incrementAndGet(stripe());
+			return slot.value;
+		}
+
+		counters.incrementAndGet(stripe() + 1);
+		return null;
+	}
+
+	/**
+	 * Gets the number of slots.
+	 * 
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return slots.length();
+	}
+
+	/**
+	 * Gets the ratio of hits to all lookups.
+	 * 
+	 * @return ratio between <code>0</code> and <code>1</code>
+	 */
+	public double getHitRatio() {
+		final long h = getHits();
+		final long total = h + getMisses();
+		return (total > 0) ? (double) h / total : 0;
+	}
+
+	/**
+	 * Gets the number of lookups which returned a cached value.
+	 * 
+	 * @return number of hits
+	 */
+	public long getHits() {
+		return sum(0);
+	}
+
+	/**
+	 * Gets the number of lookups which did not find a cached value.
+	 * 
+	 * @return number of misses
+	 */
+	public long getMisses() {
+		return sum(1);
+	}
+
+	/**
+	 * Caches a value, which replaces the entry of its slot.
+	 * 
+	 * @param hash
+	 *            hash of the key
+	 * @param key
+	 *            key of the value
+	 * @param value
+	 *            value to cache
+	 */
+	public void put(final long hash, final K key, final V value) {
+		if (key == null) {
+			throw new IllegalArgumentException("Argument 'key' can not be null.");
+		}
+
+		if (value == null) {
+			throw new IllegalArgumentException("Argument 'value' can not be null.");
+		}
+
+		slots.set(spread(hash) & mask, new Slot<K, V>(hash, key, value));
+	}
+
+	/**
+	 * Sums up a counter of all stripes.
+	 */
+	private long sum(final int counter) {
+		long sum = 0;
+		for (int i = counter; i < counters.length(); i += PADDING) {
+			sum += counters.get(i);
+		}
+		return sum;
+	}
+
+	@Override
+	public String toString() {
+		return "SlotCache [capacity=" + getCapacity() + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+	}
+
+}
@@ -24,8 +24,24 @@ public final class IpAddressGenerator {
 	 * @return Numerical representation of an randomly generated IP address as <code>long</code>
 	 */
 	public static long generateRandomLongForIpAddress() {
-		final long random = (long) rnd.nextInt() * 2;
-		return random < 0 ? random * -1 : random;
+		return generateRandomLongForIpAddress(rnd);
+	}
+
+	/**
+	 * Generates a numerical representation of an IP address (IPv4) with the given source of randomness. A
+	 * <code>Random</code> with a fixed seed generates the same sequence of addresses on every run.
+	 * 
+	 * @param random
+	 *            source of randomness
+	 * @return Numerical representation of an randomly generated IP address as <code>long</code>
+	 */
+	public static long generateRandomLongForIpAddress(final Random random) {
+		if (random == null) {
+			throw new IllegalArgumentException("Argument 'random' can not be null.");
+		}
+
+		final long value = (long) random.nextInt() * 2;
+		return value < 0 ? value * -1 : value;
 	}
 
 	private IpAddressGenerator() {
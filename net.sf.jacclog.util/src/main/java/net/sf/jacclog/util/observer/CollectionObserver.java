@@ -27,6 +27,14 @@ public interface CollectionObserver<O extends Collection<E>, E> {
 	 */
 	void added(final O objectToObserve, final E element);
 
+	/**
+	 * Gives feedback that a batch of elements was added to the observing collection at once.
+	 * 
+	 * @param objectToObserve
+	 * @param elements
+	 */
+	void addedAll(final O objectToObserve, final Collection<? extends E> elements);
+
 	/**
 	 * Gives feedback that the observing collection is empty.
 	 * 
@@ -43,4 +51,12 @@ public interface CollectionObserver<O extends Collection<E>, E> {
 	 */
 	void removed(final O objectToObserve, final E element);
 
+	/**
+	 * Gives feedback that a batch of elements was removed from the observing collection at once.
+	 * 
+	 * @param objectToObserve
+	 * @param elements
+	 */
+	void removedAll(final O objectToObserve, final Collection<? extends E> elements);
+
 }
@@ -15,6 +15,7 @@
  ******************************************************************************/
 package net.sf.jacclog.util.observer;
 
+import java.util.Collection;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -34,6 +35,11 @@ public class CurrentElementCounter<E> implements QueueItemCounter<E> {
 		}
 	}
 
+	@Override
+	public void addedAll(final Queue<E> queue, final Collection<? extends E> elements) {
+		counter.addAndGet(elements.size());
+	}
+
 	@Override
 	public void empty(final Queue<E> queue) {
 		// not interesting, do nothing
@@ -51,4 +57,9 @@ public class CurrentElementCounter<E> implements QueueItemCounter<E> {
 		}
 	}
 
+	@Override
+	public void removedAll(final Queue<E> queue, final Collection<? extends E> elements) {
+		counter.addAndGet(-elements.size());
+	}
+
 }
@@ -15,6 +15,7 @@
  ******************************************************************************/
 package net.sf.jacclog.util.observer;
 
+import java.util.Collection;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -35,6 +36,11 @@ public class TotalElementCounter<E> implements QueueItemCounter<E> {
 		}
 	}
 
+	@Override
+	public void addedAll(final Queue<E> queue, final Collection<? extends E> elements) {
+		counter.addAndGet(elements.size());
+	}
+
 	@Override
 	public void empty(final Queue<E> queue) {
 		// not interesting, do nothing
@@ -50,4 +56,9 @@ public class TotalElementCounter<E> implements QueueItemCounter<E> {
 		// not interesting, do nothing
 	}
 
+	@Override
+	public void removedAll(final Queue<E> queue, final Collection<? extends E> elements) {
+		// not interesting, do nothing
+	}
+
 }
@@ -75,6 +75,19 @@ public abstract class AbstractObservableQueue<E> implements ObservableQueue<E> {
 		}
 	}
 
+	/**
+	 * Notify all observers once that the given elements have been added to the queue.
+	 * 
+	 * @param elements
+	 */
+	protected void notifyElementsAdded(final Collection<? extends E> elements) {
+		if (!elements.isEmpty()) {
+			for (final CollectionObserver<Queue<E>, E> observer : observers) {
+				observer.addedAll(this, elements);
+			}
+		}
+	}
+
 	/**
 	 * Notify all observers that the given element has been removed from queue.
 	 * 
@@ -88,6 +101,19 @@ public abstract class AbstractObservableQueue<E> implements ObservableQueue<E> {
 		}
 	}
 
+	/**
+	 * Notify all observers once that the given elements have been removed from the queue.
+	 * 
+	 * @param elements
+	 */
+	protected void notifyElementsRemoved(final Collection<? extends E> elements) {
+		if (!elements.isEmpty()) {
+			for (final CollectionObserver<Queue<E>, E> observer : observers) {
+				observer.removedAll(this, elements);
+			}
+		}
+	}
+
 	/**
 	 * Notify all observers that the queue is empty.
 	 * 
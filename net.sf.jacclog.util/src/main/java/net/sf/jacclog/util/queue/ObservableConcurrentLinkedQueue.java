@@ -15,8 +15,10 @@
  ******************************************************************************/
 package net.sf.jacclog.util.queue;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -56,23 +58,39 @@ public class ObservableConcurrentLinkedQueue<E> extends AbstractObservableQueue<
 		return added;
 	}
 
+	/**
+	 * Adds all elements and notifies the observers once about the added elements.
+	 */
 	@Override
 	public boolean addAll(final Collection<? extends E> elements) {
-		boolean collectionChanged = false;
-		for (final E element : elements) {
-			if (add(element) && !collectionChanged) {
-				collectionChanged = true;
+		if (elements == null) {
+			throw new IllegalArgumentException("Argument 'elements' can not be null.");
+		}
+
+		if (elements == this) {
+			throw new IllegalArgumentException("Argument 'elements' can not be the queue itself.");
+		}
+
+		final List<E> added = new ArrayList<E>(elements.size());
+		try {
+			for (final E element : elements) {
+				if (element == null) {
+					throw new IllegalArgumentException("Argument 'elements' can not contain null.");
+				}
+
+				if (delegation.add(element)) {
+					added.add(element);
+				}
 			}
+		} finally {
+			notifyElementsAdded(added);
 		}
-		return collectionChanged;
+		return !added.isEmpty();
 	}
 
 	@Override
 	public void clear() {
-		E element;
-		do {
-			element = poll();
-		} while (element != null);
+		drainTo(new ArrayList<E>());
 	}
 
 	@Override
@@ -85,6 +103,50 @@ public class ObservableConcurrentLinkedQueue<E> extends AbstractObservableQueue<
 		return delegation.containsAll(elements);
 	}
 
+	/**
+	 * Removes all available elements and adds them to the given collection.
+	 * 
+	 * @param elements
+	 *            collection to transfer elements into
+	 * @return number of transferred elements
+	 */
+	public int drainTo(final Collection<? super E> elements) {
+		return drainTo(elements, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Removes at most the given number of elements and adds them to the given collection. The observers will be
+	 * notified once about the removed elements, and if less elements than requested were available, that the queue is
+	 * empty.
+	 * 
+	 * @param elements
+	 *            collection to transfer elements into
+	 * @param maxElements
+	 *            maximum number of elements to transfer
+	 * @return number of transferred elements
+	 */
+	public int drainTo(final Collection<? super E> elements, final int maxElements) {
+		if (elements == null) {
+			throw new IllegalArgumentException("Argument 'elements' can not be null.");
+		}
+
+		if (elements == this) {
+			throw new IllegalArgumentException("Argument 'elements' can not be the queue itself.");
+		}
+
+		final List<E> drained = new ArrayList<E>();
+		E element;
+		while (drained.size() < maxElements && (element = delegation.poll()) != null) {
+			drained.add(element);
+		}
+		elements.addAll(drained);
+		notifyElementsRemoved(drained);
+		if (drained.size() < maxElements) {
+			notifyEmpty();
+		}
+		return drained.size();
+	}
+
 	@Override
 	public E element() {
 		return delegation.element();
@@ -15,8 +15,10 @@
  ******************************************************************************/
 package net.sf.jacclog.util.queue;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -49,23 +51,39 @@ public class ObservableLinkedBlockingQueue<E> extends AbstractObservableBlocking
 		return added;
 	}
 
+	/**
+	 * Adds all elements and notifies the observers once about the added elements.
+	 */
 	@Override
 	public boolean addAll(final Collection<? extends E> elements) {
-		boolean collectionChanged = false;
-		for (final E element : elements) {
-			if (add(element) && !collectionChanged) {
-				collectionChanged = true;
+		if (elements == null) {
+			throw new IllegalArgumentException("Argument 'elements' can not be null.");
+		}
+
+		if (elements == this) {
+			throw new IllegalArgumentException("Argument 'elements' can not be the queue itself.");
+		}
+
+		final List<E> added = new ArrayList<E>(elements.size());
+		try {
+			for (final E element : elements) {
+				if (element == null) {
+					throw new IllegalArgumentException("Argument 'elements' can not contain null.");
+				}
+
+				if (delegation.add(element)) {
+					added.add(element);
+				}
 			}
+		} finally {
+			notifyElementsAdded(added);
 		}
-		return collectionChanged;
+		return !added.isEmpty();
 	}
 
 	@Override
 	public void clear() {
-		E element;
-		do {
-			element = poll();
-		} while (element != null);
+		drainTo(new ArrayList<E>());
 	}
 
 	@Override
@@ -78,20 +96,38 @@ public class ObservableLinkedBlockingQueue<E> extends AbstractObservableBlocking
 		return delegation.containsAll(elements);
 	}
 
-	/**
-	 * This method is not implemented and throws an <code>UnsupportedOperationException</code>.
-	 */
 	@Override
 	public int drainTo(final Collection<? super E> elements) {
-		throw new UnsupportedOperationException();
+		return drainTo(elements, Integer.MAX_VALUE);
 	}
 
 	/**
-	 * This method is not implemented and throws an <code>UnsupportedOperationException</code>.
+	 * Removes at most the given number of elements with a single acquisition of the lock of the queue and notifies
+	 * the observers once about the removed elements. If less elements than requested were available, the observers
+	 * will be notified that the queue is empty.
 	 */
 	@Override
 	public int drainTo(final Collection<? super E> elements, final int maxElements) {
-		throw new UnsupportedOperationException();
+		if (elements == null) {
+			throw new IllegalArgumentException("Argument 'elements' can not be null.");
+		}
+
+		if (elements == this) {
+			throw new IllegalArgumentException("Argument 'elements' can not be the queue itself.");
+		}
+
+		if (maxElements <= 0) {
+			return 0;
+		}
+
+		final List<E> drained = new ArrayList<E>(Math.min(maxElements, delegation.size()));
+		final int count = delegation.drainTo(drained, maxElements);
+		elements.addAll(drained);
+		notifyElementsRemoved(drained);
+		if (count < maxElements) {
+			notifyEmpty();
+		}
+		return count;
 	}
 
 	@Override
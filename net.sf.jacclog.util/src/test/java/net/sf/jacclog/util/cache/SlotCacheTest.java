@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright 2011 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.jacclog.util.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the bounded cache of recurring values.
+ */
+public class SlotCacheTest {
+
+	private static final String USER_AGENT = "Mozilla/5.0 (X11; U; Linux i686)";
+
+	@Test
+	public void testBounded() {
+		final SlotCache<String, Long> cache = new SlotCache<String, Long>(4);
+		for (long i = 0; i < 1000; i++) {
+			final String key = "http://www.example.com/" + i;
+			cache.put(key.hashCode(), key, i);
+		}
+
+		int cached = 0;
+		for (long i = 0; i < 1000; i++) {
+			final String key = "http://www.example.com/" + i;
+			if (cache.get(key.hashCode(), key) != null) {
+				cached++;
+			}
+		}
+		Assert.assertTrue(cached <= cache.getCapacity());
+	}
+
+	@Test
+	public void testCapacity() {
+		Assert.assertEquals(1, new SlotCache<String, Long>(1).getCapacity());
+		Assert.assertEquals(1024, new SlotCache<String, Long>(1000).getCapacity());
+	}
+
+	@Test
+	public void testCountsOfParallelLookups() throws Exception {
+		final SlotCache<String, Long> cache = new SlotCache<String, Long>(64);
+		final long hash = USER_AGENT.hashCode();
+		cache.put(hash, USER_AGENT, 42L);
+
+		// the counts of all threads are summed up over their stripes
+		final Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						cache.get(hash, USER_AGENT);
+						cache.get(hash + 1, USER_AGENT);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(8000, cache.getHits());
+		Assert.assertEquals(8000, cache.getMisses());
+	}
+
+	@Test
+	public void testGetAndPut() {
+		final SlotCache<String, Long> cache = new SlotCache<String, Long>(64);
+		final long hash = USER_AGENT.hashCode();
+		Assert.assertNull(cache.get(hash, USER_AGENT));
+		cache.put(hash, USER_AGENT, 42L);
+		Assert.assertEquals(Long.valueOf(42), cache.get(hash, new String(USER_AGENT)));
+
+		// an equal key with another hash is not found
+		Assert.assertNull(cache.get(hash + 1, USER_AGENT));
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(2, cache.getMisses());
+		Assert.assertEquals(1.0 / 3, cache.getHitRatio(), 0.001);
+
+		cache.clear();
+		Assert.assertNull(cache.get(hash, USER_AGENT));
+	}
+
+	@Test
+	public void testGetWithMatcher() {
+		final SlotCache<String, Integer> cache = new SlotCache<String, Integer>(16);
+		final SlotCache.Matcher<String, char[]> matcher = new SlotCache.Matcher<String, char[]>() {
+			@Override
+			public boolean matches(final String key, final char[] probe) {
+				return key.contentEquals(new StringBuilder().append(probe));
+			}
+		};
+		cache.put(7, "GET", 1);
+		Assert.assertEquals(Integer.valueOf(1), cache.get(7, "GET".toCharArray(), matcher));
+		Assert.assertNull(cache.get(7, "PUT".toCharArray(), matcher));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPutNull() {
+		new SlotCache<String, Long>(16).put(0, "Referer", null);
+	}
+
+}
@@ -1,6 +1,7 @@
 package net.sf.jacclog.util.net;
 
 import java.net.UnknownHostException;
+import java.util.Random;
 
 import junit.framework.Assert;
 
@@ -20,4 +21,20 @@ public class IpAddressGeneratorTest {
 		Assert.assertTrue(true);
 	}
 
+	@Test
+	public void testGenerateRandomLongForIpAddressWithSeed() {
+		final Random first = new Random(42);
+		final Random second = new Random(42);
+		for (int i = 0; i < 1000; i++) {
+			final long address = IpAddressGenerator.generateRandomLongForIpAddress(first);
+			Assert.assertEquals(address, IpAddressGenerator.generateRandomLongForIpAddress(second));
+			Assert.assertTrue(address >= 0 && address <= 0xFFFFFFFFL);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGenerateRandomLongForIpAddressWithoutRandom() {
+		IpAddressGenerator.generateRandomLongForIpAddress(null);
+	}
+
 }
@@ -0,0 +1,77 @@
+package net.sf.jacclog.util.queue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+import net.sf.jacclog.util.observer.CurrentElementCounter;
+import net.sf.jacclog.util.observer.TotalElementCounter;
+
+import org.junit.Test;
+
+public class ObservableLinkedBlockingQueueTest {
+
+	@Test
+	public void testAddAllUpdatesCounters() {
+		final ObservableLinkedBlockingQueue<String> queue = new ObservableLinkedBlockingQueue<String>(10);
+		final CurrentElementCounter<String> current = new CurrentElementCounter<String>();
+		final TotalElementCounter<String> total = new TotalElementCounter<String>();
+		queue.addObserver(current);
+		queue.addObserver(total);
+
+		Assert.assertTrue(queue.addAll(Arrays.asList("a", "b", "c")));
+		Assert.assertEquals(3, queue.size());
+		Assert.assertEquals(3, current.getCount());
+		Assert.assertEquals(3, total.getCount());
+
+		queue.clear();
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertEquals(0, current.getCount());
+		Assert.assertEquals(3, total.getCount());
+	}
+
+	@Test
+	public void testConcurrentQueueDrainTo() {
+		final ObservableConcurrentLinkedQueue<String> queue = new ObservableConcurrentLinkedQueue<String>();
+		final CurrentElementCounter<String> current = new CurrentElementCounter<String>();
+		queue.addObserver(current);
+		queue.addAll(Arrays.asList("a", "b", "c"));
+
+		final List<String> drained = new ArrayList<String>();
+		Assert.assertEquals(2, queue.drainTo(drained, 2));
+		Assert.assertEquals(Arrays.asList("a", "b"), drained);
+		Assert.assertEquals(1, current.getCount());
+
+		Assert.assertEquals(1, queue.drainTo(drained));
+		Assert.assertEquals(0, current.getCount());
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testDrainTo() {
+		final ObservableLinkedBlockingQueue<String> queue = new ObservableLinkedBlockingQueue<String>(10);
+		final CurrentElementCounter<String> current = new CurrentElementCounter<String>();
+		queue.addObserver(current);
+		for (int i = 0; i < 5; i++) {
+			queue.add(String.valueOf(i));
+		}
+
+		final List<String> drained = new ArrayList<String>();
+		Assert.assertEquals(3, queue.drainTo(drained, 3));
+		Assert.assertEquals(Arrays.asList("0", "1", "2"), drained);
+		Assert.assertEquals(2, current.getCount());
+
+		Assert.assertEquals(2, queue.drainTo(drained));
+		Assert.assertEquals(5, drained.size());
+		Assert.assertEquals(0, current.getCount());
+		Assert.assertEquals(0, queue.drainTo(drained));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDrainToItself() {
+		final ObservableLinkedBlockingQueue<String> queue = new ObservableLinkedBlockingQueue<String>(10);
+		queue.drainTo(queue);
+	}
+
+}